@@ -0,0 +1,14 @@
+package com.simon.benchmark;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class BenchmarkApplication {
+
+    public static void main(String[] args) {
+        // 压测跑完即退出，返回码表示是否找到了可持续的速率
+        System.exit(SpringApplication.exit(SpringApplication.run(BenchmarkApplication.class, args)));
+    }
+
+}
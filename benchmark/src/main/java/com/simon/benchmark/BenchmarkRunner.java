@@ -0,0 +1,206 @@
+package com.simon.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.simon.benchmark.config.BenchmarkConfig;
+import com.simon.benchmark.load.JobTracker;
+import com.simon.benchmark.load.LoadGenerator;
+import com.simon.benchmark.load.ReportProxy;
+import com.simon.benchmark.process.ServiceProcess;
+import com.simon.benchmark.remote.LocalRemote;
+import com.simon.benchmark.report.StepResult;
+import com.simon.benchmark.stub.LlmScript;
+import com.simon.benchmark.stub.StubLlmServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端压测
+ * 在本机启动模拟大模型、本地裸仓库和三个服务，按逐级提高的速率触发异常，
+ * 统计端到端延迟百分位、各阶段耗时和可持续的最高触发速率，全程不需要网络
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class BenchmarkRunner implements CommandLineRunner, ExitCodeGenerator {
+
+    private static final String RESULT_FILE = "benchmark-result.json";
+
+    private final BenchmarkConfig config;
+
+    private final ObjectMapper objectMapper;
+
+    private final ResourceLoader resourceLoader;
+
+    private int exitCode = 1;
+
+    public BenchmarkRunner(BenchmarkConfig config, ObjectMapper objectMapper, ResourceLoader resourceLoader) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.resourceLoader = resourceLoader;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        File projectDir = new File(config.getProjectDir()).getCanonicalFile();
+        File workDir = new File(config.getWorkDir()).getAbsoluteFile();
+        FileSystemUtils.deleteRecursively(workDir);
+        File logDir = new File(workDir, "logs");
+        Files.createDirectories(logDir.toPath());
+
+        //region 准备远端仓库和模拟大模型
+        LocalRemote remote = LocalRemote.create(projectDir, new File(workDir, "remote.git"));
+        // 不启动任何 stdio MCP 服务（默认配置里的 github 服务需要 docker 和网络）
+        File mcpServers = new File(workDir, "mcp-servers-config.json");
+        Files.writeString(mcpServers.toPath(), "{\"mcpServers\":{}}", StandardCharsets.UTF_8);
+
+        List<LlmScript> scripts;
+        try (InputStream in = resourceLoader.getResource(config.getLlm().getScripts()).getInputStream()) {
+            scripts = objectMapper.readValue(in, new TypeReference<List<LlmScript>>() {
+            });
+        }
+        //endregion
+
+        BenchmarkConfig.Services services = config.getServices();
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        String mcpClientUrl = "http://127.0.0.1:" + services.getMcpClient().getPort();
+        List<ServiceProcess> processes = new ArrayList<>();
+        try (StubLlmServer llm = new StubLlmServer(config.getLlm(), scripts, objectMapper);
+             JobTracker tracker = new JobTracker(mcpClientUrl, httpClient, objectMapper, config.getLoad().getPollIntervalMillis());
+             ReportProxy proxy = new ReportProxy(services.getProxyPort(), mcpClientUrl, httpClient, objectMapper, tracker);
+             LoadGenerator load = new LoadGenerator("http://127.0.0.1:" + services.getSpringBoot().getPort(), httpClient)) {
+            llm.start();
+            proxy.start();
+
+            //region 按依赖顺序启动三个服务
+            processes.add(start("git-mcp-server", projectDir, logDir, services.getGitMcpServer(), List.of(
+                    "--git.filesystem.allowed-roots[0]=" + workDir.getAbsolutePath())));
+            processes.add(start("mcp-client", projectDir, logDir, services.getMcpClient(), List.of(
+                    "--spring.ai.openai.base-url=" + llm.baseUrl(),
+                    "--spring.ai.openai.api-key=benchmark",
+                    "--spring.ai.mcp.client.sse.connections.gitClone.url=http://127.0.0.1:" + services.getGitMcpServer().getPort(),
+                    "--spring.ai.mcp.client.stdio.servers-configuration=file:" + mcpServers.getAbsolutePath(),
+                    "--simon.ai.localRepository=" + new File(workDir, "local").getAbsolutePath(),
+                    "--simon.ai.remoteRepository=" + remote.url(),
+                    "--simon.ai.worktree.directory=" + new File(workDir, "worktrees").getAbsolutePath(),
+                    "--simon.ai.result-cache.enabled=false",
+                    "--simon.ai.pipeline.mode=" + services.getPipelineMode())));
+            processes.add(start("spring-boot", projectDir, logDir, services.getSpringBoot(), List.of(
+                    "--simon.ai.report.transport.base-url=http://127.0.0.1:" + services.getProxyPort(),
+                    "--simon.ai.report.dedup.enabled=false",
+                    "--simon.ai.report.spool.directory=" + new File(workDir, "report-spool").getAbsolutePath())));
+            for (ServiceProcess process : processes) {
+                process.awaitHealthy(httpClient, services.getStartupTimeoutSeconds());
+            }
+            //endregion
+
+            BenchmarkConfig.Load loadConfig = config.getLoad();
+            //region 预热：完成本地仓库的首次检出和工作区初始化，结果不计入统计
+            for (int i = 0; i < loadConfig.getWarmUpRequests(); i++) {
+                load.once();
+            }
+            awaitDrain(tracker, loadConfig);
+            JobTracker.Snapshot warmUp = tracker.drain();
+            log.info("Warm-up finished: {} submitted, {} finished", warmUp.getSubmitted(), warmUp.getFinished().size());
+            //endregion
+
+            //region 逐级提高触发速率，直到某一级无法持续
+            List<StepResult> results = new ArrayList<>();
+            for (double rate : loadConfig.getRates()) {
+                log.info(">>> Step {}/s for {}s", rate, loadConfig.getStepSeconds());
+                LoadGenerator.Result sent = load.run(rate, loadConfig.getStepSeconds());
+                awaitDrain(tracker, loadConfig);
+                StepResult result = new StepResult(rate, sent, tracker.drain(),
+                        loadConfig.getSloMillis(), loadConfig.getMinCompletedRatio());
+                results.add(result);
+                print(result);
+                if (!result.isSustainable()) {
+                    break;
+                }
+            }
+            //endregion
+
+            double maxSustainable = results.stream().filter(StepResult::isSustainable)
+                    .mapToDouble(StepResult::getRate).max().orElse(0);
+            log.info("========================================");
+            log.info("Max sustainable rate: {}/s ({} mode)", maxSustainable, services.getPipelineMode());
+            log.info("Stub LLM: {} requests, {} tool calls, {} throttled", llm.getRequests(), llm.getToolCalls(), llm.getThrottled());
+            log.info("Hotfix branches pushed: {}", remote.hotfixBranches());
+
+            Map<String, Object> output = new LinkedHashMap<>();
+            output.put("pipelineMode", services.getPipelineMode());
+            output.put("maxSustainableRate", maxSustainable);
+            output.put("steps", results);
+            File resultFile = new File(workDir, RESULT_FILE);
+            objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, output);
+            log.info("Result written to {}", resultFile);
+            exitCode = maxSustainable > 0 ? 0 : 1;
+        } finally {
+            // 与启动顺序相反依次停止
+            for (int i = processes.size() - 1; i >= 0; i--) {
+                processes.get(i).close();
+            }
+        }
+    }
+
+    private ServiceProcess start(String name, File projectDir, File logDir, BenchmarkConfig.Service service,
+                                 List<String> args) throws IOException {
+        File jar = new File(service.getJar());
+        if (!jar.isAbsolute()) {
+            jar = new File(projectDir, service.getJar());
+        }
+        List<String> all = new ArrayList<>(args);
+        // 用户配置的参数放在最后，可以覆盖上面的默认值
+        all.addAll(service.getArgs());
+        return ServiceProcess.start(name, config.getServices().getJava(), jar, service.getPort(), all,
+                new File(logDir, name + ".log"));
+    }
+
+    private static void awaitDrain(JobTracker tracker, BenchmarkConfig.Load load) throws InterruptedException {
+        // 给最后一批上报留出排队和发送的时间
+        Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(load.getDrainSeconds());
+        while (tracker.pendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(load.getPollIntervalMillis());
+        }
+    }
+
+    private static void print(StepResult result) {
+        log.info("rate={}/s triggered={} submitted={} rejected={} succeeded={} failed={} unfinished={} throughput={}/s sustainable={}",
+                result.getRate(), result.getTriggered(), result.getSubmitted(), result.getRejected(),
+                result.getSucceeded(), result.getFailed(), result.getUnfinished(),
+                String.format("%.2f", result.getThroughput()), result.isSustainable());
+        log.info("  end-to-end: {}", result.getEndToEnd());
+        result.getStages().forEach((stage, stats) -> log.info("  {}: {}", String.format("%-8s", stage), stats));
+        result.getFailures().forEach((reason, count) -> log.info("  failure {} x{}", reason, count));
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+}
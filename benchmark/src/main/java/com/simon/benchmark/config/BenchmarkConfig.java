@@ -0,0 +1,169 @@
+package com.simon.benchmark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 端到端压测配置类
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "simon.benchmark")
+public class BenchmarkConfig {
+
+    /**
+     * 项目根目录，用于定位三个服务的 jar 包，以及作为裸仓库远端的代码来源
+     */
+    private String projectDir = ".";
+
+    /**
+     * 压测工作目录，存放裸仓库、本地仓库、工作区、服务日志和压测结果，每次运行前清空
+     */
+    private String workDir = System.getProperty("java.io.tmpdir") + "/ai-code-analyze-benchmark";
+
+    private Llm llm = new Llm();
+
+    private Services services = new Services();
+
+    private Load load = new Load();
+
+    @Data
+    public static class Llm {
+
+        /**
+         * 模拟大模型服务的端口
+         */
+        private int port = 18080;
+
+        /**
+         * 脚本文件，按提示词匹配规则，规定每一轮的工具调用和最终回答
+         */
+        private String scripts = "classpath:llm-scripts.json";
+
+        /**
+         * 每次响应的固定延迟，流式响应时为首个片段的延迟
+         */
+        private long latencyMillis = 800;
+
+        /**
+         * 在固定延迟上叠加的随机抖动上限
+         */
+        private long jitterMillis = 400;
+
+        /**
+         * 流式响应相邻两个片段之间的间隔
+         */
+        private long chunkIntervalMillis = 20;
+
+        /**
+         * 流式响应每个片段的字符数
+         */
+        private int chunkChars = 16;
+
+        /**
+         * 按该比例随机返回 429，用于验证限流和退避
+         */
+        private double throttleRate = 0;
+    }
+
+    @Data
+    public static class Services {
+
+        /**
+         * 启动服务使用的 java 命令
+         */
+        private String java = "java";
+
+        /**
+         * 等待服务健康检查通过的最长时间
+         */
+        private long startupTimeoutSeconds = 120;
+
+        /**
+         * 分析服务的流水线模式：STEPWISE / CONSOLIDATED
+         */
+        private String pipelineMode = "STEPWISE";
+
+        private Service gitMcpServer = new Service("git-mcp-server/target/git-mcp-server-1.0.0.jar", 18890);
+
+        private Service mcpClient = new Service("mcp-client/target/mcp-client-1.0.0.jar", 18891);
+
+        private Service springBoot = new Service("spring-boot/target/spring-boot-1.0.0.jar", 18892);
+
+        /**
+         * 上报代理的端口，spring-boot 的上报经过代理转发给 mcp-client，代理据此记录任务id
+         */
+        private int proxyPort = 18893;
+    }
+
+    @Data
+    public static class Service {
+
+        /**
+         * jar 包路径，相对路径基于 projectDir
+         */
+        private String jar;
+
+        private int port;
+
+        /**
+         * 额外的启动参数，例如 --simon.ai.worktree.size=8
+         */
+        private List<String> args = new ArrayList<>();
+
+        public Service() {
+        }
+
+        public Service(String jar, int port) {
+            this.jar = jar;
+            this.port = port;
+        }
+    }
+
+    @Data
+    public static class Load {
+
+        /**
+         * 逐级提高的触发速率（每秒触发的异常数），某一级无法持续时停止
+         */
+        private List<Double> rates = new ArrayList<>(List.of(0.2, 0.5, 1.0, 2.0, 4.0));
+
+        /**
+         * 正式压测前的预热请求数，预热完成本地仓库的检出和工作区初始化，不计入结果
+         */
+        private int warmUpRequests = 2;
+
+        /**
+         * 每一级的触发时长
+         */
+        private long stepSeconds = 60;
+
+        /**
+         * 每一级触发结束后等待剩余任务完成的最长时间
+         */
+        private long drainSeconds = 300;
+
+        /**
+         * 查询任务状态的间隔
+         */
+        private long pollIntervalMillis = 500;
+
+        /**
+         * 判定可持续的端到端延迟 p95 上限
+         */
+        private long sloMillis = 120_000;
+
+        /**
+         * 判定可持续的最低完成比例，完成指任务在排空时间内成功结束
+         */
+        private double minCompletedRatio = 0.95;
+    }
+}
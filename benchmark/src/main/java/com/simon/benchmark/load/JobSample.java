@@ -0,0 +1,47 @@
+package com.simon.benchmark.load;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一次异常分析的采样结果
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+public class JobSample {
+
+    private final String jobId;
+
+    /**
+     * 异常在 spring-boot 中发生的时间
+     */
+    private final long reportedAt;
+
+    private long createdAt;
+
+    private long startedAt;
+
+    private long finishedAt;
+
+    private String status;
+
+    private String result;
+
+    /**
+     * 阶段 -> 耗时，REPORT 为异常发生到任务创建，QUEUE 为任务排队时间，其余为分析服务上报的各阶段
+     */
+    private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+
+    public long endToEndMillis() {
+        return finishedAt - reportedAt;
+    }
+
+    public boolean isSucceeded() {
+        return "SUCCEEDED".equals(status) && result != null && result.startsWith("SUCCESS:");
+    }
+}
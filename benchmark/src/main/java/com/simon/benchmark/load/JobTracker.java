@@ -0,0 +1,171 @@
+package com.simon.benchmark.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 跟踪分析任务直到结束
+ * 定期查询分析服务的任务接口，任务结束后根据事件时间计算各阶段耗时
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class JobTracker implements AutoCloseable {
+
+    private static final String PARTIAL = "PARTIAL";
+
+    private final String baseUrl;
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final ScheduledExecutorService poller;
+
+    private final Map<String, JobSample> pending = new ConcurrentHashMap<>();
+
+    private final List<JobSample> finished = new ArrayList<>();
+
+    private final AtomicInteger submitted = new AtomicInteger();
+
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    public JobTracker(String baseUrl, HttpClient httpClient, ObjectMapper objectMapper, long pollIntervalMillis) {
+        this.baseUrl = baseUrl;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "job-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录分析服务受理的任务
+     */
+    public void submitted(String jobId, long reportedAt) {
+        submitted.incrementAndGet();
+        pending.put(jobId, new JobSample(jobId, reportedAt));
+    }
+
+    /**
+     * 记录分析服务拒绝的上报
+     */
+    public void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 取出当前一级的结果并清零计数，仍未结束的任务放弃跟踪
+     */
+    public synchronized Snapshot drain() {
+        Snapshot snapshot = new Snapshot(new ArrayList<>(finished), submitted.getAndSet(0), rejected.getAndSet(0),
+                pending.size());
+        finished.clear();
+        pending.clear();
+        return snapshot;
+    }
+
+    private void poll() {
+        for (JobSample sample : pending.values()) {
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/error_analyze/jobs/" + sample.getJobId()))
+                        .timeout(Duration.ofSeconds(5))
+                        .GET()
+                        .build();
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    continue;
+                }
+                JsonNode job = objectMapper.readTree(response.body());
+                String status = job.path("status").asText();
+                if ("PENDING".equals(status) || "RUNNING".equals(status)) {
+                    continue;
+                }
+                complete(sample, job);
+            } catch (IOException e) {
+                log.debug("Failed to poll job {}: {}", sample.getJobId(), e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private synchronized void complete(JobSample sample, JsonNode job) {
+        if (pending.remove(sample.getJobId()) == null) {
+            return;
+        }
+        sample.setStatus(job.path("status").asText());
+        sample.setResult(job.path("result").asText(null));
+        sample.setCreatedAt(job.path("createdAt").asLong());
+        sample.setStartedAt(job.path("startedAt").asLong());
+        sample.setFinishedAt(job.path("finishedAt").asLong());
+        sample.getStageMillis().put("REPORT", sample.getCreatedAt() - sample.getReportedAt());
+        if (sample.getStartedAt() > 0) {
+            sample.getStageMillis().put("QUEUE", sample.getStartedAt() - sample.getCreatedAt());
+        }
+        // 每个阶段从它的事件开始，到下一个事件为止，最后一个事件是任务结束
+        JsonNode events = job.path("events");
+        for (int i = 0; i + 1 < events.size(); i++) {
+            String stage = events.get(i).path("stage").asText();
+            if (!PARTIAL.equals(stage)) {
+                long duration = events.get(i + 1).path("timestamp").asLong() - events.get(i).path("timestamp").asLong();
+                sample.getStageMillis().merge(stage, duration, Long::sum);
+            }
+        }
+        finished.add(sample);
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * 一级压测的任务结果
+     */
+    @Getter
+    public static class Snapshot {
+
+        private final List<JobSample> finished;
+
+        private final int submitted;
+
+        private final int rejected;
+
+        private final int unfinished;
+
+        Snapshot(List<JobSample> finished, int submitted, int rejected, int unfinished) {
+            this.finished = finished;
+            this.submitted = submitted;
+            this.rejected = rejected;
+            this.unfinished = unfinished;
+        }
+    }
+}
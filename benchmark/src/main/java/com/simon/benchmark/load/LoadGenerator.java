@@ -0,0 +1,114 @@
+package com.simon.benchmark.load;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按固定速率调用 UserController.get 触发异常
+ * 开环发送：不等待上一个请求返回，速率不受被测服务快慢影响；
+ * 交替触发除零和空指针两种异常
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public class LoadGenerator implements AutoCloseable {
+
+    private static final String[] PAYLOADS = {
+            // userId 为 0 时除零
+            "{\"userId\":0,\"userName\":\"benchmark\"}",
+            // userName 为空时空指针
+            "{\"userId\":1}"
+    };
+
+    private final URI uri;
+
+    private final HttpClient httpClient;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    public LoadGenerator(String baseUrl, HttpClient httpClient) {
+        this.uri = URI.create(baseUrl + "/api/get");
+        this.httpClient = httpClient;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "load-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 以指定速率持续触发异常
+     *
+     * @param ratePerSecond 每秒触发次数
+     * @return 实际发出的请求数和失败数
+     */
+    public Result run(double ratePerSecond, long durationSeconds) throws InterruptedException {
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> {
+            sent.incrementAndGet();
+            fire().whenComplete((response, ex) -> {
+                if (ex != null) {
+                    errors.incrementAndGet();
+                }
+            });
+        }, 0, periodNanos, TimeUnit.NANOSECONDS);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        future.cancel(false);
+        return new Result(sent.get(), errors.get());
+    }
+
+    /**
+     * 触发一次异常并等待响应
+     */
+    public void once() {
+        fire().join();
+    }
+
+    private CompletableFuture<HttpResponse<Void>> fire() {
+        String payload = PAYLOADS[Math.floorMod(sequence.getAndIncrement(), PAYLOADS.length)];
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+        // 接口在异常时返回 error，状态码不影响统计，只要请求到达了服务
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 一级压测的发送结果
+     */
+    @Getter
+    public static class Result {
+
+        private final int sent;
+
+        private final int errors;
+
+        Result(int sent, int errors) {
+            this.sent = sent;
+            this.errors = errors;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.simon.benchmark.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * spring-boot 与 mcp-client 之间的上报代理
+ * 原样转发批量上报，同时把上报中的异常发生时间和返回的任务id 交给 JobTracker，
+ * 用于计算从异常发生到分析完成的端到端延迟
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class ReportProxy implements AutoCloseable {
+
+    private static final String BATCH_PATH = "/api/error_analyze_batch";
+
+    private static final String FAIL = "FAIL";
+
+    private final String targetUrl;
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final JobTracker jobTracker;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    public ReportProxy(int port, String targetUrl, HttpClient httpClient, ObjectMapper objectMapper,
+                       JobTracker jobTracker) throws IOException {
+        this.targetUrl = targetUrl;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.jobTracker = jobTracker;
+        this.executor = Executors.newFixedThreadPool(4, r -> {
+            Thread thread = new Thread(r, "report-proxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 64);
+        this.server.setExecutor(executor);
+        this.server.createContext(BATCH_PATH, this::handle);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Report proxy listening on port {}, forwarding to {}", server.getAddress().getPort(), targetUrl);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(targetUrl + BATCH_PATH))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            HttpResponse<byte[]> response;
+            try {
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            } catch (IOException e) {
+                log.warn("Forward to mcp-client failed: {}", e.toString());
+                exchange.sendResponseHeaders(502, -1);
+                return;
+            }
+            if (response.statusCode() / 100 == 2) {
+                record(body, response.body());
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.statusCode(), response.body().length == 0 ? -1 : response.body().length);
+            if (response.body().length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response.body());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 返回的任务id 与上报的异常按顺序一一对应
+     */
+    private void record(byte[] requestBody, byte[] responseBody) {
+        try {
+            JsonNode reports = objectMapper.readTree(requestBody).path("reports");
+            JsonNode ids = objectMapper.readTree(responseBody);
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i).asText();
+                if (FAIL.equals(id)) {
+                    jobTracker.rejected();
+                } else {
+                    jobTracker.submitted(id, reports.path(i).path("timestamp").asLong(System.currentTimeMillis()));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unexpected batch payload: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
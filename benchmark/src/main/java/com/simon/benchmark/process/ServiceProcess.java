@@ -0,0 +1,109 @@
+package com.simon.benchmark.process;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以子进程方式启动的被测服务
+ * 输出重定向到工作目录下的日志文件，启动后轮询健康检查接口直到服务就绪
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class ServiceProcess implements AutoCloseable {
+
+    private final String name;
+
+    private final int port;
+
+    private final Process process;
+
+    private ServiceProcess(String name, int port, Process process) {
+        this.name = name;
+        this.port = port;
+        this.process = process;
+    }
+
+    /**
+     * 启动服务
+     *
+     * @param java 启动使用的 java 命令
+     * @param jar  服务的 jar 包
+     * @param args 追加在 jar 包之后的启动参数
+     * @param logFile 输出日志文件
+     */
+    public static ServiceProcess start(String name, String java, File jar, int port, List<String> args, File logFile)
+            throws IOException {
+        if (!jar.isFile()) {
+            throw new IOException("Jar not found, run 'mvn package' first: " + jar);
+        }
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.add("-jar");
+        command.add(jar.getAbsolutePath());
+        command.add("--server.port=" + port);
+        command.addAll(args);
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile)
+                .start();
+        log.info("Started {} (pid {}) on port {}, log: {}", name, process.pid(), port, logFile);
+        return new ServiceProcess(name, port, process);
+    }
+
+    /**
+     * 等待健康检查通过
+     */
+    public void awaitHealthy(HttpClient httpClient, long timeoutSeconds) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/actuator/health"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException(name + " exited with code " + process.exitValue() + " during startup");
+            }
+            try {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    log.info("✅ {} is up", name);
+                    return;
+                }
+            } catch (IOException e) {
+                // 端口还没有监听
+            }
+            Thread.sleep(1000);
+        }
+        throw new IOException(name + " did not become healthy within " + timeoutSeconds + "s");
+    }
+
+    @Override
+    public void close() {
+        if (!process.isAlive()) {
+            return;
+        }
+        process.destroy();
+        try {
+            if (!process.waitFor(15, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        }
+        log.info("Stopped {}", name);
+    }
+}
@@ -0,0 +1,63 @@
+package com.simon.benchmark.remote;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 作为远端的本地裸仓库
+ * 从项目仓库克隆而来，包含 spring-boot 模块的源码，分析服务从这里检出代码并推送 hotfix 分支，
+ * 压测结束后可以统计推送上来的分支数
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class LocalRemote {
+
+    private final File directory;
+
+    private LocalRemote(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 从项目仓库克隆出裸仓库
+     *
+     * @param source 项目仓库目录
+     * @param target 裸仓库目录
+     */
+    public static LocalRemote create(File source, File target) throws GitAPIException {
+        try (Git ignored = Git.cloneRepository()
+                .setURI(source.getAbsoluteFile().toURI().toString())
+                .setDirectory(target)
+                .setBare(true)
+                .call()) {
+            log.info("Bare remote created at {}", target);
+        }
+        return new LocalRemote(target);
+    }
+
+    /**
+     * 分析服务使用的远端地址
+     */
+    public String url() {
+        return "file://" + directory.getAbsolutePath();
+    }
+
+    /**
+     * 已推送的 hotfix 分支数
+     */
+    public int hotfixBranches() throws IOException {
+        try (Git git = Git.open(directory)) {
+            List<Ref> refs = git.getRepository().getRefDatabase().getRefsByPrefix("refs/heads/hotfix_");
+            return refs.size();
+        }
+    }
+}
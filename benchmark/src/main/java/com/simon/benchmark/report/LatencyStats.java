@@ -0,0 +1,62 @@
+package com.simon.benchmark.report;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 延迟分布，百分位按最近秩法计算
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Getter
+public class LatencyStats {
+
+    private final int count;
+
+    private final long mean;
+
+    private final long p50;
+
+    private final long p90;
+
+    private final long p95;
+
+    private final long p99;
+
+    private final long max;
+
+    private LatencyStats(List<Long> sorted) {
+        this.count = sorted.size();
+        this.mean = sorted.isEmpty() ? 0 : Math.round(sorted.stream().mapToLong(Long::longValue).average().orElse(0));
+        this.p50 = percentile(sorted, 50);
+        this.p90 = percentile(sorted, 90);
+        this.p95 = percentile(sorted, 95);
+        this.p99 = percentile(sorted, 99);
+        this.max = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1);
+    }
+
+    public static LatencyStats of(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return new LatencyStats(sorted);
+    }
+
+    private static long percentile(List<Long> sorted, int percent) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%dms p50=%dms p90=%dms p95=%dms p99=%dms max=%dms",
+                count, mean, p50, p90, p95, p99, max);
+    }
+}
@@ -0,0 +1,104 @@
+package com.simon.benchmark.report;
+
+import com.simon.benchmark.load.JobSample;
+import com.simon.benchmark.load.JobTracker;
+import com.simon.benchmark.load.LoadGenerator;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一级触发速率的压测结果
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Getter
+public class StepResult {
+
+    /**
+     * 计划的每秒触发数
+     */
+    private final double rate;
+
+    private final int triggered;
+
+    private final int triggerErrors;
+
+    /**
+     * 分析服务受理的任务数
+     */
+    private final int submitted;
+
+    private final int rejected;
+
+    private final int succeeded;
+
+    private final int failed;
+
+    /**
+     * 排空时间内仍未结束的任务数
+     */
+    private final int unfinished;
+
+    /**
+     * 每秒成功完成的分析数，按第一个任务受理到最后一个任务结束计算
+     */
+    private final double throughput;
+
+    private final LatencyStats endToEnd;
+
+    /**
+     * 阶段 -> 耗时分布，按阶段首次出现的顺序排列
+     */
+    private final Map<String, LatencyStats> stages = new LinkedHashMap<>();
+
+    /**
+     * 失败原因 -> 次数
+     */
+    private final Map<String, Integer> failures = new LinkedHashMap<>();
+
+    private final boolean sustainable;
+
+    public StepResult(double rate, LoadGenerator.Result load, JobTracker.Snapshot snapshot,
+                      long sloMillis, double minCompletedRatio) {
+        this.rate = rate;
+        this.triggered = load.getSent();
+        this.triggerErrors = load.getErrors();
+        this.submitted = snapshot.getSubmitted();
+        this.rejected = snapshot.getRejected();
+        this.unfinished = snapshot.getUnfinished();
+
+        List<Long> latencies = new ArrayList<>();
+        Map<String, List<Long>> stageValues = new LinkedHashMap<>();
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        int ok = 0;
+        for (JobSample sample : snapshot.getFinished()) {
+            if (!sample.isSucceeded()) {
+                failures.merge(sample.getStatus() + ":" + sample.getResult(), 1, Integer::sum);
+                continue;
+            }
+            ok++;
+            latencies.add(sample.endToEndMillis());
+            first = Math.min(first, sample.getReportedAt());
+            last = Math.max(last, sample.getFinishedAt());
+            sample.getStageMillis().forEach((stage, millis) ->
+                    stageValues.computeIfAbsent(stage, k -> new ArrayList<>()).add(millis));
+        }
+        this.succeeded = ok;
+        this.failed = snapshot.getFinished().size() - ok;
+        this.throughput = ok == 0 || last <= first ? 0 : ok * 1000.0 / (last - first);
+        this.endToEnd = LatencyStats.of(latencies);
+        stageValues.forEach((stage, values) -> stages.put(stage, LatencyStats.of(values)));
+
+        // 压测时关闭了上报去重，一次触发对应一个任务；完成比例按触发数计算，上报丢失也算作无法持续
+        this.sustainable = triggered > 0
+                && succeeded >= Math.ceil(triggered * minCompletedRatio)
+                && endToEnd.getP95() <= sloMillis;
+    }
+}
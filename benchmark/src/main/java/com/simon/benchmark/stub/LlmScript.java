@@ -0,0 +1,54 @@
+package com.simon.benchmark.stub;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模拟大模型的对话脚本
+ * 用户提示词包含 match 时使用该脚本：按本轮对话中已经发生的工具调用次数选择下一步，
+ * 每一步要么调用一个工具，要么给出最终回答
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+public class LlmScript {
+
+    private String name;
+
+    /**
+     * 用户提示词中包含该文本时匹配
+     */
+    private String match;
+
+    /**
+     * 变量名 -> 正则，取第一个分组作为变量值，可在 arguments 和 reply 中通过 ${变量名} 引用
+     */
+    private Map<String, String> extract = new LinkedHashMap<>();
+
+    private List<Step> steps = new ArrayList<>();
+
+    @Data
+    public static class Step {
+
+        /**
+         * 调用的工具名，与请求中的工具名相同或为其后缀（MCP 工具名带有客户端前缀）
+         */
+        private String tool;
+
+        /**
+         * 工具参数的 JSON 模板，${json:变量名} 会按 JSON 字符串转义
+         */
+        private String arguments;
+
+        /**
+         * 最终回答的模板，tool 为空时生效
+         */
+        private String reply;
+    }
+}
@@ -0,0 +1,204 @@
+package com.simon.benchmark.stub;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按脚本决定模拟大模型的下一步响应
+ * 变量取自最后一条用户消息，toolResult 为上一次工具调用的返回值
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class ScriptedResponder {
+
+    private static final String FAIL = "FAIL";
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{(json:)?([A-Za-z0-9_]+)}");
+
+    private final List<LlmScript> scripts;
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Pattern> patterns = new HashMap<>();
+
+    public ScriptedResponder(List<LlmScript> scripts, ObjectMapper objectMapper) {
+        this.scripts = scripts;
+        this.objectMapper = objectMapper;
+        for (LlmScript script : scripts) {
+            script.getExtract().values().forEach(regex -> patterns.computeIfAbsent(regex, Pattern::compile));
+        }
+    }
+
+    /**
+     * 根据 chat completions 请求体给出下一步
+     */
+    public Reply respond(JsonNode request) {
+        JsonNode messages = request.path("messages");
+        int lastUser = -1;
+        for (int i = 0; i < messages.size(); i++) {
+            if ("user".equals(messages.get(i).path("role").asText())) {
+                lastUser = i;
+            }
+        }
+        if (lastUser < 0) {
+            return Reply.text(FAIL);
+        }
+        String prompt = text(messages.get(lastUser).path("content"));
+
+        // 最后一条用户消息之后有几条 assistant 消息，就已经执行了几步
+        int step = 0;
+        String toolResult = "";
+        for (int i = lastUser + 1; i < messages.size(); i++) {
+            String role = messages.get(i).path("role").asText();
+            if ("assistant".equals(role)) {
+                step++;
+            } else if ("tool".equals(role)) {
+                toolResult = text(messages.get(i).path("content"));
+            }
+        }
+
+        LlmScript script = scripts.stream().filter(s -> prompt.contains(s.getMatch())).findFirst().orElse(null);
+        if (script == null || script.getSteps().isEmpty()) {
+            log.warn("No script matches prompt: {}", abbreviate(prompt));
+            return Reply.text(FAIL);
+        }
+
+        Map<String, String> variables = new HashMap<>();
+        for (Map.Entry<String, String> entry : script.getExtract().entrySet()) {
+            Matcher matcher = patterns.get(entry.getValue()).matcher(prompt);
+            variables.put(entry.getKey(), matcher.find() ? matcher.group(1) : "");
+        }
+        variables.put("toolResult", unwrap(toolResult));
+
+        LlmScript.Step next = script.getSteps().get(Math.min(step, script.getSteps().size() - 1));
+        if (next.getTool() == null) {
+            return Reply.text(render(next.getReply(), variables));
+        }
+        String function = resolveTool(request.path("tools"), next.getTool());
+        if (function == null) {
+            log.warn("Script {} calls tool {} which is not offered by the request", script.getName(), next.getTool());
+            return Reply.text(FAIL);
+        }
+        return Reply.toolCall(function, render(next.getArguments(), variables));
+    }
+
+    private String render(String template, Map<String, String> variables) {
+        if (template == null) {
+            return "";
+        }
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        StringBuilder builder = new StringBuilder();
+        while (matcher.find()) {
+            String value = variables.getOrDefault(matcher.group(2), "");
+            if (matcher.group(1) != null) {
+                value = escape(value);
+            }
+            matcher.appendReplacement(builder, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(builder);
+        return builder.toString();
+    }
+
+    /**
+     * MCP 工具名带有客户端前缀，按后缀匹配
+     */
+    private static String resolveTool(JsonNode tools, String tool) {
+        for (JsonNode candidate : tools) {
+            String name = candidate.path("function").path("name").asText();
+            if (name.equals(tool) || name.endsWith("_" + tool)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private String escape(String value) {
+        try {
+            String quoted = objectMapper.writeValueAsString(value);
+            return quoted.substring(1, quoted.length() - 1);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * MCP 工具的返回值是 [{"text": ...}] 形式的内容列表，文本本身又可能是 JSON 字符串，还原成原始文本
+     */
+    private String unwrap(String value) {
+        String text = value;
+        if (text.startsWith("[")) {
+            try {
+                JsonNode parts = objectMapper.readTree(text);
+                StringBuilder builder = new StringBuilder();
+                parts.forEach(part -> builder.append(part.path("text").asText()));
+                text = builder.toString();
+            } catch (JsonProcessingException e) {
+                return value;
+            }
+        }
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            try {
+                return objectMapper.readValue(text, String.class);
+            } catch (JsonProcessingException e) {
+                return text;
+            }
+        }
+        return text;
+    }
+
+    private static String text(JsonNode content) {
+        if (content.isArray()) {
+            StringBuilder builder = new StringBuilder();
+            content.forEach(part -> builder.append(part.path("text").asText()));
+            return builder.toString();
+        }
+        return content.asText();
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 80 ? text : text.substring(0, 80) + "...";
+    }
+
+    /**
+     * 一步响应：工具调用或文本回答
+     */
+    @Getter
+    public static class Reply {
+
+        private final String toolName;
+
+        private final String arguments;
+
+        private final String content;
+
+        private Reply(String toolName, String arguments, String content) {
+            this.toolName = toolName;
+            this.arguments = arguments;
+            this.content = content;
+        }
+
+        static Reply text(String content) {
+            return new Reply(null, null, content);
+        }
+
+        static Reply toolCall(String toolName, String arguments) {
+            return new Reply(toolName, arguments, null);
+        }
+
+        public boolean isToolCall() {
+            return toolName != null;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.simon.benchmark.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simon.benchmark.config.BenchmarkConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OpenAI 兼容的模拟大模型服务
+ * 只实现 /v1/chat/completions，支持普通和流式响应；响应内容由脚本决定，
+ * 延迟、抖动和 429 比例可配置，不需要网络和真实的 api key
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class StubLlmServer implements AutoCloseable {
+
+    private static final String COMPLETIONS_PATH = "/chat/completions";
+
+    private static final int CHARS_PER_TOKEN = 3;
+
+    private final BenchmarkConfig.Llm config;
+
+    private final ScriptedResponder responder;
+
+    private final ObjectMapper objectMapper;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong toolCalls = new AtomicLong();
+
+    private final AtomicLong throttled = new AtomicLong();
+
+    public StubLlmServer(BenchmarkConfig.Llm config, List<LlmScript> scripts, ObjectMapper objectMapper) throws IOException {
+        this.config = config;
+        this.responder = new ScriptedResponder(scripts, objectMapper);
+        this.objectMapper = objectMapper;
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-llm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", config.getPort()), 128);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Stub LLM listening on http://127.0.0.1:{}", config.getPort());
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + config.getPort();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getToolCalls() {
+        return toolCalls.get();
+    }
+
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith(COMPLETIONS_PATH)) {
+                send(exchange, 404, "application/json", "{\"error\":{\"message\":\"not found\"}}");
+                return;
+            }
+            JsonNode request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = objectMapper.readTree(in);
+            }
+            requests.incrementAndGet();
+
+            if (config.getThrottleRate() > 0 && ThreadLocalRandom.current().nextDouble() < config.getThrottleRate()) {
+                throttled.incrementAndGet();
+                send(exchange, 429, "application/json",
+                        "{\"error\":{\"message\":\"Rate limit reached (stub)\",\"type\":\"rate_limit_exceeded\"}}");
+                return;
+            }
+
+            ScriptedResponder.Reply reply = responder.respond(request);
+            if (reply.isToolCall()) {
+                toolCalls.incrementAndGet();
+            }
+            int promptTokens = request.path("messages").toString().length() / CHARS_PER_TOKEN;
+            sleep(config.getLatencyMillis() + (config.getJitterMillis() > 0
+                    ? ThreadLocalRandom.current().nextLong(config.getJitterMillis() + 1) : 0));
+            if (request.path("stream").asBoolean(false)) {
+                stream(exchange, request, reply, promptTokens);
+            } else {
+                send(exchange, 200, "application/json",
+                        objectMapper.writeValueAsString(completion(request, reply, promptTokens)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Stub LLM failed to respond", e);
+            send(exchange, 500, "application/json", "{\"error\":{\"message\":\"stub failure\"}}");
+        }
+    }
+
+    private ObjectNode completion(JsonNode request, ScriptedResponder.Reply reply, int promptTokens) {
+        ObjectNode root = envelope(request, "chat.completion");
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        if (reply.isToolCall()) {
+            message.putNull("content");
+            toolCall(message.putArray("tool_calls"), reply, false);
+            choice.put("finish_reason", "tool_calls");
+        } else {
+            message.put("content", reply.getContent());
+            choice.put("finish_reason", "stop");
+        }
+        usage(root, promptTokens, reply);
+        return root;
+    }
+
+    /**
+     * 按 SSE 格式逐段输出，片段之间按配置的间隔停顿，模拟真实的生成速度
+     */
+    private void stream(HttpExchange exchange, JsonNode request, ScriptedResponder.Reply reply, int promptTokens)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        if (reply.isToolCall()) {
+            ObjectNode chunk = envelope(request, "chat.completion.chunk");
+            ObjectNode delta = chunkChoice(chunk, null).putObject("delta");
+            delta.put("role", "assistant");
+            toolCall(delta.putArray("tool_calls"), reply, true);
+            event(out, chunk);
+        } else {
+            String content = reply.getContent();
+            int size = Math.max(1, config.getChunkChars());
+            for (int i = 0; i < content.length(); i += size) {
+                if (i > 0 && config.getChunkIntervalMillis() > 0) {
+                    Thread.sleep(config.getChunkIntervalMillis());
+                }
+                ObjectNode chunk = envelope(request, "chat.completion.chunk");
+                ObjectNode delta = chunkChoice(chunk, null).putObject("delta");
+                delta.put("role", "assistant");
+                delta.put("content", content.substring(i, Math.min(content.length(), i + size)));
+                event(out, chunk);
+            }
+        }
+        ObjectNode last = envelope(request, "chat.completion.chunk");
+        chunkChoice(last, reply.isToolCall() ? "tool_calls" : "stop").putObject("delta");
+        usage(last, promptTokens, reply);
+        event(out, last);
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private ObjectNode envelope(JsonNode request, String object) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", "chatcmpl-" + UUID.randomUUID());
+        root.put("object", object);
+        root.put("created", System.currentTimeMillis() / 1000);
+        root.put("model", request.path("model").asText("stub"));
+        return root;
+    }
+
+    private static ObjectNode chunkChoice(ObjectNode chunk, String finishReason) {
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        if (finishReason == null) {
+            choice.putNull("finish_reason");
+        } else {
+            choice.put("finish_reason", finishReason);
+        }
+        return choice;
+    }
+
+    private static void toolCall(ArrayNode calls, ScriptedResponder.Reply reply, boolean indexed) {
+        ObjectNode call = calls.addObject();
+        if (indexed) {
+            call.put("index", 0);
+        }
+        call.put("id", "call_" + UUID.randomUUID().toString().replace("-", ""));
+        call.put("type", "function");
+        ObjectNode function = call.putObject("function");
+        function.put("name", reply.getToolName());
+        function.put("arguments", reply.getArguments());
+    }
+
+    private static void usage(ObjectNode root, int promptTokens, ScriptedResponder.Reply reply) {
+        String output = reply.isToolCall() ? reply.getArguments() : reply.getContent();
+        int completionTokens = Math.max(1, output.length() / CHARS_PER_TOKEN);
+        ObjectNode usage = root.putObject("usage");
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+    }
+
+    private void event(OutputStream out, ObjectNode chunk) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
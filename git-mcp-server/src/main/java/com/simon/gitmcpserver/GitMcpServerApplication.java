@@ -1,5 +1,7 @@
 package com.simon.gitmcpserver;
 
+import com.simon.gitmcpserver.search.CodeSearchService;
+import com.simon.gitmcpserver.service.FileSystemService;
 import com.simon.gitmcpserver.service.GitService;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
@@ -7,9 +9,11 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan
+@EnableScheduling
 public class GitMcpServerApplication {
 
     public static void main(String[] args) {
@@ -17,7 +21,8 @@ public class GitMcpServerApplication {
     }
 
     @Bean
-    public ToolCallbackProvider weatherTools(GitService gitService) {
-        return MethodToolCallbackProvider.builder().toolObjects(gitService).build();
+    public ToolCallbackProvider weatherTools(GitService gitService, FileSystemService fileSystemService,
+                                             CodeSearchService codeSearchService) {
+        return MethodToolCallbackProvider.builder().toolObjects(gitService, fileSystemService, codeSearchService).build();
     }
 }
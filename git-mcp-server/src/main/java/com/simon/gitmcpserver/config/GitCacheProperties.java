@@ -0,0 +1,85 @@
+package com.simon.gitmcpserver.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "git.cache")
+public class GitCacheProperties {
+
+    /**
+     * 仓库句柄空闲（无人引用）超过该时间后关闭。
+     */
+    private long idleEvictSeconds = 300;
+
+    /**
+     * 所有 pack 文件窗口可占用的内存上限（字节），对应 core.packedGitLimit。
+     */
+    private long packedGitLimit = 64L * 1024 * 1024;
+
+    /**
+     * 单个 pack 窗口大小（字节），对应 core.packedGitWindowSize，必须是 2 的幂。
+     */
+    private int packedGitWindowSize = 64 * 1024;
+
+    /**
+     * 是否使用内存映射读取 pack 文件，对应 core.packedGitMMAP。
+     */
+    private boolean packedGitMmap = true;
+
+    /**
+     * 同时打开的 pack 文件数上限。
+     */
+    private int packedGitOpenFiles = 256;
+
+    /**
+     * delta 基础对象缓存上限（字节）。
+     */
+    private int deltaBaseCacheLimit = 32 * 1024 * 1024;
+
+    public long getIdleEvictSeconds() {
+        return idleEvictSeconds;
+    }
+
+    public void setIdleEvictSeconds(long idleEvictSeconds) {
+        this.idleEvictSeconds = idleEvictSeconds;
+    }
+
+    public long getPackedGitLimit() {
+        return packedGitLimit;
+    }
+
+    public void setPackedGitLimit(long packedGitLimit) {
+        this.packedGitLimit = packedGitLimit;
+    }
+
+    public int getPackedGitWindowSize() {
+        return packedGitWindowSize;
+    }
+
+    public void setPackedGitWindowSize(int packedGitWindowSize) {
+        this.packedGitWindowSize = packedGitWindowSize;
+    }
+
+    public boolean isPackedGitMmap() {
+        return packedGitMmap;
+    }
+
+    public void setPackedGitMmap(boolean packedGitMmap) {
+        this.packedGitMmap = packedGitMmap;
+    }
+
+    public int getPackedGitOpenFiles() {
+        return packedGitOpenFiles;
+    }
+
+    public void setPackedGitOpenFiles(int packedGitOpenFiles) {
+        this.packedGitOpenFiles = packedGitOpenFiles;
+    }
+
+    public int getDeltaBaseCacheLimit() {
+        return deltaBaseCacheLimit;
+    }
+
+    public void setDeltaBaseCacheLimit(int deltaBaseCacheLimit) {
+        this.deltaBaseCacheLimit = deltaBaseCacheLimit;
+    }
+}
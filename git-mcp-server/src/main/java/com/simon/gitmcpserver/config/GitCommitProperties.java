@@ -0,0 +1,33 @@
+package com.simon.gitmcpserver.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "git.commit")
+public class GitCommitProperties {
+
+    /**
+     * createAndPushBranch 是否只暂存变更日志中记录的路径。关闭或日志为空时退回全量扫描工作区，commitAll 始终全量扫描。
+     */
+    private boolean scopedStaging = true;
+
+    /**
+     * 单个仓库最多记录的变更路径数，超出后本次提交退回全量扫描。
+     */
+    private int maxJournalEntries = 1000;
+
+    public boolean isScopedStaging() {
+        return scopedStaging;
+    }
+
+    public void setScopedStaging(boolean scopedStaging) {
+        this.scopedStaging = scopedStaging;
+    }
+
+    public int getMaxJournalEntries() {
+        return maxJournalEntries;
+    }
+
+    public void setMaxJournalEntries(int maxJournalEntries) {
+        this.maxJournalEntries = maxJournalEntries;
+    }
+}
@@ -0,0 +1,62 @@
+package com.simon.gitmcpserver.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "git.filesystem")
+public class GitFileSystemProperties {
+
+    /**
+     * 文件工具允许访问的根目录，不在这些目录下的路径一律拒绝。为空时拒绝所有访问。
+     */
+    private List<String> allowedRoots = new ArrayList<>();
+
+    /**
+     * 单次读取返回的最大字节数，超过时需要按行范围分段读取。
+     */
+    private int maxReadBytes = 1024 * 1024;
+
+    /**
+     * 列目录时最多返回的条目数。
+     */
+    private int maxListEntries = 1000;
+
+    /**
+     * 按文件名查找时最多返回的结果数。
+     */
+    private int maxSearchResults = 100;
+
+    public List<String> getAllowedRoots() {
+        return allowedRoots;
+    }
+
+    public void setAllowedRoots(List<String> allowedRoots) {
+        this.allowedRoots = allowedRoots;
+    }
+
+    public int getMaxReadBytes() {
+        return maxReadBytes;
+    }
+
+    public void setMaxReadBytes(int maxReadBytes) {
+        this.maxReadBytes = maxReadBytes;
+    }
+
+    public int getMaxListEntries() {
+        return maxListEntries;
+    }
+
+    public void setMaxListEntries(int maxListEntries) {
+        this.maxListEntries = maxListEntries;
+    }
+
+    public int getMaxSearchResults() {
+        return maxSearchResults;
+    }
+
+    public void setMaxSearchResults(int maxSearchResults) {
+        this.maxSearchResults = maxSearchResults;
+    }
+}
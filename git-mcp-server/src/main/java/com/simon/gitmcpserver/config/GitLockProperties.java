@@ -0,0 +1,33 @@
+package com.simon.gitmcpserver.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "git.lock")
+public class GitLockProperties {
+
+    /**
+     * 等待仓库锁的最长时间，超时后工具直接返回 FAIL。
+     */
+    private long waitTimeoutSeconds = 120;
+
+    /**
+     * 是否使用公平锁，按等待顺序获取，避免持续的读操作饿死写操作。
+     */
+    private boolean fair = true;
+
+    public long getWaitTimeoutSeconds() {
+        return waitTimeoutSeconds;
+    }
+
+    public void setWaitTimeoutSeconds(long waitTimeoutSeconds) {
+        this.waitTimeoutSeconds = waitTimeoutSeconds;
+    }
+
+    public boolean isFair() {
+        return fair;
+    }
+
+    public void setFair(boolean fair) {
+        this.fair = fair;
+    }
+}
@@ -0,0 +1,72 @@
+package com.simon.gitmcpserver.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "git.search")
+public class GitSearchProperties {
+
+    /**
+     * 超过该大小的文件不建索引，也不参与搜索。
+     */
+    private int maxFileBytes = 1024 * 1024;
+
+    /**
+     * 单次搜索最多返回的结果数，调用方传入的 limit 不能超过该值。
+     */
+    private int maxResults = 200;
+
+    /**
+     * 结果中每行代码片段的最大长度。
+     */
+    private int maxLineLength = 200;
+
+    /**
+     * 并行校验候选文件的线程数，0 表示使用 CPU 核数。
+     */
+    private int threads = 0;
+
+    /**
+     * 每个仓库最多保留几个提交的索引，多个工作区停在不同提交时各用各的索引。
+     */
+    private int maxIndexedCommits = 4;
+
+    public int getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public void setMaxFileBytes(int maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    public void setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    public void setMaxLineLength(int maxLineLength) {
+        this.maxLineLength = maxLineLength;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getMaxIndexedCommits() {
+        return maxIndexedCommits;
+    }
+
+    public void setMaxIndexedCommits(int maxIndexedCommits) {
+        this.maxIndexedCommits = maxIndexedCommits;
+    }
+}
@@ -0,0 +1,33 @@
+package com.simon.gitmcpserver.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "git.sync")
+public class GitSyncProperties {
+
+    /**
+     * 距上次确认远端 HEAD 未超过该时间时，直接跳过远端检查。0 表示每次都检查。
+     */
+    private long ttlSeconds = 30;
+
+    /**
+     * 首次克隆的历史深度，0 表示克隆完整历史。
+     */
+    private int depth = 0;
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+}
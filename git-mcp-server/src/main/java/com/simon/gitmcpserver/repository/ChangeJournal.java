@@ -0,0 +1,165 @@
+package com.simon.gitmcpserver.repository;
+
+import com.simon.gitmcpserver.config.GitCommitProperties;
+import org.eclipse.jgit.lib.Constants;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工作区变更日志
+ * 文件工具每写一个文件就记录它所在仓库和相对路径，createAndPushBranch 提交时只暂存这些路径，
+ * 不必为了一两个文件的修复扫描整个工作区。
+ * 记录开始时保存索引文件的状态，之后索引被外部改写（工作区被重置、切换分支）说明记录已经过时，整体丢弃
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class ChangeJournal {
+
+    private final GitCommitProperties gitCommitProperties;
+
+    /**
+     * 仓库规范路径 -> 待提交的相对路径
+     */
+    private final Map<String, Journal> journals = new ConcurrentHashMap<>();
+
+    public ChangeJournal(GitCommitProperties gitCommitProperties) {
+        this.gitCommitProperties = gitCommitProperties;
+    }
+
+    /**
+     * 记录一个被写入或删除的文件，不在任何仓库内的文件忽略
+     */
+    public void record(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        for (Path dir = absolute.getParent(); dir != null; dir = dir.getParent()) {
+            if (Constants.DOT_GIT.equals(String.valueOf(dir.getFileName()))) {
+                return;
+            }
+            if (Files.exists(dir.resolve(Constants.DOT_GIT))) {
+                record(dir.toFile(), dir.relativize(absolute).toString().replace(File.separatorChar, '/'));
+                return;
+            }
+        }
+    }
+
+    /**
+     * 记录仓库内的相对路径
+     */
+    public void record(File repoDir, String relativePath) throws IOException {
+        Journal journal = journals.computeIfAbsent(repoDir.getCanonicalPath(), k -> new Journal());
+        synchronized (journal) {
+            String index = indexState(repoDir);
+            if (!Objects.equals(journal.index, index)) {
+                journal.reset();
+                journal.index = index;
+            }
+            if (journal.overflowed) {
+                return;
+            }
+            journal.paths.add(relativePath);
+            if (journal.paths.size() > gitCommitProperties.getMaxJournalEntries()) {
+                journal.overflowed = true;
+                journal.paths.clear();
+            }
+        }
+    }
+
+    /**
+     * 待提交路径的快照
+     *
+     * @return 没有记录时返回空集合，记录溢出时返回null，调用方需要全量扫描
+     */
+    public Set<String> pending(File repoDir) throws IOException {
+        Journal journal = journals.get(repoDir.getCanonicalPath());
+        if (journal == null) {
+            return Set.of();
+        }
+        synchronized (journal) {
+            if (!Objects.equals(journal.index, indexState(repoDir))) {
+                journal.reset();
+                return Set.of();
+            }
+            return journal.overflowed ? null : new LinkedHashSet<>(journal.paths);
+        }
+    }
+
+    /**
+     * 丢弃仓库的全部记录，工作区被同步、切换分支时调用
+     */
+    public void reset(File repoDir) throws IOException {
+        Journal journal = journals.remove(repoDir.getCanonicalPath());
+        if (journal != null) {
+            synchronized (journal) {
+                journal.reset();
+            }
+        }
+    }
+
+    /**
+     * 提交成功后清除已处理的路径，快照之后新写入的路径保留到下次提交
+     *
+     * @param committed 已处理的路径，null 表示已经全量扫描过，清除全部记录
+     */
+    public void clear(File repoDir, Collection<String> committed) throws IOException {
+        String key = repoDir.getCanonicalPath();
+        Journal journal = journals.get(key);
+        if (journal == null) {
+            return;
+        }
+        synchronized (journal) {
+            if (committed == null) {
+                journal.reset();
+            } else {
+                journal.paths.removeAll(committed);
+            }
+            // 提交本身会改写索引，以提交后的索引为新的基准
+            journal.index = indexState(repoDir);
+        }
+    }
+
+    /**
+     * 索引文件的修改时间和大小，没有索引时返回null
+     */
+    private static String indexState(File repoDir) throws IOException {
+        Path index = repoDir.toPath().resolve(Constants.DOT_GIT).resolve("index");
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(index, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toInstant() + "/" + attributes.size();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static class Journal {
+
+        private final Set<String> paths = new HashSet<>();
+
+        private boolean overflowed;
+
+        /**
+         * 记录开始时索引文件的状态
+         */
+        private String index;
+
+        private void reset() {
+            paths.clear();
+            overflowed = false;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.simon.gitmcpserver.repository;
+
+import com.simon.gitmcpserver.config.GitCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * JGit 仓库句柄缓存
+ * Git.open 每次都要重新读取 config、refs 和 pack 索引，而大模型经常对同一个仓库连续调用多个工具，
+ * 这里按规范路径缓存 Repository 并做引用计数，空闲超时后才真正关闭
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class RepositoryHandleCache {
+
+    private final GitCacheProperties gitCacheProperties;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    public RepositoryHandleCache(GitCacheProperties gitCacheProperties, MeterRegistry meterRegistry) {
+        this.gitCacheProperties = gitCacheProperties;
+        this.hitCounter = Counter.builder("git.repository.cache").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("git.repository.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("git.repository.cache.open", this, RepositoryHandleCache::openCount)
+                .description("当前打开的仓库句柄数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按配置调整 JGit 全局的 pack 窗口缓存
+     */
+    @PostConstruct
+    public void installWindowCache() {
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitLimit(gitCacheProperties.getPackedGitLimit());
+        config.setPackedGitWindowSize(gitCacheProperties.getPackedGitWindowSize());
+        config.setPackedGitMMAP(gitCacheProperties.isPackedGitMmap());
+        config.setPackedGitOpenFiles(gitCacheProperties.getPackedGitOpenFiles());
+        config.setDeltaBaseCacheLimit(gitCacheProperties.getDeltaBaseCacheLimit());
+        config.install();
+    }
+
+    /**
+     * 获取仓库句柄，用完必须 close 归还
+     * 打开仓库要读取 config、refs 和 pack 索引，放在锁外进行：首个使用者先在缓存中放入一个占位条目再去打开，
+     * 同一仓库的其他使用者等待该条目打开完成，其他仓库的获取和归还不受影响
+     */
+    public Handle acquire(File repoDir) throws IOException {
+        String key = repoDir.getCanonicalPath();
+        Entry entry;
+        boolean opener = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hitCounter.increment();
+            } else {
+                missCounter.increment();
+                entry = new Entry();
+                entries.put(key, entry);
+                opener = true;
+            }
+            entry.refCount++;
+        }
+
+        if (opener) {
+            try {
+                entry.repository.complete(new FileRepositoryBuilder()
+                        .setWorkTree(new File(key))
+                        .setMustExist(true)
+                        .build());
+            } catch (IOException | RuntimeException e) {
+                // 打开失败的条目移出缓存，等待中的使用者一并失败，下次获取时重新打开
+                synchronized (entries) {
+                    entries.remove(key, entry);
+                }
+                entry.repository.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return new Handle(entry, entry.repository.join());
+        } catch (CompletionException e) {
+            release(entry);
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 关闭空闲超时的仓库句柄
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long idleMillis = gitCacheProperties.getIdleEvictSeconds() * 1000;
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> mapEntry = iterator.next();
+                Entry entry = mapEntry.getValue();
+                if (entry.refCount == 0 && now - entry.lastReleased >= idleMillis) {
+                    entry.close();
+                    iterator.remove();
+                    log.info("Evict idle repository handle: {}", mapEntry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * 仓库目录被删除或重新克隆时，丢弃旧句柄
+     */
+    public void invalidate(File repoDir) throws IOException {
+        String key = repoDir.getCanonicalPath();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.refCount == 0) {
+                entry.close();
+                entries.remove(key);
+            } else if (entry != null) {
+                entry.stale = true;
+                entries.remove(key);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        synchronized (entries) {
+            entries.values().forEach(Entry::close);
+            entries.clear();
+        }
+    }
+
+    private int openCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void release(Entry entry) {
+        synchronized (entries) {
+            entry.refCount--;
+            entry.lastReleased = System.currentTimeMillis();
+            if (entry.stale && entry.refCount == 0) {
+                entry.close();
+            }
+        }
+    }
+
+    private static class Entry {
+
+        /**
+         * 由首个使用者在锁外打开，其他使用者等待打开完成
+         */
+        private final CompletableFuture<Repository> repository = new CompletableFuture<>();
+
+        private int refCount;
+
+        private long lastReleased;
+
+        /**
+         * 已被移出缓存，最后一个使用者归还时关闭
+         */
+        private boolean stale;
+
+        /**
+         * 只关闭已经打开成功的仓库；仍在打开中的条目都有使用者持有，不会在这里被关闭
+         */
+        private void close() {
+            Repository opened = repository.getNow(null);
+            if (opened != null) {
+                opened.close();
+            }
+        }
+    }
+
+    public class Handle implements AutoCloseable {
+
+        private final Entry entry;
+
+        private final Git git;
+
+        private boolean closed;
+
+        private Handle(Entry entry, Repository repository) {
+            this.entry = entry;
+            // wrap 出来的 Git 关闭时不会关闭底层 Repository
+            this.git = Git.wrap(repository);
+        }
+
+        public Git git() {
+            return git;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.simon.gitmcpserver.repository;
+
+import com.simon.gitmcpserver.config.GitLockProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.jgit.lib.Constants;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 按仓库规范路径划分的读写锁
+ * 同一仓库上修改工作区、索引或引用的操作互斥，只读操作可以并发，不同仓库之间互不影响；
+ * 另有一把同步锁让同一仓库的同步排队，同步在网络传输期间不持有写锁；
+ * 等待有上限，超时以 IOException 抛出，由工具方法按失败处理
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class RepositoryLocks {
+
+    private final GitLockProperties gitLockProperties;
+
+    private final Map<String, ReentrantReadWriteLock> locks = new ConcurrentHashMap<>();
+
+    private final Map<String, ReentrantLock> syncLocks = new ConcurrentHashMap<>();
+
+    private final Timer readWaitTimer;
+
+    private final Timer writeWaitTimer;
+
+    private final Timer syncWaitTimer;
+
+    private final Counter readContendedCounter;
+
+    private final Counter writeContendedCounter;
+
+    private final Counter syncContendedCounter;
+
+    private final Counter timeoutCounter;
+
+    public RepositoryLocks(GitLockProperties gitLockProperties, MeterRegistry meterRegistry) {
+        this.gitLockProperties = gitLockProperties;
+        this.readWaitTimer = Timer.builder("git.repository.lock.wait").tag("mode", "read").register(meterRegistry);
+        this.writeWaitTimer = Timer.builder("git.repository.lock.wait").tag("mode", "write").register(meterRegistry);
+        this.syncWaitTimer = Timer.builder("git.repository.lock.wait").tag("mode", "sync").register(meterRegistry);
+        this.readContendedCounter = Counter.builder("git.repository.lock.contended").tag("mode", "read").register(meterRegistry);
+        this.writeContendedCounter = Counter.builder("git.repository.lock.contended").tag("mode", "write").register(meterRegistry);
+        this.syncContendedCounter = Counter.builder("git.repository.lock.contended").tag("mode", "sync").register(meterRegistry);
+        this.timeoutCounter = Counter.builder("git.repository.lock.timeout").register(meterRegistry);
+        Gauge.builder("git.repository.lock.waiting", this, RepositoryLocks::waitingCount)
+                .description("正在等待仓库锁的线程数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取读锁，用于读文件、拉取、推送、搜索等不修改工作区和索引的操作
+     */
+    public Lease read(File repoDir) throws IOException {
+        ReentrantReadWriteLock lock = lockOf(repoDir);
+        return acquire(repoDir, lock.readLock(), readWaitTimer, readContendedCounter);
+    }
+
+    /**
+     * 获取写锁，用于同步、切换分支、暂存和提交等操作
+     */
+    public Lease write(File repoDir) throws IOException {
+        ReentrantReadWriteLock lock = lockOf(repoDir);
+        return acquire(repoDir, lock.writeLock(), writeWaitTimer, writeContendedCounter);
+    }
+
+    /**
+     * 获取同步锁，同一仓库的同步依次进行，不阻塞读写锁上的其他操作
+     */
+    public Lease sync(File repoDir) throws IOException {
+        ReentrantLock lock = syncLocks.computeIfAbsent(repoDir.getCanonicalPath(), k -> new ReentrantLock(gitLockProperties.isFair()));
+        return acquire(repoDir, lock, syncWaitTimer, syncContendedCounter);
+    }
+
+    /**
+     * 文件所在仓库的根目录，不在任何仓库内时返回null
+     */
+    public static File repositoryOf(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        for (Path dir = absolute; dir != null; dir = dir.getParent()) {
+            if (Constants.DOT_GIT.equals(String.valueOf(dir.getFileName()))) {
+                return dir.getParent() == null ? null : dir.getParent().toFile();
+            }
+            if (Files.exists(dir.resolve(Constants.DOT_GIT))) {
+                return dir.toFile();
+            }
+        }
+        return null;
+    }
+
+    private ReentrantReadWriteLock lockOf(File repoDir) throws IOException {
+        return locks.computeIfAbsent(repoDir.getCanonicalPath(), k -> new ReentrantReadWriteLock(gitLockProperties.isFair()));
+    }
+
+    private Lease acquire(File repoDir, Lock lock, Timer waitTimer, Counter contendedCounter) throws IOException {
+        boolean acquired;
+        try {
+            // 无竞争时直接拿到锁，不计入等待；带超时的 tryLock 才遵守公平锁的排队顺序，不会插队
+            if (lock.tryLock(0, TimeUnit.NANOSECONDS)) {
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return new Lease(lock);
+            }
+            contendedCounter.increment();
+            long start = System.nanoTime();
+            try {
+                acquired = lock.tryLock(gitLockProperties.getWaitTimeoutSeconds(), TimeUnit.SECONDS);
+            } finally {
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for repository lock: " + repoDir);
+        }
+        if (!acquired) {
+            timeoutCounter.increment();
+            throw new IOException("Timed out after " + gitLockProperties.getWaitTimeoutSeconds()
+                    + "s waiting for repository lock: " + repoDir);
+        }
+        return new Lease(lock);
+    }
+
+    private int waitingCount() {
+        int count = 0;
+        for (ReentrantReadWriteLock lock : locks.values()) {
+            count += lock.getQueueLength();
+        }
+        for (ReentrantLock lock : syncLocks.values()) {
+            count += lock.getQueueLength();
+        }
+        return count;
+    }
+
+    public static class Lease implements AutoCloseable {
+
+        private final Lock lock;
+
+        private boolean closed;
+
+        private Lease(Lock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.simon.gitmcpserver.repository;
+
+import java.io.File;
+
+/**
+ * 本地仓库克隆或拉取到新提交后发布，依赖仓库内容的索引据此增量更新
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public class RepositorySyncedEvent {
+
+    private final File repoDir;
+
+    /**
+     * 同步结果，CLONED、FAST_FORWARD 或 MERGED
+     */
+    private final String outcome;
+
+    public RepositorySyncedEvent(File repoDir, String outcome) {
+        this.repoDir = repoDir;
+        this.outcome = outcome;
+    }
+
+    public File getRepoDir() {
+        return repoDir;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+}
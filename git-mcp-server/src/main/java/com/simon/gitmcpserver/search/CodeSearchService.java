@@ -0,0 +1,424 @@
+package com.simon.gitmcpserver.search;
+
+import com.simon.gitmcpserver.config.GitSearchProperties;
+import com.simon.gitmcpserver.repository.RepositoryHandleCache;
+import com.simon.gitmcpserver.repository.RepositoryLocks;
+import com.simon.gitmcpserver.repository.RepositorySyncedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 代码搜索工具
+ * 基于 HEAD 文件树建立三元组索引，先用索引筛出候选文件，再多线程并行逐行校验，
+ * 一次工具调用即可返回 文件:行号 形式的匹配结果。
+ * 索引按（对象库，提交号）缓存：共享对象库的工作区停在同一提交时共用一份索引，
+ * 停在不同提交时各用各的；新提交的索引从该仓库最近使用的索引复制后按差异增量更新，发布后不再修改
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Service
+@Slf4j
+public class CodeSearchService {
+
+    /**
+     * 判断二进制文件时检查的字节数
+     */
+    private static final int BINARY_PROBE_BYTES = 8000;
+
+    private final GitSearchProperties gitSearchProperties;
+
+    private final RepositoryHandleCache repositoryHandleCache;
+
+    private final RepositoryLocks repositoryLocks;
+
+    private final ExecutorService executor;
+
+    private final int threads;
+
+    /**
+     * 键为对象库目录，工作区通过 alternates 共享本地仓库的对象库时归到同一个键下
+     */
+    private final Map<String, RepoIndexes> indexes = new ConcurrentHashMap<>();
+
+    public CodeSearchService(GitSearchProperties gitSearchProperties, RepositoryHandleCache repositoryHandleCache,
+                             RepositoryLocks repositoryLocks) {
+        this.gitSearchProperties = gitSearchProperties;
+        this.repositoryHandleCache = repositoryHandleCache;
+        this.repositoryLocks = repositoryLocks;
+        this.threads = gitSearchProperties.getThreads() > 0
+                ? gitSearchProperties.getThreads() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "code-search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Tool(description = "Search the code of a local Git repository at HEAD using a trigram index. Supports literal or regex queries, an optional path glob (e.g. **/*.java) and a result limit. Return matches as 'path:line: code' with paths relative to the repository root, 'NO_MATCH', or 'FAIL:reason'.")
+    public String searchCode(String localPath,
+                             String query,
+                             @ToolParam(required = false, description = "treat query as a Java regular expression, default false") Boolean regex,
+                             @ToolParam(required = false, description = "case-insensitive matching, default false") Boolean ignoreCase,
+                             @ToolParam(required = false, description = "only search files whose repository-relative path matches this glob") String pathGlob,
+                             @ToolParam(required = false, description = "maximum number of matches to return") Integer limit) {
+        long start = System.currentTimeMillis();
+        if (query == null || query.isEmpty()) {
+            return "FAIL:query is empty";
+        }
+        boolean isRegex = Boolean.TRUE.equals(regex);
+        int flags = Boolean.TRUE.equals(ignoreCase) ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(isRegex ? query : Pattern.quote(query), flags);
+        } catch (PatternSyntaxException e) {
+            return "FAIL:invalid regex: " + e.getDescription();
+        }
+        int maxResults = limit == null || limit <= 0
+                ? gitSearchProperties.getMaxResults() : Math.min(limit, gitSearchProperties.getMaxResults());
+        PathMatcher pathMatcher = pathGlob == null || pathGlob.isBlank()
+                ? null : FileSystems.getDefault().getPathMatcher("glob:" + pathGlob);
+
+        File repoDir = new File(localPath);
+        try (RepositoryLocks.Lease lease = repositoryLocks.read(repoDir);
+             RepositoryHandleCache.Handle handle = repositoryHandleCache.acquire(repoDir)) {
+            Repository repository = handle.git().getRepository();
+            TrigramIndex index = sync(repository);
+
+            // 用索引筛出包含全部必需片段的文件，再按路径过滤
+            Set<String> fragments = isRegex ? QueryFragments.ofRegex(query) : Set.of(query);
+            List<TrigramIndex.Document> candidates = new ArrayList<>();
+            for (TrigramIndex.Document document : index.candidates(fragments)) {
+                if (pathMatcher == null || pathMatcher.matches(Paths.get(document.getPath()))) {
+                    candidates.add(document);
+                }
+            }
+
+            List<Match> matches = verify(repository, candidates, pattern, maxResults);
+            log.info("✅ searchCode query:{}, regex:{}, candidates:{}, matches:{}, cost:{}ms",
+                    query, isRegex, candidates.size(), matches.size(), System.currentTimeMillis() - start);
+            if (matches.isEmpty()) {
+                return "NO_MATCH";
+            }
+            StringBuilder result = new StringBuilder();
+            for (Match match : matches) {
+                result.append(match.path).append(':').append(match.line).append(": ").append(match.text).append('\n');
+            }
+            return result.toString();
+        } catch (IOException e) {
+            log.error("❌ searchCode failed, localPath:{}", localPath, e);
+            return "FAIL:" + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "FAIL:interrupted";
+        }
+    }
+
+    /**
+     * 仓库同步到新提交后，已经建过索引的仓库在后台增量更新
+     */
+    @EventListener
+    public void onRepositorySynced(RepositorySyncedEvent event) {
+        String key;
+        try {
+            key = objectDirectory(new File(event.getRepoDir(), Constants.DOT_GIT));
+        } catch (IOException e) {
+            return;
+        }
+        if (!indexes.containsKey(key)) {
+            return;
+        }
+        executor.execute(() -> {
+            try (RepositoryLocks.Lease lease = repositoryLocks.read(event.getRepoDir());
+                 RepositoryHandleCache.Handle handle = repositoryHandleCache.acquire(event.getRepoDir())) {
+                sync(handle.git().getRepository());
+            } catch (IOException e) {
+                log.error("❌ Failed to update code search index: {}", key, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 取仓库当前 HEAD 的索引：已有该提交的索引时直接使用；
+     * 否则复制最近使用的索引按差异增量更新，没有可用的索引或失效文档过多时全量构建
+     */
+    private TrigramIndex sync(Repository repository) throws IOException {
+        RepoIndexes repoIndexes = indexes.computeIfAbsent(objectDirectory(repository.getDirectory()), k -> new RepoIndexes());
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            return new TrigramIndex();
+        }
+        TrigramIndex cached = repoIndexes.get(head);
+        if (cached != null) {
+            return cached;
+        }
+
+        // 同一对象库同时只构建一个索引，其他提交的查询不受影响
+        repoIndexes.buildLock.lock();
+        try (ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader)) {
+            cached = repoIndexes.get(head);
+            if (cached != null) {
+                return cached;
+            }
+            long start = System.currentTimeMillis();
+            RevCommit headCommit = revWalk.parseCommit(head);
+            TrigramIndex base = repoIndexes.latest();
+            TrigramIndex index = null;
+            if (base != null) {
+                try {
+                    index = base.copy();
+                    update(repository, reader, index, revWalk.parseCommit(base.getCommit()), headCommit);
+                } catch (MissingObjectException e) {
+                    // 历史被改写、浅克隆丢失了旧提交，或旧提交只在另一个工作区的对象库中
+                    index = null;
+                }
+                if (index != null && index.needsRebuild()) {
+                    index = null;
+                }
+            }
+            boolean rebuilt = index == null;
+            if (rebuilt) {
+                index = new TrigramIndex();
+                rebuild(repository, reader, index, headCommit);
+            }
+            index.setCommit(headCommit.copy());
+            repoIndexes.put(index, Math.max(1, gitSearchProperties.getMaxIndexedCommits()));
+            log.info("✅ Code search index {} to {}, files:{}, cost:{}ms", rebuilt ? "rebuilt" : "updated",
+                    head.name(), index.size(), System.currentTimeMillis() - start);
+            return index;
+        } finally {
+            repoIndexes.buildLock.unlock();
+        }
+    }
+
+    /**
+     * 索引按对象库区分：工作区通过 objects/info/alternates 共享本地仓库的对象库时，取被共享的对象库
+     */
+    static String objectDirectory(File gitDir) throws IOException {
+        File objects = new File(gitDir, Constants.OBJECTS);
+        File alternates = new File(objects, "info/alternates");
+        if (alternates.isFile()) {
+            for (String line : Files.readAllLines(alternates.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    File alternate = new File(line.strip());
+                    return (alternate.isAbsolute() ? alternate : new File(objects, line.strip())).getCanonicalPath();
+                }
+            }
+        }
+        return objects.getCanonicalPath();
+    }
+
+    private void rebuild(Repository repository, ObjectReader reader, TrigramIndex index, RevCommit commit) throws IOException {
+        try (TreeWalk walk = new TreeWalk(repository, reader)) {
+            walk.addTree(commit.getTree());
+            walk.setRecursive(true);
+            while (walk.next()) {
+                if (isRegularFile(walk.getFileMode(0))) {
+                    add(reader, index, walk.getPathString(), walk.getObjectId(0));
+                }
+            }
+        }
+    }
+
+    private void update(Repository repository, ObjectReader reader, TrigramIndex index,
+                        RevCommit oldCommit, RevCommit newCommit) throws IOException {
+        try (TreeWalk walk = new TreeWalk(repository, reader)) {
+            walk.addTree(oldCommit.getTree());
+            walk.addTree(newCommit.getTree());
+            walk.setRecursive(true);
+            walk.setFilter(TreeFilter.ANY_DIFF);
+            for (DiffEntry entry : DiffEntry.scan(walk)) {
+                if (entry.getChangeType() != DiffEntry.ChangeType.ADD) {
+                    index.remove(entry.getOldPath());
+                }
+                if (entry.getChangeType() != DiffEntry.ChangeType.DELETE && isRegularFile(entry.getNewMode())) {
+                    add(reader, index, entry.getNewPath(), entry.getNewId().toObjectId());
+                }
+            }
+        }
+    }
+
+    private void add(ObjectReader reader, TrigramIndex index, String path, ObjectId blobId) throws IOException {
+        String content = readText(reader, blobId);
+        if (content != null) {
+            index.add(path, blobId, content);
+        }
+    }
+
+    /**
+     * 把按路径排序的候选文件交替分给多个线程逐行校验
+     * 每个线程按路径顺序处理，自己找到的匹配达到上限后停止，
+     * 合并排序后截取的前 maxResults 条与串行校验的结果相同，不受线程调度影响
+     */
+    private List<Match> verify(Repository repository, List<TrigramIndex.Document> candidates, Pattern pattern, int maxResults)
+            throws InterruptedException, IOException {
+        int parallelism = Math.max(1, Math.min(threads, candidates.size()));
+        List<Future<List<Match>>> futures = new ArrayList<>(parallelism);
+        for (int t = 0; t < parallelism; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                List<Match> matches = new ArrayList<>();
+                try (ObjectReader reader = repository.newObjectReader()) {
+                    Matcher matcher = pattern.matcher("");
+                    for (int i = offset; i < candidates.size() && matches.size() < maxResults; i += parallelism) {
+                        TrigramIndex.Document document = candidates.get(i);
+                        String content = readText(reader, document.getBlobId());
+                        if (content != null) {
+                            collect(document.getPath(), content, matcher, matches, maxResults);
+                        }
+                    }
+                }
+                return matches;
+            }));
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (Future<List<Match>> future : futures) {
+            try {
+                matches.addAll(future.get());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+        matches.sort(Comparator.comparing((Match match) -> match.path).thenComparingInt(match -> match.line));
+        return matches.size() > maxResults ? matches.subList(0, maxResults) : matches;
+    }
+
+    private void collect(String path, String content, Matcher matcher, List<Match> matches, int maxResults) {
+        int lineNumber = 0;
+        int lineStart = 0;
+        while (lineStart <= content.length() && matches.size() < maxResults) {
+            int lineEnd = content.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = content.length();
+            }
+            lineNumber++;
+            String line = content.substring(lineStart, lineEnd);
+            if (matcher.reset(line).find()) {
+                String text = line.strip();
+                if (text.length() > gitSearchProperties.getMaxLineLength()) {
+                    text = text.substring(0, gitSearchProperties.getMaxLineLength()) + "...";
+                }
+                matches.add(new Match(path, lineNumber, text));
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * 读取文本文件内容，过大或二进制文件返回null
+     */
+    private String readText(ObjectReader reader, ObjectId blobId) throws IOException {
+        if (reader.getObjectSize(blobId, Constants.OBJ_BLOB) > gitSearchProperties.getMaxFileBytes()) {
+            return null;
+        }
+        byte[] bytes = reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(gitSearchProperties.getMaxFileBytes());
+        for (int i = 0; i < Math.min(bytes.length, BINARY_PROBE_BYTES); i++) {
+            if (bytes[i] == 0) {
+                return null;
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isRegularFile(FileMode mode) {
+        return mode == FileMode.REGULAR_FILE || mode == FileMode.EXECUTABLE_FILE;
+    }
+
+    /**
+     * 同一对象库上各提交的索引，按最近使用排序
+     */
+    private static class RepoIndexes {
+
+        private final ReentrantLock buildLock = new ReentrantLock();
+
+        private final LinkedHashMap<ObjectId, TrigramIndex> byCommit = new LinkedHashMap<>(16, 0.75f, true);
+
+        private synchronized TrigramIndex get(ObjectId commit) {
+            return byCommit.get(commit);
+        }
+
+        /**
+         * 最近使用的索引，作为增量更新的起点
+         */
+        private synchronized TrigramIndex latest() {
+            TrigramIndex latest = null;
+            for (TrigramIndex index : byCommit.values()) {
+                latest = index;
+            }
+            return latest;
+        }
+
+        private synchronized void put(TrigramIndex index, int maxIndexes) {
+            byCommit.put(index.getCommit(), index);
+            Iterator<ObjectId> eldest = byCommit.keySet().iterator();
+            while (byCommit.size() > maxIndexes) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static class Match {
+
+        private final String path;
+
+        private final int line;
+
+        private final String text;
+
+        private Match(String path, int line, String text) {
+            this.path = path;
+            this.line = line;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.simon.gitmcpserver.search;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 从正则表达式中提取每个匹配结果都必须包含的字面量片段，用于三元组索引预筛选
+ * 只做保守的提取：遇到分支、字符类、分组等无法确定的结构就截断当前片段，
+ * 带有 ? * {0,n} 等量词的字符不计入片段；含有 (?i) (?x) 等内联标志时字面量的含义可能改变，不提取。
+ * 提取不到时由调用方退回全量校验
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+final class QueryFragments {
+
+    private static final String QUANTIFIERS = "?*+{";
+
+    /**
+     * 内联标志 (?idmsuxU-...) 的首字符
+     */
+    private static final String INLINE_FLAGS = "idmsuxUc-";
+
+    private QueryFragments() {
+    }
+
+    static Set<String> ofRegex(String regex) {
+        Set<String> fragments = new LinkedHashSet<>();
+        if (hasTopLevelAlternation(regex) || hasInlineFlags(regex)) {
+            return fragments;
+        }
+
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            Character literal = null;
+            int next = i + 1;
+            if (c == '\\' && i + 1 < regex.length()) {
+                char escaped = regex.charAt(i + 1);
+                next = i + 2;
+                if (escaped == 'Q') {
+                    // \Q...\E 之间全部是字面量，后面的量词只作用于最后一个字符
+                    int end = regex.indexOf("\\E", i + 2);
+                    String quoted = end < 0 ? regex.substring(i + 2) : regex.substring(i + 2, end);
+                    i = end < 0 ? regex.length() : end + 2;
+                    boolean optional = !quoted.isEmpty() && i < regex.length() && "?*{".indexOf(regex.charAt(i)) >= 0;
+                    current.append(quoted, 0, optional ? quoted.length() - 1 : quoted.length());
+                    continue;
+                }
+                if (!Character.isLetterOrDigit(escaped)) {
+                    literal = escaped;
+                }
+            } else if (c == '[') {
+                next = skipClass(regex, i);
+            } else if (c == '(') {
+                next = skipGroup(regex, i);
+            } else if (c == '{') {
+                int end = regex.indexOf('}', i);
+                next = end < 0 ? regex.length() : end + 1;
+            } else if (".^$)|]}".indexOf(c) < 0 && QUANTIFIERS.indexOf(c) < 0) {
+                literal = c;
+            }
+
+            boolean optional = next < regex.length() && "?*{".indexOf(regex.charAt(next)) >= 0;
+            if (literal != null && !optional) {
+                current.append(literal);
+                // + 表示至少出现一次，字符本身仍然必需，但后面的字符不再相邻
+                if (next < regex.length() && regex.charAt(next) == '+') {
+                    flush(current, fragments);
+                }
+            } else {
+                flush(current, fragments);
+            }
+            i = next;
+        }
+        flush(current, fragments);
+        return fragments;
+    }
+
+    private static void flush(StringBuilder current, Set<String> fragments) {
+        if (current.length() >= 3) {
+            fragments.add(current.toString());
+        }
+        current.setLength(0);
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否含有内联标志，例如 (?i)、(?x)、(?s:...)
+     */
+    private static boolean hasInlineFlags(String regex) {
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    i = end < 0 ? regex.length() : end + 1;
+                } else {
+                    i++;
+                }
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(' && i + 2 < regex.length() && regex.charAt(i + 1) == '?'
+                    && INLINE_FLAGS.indexOf(regex.charAt(i + 2)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        // 紧跟在 [ 或 [^ 后的 ] 是普通字符
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        while (i < regex.length() && regex.charAt(i) != ']') {
+            i += regex.charAt(i) == '\\' ? 2 : 1;
+        }
+        return Math.min(regex.length(), i + 1);
+    }
+
+    private static int skipGroup(String regex, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return regex.length();
+    }
+}
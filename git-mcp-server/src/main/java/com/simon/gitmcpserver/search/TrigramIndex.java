@@ -0,0 +1,188 @@
+package com.simon.gitmcpserver.search;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 单个仓库某一提交上的三元组倒排索引
+ * 文件内容按小写字符切分为三元组，每个三元组对应一个按文档号递增的倒排表；
+ * 删除和修改只把旧文档标记为失效，失效文档超过一半时由调用方全量重建。
+ * 非线程安全：{@link CodeSearchService} 在副本上增量更新，发布后只读，可以被多个线程同时查询
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+class TrigramIndex {
+
+    private final Map<Long, IntList> postings = new HashMap<>();
+
+    private final List<Document> documents = new ArrayList<>();
+
+    private final Map<String, Integer> docIdByPath = new HashMap<>();
+
+    private int deadCount;
+
+    private volatile ObjectId commit;
+
+    /**
+     * 复制一份索引，增量更新到新提交时不影响仍在使用旧提交索引的查询
+     */
+    TrigramIndex copy() {
+        TrigramIndex copy = new TrigramIndex();
+        postings.forEach((key, posting) -> copy.postings.put(key, posting.copy()));
+        for (Document document : documents) {
+            Document copied = new Document(document.path, document.blobId);
+            copied.dead = document.dead;
+            copy.documents.add(copied);
+        }
+        copy.docIdByPath.putAll(docIdByPath);
+        copy.deadCount = deadCount;
+        copy.commit = commit;
+        return copy;
+    }
+
+    void add(String path, ObjectId blobId, String content) {
+        remove(path);
+        int docId = documents.size();
+        documents.add(new Document(path, blobId.copy()));
+        docIdByPath.put(path, docId);
+
+        String lower = content.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + 2 < lower.length(); i++) {
+            IntList posting = postings.computeIfAbsent(key(lower, i), k -> new IntList());
+            // 文档号递增写入，末尾就是当前文档说明已经记录过
+            if (posting.size == 0 || posting.data[posting.size - 1] != docId) {
+                posting.add(docId);
+            }
+        }
+    }
+
+    void remove(String path) {
+        Integer docId = docIdByPath.remove(path);
+        if (docId != null && !documents.get(docId).dead) {
+            documents.get(docId).dead = true;
+            deadCount++;
+        }
+    }
+
+    /**
+     * 查询同时包含所有片段的文档，片段都不足三个字符时返回所有有效文档
+     * 结果按路径排序，与文档号（即索引的更新历史）无关
+     */
+    List<Document> candidates(Set<String> fragments) {
+        List<IntList> lists = new ArrayList<>();
+        for (String fragment : fragments) {
+            String lower = fragment.toLowerCase(Locale.ROOT);
+            for (int i = 0; i + 2 < lower.length(); i++) {
+                IntList posting = postings.get(key(lower, i));
+                if (posting == null) {
+                    return List.of();
+                }
+                lists.add(posting);
+            }
+        }
+
+        List<Document> result = new ArrayList<>();
+        if (lists.isEmpty()) {
+            for (Document document : documents) {
+                if (!document.dead) {
+                    result.add(document);
+                }
+            }
+            result.sort(Comparator.comparing(Document::getPath));
+            return result;
+        }
+
+        // 从最短的倒排表出发，在其余倒排表中二分查找
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        IntList shortest = lists.get(0);
+        outer:
+        for (int i = 0; i < shortest.size; i++) {
+            int docId = shortest.data[i];
+            for (int j = 1; j < lists.size(); j++) {
+                IntList other = lists.get(j);
+                if (Arrays.binarySearch(other.data, 0, other.size, docId) < 0) {
+                    continue outer;
+                }
+            }
+            Document document = documents.get(docId);
+            if (!document.dead) {
+                result.add(document);
+            }
+        }
+        result.sort(Comparator.comparing(Document::getPath));
+        return result;
+    }
+
+    boolean needsRebuild() {
+        return deadCount > documents.size() / 2;
+    }
+
+    int size() {
+        return documents.size() - deadCount;
+    }
+
+    ObjectId getCommit() {
+        return commit;
+    }
+
+    void setCommit(ObjectId commit) {
+        this.commit = commit;
+    }
+
+    private static long key(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    static class Document {
+
+        private final String path;
+
+        private final ObjectId blobId;
+
+        private boolean dead;
+
+        private Document(String path, ObjectId blobId) {
+            this.path = path;
+            this.blobId = blobId;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        ObjectId getBlobId() {
+            return blobId;
+        }
+    }
+
+    private static class IntList {
+
+        private int[] data = new int[4];
+
+        private int size;
+
+        private void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        private IntList copy() {
+            IntList copy = new IntList();
+            copy.data = Arrays.copyOf(data, Math.max(size, 1));
+            copy.size = size;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.simon.gitmcpserver.service;
+
+import com.simon.gitmcpserver.config.GitFileSystemProperties;
+import com.simon.gitmcpserver.repository.ChangeJournal;
+import com.simon.gitmcpserver.repository.RepositoryLocks;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 文件系统工具
+ * 替代原先通过 docker 启动的 filesystem MCP 服务，在进程内直接读写文件，只允许访问配置的仓库根目录；
+ * 仓库内的文件读取持有仓库读锁、写入持有写锁，不会读到同步或切换分支途中的工作区
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Service
+@Slf4j
+public class FileSystemService {
+
+    private static final String FAIL_PREFIX = "FAIL:";
+
+    /**
+     * 大模型拿到的是工作区目录和仓库内的相对路径，需要拼成绝对路径再调用，服务端没有当前工作区的概念
+     */
+    private static final String FILE_PATH_DESCRIPTION = "absolute path of the file: the worktree (local code directory given in the task) "
+            + "joined with the file's path relative to the worktree, e.g. /work/repo/src/main/java/A.java";
+
+    private static final String DIRECTORY_PATH_DESCRIPTION = "absolute path of the directory: the worktree (local code directory given in the task) "
+            + "joined with the directory's path relative to the worktree; the worktree itself for its root";
+
+    private final GitFileSystemProperties fileSystemProperties;
+
+    private final ChangeJournal changeJournal;
+
+    private final RepositoryLocks repositoryLocks;
+
+    public FileSystemService(GitFileSystemProperties fileSystemProperties, ChangeJournal changeJournal,
+                             RepositoryLocks repositoryLocks) {
+        this.fileSystemProperties = fileSystemProperties;
+        this.changeJournal = changeJournal;
+        this.repositoryLocks = repositoryLocks;
+    }
+
+    @Tool(description = "Read a UTF-8 text file. Optionally read only the 1-based inclusive line range [startLine, endLine]. Return the file content, or 'FAIL:reason'.")
+    public String readFile(@ToolParam(description = FILE_PATH_DESCRIPTION) String path,
+                           @ToolParam(required = false, description = "first line to read, 1-based") Integer startLine,
+                           @ToolParam(required = false, description = "last line to read, inclusive") Integer endLine) {
+        try {
+            Path file = resolveAllowed(path);
+            try (RepositoryLocks.Lease lease = lock(file, false)) {
+                if (!Files.isRegularFile(file)) {
+                    return FAIL_PREFIX + "not a file: " + path;
+                }
+                return read(file, startLine, endLine);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("❌ Failed to read file: {}", path, e);
+            return FAIL_PREFIX + e.getMessage();
+        }
+    }
+
+    @Tool(description = "List the entries of a directory, one per line as '[DIR] name' or '[FILE] name size'. Return 'FAIL:reason' on error.")
+    public String listDirectory(@ToolParam(description = DIRECTORY_PATH_DESCRIPTION) String path) {
+        try {
+            Path dir = resolveAllowed(path);
+            if (!Files.isDirectory(dir)) {
+                return FAIL_PREFIX + "not a directory: " + path;
+            }
+            List<String> dirs = new ArrayList<>();
+            List<String> files = new ArrayList<>();
+            int limit = fileSystemProperties.getMaxListEntries();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    if (dirs.size() + files.size() >= limit) {
+                        break;
+                    }
+                    if (Files.isDirectory(entry)) {
+                        dirs.add("[DIR] " + entry.getFileName());
+                    } else {
+                        files.add("[FILE] " + entry.getFileName() + " " + Files.size(entry));
+                    }
+                }
+            }
+            dirs.sort(null);
+            files.sort(null);
+            dirs.addAll(files);
+            return String.join("\n", dirs);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("❌ Failed to list directory: {}", path, e);
+            return FAIL_PREFIX + e.getMessage();
+        }
+    }
+
+    @Tool(description = "Recursively search a directory for files whose name contains the given pattern (case-insensitive), skipping .git. Return matching absolute paths one per line, or 'FAIL:reason'.")
+    public String searchFiles(@ToolParam(description = DIRECTORY_PATH_DESCRIPTION) String path,
+                              @ToolParam(description = "part of the file name to look for, case-insensitive") String pattern) {
+        try {
+            Path dir = resolveAllowed(path);
+            String needle = pattern.toLowerCase(Locale.ROOT);
+            int limit = fileSystemProperties.getMaxSearchResults();
+            List<String> matches = new ArrayList<>();
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path current, BasicFileAttributes attrs) {
+                    return ".git".equals(String.valueOf(current.getFileName())) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.getFileName().toString().toLowerCase(Locale.ROOT).contains(needle)) {
+                        matches.add(file.toString());
+                    }
+                    return matches.size() >= limit ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return String.join("\n", matches);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("❌ Failed to search files: {}", path, e);
+            return FAIL_PREFIX + e.getMessage();
+        }
+    }
+
+    @Tool(description = "Create or overwrite a UTF-8 text file atomically with the given full content. Return 'SUCCESS' or 'FAIL:reason'.")
+    public String writeFile(@ToolParam(description = FILE_PATH_DESCRIPTION) String path,
+                            @ToolParam(description = "full new content of the file") String content) {
+        try {
+            Path file = resolveAllowed(path);
+            try (RepositoryLocks.Lease lease = lock(file, true)) {
+                Path parent = file.getParent();
+                Files.createDirectories(parent);
+                // 先写同目录下的临时文件再原子替换，读者不会看到写了一半的文件
+                Path temp = Files.createTempFile(parent, "." + file.getFileName(), ".tmp");
+                try {
+                    Files.writeString(temp, content == null ? "" : content, StandardCharsets.UTF_8);
+                    // 临时文件以 0600 创建，覆盖已有文件时沿用原权限，可执行位和组权限不会丢失
+                    PosixFileAttributeView attributes = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+                    if (attributes != null && Files.exists(file)) {
+                        Files.setPosixFilePermissions(temp, attributes.readAttributes().permissions());
+                    }
+                    try {
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                // 记入变更日志，提交时只暂存写过的文件
+                changeJournal.record(file);
+            }
+            log.info("✅ File written: {}", file);
+            return "SUCCESS";
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("❌ Failed to write file: {}", path, e);
+            return FAIL_PREFIX + e.getMessage();
+        }
+    }
+
+    private String read(Path file, Integer startLine, Integer endLine) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return "";
+            }
+            if (size > Integer.MAX_VALUE) {
+                return FAIL_PREFIX + "file too large: " + size + " bytes";
+            }
+            // 只映射不拷贝，按行读取时只解码目标范围内的字节
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int[] range = lineRange(buffer, (int) size, startLine, endLine);
+            if (range == null) {
+                return "";
+            }
+            int length = range[1] - range[0];
+            if (length > fileSystemProperties.getMaxReadBytes()) {
+                return FAIL_PREFIX + "content too large (" + length + " bytes), read it by line range";
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(range[0], bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 获取文件所在仓库的读锁或写锁，不在仓库内的文件不加锁
+     */
+    private RepositoryLocks.Lease lock(Path file, boolean write) throws IOException {
+        File repoDir = RepositoryLocks.repositoryOf(file);
+        if (repoDir == null) {
+            return null;
+        }
+        return write ? repositoryLocks.write(repoDir) : repositoryLocks.read(repoDir);
+    }
+
+    /**
+     * 计算行范围对应的字节区间 [start, end)
+     *
+     * @return 起始行超出文件末尾时返回null
+     */
+    private static int[] lineRange(MappedByteBuffer buffer, int size, Integer startLine, Integer endLine) {
+        if (startLine == null && endLine == null) {
+            return new int[]{0, size};
+        }
+        int from = startLine == null ? 1 : Math.max(1, startLine);
+        int to = endLine == null ? Integer.MAX_VALUE : endLine;
+        if (to < from) {
+            return null;
+        }
+        int start = from == 1 ? 0 : -1;
+        int end = size;
+        int line = 1;
+        for (int i = 0; i < size; i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            line++;
+            if (line == from) {
+                start = i + 1;
+            }
+            if (line > to) {
+                end = i + 1;
+                break;
+            }
+        }
+        return start < 0 || start >= size ? null : new int[]{start, end};
+    }
+
+    /**
+     * 解析路径并校验在允许的根目录内，符号链接按真实路径判断；文件不存在时按最近的已存在上级目录判断
+     */
+    private Path resolveAllowed(String path) throws IOException {
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("path is empty");
+        }
+        Path target = Paths.get(path);
+        if (!target.isAbsolute()) {
+            // 相对路径会按服务进程的工作目录解析，与调用方的工作区无关
+            throw new IllegalArgumentException("path must be absolute, prefix it with the worktree directory: " + path);
+        }
+        target = target.normalize();
+        Path existing = target;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            throw new IllegalArgumentException("path not found: " + path);
+        }
+        Path real = existing.toRealPath().resolve(existing.relativize(target)).normalize();
+        for (String root : fileSystemProperties.getAllowedRoots()) {
+            Path rootPath = Paths.get(root).toAbsolutePath().normalize();
+            if (Files.exists(rootPath)) {
+                rootPath = rootPath.toRealPath();
+            }
+            if (real.startsWith(rootPath)) {
+                rejectGitDirectory(rootPath.relativize(real), path);
+                return real;
+            }
+        }
+        throw new IllegalArgumentException("access denied, path is outside the allowed roots: " + path);
+    }
+
+    /**
+     * .git 下的配置和钩子会在下一次 git 操作时生效，不允许通过文件工具访问；按不区分大小写比较，兼容大小写不敏感的文件系统
+     */
+    private static void rejectGitDirectory(Path relative, String path) {
+        for (Path name : relative) {
+            if (Constants.DOT_GIT.equalsIgnoreCase(name.toString())) {
+                throw new IllegalArgumentException("access denied, path is inside a .git directory: " + path);
+            }
+        }
+    }
+}
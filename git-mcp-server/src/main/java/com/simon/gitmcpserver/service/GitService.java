@@ -2,23 +2,49 @@ package com.simon.gitmcpserver.service;
 
 import lombok.extern.slf4j.Slf4j;
 import com.simon.gitmcpserver.config.GitAuthProperties;
+import com.simon.gitmcpserver.config.GitCommitProperties;
+import com.simon.gitmcpserver.config.GitSyncProperties;
+import com.simon.gitmcpserver.repository.ChangeJournal;
+import com.simon.gitmcpserver.repository.RepositoryHandleCache;
+import com.simon.gitmcpserver.repository.RepositoryLocks;
+import com.simon.gitmcpserver.repository.RepositorySyncedEvent;
+import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.PullResult;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.errors.EmptyCommitException;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.RefAlreadyExistsException;
+import org.eclipse.jgit.lib.BranchConfig;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.util.FileUtils;
 import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 /**
  * GitClone工具
@@ -32,53 +58,231 @@ import java.net.URISyntaxException;
 @Slf4j
 public class GitService {
 
+    private static final String SUCCESS_PREFIX = "SUCCESS:";
+
+    private static final String CLONED = "CLONED";
+
+    private static final String FAST_FORWARD = "FAST_FORWARD";
+
+    private static final String MERGED = "MERGED";
+
+    private static final String NOOP = "NOOP";
+
     private final GitAuthProperties gitAuthProperties;
 
-    public GitService(GitAuthProperties gitAuthProperties) {
+    private final GitSyncProperties gitSyncProperties;
+
+    private final RepositoryHandleCache repositoryHandleCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final GitCommitProperties gitCommitProperties;
+
+    private final ChangeJournal changeJournal;
+
+    private final RepositoryLocks repositoryLocks;
+
+    /**
+     * 每个本地仓库（规范路径）最近一次确认的远端 HEAD
+     */
+    private final Map<String, SyncState> syncStates = new ConcurrentHashMap<>();
+
+    public GitService(GitAuthProperties gitAuthProperties, GitSyncProperties gitSyncProperties,
+                      RepositoryHandleCache repositoryHandleCache, ApplicationEventPublisher eventPublisher,
+                      GitCommitProperties gitCommitProperties, ChangeJournal changeJournal,
+                      RepositoryLocks repositoryLocks) {
         this.gitAuthProperties = gitAuthProperties;
+        this.gitSyncProperties = gitSyncProperties;
+        this.repositoryHandleCache = repositoryHandleCache;
+        this.eventPublisher = eventPublisher;
+        this.gitCommitProperties = gitCommitProperties;
+        this.changeJournal = changeJournal;
+        this.repositoryLocks = repositoryLocks;
     }
 
-    @Tool(description = "Clone the specified Github repository code to the specified local directory and return SUCCESS or FAIL to indicate the processing result.")
+    @Tool(description = "Sync the specified Github repository into the specified local directory: clone it if missing, otherwise fetch and merge only when the remote branch has new commits. Return SUCCESS:CLONED, SUCCESS:FAST_FORWARD, SUCCESS:MERGED, SUCCESS:NOOP (already up to date) or FAIL.")
     public String clone(String repositoryUrl, String localPath) {
 
         log.info("Start Clone Github Repository,repositoryUrl:{},localPath:{}", repositoryUrl, localPath);
 
         //init
         File repoDir = new File(localPath);
-        Git git = null;
 
-        try {
+        // 同一仓库的同步依次进行；网络传输期间不持有写锁，只在改写工作区和引用时短暂持有
+        try (RepositoryLocks.Lease syncLease = repositoryLocks.sync(repoDir)) {
+            String key = repoDir.getCanonicalPath();
             if (isGitRepository(repoDir)) {
-                git = Git.open(repoDir);
-                log.info("pulling");
-                PullResult pullResult = git.pull()
-                        .setCredentialsProvider(credentialsProvider())
-                        .call();
-                log.info("✅ pull result:{}", pullResult);
-            } else {
-                CloneCommand cloneCommand = Git.cloneRepository()
-                        .setURI(repositoryUrl)
-                        .setDirectory(new File(localPath))
-                        .setCredentialsProvider(credentialsProvider());
-                git = cloneCommand.call();
-                log.info("✅ Clone Github Repository Success!");
+                // TTL 内已确认过与远端一致，连 ls-remote 都不需要
+                SyncState state = syncStates.get(key);
+                long ttlMillis = gitSyncProperties.getTtlSeconds() * 1000;
+                if (state != null && System.currentTimeMillis() - state.checkedAt < ttlMillis) {
+                    log.info("✅ Remote head {} checked {}ms ago, skip sync", state.remoteHead == null ? null : state.remoteHead.name(), System.currentTimeMillis() - state.checkedAt);
+                    return SUCCESS_PREFIX + NOOP;
+                }
+                try (RepositoryHandleCache.Handle handle = repositoryHandleCache.acquire(repoDir)) {
+                    return pull(handle.git(), repoDir, key);
+                }
             }
-            return "SUCCESS";
+            return cloneInto(repositoryUrl, repoDir, key);
         } catch (IOException ioException) {
             log.error("❌ Github Repository Pull Fail，ex:", ioException);
         } catch (GitAPIException e) {
             log.error("❌ Clone Github Repository Fail，ex:", e);
+        }
+
+        return "FAIL";
+    }
+
+    /**
+     * 拉取远端新提交：ls-remote 和 fetch 只交换对象和远端跟踪引用，持有读锁；合并改写工作区，持有写锁
+     */
+    private String pull(Git git, File repoDir, String key) throws IOException, GitAPIException {
+        Repository repository = git.getRepository();
+        String branch;
+        String remote;
+        String merge;
+        try (RepositoryLocks.Lease lease = repositoryLocks.read(repoDir)) {
+            branch = repository.getBranch();
+            BranchConfig branchConfig = new BranchConfig(repository.getConfig(), branch);
+            remote = branchConfig.getRemote() == null ? "origin" : branchConfig.getRemote();
+            merge = branchConfig.getMerge() == null ? Constants.R_HEADS + branch : branchConfig.getMerge();
+            ObjectId remoteHead = lsRemoteHead(git, remote, merge);
+            if (remoteHead != null && isMergedIntoHead(repository, remoteHead)) {
+                syncStates.put(key, new SyncState(remoteHead));
+                log.info("✅ Remote head {} already merged, skip fetch", remoteHead.name());
+                return SUCCESS_PREFIX + NOOP;
+            }
+
+            log.info("fetching");
+            FetchResult fetchResult = git.fetch()
+                    .setRemote(remote)
+                    .setCredentialsProvider(credentialsProvider())
+                    .call();
+            Ref fetched = fetchResult.getAdvertisedRef(merge);
+            if (fetched == null) {
+                log.error("❌ Remote branch {} not found on {}", merge, remote);
+                return "FAIL";
+            }
+            remoteHead = fetched.getObjectId();
+            if (isMergedIntoHead(repository, remoteHead)) {
+                syncStates.put(key, new SyncState(remoteHead));
+                return SUCCESS_PREFIX + NOOP;
+            }
+
+            try (RepositoryLocks.Lease writeLease = upgrade(lease, repoDir)) {
+                // 释放读锁到拿到写锁之间 HEAD 可能被切换，按合并时的当前分支重新确认
+                if (!branch.equals(repository.getBranch())) {
+                    log.error("❌ Branch switched from {} to {} during sync", branch, repository.getBranch());
+                    return "FAIL";
+                }
+                MergeResult mergeResult = git.merge()
+                        .include("branch '" + Repository.shortenRefName(merge) + "' of " + remote, remoteHead)
+                        .call();
+                log.info("✅ merge result:{}", mergeResult);
+                if (!mergeResult.getMergeStatus().isSuccessful()) {
+                    return "FAIL";
+                }
+                syncStates.put(key, new SyncState(remoteHead));
+                String outcome = mergeOutcome(mergeResult);
+                if (!NOOP.equals(outcome)) {
+                    changeJournal.reset(repoDir);
+                    eventPublisher.publishEvent(new RepositorySyncedEvent(repoDir, outcome));
+                }
+                return SUCCESS_PREFIX + outcome;
+            }
+        }
+    }
+
+    /**
+     * 先克隆到同级的临时目录，完成后持有写锁移动到目标位置，克隆期间目标目录上的其他操作不受影响
+     */
+    private String cloneInto(String repositoryUrl, File repoDir, String key) throws IOException, GitAPIException {
+        Path target = repoDir.toPath().toAbsolutePath().normalize();
+        if (Files.isDirectory(target)) {
+            try (Stream<Path> entries = Files.list(target)) {
+                if (entries.findAny().isPresent()) {
+                    log.error("❌ Target directory is not empty and not a git repository: {}", target);
+                    return "FAIL";
+                }
+            }
+        }
+        Path parent = target.getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempDirectory(parent, "." + target.getFileName() + ".clone");
+        try {
+            CloneCommand cloneCommand = Git.cloneRepository()
+                    .setURI(repositoryUrl)
+                    .setDirectory(temp.toFile())
+                    .setCredentialsProvider(credentialsProvider());
+            if (gitSyncProperties.getDepth() > 0) {
+                cloneCommand.setDepth(gitSyncProperties.getDepth());
+            }
+            ObjectId head;
+            try (Git git = cloneCommand.call()) {
+                head = git.getRepository().resolve(Constants.HEAD);
+            }
+            try (RepositoryLocks.Lease lease = repositoryLocks.write(repoDir)) {
+                repositoryHandleCache.invalidate(repoDir);
+                Files.deleteIfExists(target);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            syncStates.put(key, new SyncState(head));
+            log.info("✅ Clone Github Repository Success!");
+            eventPublisher.publishEvent(new RepositorySyncedEvent(repoDir, CLONED));
+            return SUCCESS_PREFIX + CLONED;
         } finally {
-            if (git != null) {
-                git.close();
+            if (Files.exists(temp)) {
+                FileUtils.delete(temp.toFile(), FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
             }
         }
+    }
 
-        return "FAIL";
+    /**
+     * 读写锁不支持直接升级：释放读锁后再获取写锁
+     */
+    private RepositoryLocks.Lease upgrade(RepositoryLocks.Lease readLease, File repoDir) throws IOException {
+        readLease.close();
+        return repositoryLocks.write(repoDir);
+    }
+
+    /**
+     * 通过 ls-remote 获取当前分支对应的远端分支 HEAD，只交换引用信息，不传输对象
+     */
+    private ObjectId lsRemoteHead(Git git, String remote, String merge) throws GitAPIException {
+        Map<String, Ref> refs = git.lsRemote()
+                .setRemote(remote)
+                .setHeads(true)
+                .setCredentialsProvider(credentialsProvider())
+                .callAsMap();
+        Ref ref = refs.get(merge);
+        return ref == null ? null : ref.getObjectId();
+    }
+
+    private static boolean isMergedIntoHead(Repository repository, ObjectId remoteHead) throws IOException {
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null || !repository.getObjectDatabase().has(remoteHead)) {
+            return false;
+        }
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            return revWalk.isMergedInto(revWalk.parseCommit(remoteHead), revWalk.parseCommit(head));
+        }
+    }
+
+    private static String mergeOutcome(MergeResult mergeResult) {
+        switch (mergeResult.getMergeStatus()) {
+            case ALREADY_UP_TO_DATE:
+                return NOOP;
+            case FAST_FORWARD:
+            case FAST_FORWARD_SQUASHED:
+                return FAST_FORWARD;
+            default:
+                return MERGED;
+        }
     }
 
     @Tool(description = "Create/switch to branch for the specified local Git repo, stage and commit local changes with an 'AI Fix' message, and push the branch to the given remote. Return 'SUCCESS:branchName' or 'FAIL'.")
-    public String createAndPushBranch(String localPath, String remoteUrl, String branchName) {
+    public String createAndPushBranch(String localPath, String remoteUrl, String branchName,
+                                      @ToolParam(required = false, description = "repository-relative paths of files changed outside the writeFile tool") List<String> changedPaths) {
         log.info("Start createAndPushBranch, localPath:{}, remoteUrl:{}, branchName:{}, hasToken:{}", localPath, maskToken(remoteUrl), branchName, gitAuthProperties.getToken() != null && !gitAuthProperties.getToken().isBlank());
 
         File repoDir = new File(localPath);
@@ -87,16 +291,13 @@ public class GitService {
             return "FAIL";
         }
 
-        try (Git git = Git.open(repoDir)) {
+        try (RepositoryLocks.Lease lease = repositoryLocks.write(repoDir);
+             RepositoryHandleCache.Handle handle = repositoryHandleCache.acquire(repoDir)) {
+            Git git = handle.git();
             ensureRemoteOrigin(git, remoteUrl);
 
             // 先在当前分支提交变更，避免切换分支导致未提交变更被覆盖
-            git.add().addFilepattern(".").call();
-            git.add().setUpdate(true).addFilepattern(".").call();
-            boolean hasAnythingToCommit = hasPendingChanges(git);
-            if (hasAnythingToCommit) {
-                ensureUserConfig(git);
-                git.commit().setMessage("AI Fix: auto commit by MCP").setAll(true).call();
+            if (stageAndCommit(git, repoDir, changedPaths, "AI Fix: auto commit by MCP", true)) {
                 log.info("Committed local changes on current branch");
             } else {
                 log.info("No local changes to commit before branching.");
@@ -138,6 +339,13 @@ public class GitService {
             return; // assume existing remote is fine
         }
         StoredConfig config = git.getRepository().getConfig();
+        // 推送只持有读锁，同一仓库的多个推送可能同时修改配置
+        synchronized (config) {
+            updateRemoteOrigin(config, remoteUrl);
+        }
+    }
+
+    private static void updateRemoteOrigin(StoredConfig config, String remoteUrl) throws URISyntaxException, IOException {
         String existing = config.getString("remote", "origin", "url");
         if (existing == null || existing.trim().isEmpty()) {
             log.info("Configuring remote 'origin' -> {}", maskToken(remoteUrl));
@@ -161,9 +369,58 @@ public class GitService {
         return ref != null;
     }
 
-    private static boolean hasPendingChanges(Git git) throws GitAPIException {
-        var status = git.status().call();
-        return !(status.isClean() && status.getUntracked().isEmpty());
+    /**
+     * 暂存并提交变更，提交成本只和变更规模有关：
+     * 允许按日志暂存且有变更日志时只暂存记录过的路径，由 JGit 按文件大小和修改时间判断是否变化，只有时间戳可疑时才计算内容哈希；
+     * 没有记录或记录溢出时退回全量扫描。提交不再 setAll，由 allowEmpty=false 比较索引树和 HEAD 树判断是否为空提交
+     *
+     * @param allowScoped 是否允许只暂存日志中的路径，commitAll 传 false
+     * @return 是否产生了新提交
+     */
+    private boolean stageAndCommit(Git git, File repoDir, List<String> changedPaths, String message, boolean allowScoped)
+            throws IOException, GitAPIException {
+        long start = System.currentTimeMillis();
+        Set<String> journaled = changeJournal.pending(repoDir);
+        Set<String> paths = new LinkedHashSet<>();
+        if (journaled != null) {
+            paths.addAll(journaled);
+        }
+        if (changedPaths != null) {
+            for (String path : changedPaths) {
+                if (path != null && !path.isBlank()) {
+                    paths.add(path.replace('\\', '/').replaceFirst("^/+", ""));
+                }
+            }
+        }
+
+        boolean scoped = allowScoped && gitCommitProperties.isScopedStaging() && journaled != null && !paths.isEmpty();
+        if (scoped) {
+            AddCommand add = git.add();
+            AddCommand update = git.add().setUpdate(true);
+            for (String path : paths) {
+                add.addFilepattern(path);
+                update.addFilepattern(path);
+            }
+            add.call();
+            // 第二次只处理已跟踪文件，用于暂存删除
+            update.call();
+        } else {
+            git.add().addFilepattern(".").call();
+            git.add().setUpdate(true).addFilepattern(".").call();
+        }
+
+        boolean committed;
+        try {
+            ensureUserConfig(git);
+            git.commit().setMessage(message).setAllowEmpty(false).call();
+            committed = true;
+        } catch (EmptyCommitException e) {
+            committed = false;
+        }
+        changeJournal.clear(repoDir, scoped ? journaled : null);
+        log.info("✅ Staged {}, committed:{}, cost:{}ms", scoped ? paths.size() + " changed paths" : "full working tree",
+                committed, System.currentTimeMillis() - start);
+        return committed;
     }
 
     private static void ensureUserConfig(Git git) throws IOException {
@@ -200,12 +457,15 @@ public class GitService {
             log.error("❌ Local path is not a git repository: {}", localPath);
             return "FAIL";
         }
-        try (Git git = Git.open(repoDir)) {
+        try (RepositoryLocks.Lease lease = repositoryLocks.write(repoDir);
+             RepositoryHandleCache.Handle handle = repositoryHandleCache.acquire(repoDir)) {
+            Git git = handle.git();
             if (localBranchExists(git, branchName)) {
                 git.checkout().setName(branchName).call();
             } else {
                 git.checkout().setCreateBranch(true).setName(branchName).call();
             }
+            changeJournal.reset(repoDir);
             return "SUCCESS:" + branchName;
         } catch (Exception e) {
             log.error("❌ createAndCheckoutBranch failed", e);
@@ -220,8 +480,11 @@ public class GitService {
             log.error("❌ Local path is not a git repository: {}", localPath);
             return "FAIL";
         }
-        try (Git git = Git.open(repoDir)) {
+        try (RepositoryLocks.Lease lease = repositoryLocks.write(repoDir);
+             RepositoryHandleCache.Handle handle = repositoryHandleCache.acquire(repoDir)) {
+            Git git = handle.git();
             git.checkout().setName(branchName).call();
+            changeJournal.reset(repoDir);
             return "SUCCESS:" + branchName;
         } catch (Exception e) {
             log.error("❌ checkoutBranch failed", e);
@@ -236,13 +499,10 @@ public class GitService {
             log.error("❌ Local path is not a git repository: {}", localPath);
             return "FAIL";
         }
-        try (Git git = Git.open(repoDir)) {
-            git.add().addFilepattern(".").call();
-            git.add().setUpdate(true).addFilepattern(".").call();
-            if (hasPendingChanges(git)) {
-                ensureUserConfig(git);
-                git.commit().setMessage(message == null || message.isBlank() ? "AI Fix" : message).setAll(true).call();
-            }
+        try (RepositoryLocks.Lease lease = repositoryLocks.write(repoDir);
+             RepositoryHandleCache.Handle handle = repositoryHandleCache.acquire(repoDir)) {
+            // commitAll 的约定是提交全部变更，始终全量扫描工作区
+            stageAndCommit(handle.git(), repoDir, null, message == null || message.isBlank() ? "AI Fix" : message, false);
             return "SUCCESS";
         } catch (Exception e) {
             log.error("❌ commitAll failed", e);
@@ -257,7 +517,9 @@ public class GitService {
             log.error("❌ Local path is not a git repository: {}", localPath);
             return "FAIL";
         }
-        try (Git git = Git.open(repoDir)) {
+        try (RepositoryLocks.Lease lease = repositoryLocks.read(repoDir);
+             RepositoryHandleCache.Handle handle = repositoryHandleCache.acquire(repoDir)) {
+            Git git = handle.git();
             ensureRemoteOrigin(git, remoteUrl);
             RefSpec refSpec = new RefSpec(branchName + ":refs/heads/" + branchName);
             git.push()
@@ -285,6 +547,18 @@ public class GitService {
         return new UsernamePasswordCredentialsProvider(username, token);
     }
 
+    private static class SyncState {
+
+        private final ObjectId remoteHead;
+
+        private final long checkedAt;
+
+        private SyncState(ObjectId remoteHead) {
+            this.remoteHead = remoteHead;
+            this.checkedAt = System.currentTimeMillis();
+        }
+    }
+
     private static String maskToken(String value) {
         if (value == null) {
             return null;
@@ -0,0 +1,53 @@
+package com.simon.gitmcpserver.repository;
+
+import com.simon.gitmcpserver.config.GitCommitProperties;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void discardsEntriesAfterIndexIsRewritten() throws Exception {
+        File repo = tempDir.toFile();
+        try (Git git = Git.init().setDirectory(repo).call()) {
+            Files.writeString(tempDir.resolve("a.txt"), "a");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("init").setAuthor("t", "t@t").setCommitter("t", "t@t").call();
+
+            ChangeJournal journal = new ChangeJournal(new GitCommitProperties());
+            Files.writeString(tempDir.resolve("a.txt"), "b");
+            journal.record(tempDir.resolve("a.txt"));
+            assertThat(journal.pending(repo)).containsExactly("a.txt");
+
+            // 工作区被外部重置（例如归还到工作区池），索引被改写；重置到同一提交时大小不变，
+            // 文件系统的时间精度可能只有 1 秒，显式把修改时间设到之后，不依赖两次写入之间的间隔
+            Path index = tempDir.resolve(".git/index");
+            FileTime before = Files.getLastModifiedTime(index);
+            git.reset().setMode(ResetCommand.ResetType.HARD).call();
+            Files.setLastModifiedTime(index, FileTime.fromMillis(before.toMillis() + 2_000));
+            assertThat(journal.pending(repo)).isEmpty();
+        }
+    }
+
+    @Test
+    void resetDropsAllEntries() throws Exception {
+        File repo = tempDir.toFile();
+        Git.init().setDirectory(repo).call().close();
+        ChangeJournal journal = new ChangeJournal(new GitCommitProperties());
+        journal.record(repo, "a.txt");
+        journal.reset(repo);
+        assertThat(journal.pending(repo)).isEmpty();
+    }
+}
@@ -0,0 +1,78 @@
+package com.simon.gitmcpserver.repository;
+
+import com.simon.gitmcpserver.config.GitCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RepositoryHandleCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RepositoryHandleCache cache = new RepositoryHandleCache(new GitCacheProperties(), meterRegistry);
+
+    @Test
+    void concurrentAcquiresShareOneRepository() throws Exception {
+        File repo = tempDir.toFile();
+        Git.init().setDirectory(repo).call().close();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Repository>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try (RepositoryHandleCache.Handle handle = cache.acquire(repo)) {
+                        return handle.git().getRepository();
+                    }
+                }));
+            }
+            start.countDown();
+            Repository first = futures.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Repository> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS)).isSameAs(first);
+            }
+        } finally {
+            executor.shutdownNow();
+            cache.closeAll();
+        }
+        assertThat(meterRegistry.get("git.repository.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("git.repository.cache").tag("result", "hit").counter().count()).isEqualTo(7);
+    }
+
+    @Test
+    void failedOpenIsNotCached() throws Exception {
+        File repo = tempDir.toFile();
+
+        assertThatThrownBy(() -> cache.acquire(repo)).isInstanceOf(IOException.class);
+        assertThat(meterRegistry.get("git.repository.cache.open").gauge().value()).isZero();
+
+        // 仓库创建之后可以正常打开，不会拿到上一次失败的结果
+        Git.init().setDirectory(repo).call().close();
+        try (RepositoryHandleCache.Handle handle = cache.acquire(repo)) {
+            assertThat(handle.git().getRepository().getWorkTree()).isEqualTo(repo.getCanonicalFile());
+        } finally {
+            cache.closeAll();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.simon.gitmcpserver.search;
+
+import com.simon.gitmcpserver.config.GitCacheProperties;
+import com.simon.gitmcpserver.config.GitLockProperties;
+import com.simon.gitmcpserver.config.GitSearchProperties;
+import com.simon.gitmcpserver.repository.RepositoryHandleCache;
+import com.simon.gitmcpserver.repository.RepositoryLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CodeSearchServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File main;
+
+    private Git git;
+
+    private CodeSearchService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        main = tempDir.resolve("main").toFile();
+        git = Git.init().setDirectory(main).call();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GitSearchProperties properties = new GitSearchProperties();
+        properties.setThreads(4);
+        service = new CodeSearchService(properties, new RepositoryHandleCache(new GitCacheProperties(), meterRegistry),
+                new RepositoryLocks(new GitLockProperties(), meterRegistry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        git.close();
+    }
+
+    @Test
+    void worktreesAtDifferentCommitsSeeTheirOwnContent() throws Exception {
+        RevCommit first = commit("Service.java", "String name = \"oldName\";");
+        File worktree = worktree("wt-1", first);
+        assertThat(CodeSearchService.objectDirectory(new File(worktree, Constants.DOT_GIT)))
+                .isEqualTo(CodeSearchService.objectDirectory(new File(main, Constants.DOT_GIT)));
+
+        assertThat(search(worktree, "oldName")).isEqualTo("Service.java:1: String name = \"oldName\";\n");
+        commit("Service.java", "String name = \"newName\";");
+
+        // 本地仓库前进到新提交后，停在旧提交的工作区仍然搜索旧内容
+        assertThat(search(main, "newName")).startsWith("Service.java:1:");
+        assertThat(search(main, "oldName")).isEqualTo("NO_MATCH");
+        assertThat(search(worktree, "oldName")).startsWith("Service.java:1:");
+        assertThat(search(worktree, "newName")).isEqualTo("NO_MATCH");
+    }
+
+    @Test
+    void limitedResultsAreTheFirstMatchesByPath() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            Files.writeString(main.toPath().resolve(String.format("f%02d.txt", i)), "needle\nneedle\n");
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("files").setAuthor("t", "t@t").setCommitter("t", "t@t").call();
+
+        String expected = "f00.txt:1: needle\nf00.txt:2: needle\nf01.txt:1: needle\nf01.txt:2: needle\nf02.txt:1: needle\n";
+        for (int i = 0; i < 10; i++) {
+            assertThat(service.searchCode(main.getPath(), "needle", false, false, null, 5)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void inlineFlagsFallBackToFullScan() throws Exception {
+        commit("Service.java", "int fooBar = 1;");
+        // (?x) 忽略正则中的空白，"foo Bar" 匹配 fooBar，不能按字面量 "foo Bar" 筛选
+        assertThat(search(main, "(?x)foo Bar", true)).startsWith("Service.java:1:");
+        assertThat(search(main, "\\Qfoo\\E?Bar", true)).startsWith("Service.java:1:");
+    }
+
+    private String search(File repo, String query) {
+        return search(repo, query, false);
+    }
+
+    private String search(File repo, String query, boolean regex) {
+        return service.searchCode(repo.getPath(), query, regex, false, null, null);
+    }
+
+    private RevCommit commit(String path, String content) throws Exception {
+        Files.writeString(main.toPath().resolve(path), content);
+        git.add().addFilepattern(".").call();
+        return git.commit().setMessage(path).setAuthor("t", "t@t").setCommitter("t", "t@t").call();
+    }
+
+    /**
+     * 与 mcp-client 的工作区池相同：空仓库通过 alternates 复用本地仓库的对象库，HEAD 指向指定提交
+     */
+    private File worktree(String name, ObjectId commit) throws Exception {
+        File dir = tempDir.resolve(name).toFile();
+        try (Git worktree = Git.init().setDirectory(dir).call()) {
+            File alternates = new File(dir, Constants.DOT_GIT + "/objects/info/alternates");
+            Files.createDirectories(alternates.getParentFile().toPath());
+            Files.writeString(alternates.toPath(), new File(main, Constants.DOT_GIT + "/objects").getAbsolutePath() + "\n",
+                    StandardCharsets.UTF_8);
+            RefUpdate update = worktree.getRepository().updateRef(Constants.HEAD, true);
+            update.setNewObjectId(commit);
+            update.forceUpdate();
+        }
+        return dir;
+    }
+}
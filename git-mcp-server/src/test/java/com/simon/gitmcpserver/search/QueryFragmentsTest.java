@@ -0,0 +1,52 @@
+package com.simon.gitmcpserver.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryFragmentsTest {
+
+    @Test
+    void extractsRequiredLiterals() {
+        assertThat(QueryFragments.ofRegex("getUserName\\(")).containsExactly("getUserName(");
+        assertThat(QueryFragments.ofRegex("foo.*barBaz")).containsExactly("foo", "barBaz");
+        assertThat(QueryFragments.ofRegex("NullPointer\\w+Exception")).containsExactly("NullPointer", "Exception");
+        assertThat(QueryFragments.ofRegex("user[0-9]+Name")).containsExactly("user", "Name");
+    }
+
+    @Test
+    void dropsOptionalCharacters() {
+        // 带 ? * {m,n} 的字符可能不出现，+ 的字符必须出现但与后面不相邻
+        assertThat(QueryFragments.ofRegex("colou?r")).containsExactly("colo");
+        assertThat(QueryFragments.ofRegex("abcd?efg")).containsExactly("abc", "efg");
+        assertThat(QueryFragments.ofRegex("abcx*defg")).containsExactly("abc", "defg");
+        assertThat(QueryFragments.ofRegex("abcx{0,2}defg")).containsExactly("abc", "defg");
+        assertThat(QueryFragments.ofRegex("abcd+efg")).containsExactly("abcd", "efg");
+        assertThat(QueryFragments.ofRegex("(abc)?defg")).containsExactly("defg");
+    }
+
+    @Test
+    void quantifierAfterQuoteAppliesToLastCharacter() {
+        assertThat(QueryFragments.ofRegex("\\Qa.b(c\\E")).containsExactly("a.b(c");
+        assertThat(QueryFragments.ofRegex("\\Qfoo.bar\\E?baz")).containsExactly("foo.ba", "baz");
+        assertThat(QueryFragments.ofRegex("\\Qfoo.bar\\E*")).containsExactly("foo.ba");
+        assertThat(QueryFragments.ofRegex("\\Qfoo.bar\\E{0,3}xyz")).containsExactly("foo.ba", "xyz");
+        assertThat(QueryFragments.ofRegex("\\Qfoo.bar\\E+xyz")).containsExactly("foo.bar", "xyz");
+        assertThat(QueryFragments.ofRegex("\\Qab\\E?")).isEmpty();
+    }
+
+    @Test
+    void fallsBackToFullScan() {
+        assertThat(QueryFragments.ofRegex("fooBar|bazQux")).isEmpty();
+        // 内联标志可能改变字面量的含义，例如 (?x) 忽略空白
+        assertThat(QueryFragments.ofRegex("(?x)foo bar")).isEmpty();
+        assertThat(QueryFragments.ofRegex("prefix(?i)Suffix")).isEmpty();
+        assertThat(QueryFragments.ofRegex("(?s:a.b)cdef")).isEmpty();
+        assertThat(QueryFragments.ofRegex("(?-i)abcdef")).isEmpty();
+        // 非捕获分组、断言和字面量中的 (? 不是内联标志
+        assertThat(QueryFragments.ofRegex("(?:ab)cdef")).containsExactly("cdef");
+        assertThat(QueryFragments.ofRegex("abcd(?=x)")).containsExactly("abcd");
+        assertThat(QueryFragments.ofRegex("\\(?xyz1")).containsExactly("xyz1");
+        assertThat(QueryFragments.ofRegex("\\Q(?x)\\Eabc")).containsExactly("(?x)abc");
+    }
+}
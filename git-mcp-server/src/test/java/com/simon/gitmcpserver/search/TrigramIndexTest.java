@@ -0,0 +1,79 @@
+package com.simon.gitmcpserver.search;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+
+    @Test
+    void findsDocumentsContainingAllFragments() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("b/UserService.java", blob(1), "User user = repository.findUser(id);");
+        index.add("a/OrderService.java", blob(2), "Order order = repository.findOrder(id);");
+        index.add("c/Readme.md", blob(3), "nothing here");
+
+        assertThat(paths(index.candidates(Set.of("repository.find")))).containsExactly("a/OrderService.java", "b/UserService.java");
+        assertThat(paths(index.candidates(Set.of("findUser", "repository")))).containsExactly("b/UserService.java");
+        // 索引按小写建立，大小写不同也能筛出，由正则校验区分大小写
+        assertThat(paths(index.candidates(Set.of("FINDORDER")))).containsExactly("a/OrderService.java");
+        assertThat(index.candidates(Set.of("missing"))).isEmpty();
+        // 片段不足三个字符时返回全部文档
+        assertThat(paths(index.candidates(Set.of()))).containsExactly("a/OrderService.java", "b/UserService.java", "c/Readme.md");
+    }
+
+    @Test
+    void candidatesAreSortedByPathRegardlessOfUpdateOrder() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("z.txt", blob(1), "needle");
+        index.add("m.txt", blob(2), "needle");
+        index.add("a.txt", blob(3), "needle");
+        // 修改后 z.txt 的文档号变为最大
+        index.add("z.txt", blob(4), "needle again");
+
+        assertThat(paths(index.candidates(Set.of("needle")))).containsExactly("a.txt", "m.txt", "z.txt");
+        assertThat(index.candidates(Set.of("needle")).get(2).getBlobId()).isEqualTo(blob(4));
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void removedDocumentsAreNotReturned() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("a.txt", blob(1), "needle");
+        index.add("b.txt", blob(2), "needle");
+        index.remove("a.txt");
+
+        assertThat(paths(index.candidates(Set.of("needle")))).containsExactly("b.txt");
+        assertThat(index.needsRebuild()).isFalse();
+        index.remove("b.txt");
+        assertThat(index.needsRebuild()).isTrue();
+    }
+
+    @Test
+    void copyIsIndependentOfOriginal() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("a.txt", blob(1), "needle");
+        index.setCommit(blob(100));
+
+        TrigramIndex copy = index.copy();
+        copy.remove("a.txt");
+        copy.add("b.txt", blob(2), "needle");
+        copy.setCommit(blob(101));
+
+        assertThat(paths(index.candidates(Set.of("needle")))).containsExactly("a.txt");
+        assertThat(index.getCommit()).isEqualTo(blob(100));
+        assertThat(paths(copy.candidates(Set.of("needle")))).containsExactly("b.txt");
+    }
+
+    private static List<String> paths(List<TrigramIndex.Document> documents) {
+        return documents.stream().map(TrigramIndex.Document::getPath).toList();
+    }
+
+    private static ObjectId blob(int n) {
+        return ObjectId.fromString(String.format("%040x", n));
+    }
+}
@@ -0,0 +1,125 @@
+package com.simon.gitmcpserver.service;
+
+import com.simon.gitmcpserver.config.GitCommitProperties;
+import com.simon.gitmcpserver.config.GitFileSystemProperties;
+import com.simon.gitmcpserver.config.GitLockProperties;
+import com.simon.gitmcpserver.repository.ChangeJournal;
+import com.simon.gitmcpserver.repository.RepositoryLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FileSystemServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File repo;
+
+    private RepositoryLocks locks;
+
+    private FileSystemService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repo = tempDir.resolve("repo").toFile();
+        Git.init().setDirectory(repo).call().close();
+        Files.writeString(repo.toPath().resolve("a.txt"), "a");
+
+        GitFileSystemProperties properties = new GitFileSystemProperties();
+        properties.setAllowedRoots(List.of(tempDir.toString()));
+        GitLockProperties lockProperties = new GitLockProperties();
+        // 拿不到锁立即失败
+        lockProperties.setWaitTimeoutSeconds(0);
+        locks = new RepositoryLocks(lockProperties, new SimpleMeterRegistry());
+        service = new FileSystemService(properties, new ChangeJournal(new GitCommitProperties()), locks);
+    }
+
+    @Test
+    void readsShareTheRepositoryLockWritesDoNot() throws Exception {
+        String file = repo.toPath().resolve("a.txt").toString();
+        holdWhile(false, () -> {
+            assertThat(service.readFile(file, null, null)).isEqualTo("a");
+            assertThat(service.writeFile(file, "b")).startsWith("FAIL:Timed out");
+        });
+        holdWhile(true, () -> assertThat(service.readFile(file, null, null)).startsWith("FAIL:Timed out"));
+        assertThat(service.writeFile(file, "b")).isEqualTo("SUCCESS");
+        assertThat(service.readFile(file, null, null)).isEqualTo("b");
+    }
+
+    @Test
+    void filesOutsideRepositoriesAreNotLocked() throws Exception {
+        Path loose = tempDir.resolve("loose.txt");
+        Files.writeString(loose, "x");
+        holdWhile(true, () -> assertThat(service.readFile(loose.toString(), null, null)).isEqualTo("x"));
+    }
+
+    @Test
+    void rejectsRelativePaths() {
+        assertThat(service.readFile("a.txt", null, null)).startsWith("FAIL:path must be absolute");
+        assertThat(service.writeFile("src/a.txt", "x")).startsWith("FAIL:path must be absolute");
+    }
+
+    @Test
+    void rejectsGitDirectory() throws Exception {
+        Path config = repo.toPath().resolve(".git/config");
+        String original = Files.readString(config);
+        for (String path : List.of(".git/config", ".git/hooks/pre-commit", "src/../.git/config", ".GIT/config")) {
+            String absolute = repo.toPath().resolve(path).toString();
+            assertThat(service.writeFile(absolute, "x")).as(path).startsWith("FAIL:access denied");
+        }
+        assertThat(service.readFile(config.toString(), null, null)).startsWith("FAIL:access denied");
+        assertThat(Files.readString(config)).isEqualTo(original);
+        assertThat(repo.toPath().resolve(".git/hooks/pre-commit")).doesNotExist();
+    }
+
+    @Test
+    void keepsPermissionsOnOverwrite() throws Exception {
+        assumeTrue(Files.getFileStore(tempDir).supportsFileAttributeView("posix"));
+        Path script = repo.toPath().resolve("run.sh");
+        Files.writeString(script, "echo old\n");
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-xr--"));
+
+        assertThat(service.writeFile(script.toString(), "echo new\n")).isEqualTo("SUCCESS");
+
+        assertThat(Files.readString(script)).isEqualTo("echo new\n");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(script))).isEqualTo("rwxr-xr--");
+    }
+
+    /**
+     * 在另一个线程持有仓库锁期间执行检查
+     */
+    private void holdWhile(boolean write, Runnable check) throws Exception {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+            try (RepositoryLocks.Lease lease = write ? locks.write(repo) : locks.read(repo)) {
+                held.countDown();
+                done.await(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+        try {
+            check.run();
+        } finally {
+            done.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.simon.gitmcpserver.service;
+
+import com.simon.gitmcpserver.config.GitAuthProperties;
+import com.simon.gitmcpserver.config.GitCacheProperties;
+import com.simon.gitmcpserver.config.GitCommitProperties;
+import com.simon.gitmcpserver.config.GitLockProperties;
+import com.simon.gitmcpserver.config.GitSyncProperties;
+import com.simon.gitmcpserver.repository.ChangeJournal;
+import com.simon.gitmcpserver.repository.RepositoryHandleCache;
+import com.simon.gitmcpserver.repository.RepositoryLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Git remote;
+
+    private RepositoryHandleCache handleCache;
+
+    private GitService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        remote = Git.init().setDirectory(tempDir.resolve("remote").toFile()).call();
+        commit("a.txt", "1");
+
+        GitSyncProperties syncProperties = new GitSyncProperties();
+        syncProperties.setTtlSeconds(0);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GitCommitProperties commitProperties = new GitCommitProperties();
+        handleCache = new RepositoryHandleCache(new GitCacheProperties(), meterRegistry);
+        service = new GitService(new GitAuthProperties(), syncProperties, handleCache, event -> {
+        }, commitProperties, new ChangeJournal(commitProperties),
+                new RepositoryLocks(new GitLockProperties(), meterRegistry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        handleCache.closeAll();
+        remote.close();
+    }
+
+    @Test
+    void clonesThenFastForwards() throws Exception {
+        Path local = tempDir.resolve("local");
+        String url = remote.getRepository().getDirectory().getParentFile().toURI().toString();
+
+        assertThat(service.clone(url, local.toString())).isEqualTo("SUCCESS:CLONED");
+        assertThat(Files.readString(local.resolve("a.txt"))).isEqualTo("1");
+        // 克隆用的临时目录已经移走
+        try (var entries = Files.list(tempDir)) {
+            assertThat(entries.map(path -> path.getFileName().toString())).containsExactlyInAnyOrder("remote", "local");
+        }
+
+        assertThat(service.clone(url, local.toString())).isEqualTo("SUCCESS:NOOP");
+        commit("a.txt", "2");
+        assertThat(service.clone(url, local.toString())).isEqualTo("SUCCESS:FAST_FORWARD");
+        assertThat(Files.readString(local.resolve("a.txt"))).isEqualTo("2");
+    }
+
+    @Test
+    void refusesNonEmptyTarget() throws Exception {
+        Path local = tempDir.resolve("local");
+        Files.createDirectories(local);
+        Files.writeString(local.resolve("keep.txt"), "x");
+        String url = remote.getRepository().getDirectory().getParentFile().toURI().toString();
+
+        assertThat(service.clone(url, local.toString())).isEqualTo("FAIL");
+        assertThat(Files.readString(local.resolve("keep.txt"))).isEqualTo("x");
+    }
+
+    private void commit(String name, String content) throws Exception {
+        File dir = remote.getRepository().getWorkTree();
+        Files.writeString(dir.toPath().resolve(name), content);
+        remote.add().addFilepattern(name).call();
+        remote.commit().setMessage(content).setAuthor("t", "t@t").setCommitter("t", "t@t").call();
+    }
+}
@@ -0,0 +1,168 @@
+package com.simon.mcpclient.cache;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异常分析结果缓存
+ * 以（异常指纹，仓库 HEAD 提交号）为键持久化保存上一次分析的结果和 hotfix 分支名，
+ * 同一个异常在同一版本代码上再次出现时直接返回已有分支，不再重复调用大模型和推送新的分支。
+ * 使用 H2 的 MVStore 作为本地嵌入式存储，重启后仍然有效
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class AnalysisResultCache {
+
+    private final AiAnalyzeConfig.ResultCache config;
+
+    private volatile MVStore store;
+
+    private volatile MVMap<String, Entry> results;
+
+    public AnalysisResultCache(AiAnalyzeConfig aiAnalyzeConfig) {
+        this.config = aiAnalyzeConfig.getResultCache();
+    }
+
+    /**
+     * 查询缓存的分析结果，过期的结果视为未命中并删除
+     *
+     * @return 命中时返回上一次的分析结果，否则返回null
+     */
+    public String get(String fingerprint, String headCommit) {
+        if (!config.isEnabled() || fingerprint == null || headCommit == null) {
+            return null;
+        }
+        MVMap<String, Entry> map = open();
+        if (map == null) {
+            return null;
+        }
+        String key = key(fingerprint, headCommit);
+        Entry entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry, System.currentTimeMillis())) {
+            map.remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+
+    /**
+     * 保存分析结果，超出容量时淘汰最早写入的结果
+     */
+    public void put(String fingerprint, String headCommit, String result) {
+        if (!config.isEnabled() || fingerprint == null || headCommit == null) {
+            return;
+        }
+        MVMap<String, Entry> map = open();
+        if (map == null) {
+            return;
+        }
+        map.put(key(fingerprint, headCommit), new Entry(result, System.currentTimeMillis()));
+        if (map.size() > config.getMaxEntries()) {
+            evict(map);
+        }
+        store.commit();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (store != null) {
+            store.close();
+            store = null;
+            results = null;
+        }
+    }
+
+    private MVMap<String, Entry> open() {
+        MVMap<String, Entry> map = results;
+        if (map != null) {
+            return map;
+        }
+        synchronized (this) {
+            if (results == null) {
+                try {
+                    File file = new File(config.getFile());
+                    File parent = file.getAbsoluteFile().getParentFile();
+                    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                        throw new IllegalStateException("无法创建目录：" + parent);
+                    }
+                    store = new MVStore.Builder().fileName(file.getAbsolutePath()).compress().open();
+                    results = store.openMap("analysis-results");
+                    log.info("分析结果缓存已打开：{}，条数：{}", file, results.size());
+                } catch (RuntimeException e) {
+                    // 缓存不可用时不影响正常分析
+                    log.error("分析结果缓存打开失败：{}", config.getFile(), e);
+                    return null;
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * 先删除过期的结果，仍超出容量时按写入时间从早到晚淘汰，一次多淘汰10%避免每次写入都全量扫描
+     */
+    private synchronized void evict(MVMap<String, Entry> map) {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> live = new ArrayList<>(map.size());
+        for (Map.Entry<String, Entry> mapEntry : map.entrySet()) {
+            if (isExpired(mapEntry.getValue(), now)) {
+                map.remove(mapEntry.getKey());
+            } else {
+                live.add(Map.entry(mapEntry.getKey(), mapEntry.getValue()));
+            }
+        }
+        int target = config.getMaxEntries() - config.getMaxEntries() / 10;
+        if (live.size() <= config.getMaxEntries()) {
+            return;
+        }
+        live.sort(Comparator.comparingLong(mapEntry -> mapEntry.getValue().createdAt));
+        for (int i = 0; i < live.size() - target; i++) {
+            map.remove(live.get(i).getKey());
+        }
+        log.info("分析结果缓存淘汰 {} 条", live.size() - target);
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return config.getTtlHours() > 0 && now - entry.createdAt > TimeUnit.HOURS.toMillis(config.getTtlHours());
+    }
+
+    private static String key(String fingerprint, String headCommit) {
+        return fingerprint + "@" + headCommit;
+    }
+
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 分析结果，例如 SUCCESS:hotfix_20261017_123456
+         */
+        private final String result;
+
+        private final long createdAt;
+
+        private Entry(String result, long createdAt) {
+            this.result = result;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.simon.mcpclient.cache;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.Arrays;
+
+/**
+ * 经过 {@link ToolResultCache} 调用工具的 ToolCallbackProvider 装饰器
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public class CachingToolCallbackProvider implements ToolCallbackProvider {
+
+    private final ToolCallbackProvider delegate;
+
+    private final ToolResultCache toolResultCache;
+
+    public CachingToolCallbackProvider(ToolCallbackProvider delegate, ToolResultCache toolResultCache) {
+        this.delegate = delegate;
+        this.toolResultCache = toolResultCache;
+    }
+
+    @Override
+    public ToolCallback[] getToolCallbacks() {
+        return Arrays.stream(delegate.getToolCallbacks())
+                .map(CachingToolCallback::new)
+                .toArray(ToolCallback[]::new);
+    }
+
+    private class CachingToolCallback implements ToolCallback {
+
+        private final ToolCallback delegate;
+
+        private CachingToolCallback(ToolCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            return toolResultCache.call(delegate.getToolDefinition().name(), toolInput,
+                    () -> toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext));
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.simon.mcpclient.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import com.simon.mcpclient.util.GitUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * MCP 工具结果缓存
+ * 一次分析中大模型会反复读取同一个文件、列出同一个目录，每次都是一次完整的 MCP 往返。
+ * 只读工具的结果以（工具名，参数，仓库 HEAD 提交号）为键缓存在内存中，按最近最少使用淘汰；
+ * 会修改仓库的工具调用后清空该仓库的缓存，writeFile 这类不改变 HEAD 的修改也能及时失效
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class ToolResultCache {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    /**
+     * 工具参数中表示本地路径的字段，按顺序取第一个
+     */
+    private static final List<String> PATH_ARGUMENTS = List.of("localPath", "path");
+
+    private static final String FAIL_PREFIX = "FAIL";
+
+    private static final String NOOP_RESULT = "SUCCESS:NOOP";
+
+    /**
+     * 找不到所在仓库的路径统一归到这里
+     */
+    private static final String NO_REPOSITORY = "";
+
+    private final AiAnalyzeConfig.ToolCache config;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Key, String> entries;
+
+    /**
+     * 每个仓库的失效代数，失效时加一，失效前发出、失效后才返回的结果写不到新的键下
+     */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public ToolResultCache(AiAnalyzeConfig aiAnalyzeConfig, MeterRegistry meterRegistry) {
+        this.config = aiAnalyzeConfig.getMcp().getToolCache();
+        this.meterRegistry = meterRegistry;
+        int maxEntries = config.getMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        Gauge.builder("mcp.tool.cache.size", this, ToolResultCache::size)
+                .description("缓存的工具结果数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 经过缓存调用工具：只读工具命中时直接返回，会修改仓库的工具调用后清空对应仓库的缓存
+     *
+     * @param toolName  工具名，MCP 客户端添加的前缀不参与比较
+     * @param toolInput 工具参数（JSON）
+     * @param call      实际的工具调用
+     */
+    public String call(String toolName, String toolInput, Supplier<String> call) {
+        if (!config.isEnabled()) {
+            return call.get();
+        }
+        String cacheable = match(config.getCacheableTools(), toolName);
+        if (cacheable != null) {
+            return cached(cacheable, toolInput, call);
+        }
+        String invalidating = match(config.getInvalidatingTools(), toolName);
+        if (invalidating == null) {
+            return call.get();
+        }
+        String result = null;
+        try {
+            result = call.get();
+            return result;
+        } finally {
+            // 调用失败也可能已经改了一部分文件，只有明确没有变化（NOOP）时才保留缓存
+            if (!NOOP_RESULT.equals(payload(result))) {
+                invalidateRepository(repositoryOf(arguments(toolInput)));
+                Counter.builder("mcp.tool.cache.invalidations")
+                        .tag("tool", invalidating)
+                        .register(meterRegistry)
+                        .increment();
+            }
+        }
+    }
+
+    /**
+     * 清空指定路径所在仓库的缓存，工作区被重置到其他状态时调用
+     */
+    public void invalidate(String path) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        invalidateRepository(path == null ? NO_REPOSITORY : repository(path));
+    }
+
+    private String cached(String tool, String toolInput, Supplier<String> call) {
+        Map<String, Object> arguments = arguments(toolInput);
+        if (arguments == null) {
+            return call.get();
+        }
+        String repository = repositoryOf(arguments);
+        String head = NO_REPOSITORY.equals(repository) ? null : GitUtils.resolveHead(repository);
+        Key key = new Key(tool, canonical(arguments), repository, head, generation(repository).get());
+        String result;
+        synchronized (entries) {
+            result = entries.get(key);
+        }
+        count(tool, result != null);
+        if (result != null) {
+            return result;
+        }
+        result = call.get();
+        // 只缓存成功的结果，失败可能只是暂时的（锁超时、被中断），无法识别的结果也不缓存
+        String payload = payload(result);
+        if (payload != null && !payload.startsWith(FAIL_PREFIX) && result.length() <= config.getMaxResultChars()) {
+            synchronized (entries) {
+                entries.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    private void invalidateRepository(String repository) {
+        if (NO_REPOSITORY.equals(repository)) {
+            // 不知道改了哪个仓库，全部失效
+            generations.values().forEach(AtomicLong::incrementAndGet);
+            generation(NO_REPOSITORY).incrementAndGet();
+            synchronized (entries) {
+                entries.clear();
+            }
+            return;
+        }
+        generation(repository).incrementAndGet();
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.repository.equals(repository));
+        }
+        log.debug(">>> 工具结果缓存失效: {}", repository);
+    }
+
+    private AtomicLong generation(String repository) {
+        return generations.computeIfAbsent(repository, r -> new AtomicLong());
+    }
+
+    private void count(String tool, boolean hit) {
+        Counter.builder("mcp.tool.cache")
+                .tag("tool", tool)
+                .tag("result", hit ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private double size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 取出工具返回的文本
+     * MCP 工具回调返回的是内容列表的 JSON，例如 [{"type":"text","text":"\"SUCCESS:NOOP\""}]，
+     * 其中的文本又是服务端把返回值序列化后的 JSON 字符串，两层都要解开
+     *
+     * @return 工具返回的文本，不是文本内容或无法解析时返回null
+     */
+    static String payload(String result) {
+        if (result == null) {
+            return null;
+        }
+        try {
+            JsonNode content = OBJECT_MAPPER.readTree(result);
+            if (!content.isArray() || content.isEmpty()) {
+                return null;
+            }
+            StringBuilder text = new StringBuilder();
+            for (JsonNode item : content) {
+                if (!"text".equals(item.path("type").asText()) || !item.path("text").isTextual()) {
+                    return null;
+                }
+                String value = item.path("text").asText();
+                JsonNode inner = readQuietly(value);
+                text.append(inner != null && inner.isTextual() ? inner.asText() : value);
+            }
+            return text.toString();
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static JsonNode readQuietly(String value) {
+        try {
+            return OBJECT_MAPPER.readTree(value);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析工具参数，无法解析时返回null（不缓存）
+     */
+    private static Map<String, Object> arguments(String toolInput) {
+        if (toolInput == null || toolInput.isBlank()) {
+            return Map.of();
+        }
+        try {
+            return OBJECT_MAPPER.readValue(toolInput, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 参数按字段名排序后重新序列化，字段顺序和空白不同的同一次调用得到相同的键
+     */
+    private static String canonical(Map<String, Object> arguments) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(arguments);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String repositoryOf(Map<String, Object> arguments) {
+        if (arguments != null) {
+            for (String name : PATH_ARGUMENTS) {
+                if (arguments.get(name) instanceof String path && !path.isBlank()) {
+                    return repository(path);
+                }
+            }
+        }
+        return NO_REPOSITORY;
+    }
+
+    /**
+     * 从路径向上查找包含 .git 目录的仓库根目录
+     */
+    private static String repository(String path) {
+        File dir = new File(path).getAbsoluteFile().toPath().normalize().toFile();
+        for (; dir != null; dir = dir.getParentFile()) {
+            if (new File(dir, Constants.DOT_GIT).isDirectory()) {
+                return dir.getPath();
+            }
+        }
+        return NO_REPOSITORY;
+    }
+
+    /**
+     * MCP 客户端会给工具名加上客户端和服务端的前缀，按后缀匹配，返回配置中的工具名
+     */
+    private static String match(List<String> tools, String toolName) {
+        for (String tool : tools) {
+            if (toolName.equals(tool) || toolName.endsWith("_" + tool)) {
+                return tool;
+            }
+        }
+        return null;
+    }
+
+    private static final class Key {
+
+        private final String tool;
+
+        private final String arguments;
+
+        private final String repository;
+
+        private final String head;
+
+        private final long generation;
+
+        private Key(String tool, String arguments, String repository, String head, long generation) {
+            this.tool = tool;
+            this.arguments = arguments;
+            this.repository = repository;
+            this.head = head;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return generation == key.generation && tool.equals(key.tool) && arguments.equals(key.arguments)
+                    && repository.equals(key.repository) && Objects.equals(head, key.head);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tool, arguments, repository, head, generation);
+        }
+    }
+}
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * AI分析配置类
  *
@@ -16,7 +19,311 @@ import org.springframework.context.annotation.Configuration;
 @ConfigurationProperties(prefix = "simon.ai")
 public class AiAnalyzeConfig {
 
+    /**
+     * 单仓库部署时使用的本地仓库，配置了 repositories 时忽略
+     */
     private String localRepository;
 
     private String remoteRepository;
+
+    /**
+     * 多仓库部署时的仓库列表，异常按服务名或包前缀路由到对应仓库
+     */
+    private List<Repository> repositories = new ArrayList<>();
+
+    private Stack stack = new Stack();
+
+    private Worktree worktree = new Worktree();
+
+    private ResultCache resultCache = new ResultCache();
+
+    private Job job = new Job();
+
+    private Observation observation = new Observation();
+
+    private Context context = new Context();
+
+    private Pipeline pipeline = new Pipeline();
+
+    private Llm llm = new Llm();
+
+    private Mcp mcp = new Mcp();
+
+    @Data
+    public static class Repository {
+
+        /**
+         * 仓库名称，上报的服务名与之相同时路由到该仓库
+         */
+        private String name;
+
+        /**
+         * 同样路由到该仓库的其他服务名
+         */
+        private List<String> services = new ArrayList<>();
+
+        /**
+         * 业务代码的包前缀，上报未携带服务名时按堆栈业务帧匹配，多个仓库都匹配时取最长前缀
+         */
+        private List<String> packages = new ArrayList<>();
+
+        private String localRepository;
+
+        private String remoteRepository;
+
+        /**
+         * 该仓库同时执行的分析任务数，0 表示与工作区数量相同
+         */
+        private int concurrency = 0;
+    }
+
+    @Data
+    public static class Stack {
+
+        /**
+         * 只保留这些包前缀下的帧，为空时不限制
+         */
+        private List<String> includePackages = new ArrayList<>();
+
+        /**
+         * JDK/框架等需要过滤掉的包前缀
+         */
+        private List<String> excludePackages = new ArrayList<>(List.of(
+                "java.", "javax.", "jdk.", "sun.", "com.sun.", "jakarta.",
+                "org.springframework.", "org.apache.", "io.micrometer.", "reactor.", "kotlin."));
+
+        /**
+         * 参与分析的最大帧数
+         */
+        private int maxFrames = 10;
+    }
+
+    @Data
+    public static class Worktree {
+
+        /**
+         * 工作区数量，即可以并行分析的异常数，0 表示直接使用本地仓库目录（串行）
+         */
+        private int size = 4;
+
+        /**
+         * 工作区所在目录，为空时使用 本地仓库目录 + "-worktrees"；多仓库时在该目录下按仓库名称分子目录
+         */
+        private String directory;
+
+        /**
+         * 等待空闲工作区的最长时间
+         */
+        private long leaseTimeoutSeconds = 300;
+    }
+
+    @Data
+    public static class ResultCache {
+
+        private boolean enabled = true;
+
+        /**
+         * 缓存文件路径
+         */
+        private String file = System.getProperty("user.home") + "/.ai-code-analyze/result-cache.mv.db";
+
+        /**
+         * 缓存有效期
+         */
+        private long ttlHours = 168;
+
+        /**
+         * 最多缓存的结果数，超出后淘汰最早的结果
+         */
+        private int maxEntries = 10_000;
+    }
+
+    @Data
+    public static class Job {
+
+        /**
+         * 所有仓库合计同时执行的分析任务数，超出的任务排队，各仓库之间轮流调度
+         */
+        private int concurrency = 4;
+
+        /**
+         * 排队中的任务上限，超出后拒绝提交
+         */
+        private int queueCapacity = 200;
+
+        /**
+         * 已结束的任务保留多久，过期后无法再查询
+         */
+        private long retentionMinutes = 60;
+
+        /**
+         * SSE 连接的超时时间
+         */
+        private long sseTimeoutMinutes = 30;
+    }
+
+    @Data
+    public static class Observation {
+
+        /**
+         * observation 日志的采样比例，0 表示只记录错误
+         */
+        private double logSampleRate = 0.01;
+    }
+
+    @Data
+    public static class Context {
+
+        /**
+         * 是否把异常所在方法的代码片段内联到分析提示词中
+         */
+        private boolean enabled = true;
+
+        /**
+         * 找不到所在方法时，截取异常行上下各多少行
+         */
+        private int contextLines = 15;
+
+        /**
+         * 方法超过该行数时只截取异常行上下的片段
+         */
+        private int maxMethodLines = 150;
+
+        /**
+         * 内联代码片段的 token 预算（按字符数估算）
+         */
+        private int tokenBudget = 6000;
+    }
+
+    @Data
+    public static class Llm {
+
+        /**
+         * 同时在途的大模型请求上限，自适应调整的并发数不会超过该值
+         */
+        private int maxInFlight = 8;
+
+        /**
+         * 自适应调整的并发数下限
+         */
+        private int minInFlight = 1;
+
+        /**
+         * 启动时的并发数
+         */
+        private int initialInFlight = 4;
+
+        /**
+         * 每分钟请求数配额，0 表示不限制
+         */
+        private long requestsPerMinute = 0;
+
+        /**
+         * 每分钟 token 配额，0 表示不限制
+         */
+        private long tokensPerMinute = 0;
+
+        /**
+         * 预估 token 时为模型输出预留的数量，调用结束后按实际消耗修正
+         */
+        private int expectedCompletionTokens = 1000;
+
+        /**
+         * 单次调用超过该耗时视为服务端拥塞，与 429 一样降低并发数
+         */
+        private long latencyThresholdMillis = 120_000;
+
+        /**
+         * 被限流（429）后的最大重试次数
+         */
+        private int maxRetries = 3;
+
+        /**
+         * 限流重试的初始退避时间，之后每次翻倍
+         */
+        private long retryBackoffMillis = 2_000;
+
+        /**
+         * 排队等待的最长时间，超时后本次调用失败
+         */
+        private long maxQueueWaitSeconds = 600;
+    }
+
+    @Data
+    public static class Mcp {
+
+        /**
+         * 就绪检查要求已连接的 MCP 服务，为空时 MCP 服务不影响就绪状态
+         */
+        private List<String> requiredServers = new ArrayList<>();
+
+        /**
+         * 需要的工具所在的服务仍在启动时，请求最多等待的时间；已确认不可用的服务不等待
+         */
+        private long toolWaitSeconds = 30;
+
+        /**
+         * 连接失败后重试的初始间隔，之后每次翻倍
+         */
+        private long retryIntervalSeconds = 5;
+
+        /**
+         * 重试间隔的上限
+         */
+        private long maxRetryIntervalSeconds = 300;
+
+        /**
+         * 定期 ping 已连接的服务，失败后标记为不可用并重新连接；0 表示不检查
+         */
+        private long pingIntervalSeconds = 30;
+
+        private ToolCache toolCache = new ToolCache();
+    }
+
+    @Data
+    public static class ToolCache {
+
+        private boolean enabled = true;
+
+        /**
+         * 最多缓存的工具结果数，超出后淘汰最久未使用的结果
+         */
+        private int maxEntries = 2000;
+
+        /**
+         * 超过该字符数的结果不缓存
+         */
+        private int maxResultChars = 256 * 1024;
+
+        /**
+         * 没有副作用、结果可以缓存的工具
+         */
+        private List<String> cacheableTools = new ArrayList<>(List.of(
+                "readFile", "listDirectory", "searchFiles", "searchCode"));
+
+        /**
+         * 会修改仓库的工具，调用后清空该仓库的缓存
+         */
+        private List<String> invalidatingTools = new ArrayList<>(List.of(
+                "clone", "commitAll", "createAndPushBranch", "writeFile", "checkoutBranch", "createAndCheckoutBranch"));
+    }
+
+    @Data
+    public static class Pipeline {
+
+        private Mode mode = Mode.STEPWISE;
+    }
+
+    public enum Mode {
+
+        /**
+         * 逐步对话：同步仓库、定位、分析修复、推送分支各自一轮对话，由大模型调用工具完成
+         */
+        STEPWISE,
+
+        /**
+         * 合并模式：一次流式对话返回结构化的分析结果和补丁，同步仓库、应用补丁和推送分支在本地直接完成
+         */
+        CONSOLIDATED
+    }
 }
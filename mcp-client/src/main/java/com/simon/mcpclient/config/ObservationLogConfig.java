@@ -7,24 +7,37 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class ObservationLogConfig {
 
+    /**
+     * 记录采样开始时间的 context key，未被采样的 observation 不会写入
+     */
+    private static final String SAMPLED_START = ObservationLogConfig.class.getName() + ".start";
+
+    /**
+     * 按比例采样记录 observation 的耗时，只输出低基数标签；错误总是记录
+     * 指标由 Micrometer 负责，这里的日志只用于排查问题，不再对每次 observation 都输出完整的标签
+     */
     @Bean
-    public ObservationHandler<Observation.Context> observationLoggingHandler() {
+    public ObservationHandler<Observation.Context> observationLoggingHandler(AiAnalyzeConfig aiAnalyzeConfig) {
+        double sampleRate = aiAnalyzeConfig.getObservation().getLogSampleRate();
         return new ObservationHandler<>() {
             private final Logger logger = LoggerFactory.getLogger("ObservationLogger");
 
             @Override
             public boolean supportsContext(Observation.Context context) {
-                return true;
+                return logger.isInfoEnabled();
             }
 
             @Override
             public void onStart(Observation.Context context) {
-                logger.info("[obs:start] name={} contextualName={} lowCardinalityTags={} highCardinalityTags={}",
-                        context.getName(), context.getContextualName(),
-                        context.getLowCardinalityKeyValues(), context.getHighCardinalityKeyValues());
+                if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                    context.put(SAMPLED_START, System.nanoTime());
+                }
             }
 
             @Override
@@ -37,10 +50,13 @@ public class ObservationLogConfig {
 
             @Override
             public void onStop(Observation.Context context) {
-                logger.info("[obs:stop] name={} contextualName={}", context.getName(), context.getContextualName());
+                Long start = context.get(SAMPLED_START);
+                if (start != null) {
+                    logger.info("[obs:sample] name={} contextualName={} durationMs={} lowCardinalityTags={}",
+                            context.getName(), context.getContextualName(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), context.getLowCardinalityKeyValues());
+                }
             }
         };
     }
 }
-
-
@@ -0,0 +1,329 @@
+package com.simon.mcpclient.context;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import com.simon.mcpclient.repository.AnalyzeRepository;
+import com.simon.mcpclient.stack.StackFrame;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 代码上下文切片
+ * 直接从本地仓库的对象库读取分析提交上的源文件，按堆栈帧截取所在方法（找不到或方法过长时截取上下若干行），
+ * 同一文件的片段去重合并后，在 token 预算内内联到分析提示词中，大模型不必再通过文件系统工具读取整个文件
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class CodeContextSlicer {
+
+    /**
+     * 粗略估算 token 数时每个 token 对应的字符数，代码中符号较多，取偏小的值
+     */
+    private static final int CHARS_PER_TOKEN = 3;
+
+    /**
+     * 方法声明：标识符后紧跟参数列表，并且不是控制语句
+     */
+    private static final Pattern METHOD_SIGNATURE = Pattern.compile("[\\w>\\]]\\s+\\w+\\s*\\([^;]*$");
+
+    private static final Pattern CONTROL_STATEMENT = Pattern.compile("^\\s*(}\\s*)?(if|else|for|while|switch|catch|try|do|synchronized|return|new|throw)\\b");
+
+    private final AiAnalyzeConfig aiAnalyzeConfig;
+
+    public CodeContextSlicer(AiAnalyzeConfig aiAnalyzeConfig) {
+        this.aiAnalyzeConfig = aiAnalyzeConfig;
+    }
+
+    /**
+     * 截取堆栈帧对应的代码片段
+     *
+     * @param analyzeRepository 异常所属的仓库
+     * @param frames 按重要程度排序的业务帧
+     * @param commit 分析所基于的提交
+     * @return 渲染好的代码片段，没有可用片段时返回空字符串
+     */
+    public String slice(AnalyzeRepository analyzeRepository, List<StackFrame> frames, String commit) {
+        AiAnalyzeConfig.Context config = aiAnalyzeConfig.getContext();
+        if (!config.isEnabled() || commit == null || frames.isEmpty()) {
+            return "";
+        }
+
+        try (Git git = Git.open(new File(analyzeRepository.getLocalRepository()));
+             ObjectReader reader = git.getRepository().newObjectReader();
+             RevWalk revWalk = new RevWalk(reader)) {
+            Repository repository = git.getRepository();
+            RevCommit revCommit = revWalk.parseCommit(ObjectId.fromString(commit));
+
+            Map<String, List<String>> sources = new HashMap<>();
+            Map<String, List<Range>> ranges = new LinkedHashMap<>();
+            for (StackFrame frame : frames) {
+                List<String> paths = analyzeRepository.getSourceFileIndex().resolve(frame);
+                if (paths.isEmpty()) {
+                    continue;
+                }
+                String path = paths.get(0);
+                List<String> lines = sources.get(path);
+                if (lines == null) {
+                    lines = read(repository, reader, revCommit, path);
+                    sources.put(path, lines);
+                }
+                int line = frame.getLineNumber();
+                if (lines.isEmpty() || line < 1 || line > lines.size()) {
+                    continue;
+                }
+
+                // 优先截取整个方法，超出预算时退回到上下若干行，仍然放不下就跳过这一帧
+                Range window = new Range(Math.max(1, line - config.getContextLines()),
+                        Math.min(lines.size(), line + config.getContextLines()));
+                Range method = enclosingMethod(lines, line, config.getMaxMethodLines());
+                for (Range candidate : method == null ? List.of(window) : List.of(method, window)) {
+                    List<Range> fileRanges = new ArrayList<>(ranges.getOrDefault(path, List.of()));
+                    fileRanges.add(candidate.mark(line));
+                    Map<String, List<Range>> attempt = new LinkedHashMap<>(ranges);
+                    attempt.put(path, merge(fileRanges));
+                    if (estimateTokens(render(attempt, sources)) <= config.getTokenBudget()) {
+                        ranges = attempt;
+                        break;
+                    }
+                }
+            }
+            return render(ranges, sources);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("代码片段截取失败，提交：{}", commit, e);
+            return "";
+        }
+    }
+
+    private static List<String> read(Repository repository, ObjectReader reader, RevCommit commit, String path) throws IOException {
+        try (TreeWalk walk = TreeWalk.forPath(repository, reader, path, commit.getTree())) {
+            if (walk == null) {
+                return List.of();
+            }
+            byte[] bytes = reader.open(walk.getObjectId(0), Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE);
+            return List.of(new String(bytes, StandardCharsets.UTF_8).split("\\r?\\n", -1));
+        }
+    }
+
+    /**
+     * 按花括号深度查找包含指定行的方法
+     * 从异常行向上找第一个包含该行的代码块，且代码块起始行是方法声明；
+     * 方法声明跨多行时向上合并参数列表，声明上方紧邻的注解一并保留
+     *
+     * @return 找不到或方法超过 maxLines 行时返回null
+     */
+    private static Range enclosingMethod(List<String> lines, int line, int maxLines) {
+        int[] depthBefore = new int[lines.size() + 2];
+        int[] depthAfter = new int[lines.size() + 2];
+        BraceScanner scanner = new BraceScanner();
+        for (int i = 1; i <= lines.size(); i++) {
+            depthBefore[i] = scanner.depth;
+            scanner.scan(lines.get(i - 1));
+            depthAfter[i] = scanner.depth;
+        }
+
+        int minDepth = Integer.MAX_VALUE;
+        for (int i = line; i >= 1 && line - i <= maxLines; i--) {
+            int depth = depthBefore[i];
+            if (i < line) {
+                minDepth = Math.min(minDepth, depthBefore[i + 1]);
+            }
+            boolean opensEnclosingBlock = depthAfter[i] > depth && (i == line || minDepth > depth);
+            if (!opensEnclosingBlock || !isMethodDeclaration(lines, i)) {
+                continue;
+            }
+
+            int start = i;
+            while (start > 1 && start > i - 5 && lines.get(start - 1).indexOf('(') < 0) {
+                start--;
+            }
+            while (start > 1 && lines.get(start - 2).trim().startsWith("@")) {
+                start--;
+            }
+            int end = line;
+            while (end < lines.size() && depthAfter[end] > depth) {
+                end++;
+            }
+            return end - start + 1 > maxLines ? null : new Range(start, end);
+        }
+        return null;
+    }
+
+    private static boolean isMethodDeclaration(List<String> lines, int i) {
+        String text = lines.get(i - 1);
+        if (CONTROL_STATEMENT.matcher(text).find()) {
+            return false;
+        }
+        // 参数列表换行或花括号单独成行时，向上拼接到声明起始行，遇到完整的语句或代码块说明不是声明的一部分
+        StringBuilder declaration = new StringBuilder(text);
+        for (int j = i - 1; j >= 1 && j > i - 5 && declaration.indexOf("(") < 0; j--) {
+            String previous = lines.get(j - 1).trim();
+            if (previous.isEmpty() || previous.endsWith("{") || previous.endsWith("}") || previous.endsWith(";")) {
+                return false;
+            }
+            declaration.insert(0, previous + " ");
+        }
+        String joined = declaration.toString();
+        int brace = joined.indexOf('{');
+        String head = brace >= 0 ? joined.substring(0, brace) : joined;
+        return !CONTROL_STATEMENT.matcher(head).find()
+                && !head.contains("->")
+                && !head.contains("=")
+                && METHOD_SIGNATURE.matcher(head.replaceAll("\\)\\s*(throws\\s+[\\w.,\\s]+)?\\s*$", "")).find();
+    }
+
+    private static List<Range> merge(List<Range> ranges) {
+        List<Range> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingInt(range -> range.start));
+        List<Range> merged = new ArrayList<>();
+        for (Range range : sorted) {
+            Range last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range.start <= last.end + 1) {
+                merged.set(merged.size() - 1, last.union(range));
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    private static String render(Map<String, List<Range>> ranges, Map<String, List<String>> sources) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, List<Range>> entry : ranges.entrySet()) {
+            List<String> lines = sources.get(entry.getKey());
+            for (Range range : entry.getValue()) {
+                builder.append("// ").append(entry.getKey())
+                        .append(" 第").append(range.start).append("-").append(range.end).append("行\n");
+                for (int i = range.start; i <= range.end; i++) {
+                    // 异常行前加 > 标记
+                    builder.append(range.marked.contains(i) ? ">" : " ")
+                            .append(i).append(": ").append(lines.get(i - 1)).append('\n');
+                }
+                builder.append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int estimateTokens(String text) {
+        return text.length() / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * 闭区间行号范围，marked 为落在范围内的异常行
+     */
+    private static class Range {
+
+        private final int start;
+
+        private final int end;
+
+        private final List<Integer> marked = new ArrayList<>();
+
+        private Range(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private Range mark(int line) {
+            Range copy = new Range(start, end);
+            copy.marked.addAll(marked);
+            copy.marked.add(line);
+            return copy;
+        }
+
+        private Range union(Range other) {
+            Range union = new Range(Math.min(start, other.start), Math.max(end, other.end));
+            union.marked.addAll(marked);
+            union.marked.addAll(other.marked);
+            return union;
+        }
+    }
+
+    /**
+     * 统计花括号深度，跳过字符串、字符字面量和注释
+     */
+    private static class BraceScanner {
+
+        private int depth;
+
+        private boolean inBlockComment;
+
+        private boolean inTextBlock;
+
+        private void scan(String line) {
+            int i = 0;
+            while (i < line.length()) {
+                char c = line.charAt(i);
+                if (inBlockComment) {
+                    if (line.startsWith("*/", i)) {
+                        inBlockComment = false;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                } else if (inTextBlock) {
+                    if (line.startsWith("\"\"\"", i)) {
+                        inTextBlock = false;
+                        i += 3;
+                    } else {
+                        i++;
+                    }
+                } else if (line.startsWith("//", i)) {
+                    return;
+                } else if (line.startsWith("/*", i)) {
+                    inBlockComment = true;
+                    i += 2;
+                } else if (line.startsWith("\"\"\"", i)) {
+                    inTextBlock = true;
+                    i += 3;
+                } else if (c == '"' || c == '\'') {
+                    i = skipLiteral(line, i, c);
+                } else {
+                    if (c == '{') {
+                        depth++;
+                    } else if (c == '}') {
+                        depth = Math.max(0, depth - 1);
+                    }
+                    i++;
+                }
+            }
+        }
+
+        private static int skipLiteral(String line, int start, char quote) {
+            int i = start + 1;
+            while (i < line.length()) {
+                char c = line.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == quote) {
+                    return i + 1;
+                } else {
+                    i++;
+                }
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.simon.mcpclient.index;
+
+import com.simon.mcpclient.stack.StackFrame;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地仓库源码文件索引
+ * 首次基于 HEAD 的文件树全量构建，之后每次拉取代码后只按新旧提交之间的差异增量更新，
+ * 定位堆栈帧对应的源文件只需要一次内存查询，不再让大模型通过文件系统工具逐级遍历目录。
+ * 每个仓库各有一份索引，由 {@link com.simon.mcpclient.repository.RepositoryRegistry} 创建
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class SourceFileIndex {
+
+    private static final String JAVA_SUFFIX = ".java";
+
+    /**
+     * 读取 package 声明时最多扫描的字节数，足够跳过常见的 license 头
+     */
+    private static final int PACKAGE_SCAN_LIMIT = 16 * 1024;
+
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    private final String localRepository;
+
+    /**
+     * 文件名 -> 仓库内相对路径
+     */
+    private final Map<String, Set<String>> pathsByFileName = new ConcurrentHashMap<>();
+
+    /**
+     * 包名.文件名（不含后缀） -> 仓库内相对路径
+     */
+    private final Map<String, String> pathByClassName = new ConcurrentHashMap<>();
+
+    private final Map<String, String> classNameByPath = new ConcurrentHashMap<>();
+
+    private volatile ObjectId indexedCommit;
+
+    public SourceFileIndex(String localRepository) {
+        this.localRepository = localRepository;
+    }
+
+    /**
+     * 同步索引到本地仓库当前的 HEAD，HEAD 未变化时直接返回
+     */
+    public synchronized void refresh() {
+        File repoDir = new File(localRepository);
+        if (!new File(repoDir, ".git").isDirectory()) {
+            log.warn("本地仓库不存在，跳过源码索引：{}", repoDir);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try (Git git = Git.open(repoDir);
+             RevWalk revWalk = new RevWalk(git.getRepository());
+             ObjectReader reader = git.getRepository().newObjectReader()) {
+            Repository repository = git.getRepository();
+            ObjectId head = repository.resolve("HEAD");
+            if (head == null || head.equals(indexedCommit)) {
+                return;
+            }
+
+            RevCommit headCommit = revWalk.parseCommit(head);
+            if (indexedCommit == null) {
+                rebuild(repository, reader, headCommit);
+            } else {
+                try {
+                    update(repository, reader, revWalk.parseCommit(indexedCommit), headCommit);
+                } catch (MissingObjectException e) {
+                    // 历史被改写或浅克隆丢失了旧提交，只能全量重建
+                    rebuild(repository, reader, headCommit);
+                }
+            }
+            indexedCommit = headCommit.copy();
+            log.info("源码索引已更新到 {}，Java文件数 {}，耗时 {}ms", head.name(), classNameByPath.size(), System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.error("源码索引更新失败", e);
+        }
+    }
+
+    /**
+     * 查找堆栈帧对应的源文件
+     * 优先按 package 声明 + 文件名精确匹配，其次按文件名匹配并优先选择目录与包名一致的文件
+     *
+     * @return 匹配到的仓库内相对路径，未命中时为空列表
+     */
+    public List<String> resolve(StackFrame frame) {
+        List<String> result = new ArrayList<>();
+        String fileName = frame.getFileName();
+        if (fileName == null) {
+            return result;
+        }
+
+        String packageName = frame.getPackageName();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String path = pathByClassName.get(packageName.isEmpty() ? baseName : packageName + "." + baseName);
+        if (path != null) {
+            result.add(path);
+            return result;
+        }
+
+        Set<String> candidates = pathsByFileName.getOrDefault(fileName, Set.of());
+        String packageDir = packageName.replace('.', '/') + "/" + fileName;
+        for (String candidate : candidates) {
+            if (candidate.endsWith("/" + packageDir) || candidate.equals(packageDir)) {
+                result.add(candidate);
+            }
+        }
+        if (result.isEmpty()) {
+            candidates.stream().sorted().forEach(result::add);
+        }
+        return result;
+    }
+
+    public ObjectId getIndexedCommit() {
+        return indexedCommit;
+    }
+
+    private void rebuild(Repository repository, ObjectReader reader, RevCommit commit) throws IOException {
+        pathsByFileName.clear();
+        pathByClassName.clear();
+        classNameByPath.clear();
+        try (TreeWalk walk = new TreeWalk(repository, reader)) {
+            walk.addTree(commit.getTree());
+            walk.setRecursive(true);
+            while (walk.next()) {
+                add(reader, walk.getPathString(), walk.getObjectId(0));
+            }
+        }
+    }
+
+    private void update(Repository repository, ObjectReader reader, RevCommit oldCommit, RevCommit newCommit) throws IOException {
+        try (TreeWalk walk = new TreeWalk(repository, reader)) {
+            walk.addTree(oldCommit.getTree());
+            walk.addTree(newCommit.getTree());
+            walk.setRecursive(true);
+            walk.setFilter(TreeFilter.ANY_DIFF);
+            for (DiffEntry entry : DiffEntry.scan(walk)) {
+                switch (entry.getChangeType()) {
+                    case ADD:
+                    case COPY:
+                        add(reader, entry.getNewPath(), entry.getNewId().toObjectId());
+                        break;
+                    case DELETE:
+                        remove(entry.getOldPath());
+                        break;
+                    case MODIFY:
+                    case RENAME:
+                    default:
+                        remove(entry.getOldPath());
+                        add(reader, entry.getNewPath(), entry.getNewId().toObjectId());
+                        break;
+                }
+            }
+        }
+    }
+
+    private void add(ObjectReader reader, String path, ObjectId blobId) throws IOException {
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        pathsByFileName.computeIfAbsent(fileName, k -> ConcurrentHashMap.newKeySet()).add(path);
+        if (!fileName.endsWith(JAVA_SUFFIX)) {
+            return;
+        }
+        String baseName = fileName.substring(0, fileName.length() - JAVA_SUFFIX.length());
+        String packageName = readPackage(reader, blobId);
+        String className = packageName.isEmpty() ? baseName : packageName + "." + baseName;
+        pathByClassName.put(className, path);
+        classNameByPath.put(path, className);
+    }
+
+    private void remove(String path) {
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        pathsByFileName.computeIfPresent(fileName, (k, paths) -> {
+            paths.remove(path);
+            return paths.isEmpty() ? null : paths;
+        });
+        String className = classNameByPath.remove(path);
+        if (className != null) {
+            pathByClassName.remove(className, path);
+        }
+    }
+
+    private static String readPackage(ObjectReader reader, ObjectId blobId) throws IOException {
+        try (InputStream in = reader.open(blobId, Constants.OBJ_BLOB).openStream()) {
+            String head = new String(in.readNBytes(PACKAGE_SCAN_LIMIT), StandardCharsets.UTF_8);
+            Matcher matcher = PACKAGE.matcher(head);
+            return matcher.find() ? matcher.group(1) : "";
+        } catch (IncorrectObjectTypeException e) {
+            // 子模块等非普通文件
+            return "";
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.simon.mcpclient.job;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 异常分析任务
+ * 记录任务状态和各阶段的进度事件，并把新事件推送给订阅的 SSE 连接
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Getter
+public class AnalyzeJob {
+
+    private static final String PARTIAL = "PARTIAL";
+
+    private final String id;
+
+    private final long createdAt = System.currentTimeMillis();
+
+    private volatile AnalyzeJobStatus status = AnalyzeJobStatus.PENDING;
+
+    /**
+     * 当前所处的阶段
+     */
+    private volatile String stage;
+
+    /**
+     * 分析结果，成功时为 SUCCESS:分支名
+     */
+    private volatile String result;
+
+    private volatile long startedAt;
+
+    private volatile long finishedAt;
+
+    private final List<AnalyzeJobEvent> events = new ArrayList<>();
+
+    /**
+     * 订阅者，由 this 保护；推送在锁外进行，慢的 SSE 连接不会阻塞分析线程以外的查询和订阅
+     */
+    @JsonIgnore
+    private final List<Subscriber> subscribers = new ArrayList<>();
+
+    public AnalyzeJob(String id) {
+        this.id = id;
+    }
+
+    public synchronized List<AnalyzeJobEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    synchronized void start() {
+        if (status == AnalyzeJobStatus.PENDING) {
+            status = AnalyzeJobStatus.RUNNING;
+            startedAt = System.currentTimeMillis();
+        }
+    }
+
+    void progress(String stage, String detail) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            this.stage = stage;
+            events.add(new AnalyzeJobEvent(stage, detail, System.currentTimeMillis()));
+            targets = new ArrayList<>(subscribers);
+        }
+        deliver(targets);
+    }
+
+    /**
+     * 推送大模型流式输出的片段，片段只转发给当前的订阅者，不计入事件列表
+     */
+    void partial(String chunk) {
+        AnalyzeJobEvent event = new AnalyzeJobEvent(PARTIAL, chunk, System.currentTimeMillis());
+        List<Subscriber> failed = new ArrayList<>();
+        for (Subscriber subscriber : snapshot()) {
+            if (!subscriber.send(event)) {
+                failed.add(subscriber);
+            }
+        }
+        remove(failed);
+    }
+
+    /**
+     * 结束任务，只有第一次调用生效
+     *
+     * @return 是否由本次调用结束了任务
+     */
+    boolean finish(AnalyzeJobStatus finalStatus, String result) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            if (status.isFinished()) {
+                return false;
+            }
+            this.status = finalStatus;
+            this.result = result;
+            this.finishedAt = System.currentTimeMillis();
+            events.add(new AnalyzeJobEvent(finalStatus.name(), result, finishedAt));
+            targets = new ArrayList<>(subscribers);
+            subscribers.clear();
+        }
+        for (Subscriber subscriber : targets) {
+            if (subscriber.flush()) {
+                subscriber.emitter.complete();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 订阅进度，先补发已有的事件，任务已结束时直接关闭连接
+     */
+    void subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        boolean finished;
+        synchronized (this) {
+            finished = status.isFinished();
+            if (!finished) {
+                subscribers.add(subscriber);
+            }
+        }
+        if (!subscriber.flush()) {
+            remove(List.of(subscriber));
+            return;
+        }
+        if (finished) {
+            emitter.complete();
+            return;
+        }
+        emitter.onCompletion(() -> remove(List.of(subscriber)));
+        emitter.onTimeout(() -> remove(List.of(subscriber)));
+    }
+
+    private synchronized List<Subscriber> snapshot() {
+        return new ArrayList<>(subscribers);
+    }
+
+    private void deliver(List<Subscriber> targets) {
+        List<Subscriber> failed = new ArrayList<>();
+        for (Subscriber subscriber : targets) {
+            if (!subscriber.flush()) {
+                failed.add(subscriber);
+            }
+        }
+        remove(failed);
+    }
+
+    private void remove(List<Subscriber> failed) {
+        if (failed.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            subscribers.removeAll(failed);
+        }
+    }
+
+    private static boolean send(SseEmitter emitter, AnalyzeJobEvent event) {
+        try {
+            emitter.send(SseEmitter.event().name(event.getStage()).data(event));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            log.debug("SSE推送失败：{}", e.toString());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    /**
+     * 一个 SSE 连接，记录已推送到事件列表的哪个位置
+     * 推送持有订阅者自己的锁，同一连接上的事件按列表顺序发出，不同连接之间互不等待
+     */
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private int next;
+
+        private boolean broken;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * 补发事件列表中还没推送给该连接的事件
+         *
+         * @return 连接是否仍然可用
+         */
+        private synchronized boolean flush() {
+            while (!broken) {
+                List<AnalyzeJobEvent> pending;
+                synchronized (AnalyzeJob.this) {
+                    if (next >= events.size()) {
+                        return true;
+                    }
+                    pending = new ArrayList<>(events.subList(next, events.size()));
+                }
+                for (AnalyzeJobEvent event : pending) {
+                    if (!send(event)) {
+                        return false;
+                    }
+                    next++;
+                }
+            }
+            return false;
+        }
+
+        private synchronized boolean send(AnalyzeJobEvent event) {
+            if (broken) {
+                return false;
+            }
+            if (!AnalyzeJob.send(emitter, event)) {
+                broken = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
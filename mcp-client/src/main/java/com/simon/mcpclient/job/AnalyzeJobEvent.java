@@ -0,0 +1,27 @@
+package com.simon.mcpclient.job;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 异常分析任务的进度事件
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+@AllArgsConstructor
+public class AnalyzeJobEvent implements Serializable {
+
+    /**
+     * 阶段名称，任务结束时为最终状态
+     */
+    private String stage;
+
+    private String detail;
+
+    private long timestamp;
+}
@@ -0,0 +1,280 @@
+package com.simon.mcpclient.job;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import com.simon.mcpclient.repository.AnalyzeRepository;
+import com.simon.mcpclient.repository.RepositoryRegistry;
+import com.simon.mcpclient.req.ChatReq;
+import com.simon.mcpclient.service.AnalyzeProgress;
+import com.simon.mcpclient.service.ErrorAnalyzeService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异常分析任务管理
+ * 提交后立即返回任务id，分析流程在独立线程中执行（JDK 21 及以上使用虚拟线程），请求线程不再被长达数分钟的大模型对话和 git 操作占用。
+ * 任务按所属仓库分别排队，每个仓库有自己的并发上限，空出的执行名额在有排队任务的仓库之间轮流分配，
+ * 某个服务短时间内大量报错也只会占满自己的名额，不会饿死其他服务的分析任务
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Service
+public class AnalyzeJobService {
+
+    private final ErrorAnalyzeService errorAnalyzeService;
+
+    private final RepositoryRegistry repositoryRegistry;
+
+    private final AiAnalyzeConfig.Job config;
+
+    private final SimpleAsyncTaskExecutor executor;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Map<String, AnalyzeJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 仓库名称 -> 该仓库的排队任务，以下调度状态都由 this 保护
+     */
+    private final Map<String, RepositoryQueue> queues = new HashMap<>();
+
+    private final List<RepositoryQueue> rotation = new ArrayList<>();
+
+    /**
+     * 下一轮调度从哪个仓库开始
+     */
+    private int cursor;
+
+    private int running;
+
+    public AnalyzeJobService(ErrorAnalyzeService errorAnalyzeService, RepositoryRegistry repositoryRegistry,
+                             AiAnalyzeConfig aiAnalyzeConfig, MeterRegistry meterRegistry) {
+        this.errorAnalyzeService = errorAnalyzeService;
+        this.repositoryRegistry = repositoryRegistry;
+        this.config = aiAnalyzeConfig.getJob();
+        this.executor = new SimpleAsyncTaskExecutor("analyze-job-");
+        // 虚拟线程需要 JDK 21，低版本运行时退回普通线程
+        this.executor.setVirtualThreads(Runtime.version().feature() >= 21);
+        for (AnalyzeRepository repository : repositoryRegistry.all()) {
+            RepositoryQueue queue = new RepositoryQueue(repository);
+            queues.put(repository.getName(), queue);
+            rotation.add(queue);
+            Gauge.builder("analyze.job.queued", this, service -> service.queuedCount(queue))
+                    .tag("repository", repository.getName())
+                    .description("排队中的分析任务数")
+                    .register(meterRegistry);
+            Gauge.builder("analyze.job.running", this, service -> service.runningCount(queue))
+                    .tag("repository", repository.getName())
+                    .description("执行中的分析任务数")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 提交分析任务
+     *
+     * @throws RejectedExecutionException 排队任务已满
+     */
+    public AnalyzeJob submit(ChatReq req) {
+        if (pending.incrementAndGet() > config.getQueueCapacity()) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("排队中的分析任务已满：" + config.getQueueCapacity());
+        }
+        AnalyzeJob job = new AnalyzeJob(UUID.randomUUID().toString().replace("-", ""));
+        jobs.put(job.getId(), job);
+
+        AnalyzeRepository repository = repositoryRegistry.route(req);
+        if (repository == null) {
+            pending.decrementAndGet();
+            job.finish(AnalyzeJobStatus.FAILED, "routeFail");
+            return job;
+        }
+        synchronized (this) {
+            queues.get(repository.getName()).tasks.add(new Task(job, req));
+            dispatch();
+        }
+        log.info(">>> 提交异常分析任务: {}，仓库: {}", job.getId(), repository.getName());
+        return job;
+    }
+
+    public AnalyzeJob get(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 订阅任务进度
+     *
+     * @return 任务不存在时返回null
+     */
+    public SseEmitter subscribe(String jobId) {
+        AnalyzeJob job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(config.getSseTimeoutMinutes()));
+        job.subscribe(emitter);
+        return emitter;
+    }
+
+    /**
+     * 取消任务
+     * 排队中的任务立即取消；执行中的任务在进入下一个阶段时中止，已经发出的大模型请求和 git 操作不会被打断，
+     * 避免工作区停留在一半的状态；
+     * 提交推送前会再检查一次，取消后才返回的结果不写入结果缓存
+     *
+     * @return 任务不存在时返回null
+     */
+    public AnalyzeJob cancel(String jobId) {
+        AnalyzeJob job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        if (job.finish(AnalyzeJobStatus.CANCELLED, null)) {
+            log.info(">>> 取消异常分析任务: {}", jobId);
+        }
+        return job;
+    }
+
+    /**
+     * 清理过期的已结束任务
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictFinished() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(config.getRetentionMinutes());
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getFinishedAt() < expireBefore);
+    }
+
+    /**
+     * 在总并发和各仓库并发上限内启动排队任务，从上次调度的下一个仓库开始轮流取任务
+     */
+    private synchronized void dispatch() {
+        while (running < Math.max(1, config.getConcurrency())) {
+            Task task = null;
+            RepositoryQueue queue = null;
+            for (int i = 0; i < rotation.size() && task == null; i++) {
+                queue = rotation.get((cursor + i) % rotation.size());
+                if (queue.running < queue.repository.getConcurrency()) {
+                    task = queue.poll();
+                }
+                if (task != null) {
+                    cursor = (cursor + i + 1) % rotation.size();
+                }
+            }
+            if (task == null) {
+                return;
+            }
+            running++;
+            queue.running++;
+            Task next = task;
+            RepositoryQueue owner = queue;
+            executor.execute(() -> run(next, owner));
+        }
+    }
+
+    private void run(Task task, RepositoryQueue queue) {
+        AnalyzeJob job = task.job;
+        try {
+            job.start();
+            String result = errorAnalyzeService.analyze(task.req, queue.repository, new AnalyzeProgress() {
+                @Override
+                public void stage(String stage, String detail) {
+                    if (isCancelled()) {
+                        throw new CancellationException("任务已取消：" + job.getId());
+                    }
+                    job.progress(stage, detail);
+                }
+
+                @Override
+                public void partial(String chunk) {
+                    job.partial(chunk);
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return job.getStatus() == AnalyzeJobStatus.CANCELLED;
+                }
+            });
+            boolean success = result != null && result.startsWith("SUCCESS:");
+            job.finish(success ? AnalyzeJobStatus.SUCCEEDED : AnalyzeJobStatus.FAILED, result);
+            log.info(">>> 异常分析任务结束: {}，结果: {}", job.getId(), result);
+        } catch (CancellationException e) {
+            log.info(">>> 异常分析任务已中止: {}", job.getId());
+        } catch (Exception e) {
+            log.error(">>> 异常分析任务失败: {}", job.getId(), e);
+            job.finish(AnalyzeJobStatus.FAILED, e.toString());
+        } finally {
+            synchronized (this) {
+                running--;
+                queue.running--;
+                dispatch();
+            }
+        }
+    }
+
+    private synchronized int queuedCount(RepositoryQueue queue) {
+        return queue.tasks.size();
+    }
+
+    private synchronized int runningCount(RepositoryQueue queue) {
+        return queue.running;
+    }
+
+    private static class Task {
+
+        private final AnalyzeJob job;
+
+        private final ChatReq req;
+
+        private Task(AnalyzeJob job, ChatReq req) {
+            this.job = job;
+            this.req = req;
+        }
+    }
+
+    private class RepositoryQueue {
+
+        private final AnalyzeRepository repository;
+
+        private final Queue<Task> tasks = new ArrayDeque<>();
+
+        private int running;
+
+        private RepositoryQueue(AnalyzeRepository repository) {
+            this.repository = repository;
+        }
+
+        /**
+         * 取出下一个待执行的任务，排队期间已取消的任务直接丢弃
+         */
+        private Task poll() {
+            Task task;
+            while ((task = tasks.poll()) != null) {
+                pending.decrementAndGet();
+                if (!task.job.getStatus().isFinished()) {
+                    return task;
+                }
+            }
+            return null;
+        }
+    }
+}
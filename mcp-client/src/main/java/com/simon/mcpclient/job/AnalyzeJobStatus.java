@@ -0,0 +1,28 @@
+package com.simon.mcpclient.job;
+
+/**
+ * 异常分析任务状态
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public enum AnalyzeJobStatus {
+
+    /**
+     * 排队中
+     */
+    PENDING,
+
+    RUNNING,
+
+    SUCCEEDED,
+
+    FAILED,
+
+    CANCELLED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+}
@@ -0,0 +1,339 @@
+package com.simon.mcpclient.llm;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 大模型调用调度器
+ * 所有大模型请求都经过这里排队：同时在途的请求数、每分钟请求数和每分钟 token 数都有上限，
+ * 新出现的异常排在重复异常之前。在途上限按 AIMD 自适应调整：调用顺利时缓慢加一，
+ * 遇到 429 或耗时过长时减半；被限流的请求退避后重新排队，而不是立即重试放大压力
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class LlmScheduler {
+
+    /**
+     * 粗略估算 token 数时每个 token 对应的字符数
+     */
+    private static final int CHARS_PER_TOKEN = 3;
+
+    /**
+     * 两次降低并发数之间的最短间隔，同一波限流只降一次
+     */
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * 最多记住多少个异常指纹用于区分新旧异常
+     */
+    private static final int MAX_FINGERPRINTS = 10_000;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Spring AI 把 4xx 响应转换成 NonTransientAiException，消息格式为 "状态码 - 响应体"
+     */
+    private static final String TOO_MANY_REQUESTS_PREFIX = TOO_MANY_REQUESTS + " - ";
+
+    private static final ThreadLocal<Priority> CURRENT_PRIORITY = new ThreadLocal<>();
+
+    private final AiAnalyzeConfig.Llm config;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+
+    private final TokenBucket requestBucket;
+
+    private final TokenBucket tokenBucket;
+
+    private final Map<String, Boolean> seenFingerprints = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_FINGERPRINTS;
+                }
+            });
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter throttledCounter;
+
+    /**
+     * 当前的在途上限，加性增加时按 1/limit 累加，取整后生效
+     */
+    private double limit;
+
+    private int inFlight;
+
+    private long sequence;
+
+    private long lastDecrease;
+
+    public LlmScheduler(AiAnalyzeConfig aiAnalyzeConfig, MeterRegistry meterRegistry) {
+        this.config = aiAnalyzeConfig.getLlm();
+        this.limit = clamp(config.getInitialInFlight());
+        this.requestBucket = new TokenBucket(config.getRequestsPerMinute());
+        this.tokenBucket = new TokenBucket(config.getTokensPerMinute());
+        this.meterRegistry = meterRegistry;
+        this.throttledCounter = Counter.builder("llm.throttled").description("被限流或响应过慢的调用次数").register(meterRegistry);
+        Gauge.builder("llm.concurrency.limit", this, scheduler -> scheduler.snapshot(() -> Math.floor(scheduler.limit)))
+                .description("自适应的在途请求上限")
+                .register(meterRegistry);
+        Gauge.builder("llm.inflight", this, scheduler -> scheduler.snapshot(() -> (double) scheduler.inFlight))
+                .register(meterRegistry);
+        Gauge.builder("llm.queue.size", this, scheduler -> scheduler.snapshot(() -> (double) scheduler.queue.size()))
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按异常指纹确定当前线程后续大模型调用的优先级：第一次出现的异常优先，重复出现的排在后面
+     */
+    public void prioritize(String fingerprint) {
+        boolean seen = fingerprint != null && seenFingerprints.put(fingerprint, Boolean.TRUE) != null;
+        CURRENT_PRIORITY.set(seen ? Priority.REPEAT : Priority.NEW);
+    }
+
+    public void clearPriority() {
+        CURRENT_PRIORITY.remove();
+    }
+
+    /**
+     * 在调度下执行一次同步的大模型调用
+     *
+     * @param prompt 提示词，用于预估 token 消耗
+     * @param call   实际的调用
+     */
+    public ChatResponse call(String prompt, Supplier<ChatResponse> call) {
+        return execute(prompt, call, LlmScheduler::totalTokens);
+    }
+
+    /**
+     * 在调度下执行一次大模型调用，被限流时退避后重新排队
+     *
+     * @param usage 从结果中取出实际消耗的 token 数，无法取得时返回 0
+     */
+    public <T> T execute(String prompt, Supplier<T> call, ToLongFunction<T> usage) {
+        return execute(prompt, call, usage, () -> true);
+    }
+
+    /**
+     * 在调度下执行一次大模型调用
+     *
+     * @param retryable 被限流后是否还能重试，例如流式调用已经向调用方输出了内容时不能再重试
+     */
+    public <T> T execute(String prompt, Supplier<T> call, ToLongFunction<T> usage, BooleanSupplier retryable) {
+        Priority priority = CURRENT_PRIORITY.get() == null ? Priority.NEW : CURRENT_PRIORITY.get();
+        long estimated = (prompt == null ? 0 : prompt.length() / CHARS_PER_TOKEN) + config.getExpectedCompletionTokens();
+        for (int attempt = 0; ; attempt++) {
+            Waiter waiter = acquire(priority, estimated);
+            long start = System.nanoTime();
+            T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                boolean throttled = isThrottled(e);
+                release(waiter, System.nanoTime() - start, 0, throttled);
+                if (!throttled || attempt >= config.getMaxRetries() || !retryable.getAsBoolean()) {
+                    throw e;
+                }
+                long backoff = Math.min(MAX_BACKOFF_MILLIS, config.getRetryBackoffMillis() << attempt);
+                log.warn(">>> 大模型调用被限流，{}ms 后第 {} 次重试，当前并发上限 {}", backoff, attempt + 1, currentLimit());
+                sleep(backoff);
+                continue;
+            }
+            release(waiter, System.nanoTime() - start, result == null ? 0 : usage.applyAsLong(result), false);
+            return result;
+        }
+    }
+
+    private Waiter acquire(Priority priority, long tokens) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(config.getMaxQueueWaitSeconds());
+        lock.lock();
+        Waiter waiter = new Waiter(priority, sequence++, tokens);
+        queue.add(waiter);
+        try {
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("大模型调用排队超时：" + config.getMaxQueueWaitSeconds() + "s");
+                }
+                if (queue.peek() == waiter && inFlight < (int) limit) {
+                    long wait = Math.max(requestBucket.nanosUntil(1), tokenBucket.nanosUntil(tokens));
+                    if (wait <= 0) {
+                        queue.poll();
+                        requestBucket.take(1);
+                        tokenBucket.take(tokens);
+                        inFlight++;
+                        // 队首变化后让下一个等待者重新检查
+                        changed.signalAll();
+                        break;
+                    }
+                    changed.awaitNanos(Math.min(wait, remaining));
+                } else {
+                    changed.awaitNanos(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待大模型调用时被中断", e);
+        } finally {
+            if (queue.remove(waiter)) {
+                changed.signalAll();
+            }
+            lock.unlock();
+        }
+        Timer.builder("llm.queue.wait")
+                .tag("priority", priority.name().toLowerCase())
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return waiter;
+    }
+
+    private void release(Waiter waiter, long elapsedNanos, long actualTokens, boolean throttled) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (actualTokens > 0) {
+                tokenBucket.adjust(waiter.tokens - actualTokens);
+            }
+            boolean slow = TimeUnit.NANOSECONDS.toMillis(elapsedNanos) > config.getLatencyThresholdMillis();
+            if (throttled || slow) {
+                throttledCounter.increment();
+                long now = System.nanoTime();
+                if (now - lastDecrease >= DECREASE_COOLDOWN_NANOS) {
+                    lastDecrease = now;
+                    limit = clamp(limit / 2);
+                    log.info(">>> 大模型{}，并发上限降为 {}", throttled ? "限流" : "响应过慢", (int) limit);
+                }
+            } else if (inFlight + 1 >= (int) limit) {
+                // 只有并发上限确实被用满时才加，空闲时不抬高上限
+                limit = clamp(limit + 1 / limit);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double clamp(double value) {
+        int min = Math.max(1, config.getMinInFlight());
+        return Math.max(min, Math.min(Math.max(min, config.getMaxInFlight()), value));
+    }
+
+    private int currentLimit() {
+        return (int) snapshot(() -> Math.floor(limit));
+    }
+
+    private double snapshot(Supplier<Double> supplier) {
+        lock.lock();
+        try {
+            return supplier.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待大模型重试时被中断", e);
+        }
+    }
+
+    /**
+     * 异常链中任意一层是 HTTP 429 即视为被限流
+     */
+    static boolean isThrottled(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RestClientResponseException responseException
+                    && responseException.getStatusCode().value() == TOO_MANY_REQUESTS) {
+                return true;
+            }
+            if (t instanceof WebClientResponseException responseException
+                    && responseException.getStatusCode().value() == TOO_MANY_REQUESTS) {
+                return true;
+            }
+            // 同步调用的错误响应被 Spring AI 转换后只剩消息，按消息开头的状态码判断
+            if (t instanceof NonTransientAiException && t.getMessage() != null
+                    && t.getMessage().startsWith(TOO_MANY_REQUESTS_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static long totalTokens(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return 0;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        return usage == null || usage.getTotalTokens() == null ? 0 : usage.getTotalTokens();
+    }
+
+    public enum Priority {
+
+        /**
+         * 第一次出现的异常
+         */
+        NEW,
+
+        /**
+         * 之前出现过的异常
+         */
+        REPEAT
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+
+        private final Priority priority;
+
+        private final long sequence;
+
+        private final long tokens;
+
+        private Waiter(Priority priority, long sequence, long tokens) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.tokens = tokens;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
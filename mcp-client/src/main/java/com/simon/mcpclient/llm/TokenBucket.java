@@ -0,0 +1,64 @@
+package com.simon.mcpclient.llm;
+
+/**
+ * 按分钟配额连续补充的令牌桶，非线程安全，由 {@link LlmScheduler} 在锁内使用
+ * 实际消耗超过预估时允许透支，透支部分由后续补充抵扣
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+class TokenBucket {
+
+    private static final double NANOS_PER_MINUTE = 60_000_000_000d;
+
+    /**
+     * 每分钟配额，0 表示不限制
+     */
+    private final long perMinute;
+
+    private double available;
+
+    private long lastRefill = System.nanoTime();
+
+    TokenBucket(long perMinute) {
+        this.perMinute = perMinute;
+        this.available = perMinute;
+    }
+
+    /**
+     * 距离可以取出指定数量还需要等待的纳秒数，0 表示可以立即取出
+     */
+    long nanosUntil(long amount) {
+        if (perMinute <= 0) {
+            return 0;
+        }
+        refill();
+        // 单次请求超过整桶容量时按整桶计，否则永远等不到
+        double needed = Math.min(amount, perMinute) - available;
+        return needed <= 0 ? 0 : (long) Math.ceil(needed * NANOS_PER_MINUTE / perMinute);
+    }
+
+    void take(long amount) {
+        if (perMinute > 0) {
+            refill();
+            available -= Math.min(amount, perMinute);
+        }
+    }
+
+    /**
+     * 按实际消耗修正：正数归还多扣的部分，负数补扣少扣的部分
+     */
+    void adjust(long delta) {
+        if (perMinute > 0) {
+            refill();
+            available = Math.min(perMinute, available + delta);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(perMinute, available + (now - lastRefill) * perMinute / NANOS_PER_MINUTE);
+        lastRefill = now;
+    }
+}
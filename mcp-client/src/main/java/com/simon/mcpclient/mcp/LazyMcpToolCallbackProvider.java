@@ -0,0 +1,36 @@
+package com.simon.mcpclient.mcp;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按需解析的 MCP 工具
+ * 每次获取时只返回当前已连接的服务提供的工具，不会因为某个服务尚未启动而阻塞；
+ * 需要特定工具的请求先调用 awaitTool，只有这类请求才会等待对应的服务
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class LazyMcpToolCallbackProvider implements ToolCallbackProvider {
+
+    private final McpConnectionManager mcpConnectionManager;
+
+    public LazyMcpToolCallbackProvider(McpConnectionManager mcpConnectionManager) {
+        this.mcpConnectionManager = mcpConnectionManager;
+    }
+
+    @Override
+    public ToolCallback[] getToolCallbacks() {
+        return mcpConnectionManager.toolCallbacks().toArray(new ToolCallback[0]);
+    }
+
+    /**
+     * 等待指定工具可用，提供该工具的服务已确认不可用时立即返回 false
+     */
+    public boolean awaitTool(String toolName) {
+        return mcpConnectionManager.awaitTool(toolName);
+    }
+}
@@ -0,0 +1,541 @@
+package com.simon.mcpclient.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.client.transport.HttpClientSseClientTransport;
+import io.modelcontextprotocol.client.transport.ServerParameters;
+import io.modelcontextprotocol.client.transport.StdioClientTransport;
+import io.modelcontextprotocol.spec.McpClientTransport;
+import io.modelcontextprotocol.spec.McpError;
+import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.mcp.SyncMcpToolCallback;
+import org.springframework.ai.mcp.client.autoconfigure.configurer.McpSyncClientConfigurer;
+import org.springframework.ai.mcp.client.autoconfigure.properties.McpClientCommonProperties;
+import org.springframework.ai.mcp.client.autoconfigure.properties.McpSseClientProperties;
+import org.springframework.ai.mcp.client.autoconfigure.properties.McpStdioClientProperties;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MCP 服务连接管理
+ * 各个 MCP 服务（stdio 进程、SSE 连接）在后台并行初始化，应用启动不再等待最慢的服务；
+ * 连接失败的服务按指数退避在后台重试，连接成功后缓存其工具列表。
+ * 已连接的服务在工具调用出现传输层失败或定期 ping 失败时标记为 DOWN，撤下其工具并按同样的退避重新连接。
+ * 客户端和底层传输失败后不能重新连接，重试时按 spring.ai.mcp.client 配置重新创建
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class McpConnectionManager {
+
+    /**
+     * Spring AI 生成的客户端名称为 "客户端名 - 连接名"
+     */
+    private static final String NAME_SEPARATOR = " - ";
+
+    private static final String DEFAULT_SSE_ENDPOINT = "/sse";
+
+    /**
+     * SyncMcpToolCallback 对工具错误结果抛出的异常消息前缀
+     */
+    private static final String TOOL_ERROR_PREFIX = "Error calling tool";
+
+    private final AiAnalyzeConfig.Mcp config;
+
+    private final McpClientCommonProperties commonProperties;
+
+    private final McpSseClientProperties sseProperties;
+
+    private final McpStdioClientProperties stdioProperties;
+
+    private final McpSyncClientConfigurer configurer;
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Connection> connections = new LinkedHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    private final ExecutorService executor;
+
+    private final ScheduledExecutorService pinger;
+
+    private volatile boolean running;
+
+    public McpConnectionManager(ObjectProvider<List<McpSyncClient>> mcpSyncClients, AiAnalyzeConfig aiAnalyzeConfig,
+                                ObjectProvider<McpClientCommonProperties> commonProperties,
+                                ObjectProvider<McpSseClientProperties> sseProperties,
+                                ObjectProvider<McpStdioClientProperties> stdioProperties,
+                                ObjectProvider<McpSyncClientConfigurer> configurer,
+                                ObjectProvider<ObjectMapper> objectMapper, MeterRegistry meterRegistry) {
+        this.config = aiAnalyzeConfig.getMcp();
+        this.commonProperties = commonProperties.getIfAvailable(McpClientCommonProperties::new);
+        this.sseProperties = sseProperties.getIfAvailable();
+        this.stdioProperties = stdioProperties.getIfAvailable();
+        this.configurer = configurer.getIfAvailable(() -> new McpSyncClientConfigurer(List.of()));
+        this.objectMapper = objectMapper.getIfAvailable(ObjectMapper::new);
+        mcpSyncClients.stream().flatMap(List::stream).forEach(client -> {
+            String name = serverName(client);
+            connections.put(name, new Connection(name, client));
+        });
+        this.executor = Executors.newFixedThreadPool(Math.max(1, connections.size()), r -> {
+            Thread thread = new Thread(r, "mcp-connect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pinger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-ping");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Connection connection : connections.values()) {
+            Gauge.builder("mcp.server.up", connection, c -> c.state == State.UP ? 1 : 0)
+                    .description("MCP 服务是否已连接")
+                    .tag("server", connection.name)
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (Connection connection : connections.values()) {
+            connection.connecting = true;
+            executor.submit(() -> connect(connection, false));
+        }
+        if (config.getPingIntervalSeconds() > 0) {
+            pinger.scheduleWithFixedDelay(this::pingAll, config.getPingIntervalSeconds(),
+                    config.getPingIntervalSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        pinger.shutdownNow();
+        executor.shutdownNow();
+        // 初始的客户端由 Spring AI 关闭，这里只关闭重新创建的客户端
+        for (Connection connection : connections.values()) {
+            if (connection.rebuilt) {
+                close(connection.client);
+            }
+        }
+    }
+
+    /**
+     * 已连接的服务提供的全部工具，不等待
+     */
+    public List<ToolCallback> toolCallbacks() {
+        lock.lock();
+        try {
+            List<ToolCallback> callbacks = new ArrayList<>();
+            for (Connection connection : connections.values()) {
+                callbacks.addAll(connection.callbacks);
+            }
+            return callbacks;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待提供指定工具的服务连接成功
+     * 只在还有服务处于首次连接中时等待，其余服务都已连接或已确认不可用时立即返回
+     *
+     * @param toolName 工具名，MCP 客户端添加的前缀不参与比较
+     * @return 是否有可用的同名工具
+     */
+    public boolean awaitTool(String toolName) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getToolWaitSeconds());
+        lock.lock();
+        try {
+            while (true) {
+                for (Connection connection : connections.values()) {
+                    for (ToolCallback callback : connection.callbacks) {
+                        if (matches(callback, toolName)) {
+                            return true;
+                        }
+                    }
+                }
+                long remaining = deadline - System.nanoTime();
+                boolean starting = connections.values().stream().anyMatch(c -> c.state == State.STARTING);
+                if (!starting || remaining <= 0) {
+                    log.warn(">>> MCP 工具 {} 不可用，服务状态: {}", toolName, describe());
+                    return false;
+                }
+                changed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 各服务的当前状态快照
+     */
+    public Collection<ServerStatus> status() {
+        lock.lock();
+        try {
+            List<ServerStatus> status = new ArrayList<>(connections.size());
+            for (Connection connection : connections.values()) {
+                status.add(new ServerStatus(connection.name, connection.state, connection.callbacks.size(),
+                        connection.error, connection.attempts));
+            }
+            return Collections.unmodifiableList(status);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * MCP 客户端会给工具名加上客户端和服务端的前缀，按后缀匹配
+     */
+    public static boolean matches(ToolCallback callback, String toolName) {
+        String name = callback.getToolDefinition().name();
+        return name.equals(toolName) || name.endsWith("_" + toolName);
+    }
+
+    /**
+     * 连接直到成功，失败后按指数退避重试
+     *
+     * @param rebuildFirst 原客户端的传输已经失败，先重新创建客户端
+     */
+    private void connect(Connection connection, boolean rebuildFirst) {
+        long backoff = TimeUnit.SECONDS.toMillis(Math.max(1, config.getRetryIntervalSeconds()));
+        long maxBackoff = TimeUnit.SECONDS.toMillis(Math.max(1, config.getMaxRetryIntervalSeconds()));
+        try {
+            if (rebuildFirst) {
+                rebuild(connection);
+            }
+            while (running) {
+                long start = System.nanoTime();
+                try {
+                    McpSyncClient client = connection.client;
+                    if (!client.isInitialized()) {
+                        client.initialize();
+                    }
+                    List<ToolCallback> callbacks = client.listTools().tools().stream()
+                            .map(tool -> (ToolCallback) new MonitoredToolCallback(connection, client,
+                                    new SyncMcpToolCallback(client, tool)))
+                            .toList();
+                    update(connection, State.UP, callbacks, null);
+                    log.info(">>> MCP 服务 {} 已连接，工具 {} 个，耗时 {}ms", connection.name, callbacks.size(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return;
+                } catch (RuntimeException e) {
+                    update(connection, State.DOWN, List.of(), e.getMessage());
+                    log.warn(">>> MCP 服务 {} 连接失败，{}s 后重试: {}", connection.name,
+                            TimeUnit.MILLISECONDS.toSeconds(backoff), e.getMessage());
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(maxBackoff, backoff * 2);
+                rebuild(connection);
+            }
+        } finally {
+            lock.lock();
+            try {
+                connection.connecting = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 已连接的客户端出现传输层失败：标记为 DOWN、撤下工具，在后台重新连接
+     * 同一客户端的多次失败只触发一次重连，已经替换掉的客户端的失败忽略
+     */
+    private void markDown(Connection connection, McpSyncClient client, String error) {
+        lock.lock();
+        try {
+            if (!running || connection.client != client || connection.state != State.UP || connection.connecting) {
+                return;
+            }
+            connection.state = State.DOWN;
+            connection.callbacks = List.of();
+            connection.error = error;
+            connection.connecting = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        log.warn(">>> MCP 服务 {} 连接中断，重新连接: {}", connection.name, error);
+        try {
+            executor.submit(() -> connect(connection, true));
+        } catch (RejectedExecutionException e) {
+            // 正在停止
+        }
+    }
+
+    /**
+     * 定期 ping 已连接的服务，服务端返回错误也说明连接正常
+     */
+    private void pingAll() {
+        List<Connection> up = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Connection connection : connections.values()) {
+                if (connection.state == State.UP) {
+                    up.add(connection);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Connection connection : up) {
+            McpSyncClient client = connection.client;
+            try {
+                client.ping();
+            } catch (RuntimeException e) {
+                if (isTransportFailure(e)) {
+                    markDown(connection, client, "ping 失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 服务端没有给出响应的失败：连接断开、超时、子进程退出等
+     * 服务端返回的 JSON-RPC 错误（McpError）和工具自身返回的错误结果都不算
+     */
+    static boolean isTransportFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof McpError) {
+                return false;
+            }
+        }
+        // SyncMcpToolCallback 把工具返回的错误结果包装为不带 cause 的 IllegalStateException
+        return !(e instanceof IllegalStateException && e.getCause() == null
+                && e.getMessage() != null && e.getMessage().startsWith(TOOL_ERROR_PREFIX));
+    }
+
+    /**
+     * 关闭失败的客户端，用新的传输重新创建；找不到该服务的配置时沿用原客户端
+     */
+    private void rebuild(Connection connection) {
+        McpClientTransport transport = transport(connection.name);
+        if (transport == null) {
+            return;
+        }
+        McpClient.SyncSpec spec = McpClient.sync(transport)
+                .clientInfo(new McpSchema.Implementation(commonProperties.getName() + NAME_SEPARATOR + connection.name,
+                        commonProperties.getVersion()))
+                .requestTimeout(commonProperties.getRequestTimeout());
+        McpSyncClient client = configurer.configure(connection.name, spec).build();
+        // 失败的 stdio 客户端可能还留着子进程，先关闭再替换
+        close(connection.client);
+        connection.client = client;
+        connection.rebuilt = true;
+    }
+
+    private McpClientTransport transport(String name) {
+        if (sseProperties != null && sseProperties.getConnections().containsKey(name)) {
+            McpSseClientProperties.SseParameters parameters = sseProperties.getConnections().get(name);
+            return HttpClientSseClientTransport.builder(parameters.url())
+                    .sseEndpoint(parameters.sseEndpoint() == null ? DEFAULT_SSE_ENDPOINT : parameters.sseEndpoint())
+                    .clientBuilder(HttpClient.newBuilder())
+                    .objectMapper(objectMapper)
+                    .build();
+        }
+        if (stdioProperties != null) {
+            ServerParameters parameters = stdioProperties.toServerParameters().get(name);
+            if (parameters != null) {
+                return new StdioClientTransport(parameters);
+            }
+        }
+        return null;
+    }
+
+    private static void close(McpSyncClient client) {
+        try {
+            client.closeGracefully();
+        } catch (RuntimeException e) {
+            log.debug(">>> 关闭 MCP 客户端失败: {}", e.getMessage());
+        }
+    }
+
+    private void update(Connection connection, State state, List<ToolCallback> callbacks, String error) {
+        lock.lock();
+        try {
+            connection.state = state;
+            connection.callbacks = callbacks;
+            connection.error = error;
+            connection.attempts++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String describe() {
+        StringBuilder text = new StringBuilder();
+        for (Connection connection : connections.values()) {
+            text.append(connection.name).append('=').append(connection.state).append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    private static String serverName(McpSyncClient client) {
+        String name = client.getClientInfo().name();
+        int idx = name.lastIndexOf(NAME_SEPARATOR);
+        return idx < 0 ? name : name.substring(idx + NAME_SEPARATOR.length());
+    }
+
+    public enum State {
+
+        /**
+         * 首次连接中
+         */
+        STARTING,
+
+        /**
+         * 已连接，工具可用
+         */
+        UP,
+
+        /**
+         * 连接失败，后台重试中
+         */
+        DOWN
+    }
+
+    /**
+     * 调用工具时出现传输层失败即把服务标记为 DOWN，异常照常抛给调用方
+     */
+    private class MonitoredToolCallback implements ToolCallback {
+
+        private final Connection connection;
+
+        private final McpSyncClient client;
+
+        private final ToolCallback delegate;
+
+        private MonitoredToolCallback(Connection connection, McpSyncClient client, ToolCallback delegate) {
+            this.connection = connection;
+            this.client = client;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            try {
+                return toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+            } catch (RuntimeException e) {
+                if (isTransportFailure(e)) {
+                    markDown(connection, client, getToolDefinition().name() + " 调用失败: " + e.getMessage());
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static class Connection {
+
+        private final String name;
+
+        /**
+         * 只由连接线程替换
+         */
+        private volatile McpSyncClient client;
+
+        /**
+         * 当前客户端是否是重试时重新创建的
+         */
+        private volatile boolean rebuilt;
+
+        private State state = State.STARTING;
+
+        private List<ToolCallback> callbacks = List.of();
+
+        private String error;
+
+        private int attempts;
+
+        /**
+         * 是否有连接线程在运行，避免同时发起多次重连
+         */
+        private boolean connecting;
+
+        private Connection(String name, McpSyncClient client) {
+            this.name = name;
+            this.client = client;
+        }
+    }
+
+    @Getter
+    public static class ServerStatus {
+
+        private final String name;
+
+        private final State state;
+
+        private final int tools;
+
+        private final String error;
+
+        private final int attempts;
+
+        private ServerStatus(String name, State state, int tools, String error, int attempts) {
+            this.name = name;
+            this.state = state;
+            this.tools = tools;
+            this.error = error;
+            this.attempts = attempts;
+        }
+    }
+}
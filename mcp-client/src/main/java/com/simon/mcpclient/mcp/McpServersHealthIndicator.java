@@ -0,0 +1,61 @@
+package com.simon.mcpclient.mcp;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MCP 服务就绪检查
+ * 列出每个服务的连接状态；simon.ai.mcp.required-servers 中的服务全部连接成功后才报告 UP，
+ * 其余服务不可用只影响用到它的请求，不影响就绪状态
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class McpServersHealthIndicator implements HealthIndicator {
+
+    private final McpConnectionManager mcpConnectionManager;
+
+    private final List<String> requiredServers;
+
+    public McpServersHealthIndicator(McpConnectionManager mcpConnectionManager, AiAnalyzeConfig aiAnalyzeConfig) {
+        this.mcpConnectionManager = mcpConnectionManager;
+        this.requiredServers = aiAnalyzeConfig.getMcp().getRequiredServers();
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> servers = new LinkedHashMap<>();
+        Map<String, McpConnectionManager.State> states = new LinkedHashMap<>();
+        for (McpConnectionManager.ServerStatus status : mcpConnectionManager.status()) {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("state", status.getState());
+            detail.put("tools", status.getTools());
+            detail.put("attempts", status.getAttempts());
+            if (status.getError() != null) {
+                detail.put("error", status.getError());
+            }
+            servers.put(status.getName(), detail);
+            states.put(status.getName(), status.getState());
+        }
+
+        boolean ready = true;
+        for (String required : requiredServers) {
+            if (states.get(required) != McpConnectionManager.State.UP) {
+                ready = false;
+                break;
+            }
+        }
+        return (ready ? Health.up() : Health.outOfService())
+                .withDetail("required", requiredServers)
+                .withDetail("servers", servers)
+                .build();
+    }
+}
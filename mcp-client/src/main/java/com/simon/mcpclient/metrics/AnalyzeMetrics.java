@@ -0,0 +1,184 @@
+package com.simon.mcpclient.metrics;
+
+import com.simon.mcpclient.service.AnalyzeProgress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异常分析流程的指标
+ * 各阶段耗时、大模型 token 消耗、每个阶段的工具调用次数以及按原因统计的失败次数，
+ * 当前阶段通过 ThreadLocal 传递给 token 统计和工具调用统计
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class AnalyzeMetrics {
+
+    private static final String UNKNOWN_STAGE = "none";
+
+    /**
+     * 流程中已知的失败结果，其余非成功结果统一归为 branchFail，避免标签值无限增长
+     */
+    private static final Set<String> FAILURE_REASONS = Set.of("extractFail", "cloneFail", "worktreeFail", "locateFail",
+            "parseFail", "noFix", "applyFail", "routeFail");
+
+    private static final ThreadLocal<String> CURRENT_STAGE = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+
+    public AnalyzeMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 开始统计一次分析，返回的进度回调在转发给 delegate 的同时记录阶段耗时
+     */
+    public StageTracker track(AnalyzeProgress delegate) {
+        return new StageTracker(delegate);
+    }
+
+    /**
+     * 记录一次大模型调用的 token 消耗，计入当前阶段
+     */
+    public void recordUsage(Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        String stage = currentStage();
+        if (usage.getPromptTokens() != null) {
+            Counter.builder("analyze.llm.tokens").tag("type", "prompt").tag("stage", stage)
+                    .register(meterRegistry).increment(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null) {
+            Counter.builder("analyze.llm.tokens").tag("type", "completion").tag("stage", stage)
+                    .register(meterRegistry).increment(usage.getCompletionTokens());
+        }
+    }
+
+    /**
+     * 记录一次工具调用，计入当前阶段
+     */
+    public void recordToolCall(String tool, long nanos, boolean success) {
+        Timer.builder("analyze.tool.calls")
+                .tag("tool", tool)
+                .tag("stage", currentStage())
+                .tag("result", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String currentStage() {
+        String stage = CURRENT_STAGE.get();
+        return stage == null ? UNKNOWN_STAGE : stage;
+    }
+
+    /**
+     * 阶段计时器，进入下一阶段时结束上一阶段的计时，用完必须 close
+     */
+    public class StageTracker implements AnalyzeProgress, AutoCloseable {
+
+        private final AnalyzeProgress delegate;
+
+        private final long start = System.nanoTime();
+
+        private String stage;
+
+        private long stageStart;
+
+        private boolean finished;
+
+        private boolean cached;
+
+        private StageTracker(AnalyzeProgress delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void stage(String stage, String detail) {
+            delegate.stage(stage, detail);
+            endStage();
+            this.stage = stage.toLowerCase(Locale.ROOT);
+            this.stageStart = System.nanoTime();
+            CURRENT_STAGE.set(this.stage);
+        }
+
+        @Override
+        public void partial(String chunk) {
+            delegate.partial(chunk);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return delegate.isCancelled();
+        }
+
+        /**
+         * 标记本次分析命中了结果缓存
+         */
+        public void cacheHit() {
+            this.cached = true;
+        }
+
+        /**
+         * 记录分析结果
+         */
+        public void finish(String result) {
+            String outcome;
+            if (cached) {
+                outcome = "cached";
+            } else if (result != null && result.startsWith("SUCCESS:")) {
+                outcome = "success";
+            } else {
+                outcome = "failure";
+                failure(result != null && FAILURE_REASONS.contains(result) ? result : "branchFail");
+            }
+            complete(outcome);
+        }
+
+        @Override
+        public void close() {
+            if (!finished) {
+                // 抛出异常或被取消
+                failure("exception");
+                complete("failure");
+            }
+            CURRENT_STAGE.remove();
+        }
+
+        private void failure(String reason) {
+            Counter.builder("analyze.failures").tag("reason", reason).tag("stage", stage == null ? UNKNOWN_STAGE : stage)
+                    .register(meterRegistry).increment();
+        }
+
+        private void complete(String outcome) {
+            endStage();
+            finished = true;
+            Timer.builder("analyze.duration")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        private void endStage() {
+            if (stage == null) {
+                return;
+            }
+            Timer.builder("analyze.stage.duration")
+                    .tag("stage", stage)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - stageStart, TimeUnit.NANOSECONDS);
+            stage = null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.simon.mcpclient.metrics;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.Arrays;
+
+/**
+ * 统计工具调用次数和耗时的 ToolCallbackProvider 装饰器
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public class MeteredToolCallbackProvider implements ToolCallbackProvider {
+
+    private final ToolCallbackProvider delegate;
+
+    private final AnalyzeMetrics analyzeMetrics;
+
+    public MeteredToolCallbackProvider(ToolCallbackProvider delegate, AnalyzeMetrics analyzeMetrics) {
+        this.delegate = delegate;
+        this.analyzeMetrics = analyzeMetrics;
+    }
+
+    @Override
+    public ToolCallback[] getToolCallbacks() {
+        return Arrays.stream(delegate.getToolCallbacks())
+                .map(MeteredToolCallback::new)
+                .toArray(ToolCallback[]::new);
+    }
+
+    private class MeteredToolCallback implements ToolCallback {
+
+        private final ToolCallback delegate;
+
+        private MeteredToolCallback(ToolCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                String result = toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+                success = true;
+                return result;
+            } finally {
+                analyzeMetrics.recordToolCall(delegate.getToolDefinition().name(), System.nanoTime() - start, success);
+            }
+        }
+    }
+}
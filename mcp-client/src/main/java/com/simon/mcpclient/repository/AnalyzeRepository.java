@@ -0,0 +1,65 @@
+package com.simon.mcpclient.repository;
+
+import com.simon.mcpclient.index.SourceFileIndex;
+import com.simon.mcpclient.worktree.WorktreePool;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 参与分析的代码仓库
+ * 每个仓库有自己的源码索引、工作区池和并发上限，互不影响
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Getter
+public class AnalyzeRepository {
+
+    private final String name;
+
+    private final String localRepository;
+
+    private final String remoteRepository;
+
+    /**
+     * 业务代码的包前缀
+     */
+    private final List<String> packages;
+
+    /**
+     * 同时执行的分析任务数
+     */
+    private final int concurrency;
+
+    private final SourceFileIndex sourceFileIndex;
+
+    private final WorktreePool worktreePool;
+
+    public AnalyzeRepository(String name, String localRepository, String remoteRepository, List<String> packages,
+                             int concurrency, WorktreePool worktreePool) {
+        this.name = name;
+        this.localRepository = localRepository;
+        this.remoteRepository = remoteRepository;
+        this.packages = List.copyOf(packages);
+        this.concurrency = concurrency;
+        this.sourceFileIndex = new SourceFileIndex(localRepository);
+        this.worktreePool = worktreePool;
+    }
+
+    /**
+     * 类名与包前缀的最长匹配长度，不匹配时返回 -1
+     */
+    int matchPackage(String className) {
+        int longest = -1;
+        for (String prefix : packages) {
+            String normalized = prefix.endsWith(".") ? prefix.substring(0, prefix.length() - 1) : prefix;
+            if (normalized.length() > longest
+                    && (className.equals(normalized) || className.startsWith(normalized + "."))) {
+                longest = normalized.length();
+            }
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,151 @@
+package com.simon.mcpclient.repository;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import com.simon.mcpclient.req.ChatReq;
+import com.simon.mcpclient.stack.ParsedThrowable;
+import com.simon.mcpclient.stack.StackFrame;
+import com.simon.mcpclient.stack.StackTraceParser;
+import com.simon.mcpclient.worktree.WorktreePool;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 代码仓库注册表
+ * 一个 mcp-client 可以同时服务多个应用：上报的异常优先按服务名路由，
+ * 未携带服务名或服务名未登记时按堆栈业务帧的包前缀路由，只配置了一个仓库时全部路由到该仓库
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class RepositoryRegistry {
+
+    /**
+     * 只配置了 simon.ai.localRepository 时的仓库名称
+     */
+    public static final String DEFAULT_NAME = "default";
+
+    private final StackTraceParser stackTraceParser;
+
+    private final Map<String, AnalyzeRepository> repositories = new LinkedHashMap<>();
+
+    /**
+     * 小写服务名 -> 仓库
+     */
+    private final Map<String, AnalyzeRepository> byService = new HashMap<>();
+
+    public RepositoryRegistry(AiAnalyzeConfig aiAnalyzeConfig, StackTraceParser stackTraceParser) {
+        this.stackTraceParser = stackTraceParser;
+
+        List<AiAnalyzeConfig.Repository> configs = aiAnalyzeConfig.getRepositories();
+        if (configs.isEmpty()) {
+            AiAnalyzeConfig.Repository single = new AiAnalyzeConfig.Repository();
+            single.setName(DEFAULT_NAME);
+            single.setLocalRepository(aiAnalyzeConfig.getLocalRepository());
+            single.setRemoteRepository(aiAnalyzeConfig.getRemoteRepository());
+            configs = List.of(single);
+        }
+
+        AiAnalyzeConfig.Worktree worktree = aiAnalyzeConfig.getWorktree();
+        for (AiAnalyzeConfig.Repository config : configs) {
+            if (StringUtils.isBlank(config.getName()) || StringUtils.isBlank(config.getLocalRepository())) {
+                throw new IllegalStateException("仓库配置缺少 name 或 localRepository：" + config);
+            }
+            if (repositories.containsKey(config.getName())) {
+                throw new IllegalStateException("仓库名称重复：" + config.getName());
+            }
+            File worktreeRoot;
+            if (StringUtils.isBlank(worktree.getDirectory())) {
+                worktreeRoot = new File(config.getLocalRepository() + "-worktrees");
+            } else {
+                // 多仓库共用一个工作区目录时按仓库名称区分
+                worktreeRoot = configs.size() > 1
+                        ? new File(worktree.getDirectory(), config.getName()) : new File(worktree.getDirectory());
+            }
+            int concurrency = config.getConcurrency() > 0 ? config.getConcurrency() : Math.max(1, worktree.getSize());
+            AnalyzeRepository repository = new AnalyzeRepository(config.getName(), config.getLocalRepository(),
+                    config.getRemoteRepository(), config.getPackages(), concurrency,
+                    new WorktreePool(worktree, config.getLocalRepository(), worktreeRoot));
+            repositories.put(config.getName(), repository);
+            byService.put(config.getName().toLowerCase(Locale.ROOT), repository);
+            for (String service : config.getServices()) {
+                byService.put(service.toLowerCase(Locale.ROOT), repository);
+            }
+        }
+        log.info("已加载代码仓库：{}", repositories.keySet());
+    }
+
+    public Collection<AnalyzeRepository> all() {
+        return Collections.unmodifiableCollection(repositories.values());
+    }
+
+    /**
+     * 解析堆栈后路由，紧凑格式的上报直接使用已解码的异常
+     *
+     * @return 无法确定仓库时返回null
+     */
+    public AnalyzeRepository route(ChatReq req) {
+        ParsedThrowable parsed = req.getParsed() != null ? req.getParsed() : stackTraceParser.parse(req.getMessage());
+        List<StackFrame> frames = stackTraceParser.applicationFrames(parsed);
+        return route(req.getService(), frames);
+    }
+
+    /**
+     * 按服务名或业务帧路由：服务名命中登记的名称时直接使用；
+     * 否则从最靠近异常的业务帧开始，找到第一个能匹配包前缀的帧，多个仓库都匹配时取前缀最长的仓库
+     *
+     * @return 无法确定仓库时返回null
+     */
+    public AnalyzeRepository route(String service, List<StackFrame> frames) {
+        if (StringUtils.isNotBlank(service)) {
+            AnalyzeRepository repository = byService.get(service.toLowerCase(Locale.ROOT));
+            if (repository != null) {
+                return repository;
+            }
+        }
+        for (StackFrame frame : frames) {
+            AnalyzeRepository best = null;
+            int bestLength = -1;
+            for (AnalyzeRepository repository : repositories.values()) {
+                int length = repository.matchPackage(frame.getClassName());
+                if (length > bestLength) {
+                    best = repository;
+                    bestLength = length;
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+        }
+        if (repositories.size() == 1) {
+            return repositories.values().iterator().next();
+        }
+        log.warn("无法路由到代码仓库，服务名：{}，业务帧：{}", service,
+                frames.isEmpty() ? null : frames.get(0).getClassName());
+        return null;
+    }
+
+    /**
+     * 启动后预热所有仓库的工作区
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        for (AnalyzeRepository repository : repositories.values()) {
+            repository.getWorktreePool().warmUp();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.simon.mcpclient.req;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量异常分析接口入参
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+public class ChatBatchReq implements Serializable {
+
+    private List<ChatReq> reports;
+}
@@ -1,5 +1,8 @@
 package com.simon.mcpclient.req;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.simon.mcpclient.stack.CompactStack;
+import com.simon.mcpclient.stack.ParsedThrowable;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -14,5 +17,29 @@ import java.io.Serializable;
 @Data
 public class ChatReq implements Serializable {
 
+    /**
+     * 异常堆栈文本；上报紧凑格式时由服务端还原
+     */
     private String message;
+
+    /**
+     * 紧凑格式的异常堆栈
+     */
+    private CompactStack stack;
+
+    /**
+     * gzip 压缩并 base64 编码后的紧凑堆栈，与 stack 二选一
+     */
+    private String stackGzip;
+
+    /**
+     * 上报异常的服务名，用于路由到对应的代码仓库，为空时按堆栈中的包名路由
+     */
+    private String service;
+
+    /**
+     * 由紧凑堆栈解码得到的异常，存在时不再重新解析堆栈文本
+     */
+    @JsonIgnore
+    private ParsedThrowable parsed;
 }
@@ -0,0 +1,55 @@
+package com.simon.mcpclient.service;
+
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 合并模式下大模型一次返回的结构化分析结果
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+public class AnalyzeOutcome implements Serializable {
+
+    @JsonPropertyDescription("导致异常的关键代码行，格式为 [文件名,行号]")
+    private List<String> frames = new ArrayList<>();
+
+    @JsonPropertyDescription("涉及的源文件，path 为相对于仓库根目录的路径")
+    private List<FileLocation> locations = new ArrayList<>();
+
+    @JsonPropertyDescription("异常的根本原因，一两句话说明")
+    private String rootCause;
+
+    @JsonPropertyDescription("修复补丁，每项把文件中唯一出现的 search 片段替换为 replace")
+    private List<FilePatch> patches = new ArrayList<>();
+
+    @JsonPropertyDescription("修复是否可靠、是否需要创建 hotfix 分支推送，无法修复时为 false")
+    private boolean createBranch;
+
+    @Data
+    public static class FileLocation implements Serializable {
+
+        private String fileName;
+
+        private String path;
+    }
+
+    @Data
+    public static class FilePatch implements Serializable {
+
+        @JsonPropertyDescription("相对于仓库根目录的文件路径")
+        private String path;
+
+        @JsonPropertyDescription("文件中需要替换的原始代码，必须与文件内容逐字一致且只出现一次，包含足够的上下文")
+        private String search;
+
+        @JsonPropertyDescription("替换后的代码")
+        private String replace;
+    }
+}
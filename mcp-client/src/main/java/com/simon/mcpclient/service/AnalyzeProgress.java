@@ -0,0 +1,36 @@
+package com.simon.mcpclient.service;
+
+/**
+ * 异常分析进度回调，每进入一个阶段通知一次
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@FunctionalInterface
+public interface AnalyzeProgress {
+
+    AnalyzeProgress NONE = (stage, detail) -> {
+    };
+
+    /**
+     * 通知进入新的阶段，实现方可以抛出 {@link java.util.concurrent.CancellationException} 中止分析
+     *
+     * @param stage  阶段名称，例如 CLONE、LOCATE、ANALYZE
+     * @param detail 阶段说明或上一阶段的结果
+     */
+    void stage(String stage, String detail);
+
+    /**
+     * 转发大模型流式输出的片段，默认忽略
+     */
+    default void partial(String chunk) {
+    }
+
+    /**
+     * 分析是否已被取消，写入结果缓存前检查，默认不会取消
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
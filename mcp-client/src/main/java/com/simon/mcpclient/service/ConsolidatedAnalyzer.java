@@ -0,0 +1,269 @@
+package com.simon.mcpclient.service;
+
+import com.simon.mcpclient.cache.ToolResultCache;
+import com.simon.mcpclient.llm.LlmScheduler;
+import com.simon.mcpclient.metrics.AnalyzeMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 合并模式的分析与修复
+ * 堆栈解析、文件定位和代码片段都已在本地完成，只需要一次流式对话让大模型返回结构化的分析结果和修复补丁，
+ * 补丁在工作区本地应用，hotfix 分支直接调用 git 工具推送，整个流程只有这一轮大模型对话
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class ConsolidatedAnalyzer {
+
+    private final ChatClient chatClient;
+
+    private final GitToolInvoker gitToolInvoker;
+
+    private final AnalyzeMetrics analyzeMetrics;
+
+    private final LlmScheduler llmScheduler;
+
+    private final ToolResultCache toolResultCache;
+
+    private final BeanOutputConverter<AnalyzeOutcome> outputConverter = new BeanOutputConverter<>(AnalyzeOutcome.class);
+
+    public ConsolidatedAnalyzer(ChatClient.Builder chatClientBuilder,
+                                GitToolInvoker gitToolInvoker,
+                                AnalyzeMetrics analyzeMetrics,
+                                LlmScheduler llmScheduler,
+                                ToolResultCache toolResultCache) {
+        // 不注册任何工具，大模型只需要根据提示词中的代码片段给出补丁
+        this.chatClient = chatClientBuilder
+                .defaultSystem("你是一个Java资深专家，擅长根据异常堆栈和源代码定位并修复问题。")
+                .build();
+        this.gitToolInvoker = gitToolInvoker;
+        this.analyzeMetrics = analyzeMetrics;
+        this.llmScheduler = llmScheduler;
+        this.toolResultCache = toolResultCache;
+    }
+
+    /**
+     * 在工作区内完成分析、修复和推送
+     *
+     * @param locateResult 本地索引定位到的文件，文件名:仓库内相对路径，每行一个
+     * @param codeSlices   异常相关的代码片段
+     * @param remoteUrl    推送hotfix分支的远程仓库地址
+     * @return 分析结果，成功时为 SUCCESS:分支名
+     */
+    public String analyze(String stackTrace, String extractResult, String locateResult, String codeSlices,
+                          String workDir, String remoteUrl, String branchName, AnalyzeProgress progress) {
+        progress.stage(ErrorAnalyzeService.STAGE_ANALYZE, null);
+        //region 一次流式对话返回结构化结果，生成过程中的内容实时转发给调用方
+        String question = "我的java程序在运行过程中遇到了异常，请分析原因并给出修复补丁\n" +
+                "异常堆栈信息如下：\n" +
+                stackTrace + "\n" +
+                "异常代码行：" + extractResult + "\n" +
+                "异常代码文件（文件名:相对于仓库根目录的路径）：\n" + locateResult + "\n" +
+                "异常相关的代码片段如下（每行开头是文件中的实际行号，标记 > 的是异常行，行号和标记不属于代码内容）：\n" +
+                codeSlices + "\n" +
+                "补丁的 search 必须从代码片段中逐字复制（不含行号和标记），并且在文件中只出现一次；无法确定修复方案时 createBranch 返回 false\n" +
+                outputConverter.getFormat();
+        log.info(">>> 问题: {}", question);
+
+        StringBuilder content = new StringBuilder();
+        AtomicReference<Usage> usage = new AtomicReference<>();
+        // 经调度器排队后发起流式对话；已经向调用方输出过内容时不再重试，避免重复推送同样的片段
+        llmScheduler.execute(question, () -> {
+            usage.set(null);
+            return chatClient.prompt()
+                    .user(question)
+                    .stream()
+                    .chatResponse()
+                    .doOnNext(response -> {
+                        if (response.getMetadata() != null && response.getMetadata().getUsage() != null
+                                && response.getMetadata().getUsage().getTotalTokens() != null
+                                && response.getMetadata().getUsage().getTotalTokens() > 0) {
+                            usage.set(response.getMetadata().getUsage());
+                        }
+                        String chunk = text(response);
+                        if (chunk != null && !chunk.isEmpty()) {
+                            content.append(chunk);
+                            progress.partial(chunk);
+                        }
+                    })
+                    .blockLast();
+        }, last -> usage.get() == null ? 0 : usage.get().getTotalTokens(), () -> content.isEmpty());
+        analyzeMetrics.recordUsage(usage.get());
+        log.info(">>> 回答：{}", content);
+
+        AnalyzeOutcome outcome;
+        try {
+            outcome = outputConverter.convert(content.toString());
+        } catch (RuntimeException e) {
+            log.error(">>> 分析结果解析失败", e);
+            return "parseFail";
+        }
+        if (outcome == null || !outcome.isCreateBranch() || outcome.getPatches().isEmpty()) {
+            log.info(">>> 大模型未给出可靠的修复方案，根因：{}", outcome == null ? null : outcome.getRootCause());
+            return "noFix";
+        }
+        //endregion
+
+        progress.stage(ErrorAnalyzeService.STAGE_APPLY, outcome.getRootCause());
+        //region 在工作区应用补丁
+        List<String> changedPaths;
+        try {
+            changedPaths = applyPatches(outcome, workDir);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error(">>> 补丁应用失败", e);
+            return "applyFail";
+        } finally {
+            // 补丁直接写在本地，不经过 writeFile 工具，之前缓存的读取结果需要失效
+            toolResultCache.invalidate(workDir);
+        }
+        //endregion
+
+        progress.stage(ErrorAnalyzeService.STAGE_BRANCH, outcome.getRootCause());
+        //region 直接调用 git 工具提交并推送hotfix分支
+        String branchResult = gitToolInvoker.createAndPushBranch(workDir, remoteUrl, branchName, changedPaths);
+        log.info(">>> hotfix分支结果: {}", branchResult);
+        return branchResult;
+        //endregion
+    }
+
+    /**
+     * 先校验所有补丁都能唯一匹配，再统一写入，避免只应用了一部分补丁
+     * 所有文件的新内容都先写到临时文件，全部写成功后才逐个替换；替换中途失败时把已替换的文件恢复成原内容，
+     * 恢复不了的再从 HEAD 检出，保证工作区不会带着半套补丁被提交
+     *
+     * @return 修改过的文件，相对工作区根目录
+     */
+    static List<String> applyPatches(AnalyzeOutcome outcome, String workDir) throws IOException {
+        Path root = Paths.get(workDir).toAbsolutePath().normalize();
+        Map<Path, String> originals = new LinkedHashMap<>();
+        Map<Path, String> patched = new LinkedHashMap<>();
+        for (AnalyzeOutcome.FilePatch patch : outcome.getPatches()) {
+            if (patch.getPath() == null || patch.getSearch() == null || patch.getSearch().isEmpty()) {
+                throw new IllegalArgumentException("补丁缺少文件路径或原始代码");
+            }
+            Path file = root.resolve(patch.getPath().replaceFirst("^/+", "")).normalize();
+            if (!file.startsWith(root)) {
+                throw new IllegalArgumentException("补丁路径不在工作区内：" + patch.getPath());
+            }
+            // 不允许改写 .git 下的配置、钩子等文件
+            for (Path name : root.relativize(file)) {
+                if (Constants.DOT_GIT.equalsIgnoreCase(name.toString())) {
+                    throw new IllegalArgumentException("补丁路径指向 .git 目录：" + patch.getPath());
+                }
+            }
+            if (!originals.containsKey(file)) {
+                originals.put(file, Files.readString(file, StandardCharsets.UTF_8));
+            }
+            String source = patched.containsKey(file) ? patched.get(file) : originals.get(file);
+            int index = source.indexOf(patch.getSearch());
+            if (index < 0 || source.indexOf(patch.getSearch(), index + 1) >= 0) {
+                throw new IllegalArgumentException("补丁原始代码在文件中不存在或不唯一：" + patch.getPath());
+            }
+            String replace = patch.getReplace() == null ? "" : patch.getReplace();
+            patched.put(file, source.substring(0, index) + replace + source.substring(index + patch.getSearch().length()));
+        }
+
+        Map<Path, Path> temps = new LinkedHashMap<>();
+        List<Path> replaced = new ArrayList<>();
+        try {
+            for (Map.Entry<Path, String> entry : patched.entrySet()) {
+                temps.put(entry.getKey(), writeTemp(entry.getKey(), entry.getValue()));
+            }
+            for (Map.Entry<Path, Path> entry : temps.entrySet()) {
+                Files.move(entry.getValue(), entry.getKey(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                replaced.add(entry.getKey());
+            }
+        } catch (IOException | RuntimeException e) {
+            restore(root, replaced, originals, e);
+            throw e;
+        } finally {
+            for (Path temp : temps.values()) {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        List<String> changedPaths = new ArrayList<>();
+        for (Path file : patched.keySet()) {
+            changedPaths.add(relative(root, file));
+        }
+        return changedPaths;
+    }
+
+    /**
+     * 把新内容写到同目录的临时文件，临时文件按 umask 创建，沿用原文件的权限，脚本的可执行位不会丢失
+     */
+    private static Path writeTemp(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".ai-patch");
+        try {
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            PosixFileAttributeView attributes = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+            if (attributes != null) {
+                Files.setPosixFilePermissions(temp, attributes.readAttributes().permissions());
+            }
+            return temp;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * 把已经替换的文件恢复成原内容，写不回去的文件再从 HEAD 检出
+     */
+    private static void restore(Path root, List<Path> replaced, Map<Path, String> originals, Exception cause) {
+        List<String> unrestored = new ArrayList<>();
+        for (Path file : replaced) {
+            try {
+                Files.move(writeTemp(file, originals.get(file)), file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                cause.addSuppressed(e);
+                unrestored.add(relative(root, file));
+            }
+        }
+        if (unrestored.isEmpty()) {
+            return;
+        }
+        log.error(">>> 补丁回滚失败，从 HEAD 检出：{}", unrestored);
+        try (Git git = Git.open(root.toFile())) {
+            git.checkout().setStartPoint(Constants.HEAD).addPaths(unrestored).call();
+        } catch (IOException | GitAPIException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static String relative(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private static String text(ChatResponse response) {
+        if (response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
+}
@@ -0,0 +1,422 @@
+package com.simon.mcpclient.service;
+
+import com.simon.mcpclient.cache.AnalysisResultCache;
+import com.simon.mcpclient.cache.CachingToolCallbackProvider;
+import com.simon.mcpclient.cache.ToolResultCache;
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import com.simon.mcpclient.context.CodeContextSlicer;
+import com.simon.mcpclient.llm.LlmScheduler;
+import com.simon.mcpclient.mcp.LazyMcpToolCallbackProvider;
+import com.simon.mcpclient.metrics.AnalyzeMetrics;
+import com.simon.mcpclient.metrics.MeteredToolCallbackProvider;
+import com.simon.mcpclient.repository.AnalyzeRepository;
+import com.simon.mcpclient.repository.RepositoryRegistry;
+import com.simon.mcpclient.req.ChatReq;
+import com.simon.mcpclient.stack.ParsedThrowable;
+import com.simon.mcpclient.stack.StackFrame;
+import com.simon.mcpclient.stack.StackTraceParser;
+import com.simon.mcpclient.util.GitUtils;
+import com.simon.mcpclient.worktree.WorktreeLease;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * 异常分析流程
+ * 从 ChatBotController 中抽出，同步接口和异步任务共用同一套流程
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Service
+public class ErrorAnalyzeService {
+
+    private static final String SYSTEM_PROMPT = "你是一个Java资深专家，并且擅长使用不同的MCP工具来解决用户反馈的问题。";
+
+    public static final String STAGE_PARSE = "PARSE";
+
+    public static final String STAGE_CACHE = "CACHE";
+
+    public static final String STAGE_CLONE = "CLONE";
+
+    public static final String STAGE_WORKTREE = "WORKTREE";
+
+    public static final String STAGE_LOCATE = "LOCATE";
+
+    public static final String STAGE_SLICE = "SLICE";
+
+    public static final String STAGE_ANALYZE = "ANALYZE";
+
+    public static final String STAGE_APPLY = "APPLY";
+
+    public static final String STAGE_BRANCH = "BRANCH";
+
+    private static final String FAIL = "FAIL";
+
+    private static final String SUCCESS_PREFIX = "SUCCESS:";
+
+    private final AiAnalyzeConfig aiAnalyzeConfig;
+
+    private final ChatClient chatClient;
+
+    private final ToolCallingManager toolCallingManager;
+
+    private final LazyMcpToolCallbackProvider mcpToolCallbackProvider;
+
+    /**
+     * 按阶段统计调用次数的工具，每次对话时按当前已连接的服务解析；只读工具的结果经过缓存
+     */
+    private final ToolCallbackProvider toolCallbacks;
+
+    private final StackTraceParser stackTraceParser;
+
+    private final RepositoryRegistry repositoryRegistry;
+
+    private final AnalysisResultCache analysisResultCache;
+
+    private final ToolResultCache toolResultCache;
+
+    private final AnalyzeMetrics analyzeMetrics;
+
+    private final CodeContextSlicer codeContextSlicer;
+
+    private final GitToolInvoker gitToolInvoker;
+
+    private final ConsolidatedAnalyzer consolidatedAnalyzer;
+
+    private final LlmScheduler llmScheduler;
+
+    public ErrorAnalyzeService(ChatClient.Builder chatClientBuilder,
+                               ToolCallingManager toolCallingManager,
+                               LazyMcpToolCallbackProvider mcpToolCallbackProvider,
+                               AiAnalyzeConfig aiAnalyzeConfig,
+                               StackTraceParser stackTraceParser,
+                               RepositoryRegistry repositoryRegistry,
+                               AnalysisResultCache analysisResultCache,
+                               ToolResultCache toolResultCache,
+                               AnalyzeMetrics analyzeMetrics,
+                               CodeContextSlicer codeContextSlicer,
+                               GitToolInvoker gitToolInvoker,
+                               ConsolidatedAnalyzer consolidatedAnalyzer,
+                               LlmScheduler llmScheduler) {
+        this.chatClient = chatClientBuilder.build();
+        this.toolCallingManager = toolCallingManager;
+        this.mcpToolCallbackProvider = mcpToolCallbackProvider;
+        // 缓存在统计之外，命中缓存的调用不计入工具耗时
+        this.toolCallbacks = new CachingToolCallbackProvider(
+                new MeteredToolCallbackProvider(mcpToolCallbackProvider, analyzeMetrics), toolResultCache);
+        this.aiAnalyzeConfig = aiAnalyzeConfig;
+        this.stackTraceParser = stackTraceParser;
+        this.repositoryRegistry = repositoryRegistry;
+        this.analysisResultCache = analysisResultCache;
+        this.toolResultCache = toolResultCache;
+        this.analyzeMetrics = analyzeMetrics;
+        this.codeContextSlicer = codeContextSlicer;
+        this.gitToolInvoker = gitToolInvoker;
+        this.consolidatedAnalyzer = consolidatedAnalyzer;
+        this.llmScheduler = llmScheduler;
+    }
+
+    /**
+     * 执行一次完整的异常分析：解析堆栈、同步仓库、定位文件、分析修复、推送hotfix分支
+     *
+     * @param progress 阶段进度回调
+     * @return 分析结果，成功时为 SUCCESS:分支名
+     */
+    public String analyze(ChatReq req, AnalyzeProgress progress) {
+        return analyze(req, null, progress);
+    }
+
+    /**
+     * 在指定仓库上执行异常分析
+     *
+     * @param repository 已经路由好的仓库，为null时按服务名和堆栈路由
+     */
+    public String analyze(ChatReq req, AnalyzeRepository repository, AnalyzeProgress progress) {
+        try (AnalyzeMetrics.StageTracker tracker = analyzeMetrics.track(progress)) {
+            String result = doAnalyze(req, repository, tracker);
+            tracker.finish(result);
+            return result;
+        } finally {
+            llmScheduler.clearPriority();
+        }
+    }
+
+    private String doAnalyze(ChatReq req, AnalyzeRepository repository, AnalyzeMetrics.StageTracker progress) {
+        log.info(">>> 异常分析，入参: {}", req.getMessage());
+        progress.stage(STAGE_PARSE, null);
+
+        //region 提取堆栈核心信息（进程内解析，不再消耗一轮大模型对话）
+        ParsedThrowable parsed = req.getParsed() != null ? req.getParsed() : stackTraceParser.parse(req.getMessage());
+        List<StackFrame> frames = stackTraceParser.applicationFrames(parsed);
+        if (frames.isEmpty()) {
+            return "extractFail";
+        }
+        String extractResult = frames.stream().map(StackFrame::toLocation).collect(Collectors.joining("|"));
+        log.info(">>> 堆栈解析结果: {}", extractResult);
+
+        // 按服务名或业务帧的包前缀确定异常所属的仓库
+        if (repository == null) {
+            repository = repositoryRegistry.route(req.getService(), frames);
+            if (repository == null) {
+                return "routeFail";
+            }
+        }
+        log.info(">>> 分析仓库: {}", repository.getName());
+        //endregion
+
+        progress.stage(STAGE_CACHE, extractResult);
+        //region 查询结果缓存，同一异常在本地仓库当前版本上已经分析过时直接返回已有的hotfix分支
+        String fingerprint = stackTraceParser.fingerprint(parsed);
+        // 新出现的异常优先获得大模型调用名额，重复出现的异常排在后面
+        llmScheduler.prioritize(fingerprint);
+        String localHead = GitUtils.resolveHead(repository.getLocalRepository());
+        String cached = analysisResultCache.get(fingerprint, localHead);
+        if (cached != null) {
+            log.info(">>> 命中分析结果缓存: {}", cached);
+            progress.cacheHit();
+            return cached;
+        }
+        //endregion
+
+        progress.stage(STAGE_CLONE, null);
+        //region 检查本地仓库，如果不存在则从远程仓库检出
+        boolean consolidated = aiAnalyzeConfig.getPipeline().getMode() == AiAnalyzeConfig.Mode.CONSOLIDATED;
+        String cloneResult = consolidated
+                ? gitToolInvoker.clone(repository.getRemoteRepository(), repository.getLocalRepository())
+                : chatClone(repository);
+        if (FAIL.equals(cloneResult)) {
+            return "cloneFail";
+        }
+        log.info(">>> 仓库同步结果: {}", cloneResult);
+
+        // 拉取到了新的提交时，按新的版本再查一次
+        String head = GitUtils.resolveHead(repository.getLocalRepository());
+        if (head != null && !head.equals(localHead)) {
+            cached = analysisResultCache.get(fingerprint, head);
+            if (cached != null) {
+                log.info(">>> 命中分析结果缓存: {}", cached);
+                progress.cacheHit();
+                return cached;
+            }
+        }
+        //endregion
+
+        progress.stage(STAGE_WORKTREE, cloneResult);
+        //region 租用独立工作区，后续的定位、修复、提交都在工作区内进行，多个分析可以并行
+        repository.getSourceFileIndex().refresh();
+        try (WorktreeLease lease = repository.getWorktreePool().lease()) {
+            // 工作区刚被重置，上一个任务在其中读到的未提交内容已经不存在
+            toolResultCache.invalidate(lease.getPath());
+            String result = consolidated
+                    ? consolidatedInWorktree(req, repository, frames, extractResult, head, lease.getPath(), progress)
+                    : analyzeInWorktree(req, repository, frames, extractResult, head, lease.getPath(), progress);
+            // 取消后才返回的结果不缓存，否则同一异常再次上报时会直接拿到被放弃的分析
+            if (result != null && result.startsWith(SUCCESS_PREFIX) && !progress.isCancelled()) {
+                analysisResultCache.put(fingerprint, head, result);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "worktreeFail";
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error(">>> 工作区准备失败", e);
+            return "worktreeFail";
+        }
+        //endregion
+    }
+
+    /**
+     * 合并模式：文件只从本地索引定位，分析、修复和分支决策在一次流式对话中完成
+     */
+    private String consolidatedInWorktree(ChatReq req, AnalyzeRepository repository, List<StackFrame> frames,
+                                          String extractResult, String head, String workDir, AnalyzeProgress progress) {
+        progress.stage(STAGE_LOCATE, workDir);
+        Map<String, String> located = new LinkedHashMap<>();
+        for (StackFrame frame : frames) {
+            List<String> paths = repository.getSourceFileIndex().resolve(frame);
+            if (!paths.isEmpty()) {
+                located.putIfAbsent(frame.getFileName(), paths.get(0));
+            }
+        }
+        if (located.isEmpty()) {
+            return "locateFail";
+        }
+        String locateResult = located.entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + entry.getValue())
+                .collect(Collectors.joining("\n"));
+
+        progress.stage(STAGE_SLICE, locateResult);
+        String codeSlices = codeContextSlicer.slice(repository, frames, head);
+
+        return consolidatedAnalyzer.analyze(req.getMessage(), extractResult, locateResult, codeSlices,
+                workDir, repository.getRemoteRepository(), generateHotfixBranchName(), progress);
+    }
+
+    private String analyzeInWorktree(ChatReq req, AnalyzeRepository repository, List<StackFrame> frames,
+                                     String extractResult, String head, String workDir, AnalyzeProgress progress) {
+        progress.stage(STAGE_LOCATE, workDir);
+        //region 定位文件（优先查本地源码索引，索引未命中的文件再交给大模型查找）
+        Map<String, String> located = new LinkedHashMap<>();
+        Set<String> unresolved = new LinkedHashSet<>();
+        for (StackFrame frame : frames) {
+            List<String> paths = repository.getSourceFileIndex().resolve(frame);
+            if (paths.isEmpty()) {
+                unresolved.add(frame.getFileName());
+            } else {
+                located.putIfAbsent(frame.getFileName(), Paths.get(workDir, paths.get(0)).toString());
+            }
+        }
+        unresolved.removeAll(located.keySet());
+        String locateResult = located.entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + entry.getValue())
+                .collect(Collectors.joining("\n"));
+
+        if (!unresolved.isEmpty()) {
+            String classNameStr = String.join(",", unresolved);
+            String locateStr = "我会提供给你java类的文件名，可能是一个或者多个，如果是多个会用逗号拼接起来\n" +
+                    "我需要你在" + workDir + "目录下，帮我查找所有文件的具体位置\n" +
+                    "文件名信息如下：\n" +
+                    classNameStr + "\n" +
+                    "我仅需要你输出具体的位置，不需要回答其他内容，输出示例如下：\n" +
+                    "A.java:/Users/Documents/git_repo/ai-code-analyze/A.java" + "\n" +
+                    "B.java:/Users/Documents/git_repo/ai-code-analyze/B.java";
+            String chatLocateResult = doChat(locateStr);
+            if (StringUtils.isNotEmpty(chatLocateResult)) {
+                locateResult = locateResult.isEmpty() ? chatLocateResult : locateResult + "\n" + chatLocateResult;
+            }
+        }
+        if (StringUtils.isEmpty(locateResult)) {
+            return "locateFail";
+        }
+        log.info(">>> 文件定位结果: {}", locateResult);
+        //endregion
+
+        progress.stage(STAGE_SLICE, locateResult);
+        //region 截取异常所在方法的代码片段，直接内联到提示词中，减少大模型读取整个文件的工具调用
+        String codeSlices = codeContextSlicer.slice(repository, frames, head);
+        //endregion
+
+        progress.stage(STAGE_ANALYZE, null);
+        //region 执行具体分析，以及修复
+        String analyzeStr = "我的java程序在运行过程中遇到了异常，下面我将提供给你对应的异常堆栈信息、异常代码行、异常代码文件位置、本地代码目录这4个信息\n" +
+                "异常堆栈信息如下：\n" +
+                req.getMessage() + "\n" +
+                "异常代码行：" + extractResult + "\n" +
+                "异常代码文件位置：" + locateResult + "\n" +
+                "本地代码目录：" + workDir + "\n" +
+                (codeSlices.isEmpty() ? "" : "异常相关的代码片段如下（每行开头是文件中的实际行号，标记 > 的是异常行）：\n" + codeSlices +
+                        "请优先根据以上代码片段分析，只有片段不足以定位和修复问题时再读取完整文件\n") +
+                "我需要你通过我提供的异常代码文件位置，查看具体的代码内容，并修复这个异常，注意需要保存修复后的代码，请直接保存必须要询问我";
+        String analyzeResult = doChat(analyzeStr);
+        log.info(">>> 修复结果: {}", analyzeResult);
+        //endregion
+
+        progress.stage(STAGE_BRANCH, analyzeResult);
+        //region 创建hotfix分支并提交推送
+        String branchName = generateHotfixBranchName();
+        String branchStr = "请在本地仓库目录创建并推送hotfix分支以提交刚才的修复代码，具体要求如下：\n" +
+                "本地仓库目录：" + workDir + "\n" +
+                "远程仓库地址：" + repository.getRemoteRepository() + "\n" +
+                "分支命名规则：hotfix_yyyyMMdd_+六位随机数\n" +
+                "目标分支名称：" + branchName + "\n" +
+                "操作步骤：1) 若存在未提交变更，请先 git add . 并提交，提交信息中包含 'AI Fix'；2) 基于当前最新修复创建并切换到分支" + branchName + "；3) 将提交推送到远程。\n" +
+                "处理成功请仅返回 SUCCESS:" + branchName + "，处理失败请仅返回 FAIL，不需要回答其他内容。";
+        String branchResult = doChat(branchStr);
+        log.info(">>> hotfix分支结果: {}", branchResult);
+        return branchResult;
+        //endregion
+    }
+
+    private String chatClone(AnalyzeRepository repository) {
+        String cloneStr = "我需要你从git远程仓库中检出最新的代码到我指定的本地仓库目录\n" +
+                "git远程仓库地址为：" + repository.getRemoteRepository() + "\n" +
+                "本地仓库地址为：" + repository.getLocalRepository() + "\n" +
+                "处理成功需原样回答工具返回的结果（例如SUCCESS:NOOP、SUCCESS:FAST_FORWARD、SUCCESS:CLONED），处理失败需回答FAIL，不需要回答其他内容";
+        // 逐步对话依赖 git 工具，对应的 MCP 服务还在启动时等待，已确认不可用时直接失败
+        if (!mcpToolCallbackProvider.awaitTool(GitToolInvoker.CLONE_TOOL)) {
+            return FAIL;
+        }
+        return doChat(cloneStr);
+    }
+
+    /**
+     * 执行一轮带工具的对话
+     * 工具调用不交给模型内部执行，而是在这里逐轮处理：只有模型的请求经过调度器，
+     * clone、push 等 git 工具的耗时不占用大模型的在途名额，也不计入自适应并发的延迟
+     */
+    private String doChat(String question) {
+        log.info(">>> 问题: {}", question);
+
+        ToolCallingChatOptions options = ToolCallingChatOptions.builder()
+                .toolCallbacks(toolCallbacks.getToolCallbacks())
+                .internalToolExecutionEnabled(false)
+                .build();
+        Prompt prompt = new Prompt(List.of(new SystemMessage(SYSTEM_PROMPT), new UserMessage(question)), options);
+        ChatResponse response = callModel(prompt);
+        while (response != null && response.hasToolCalls()) {
+            ToolExecutionResult toolResult = toolCallingManager.executeToolCalls(prompt, response);
+            if (toolResult.returnDirect()) {
+                response = ChatResponse.builder()
+                        .from(response)
+                        .generations(ToolExecutionResult.buildGenerations(toolResult))
+                        .build();
+                break;
+            }
+            prompt = new Prompt(toolResult.conversationHistory(), options);
+            response = callModel(prompt);
+        }
+        if (response == null || response.getResult() == null) {
+            return null;
+        }
+        String content = response.getResult().getOutput().getText();
+
+        log.info(">>> 回答：{}", content);
+        return content;
+    }
+
+    /**
+     * 经调度器排队后请求一次模型，同时记录本次请求的 token 消耗
+     */
+    private ChatResponse callModel(Prompt prompt) {
+        ChatResponse response = llmScheduler.call(prompt.getContents(), () -> chatClient.prompt(prompt)
+                .call()
+                .chatResponse());
+        if (response != null && response.getMetadata() != null) {
+            analyzeMetrics.recordUsage(response.getMetadata().getUsage());
+        }
+        return response;
+    }
+
+    private String generateHotfixBranchName() {
+        String date = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+        int random = ThreadLocalRandom.current().nextInt(0, 1_000_000);
+        String randomSix = String.format("%06d", random);
+        return "hotfix_" + date + "_" + randomSix;
+    }
+}
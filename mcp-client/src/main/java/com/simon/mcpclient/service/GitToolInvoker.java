@@ -0,0 +1,110 @@
+package com.simon.mcpclient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simon.mcpclient.cache.CachingToolCallbackProvider;
+import com.simon.mcpclient.cache.ToolResultCache;
+import com.simon.mcpclient.mcp.LazyMcpToolCallbackProvider;
+import com.simon.mcpclient.mcp.McpConnectionManager;
+import com.simon.mcpclient.metrics.AnalyzeMetrics;
+import com.simon.mcpclient.metrics.MeteredToolCallbackProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 直接调用 git MCP 工具
+ * 参数完全确定的同步仓库、推送分支等操作不需要大模型参与，直接调用对应的工具回调，省去一轮对话；
+ * 与对话中的工具调用一样经过 {@link ToolResultCache}，修改仓库后清空该仓库缓存的只读结果
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class GitToolInvoker {
+
+    public static final String FAIL = "FAIL";
+
+    public static final String CLONE_TOOL = "clone";
+
+    public static final String BRANCH_TOOL = "createAndPushBranch";
+
+    /**
+     * 工具返回的 JSON 中提取结果，例如 SUCCESS:NOOP、SUCCESS:hotfix_20261017_123456、FAIL
+     */
+    private static final Pattern RESULT = Pattern.compile("SUCCESS(:[\\w./-]+)?|FAIL");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final LazyMcpToolCallbackProvider mcpToolCallbackProvider;
+
+    private final ToolCallbackProvider toolCallbackProvider;
+
+    public GitToolInvoker(LazyMcpToolCallbackProvider mcpToolCallbackProvider, AnalyzeMetrics analyzeMetrics,
+                          ToolResultCache toolResultCache) {
+        this.mcpToolCallbackProvider = mcpToolCallbackProvider;
+        this.toolCallbackProvider = new CachingToolCallbackProvider(
+                new MeteredToolCallbackProvider(mcpToolCallbackProvider, analyzeMetrics), toolResultCache);
+    }
+
+    /**
+     * 同步远程仓库到本地目录
+     */
+    public String clone(String repositoryUrl, String localPath) {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("repositoryUrl", repositoryUrl);
+        args.put("localPath", localPath);
+        return call(CLONE_TOOL, args);
+    }
+
+    /**
+     * 提交本地变更，创建分支并推送
+     *
+     * @param changedPaths 本地直接修改过的文件（相对仓库根目录），服务端只暂存这些路径
+     */
+    public String createAndPushBranch(String localPath, String remoteUrl, String branchName, List<String> changedPaths) {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("localPath", localPath);
+        args.put("remoteUrl", remoteUrl);
+        args.put("branchName", branchName);
+        args.put("changedPaths", changedPaths);
+        return call(BRANCH_TOOL, args);
+    }
+
+    private String call(String toolName, Map<String, Object> args) {
+        // 提供该工具的 MCP 服务还在启动时等待，已确认不可用时直接失败
+        ToolCallback callback = mcpToolCallbackProvider.awaitTool(toolName) ? find(toolName) : null;
+        if (callback == null) {
+            log.error(">>> 未找到MCP工具: {}", toolName);
+            return FAIL;
+        }
+        try {
+            String raw = callback.call(OBJECT_MAPPER.writeValueAsString(args));
+            Matcher matcher = RESULT.matcher(raw == null ? "" : raw);
+            String result = matcher.find() ? matcher.group() : FAIL;
+            log.info(">>> 工具 {} 返回: {}", toolName, result);
+            return result;
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.error(">>> 工具 {} 调用失败", toolName, e);
+            return FAIL;
+        }
+    }
+
+    private ToolCallback find(String toolName) {
+        for (ToolCallback callback : toolCallbackProvider.getToolCallbacks()) {
+            if (McpConnectionManager.matches(callback, toolName)) {
+                return callback;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.simon.mcpclient.stack;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑格式的异常堆栈
+ * 类名、方法名、文件名统一放进字符串表，帧只记录下标；cause 和 suppressed 按下标引用，
+ * 与外层异常相同的帧只记录数量（同 printStackTrace 的 "... N more"）。
+ * 与上报端 spring-boot 模块中的同名类字段一一对应
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+public class CompactStack implements Serializable {
+
+    /**
+     * 每个帧在 frames 数组中占用的 int 个数：类名、方法名、文件名、行号
+     */
+    public static final int FRAME_WIDTH = 4;
+
+    /**
+     * 字符串表，类名、方法名、文件名和异常类型都只出现一次
+     */
+    private List<String> strings = new ArrayList<>();
+
+    /**
+     * 异常列表，第 0 个是最外层异常，被引用的异常下标总是大于引用它的异常
+     */
+    private List<CompactThrowable> throwables = new ArrayList<>();
+
+    @Data
+    public static class CompactThrowable implements Serializable {
+
+        /**
+         * 异常类型在字符串表中的下标
+         */
+        private int type;
+
+        private String message;
+
+        /**
+         * 每 4 个 int 为一帧：类名下标、方法名下标、文件名下标（-1 表示未知）、行号（-1 未知，-2 本地方法）
+         */
+        private int[] frames;
+
+        /**
+         * 与外层异常相同、被省略的帧数
+         */
+        private int elided;
+
+        /**
+         * cause 的下标，-1 表示没有
+         */
+        private int cause = -1;
+
+        private int[] suppressed;
+    }
+}
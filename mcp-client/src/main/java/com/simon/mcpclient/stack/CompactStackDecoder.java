@@ -0,0 +1,181 @@
+package com.simon.mcpclient.stack;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simon.mcpclient.req.ChatReq;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 紧凑堆栈解码器
+ * 把紧凑格式直接还原为 ParsedThrowable，不再经过文本解析；
+ * 同时按 printStackTrace 的格式还原堆栈文本，提示词和日志仍然使用原来的文本
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class CompactStackDecoder {
+
+    /**
+     * 忽略未知字段，上报端新增字段时不影响解码
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * 解压后的上限，防止异常的压缩数据撑爆内存
+     */
+    private static final int MAX_INFLATED_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * 统一入参格式：携带紧凑堆栈时解码为 ParsedThrowable 并还原堆栈文本，只有文本时保持原样
+     *
+     * @throws IllegalArgumentException 紧凑堆栈无法解码
+     */
+    public void resolve(ChatReq req) {
+        CompactStack stack = req.getStack();
+        if (StringUtils.isNotBlank(req.getStackGzip())) {
+            stack = inflate(req.getStackGzip());
+        }
+        if (stack == null) {
+            return;
+        }
+        ParsedThrowable parsed = decode(stack);
+        req.setParsed(parsed);
+        if (StringUtils.isBlank(req.getMessage())) {
+            req.setMessage(render(parsed));
+        }
+        // 解码后不再需要，任务排队期间不占用内存
+        req.setStack(null);
+        req.setStackGzip(null);
+    }
+
+    public CompactStack inflate(String gzipBase64) {
+        byte[] compressed;
+        try {
+            compressed = Base64.getDecoder().decode(gzipBase64);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("紧凑堆栈不是合法的 base64", e);
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] json = in.readNBytes(MAX_INFLATED_BYTES + 1);
+            if (json.length > MAX_INFLATED_BYTES) {
+                throw new IllegalArgumentException("紧凑堆栈解压后超过 " + MAX_INFLATED_BYTES + " 字节");
+            }
+            return OBJECT_MAPPER.readValue(json, CompactStack.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("紧凑堆栈解压失败：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解码紧凑堆栈
+     * 引用的下标必须大于当前异常，保证不会出现循环引用；每个异常只能被引用一次，
+     * 否则共享的子节点在还原文本时会被重复展开，构造的数据可以让输出按指数增长
+     *
+     * @throws IllegalArgumentException 下标越界或引用关系不合法
+     */
+    public ParsedThrowable decode(CompactStack stack) {
+        List<CompactStack.CompactThrowable> throwables = stack.getThrowables();
+        if (throwables == null || throwables.isEmpty()) {
+            throw new IllegalArgumentException("紧凑堆栈中没有异常");
+        }
+        List<String> strings = stack.getStrings() == null ? List.of() : stack.getStrings();
+        ParsedThrowable[] decoded = new ParsedThrowable[throwables.size()];
+        boolean[] referenced = new boolean[throwables.size()];
+        // 被引用的异常下标总是更大，倒序解码时子节点已经就绪
+        for (int i = throwables.size() - 1; i >= 0; i--) {
+            CompactStack.CompactThrowable entry = throwables.get(i);
+            if (entry == null) {
+                throw new IllegalArgumentException("紧凑堆栈第 " + i + " 个异常为空");
+            }
+            ParsedThrowable throwable = new ParsedThrowable();
+            throwable.setType(string(strings, entry.getType()));
+            throwable.setMessage(entry.getMessage());
+            throwable.setElidedFrames(Math.max(0, entry.getElided()));
+
+            int[] frames = entry.getFrames() == null ? new int[0] : entry.getFrames();
+            if (frames.length % CompactStack.FRAME_WIDTH != 0) {
+                throw new IllegalArgumentException("紧凑堆栈第 " + i + " 个异常的帧数据长度不合法：" + frames.length);
+            }
+            for (int offset = 0; offset < frames.length; offset += CompactStack.FRAME_WIDTH) {
+                StackFrame frame = new StackFrame();
+                frame.setClassName(string(strings, frames[offset]));
+                frame.setMethodName(string(strings, frames[offset + 1]));
+                frame.setFileName(frames[offset + 2] < 0 ? null : string(strings, frames[offset + 2]));
+                // 与 StackTraceElement 一致：-2 表示本地方法
+                int line = frames[offset + 3];
+                frame.setNativeMethod(line == -2);
+                frame.setLineNumber(line < 0 ? -1 : line);
+                throwable.getFrames().add(frame);
+            }
+
+            if (entry.getCause() >= 0) {
+                throwable.setCause(child(decoded, referenced, i, entry.getCause()));
+            }
+            if (entry.getSuppressed() != null) {
+                for (int suppressed : entry.getSuppressed()) {
+                    throwable.getSuppressed().add(child(decoded, referenced, i, suppressed));
+                }
+            }
+            decoded[i] = throwable;
+        }
+        return decoded[0];
+    }
+
+    /**
+     * 按 Throwable.printStackTrace 的格式还原堆栈文本
+     */
+    public String render(ParsedThrowable throwable) {
+        StringBuilder text = new StringBuilder(throwable.getFrames().size() * 80);
+        render(text, throwable, "", "");
+        return text.toString();
+    }
+
+    private void render(StringBuilder text, ParsedThrowable throwable, String caption, String prefix) {
+        text.append(prefix).append(caption).append(throwable.getType());
+        if (throwable.getMessage() != null) {
+            text.append(": ").append(throwable.getMessage());
+        }
+        text.append('\n');
+        for (StackFrame frame : throwable.getFrames()) {
+            text.append(prefix).append("\tat ").append(frame).append('\n');
+        }
+        if (throwable.getElidedFrames() > 0) {
+            text.append(prefix).append("\t... ").append(throwable.getElidedFrames()).append(" more\n");
+        }
+        for (ParsedThrowable suppressed : throwable.getSuppressed()) {
+            render(text, suppressed, "Suppressed: ", prefix + "\t");
+        }
+        if (throwable.getCause() != null) {
+            render(text, throwable.getCause(), "Caused by: ", prefix);
+        }
+    }
+
+    private static ParsedThrowable child(ParsedThrowable[] decoded, boolean[] referenced, int parent, int index) {
+        if (index <= parent || index >= decoded.length) {
+            throw new IllegalArgumentException("紧凑堆栈第 " + parent + " 个异常引用了不合法的下标：" + index);
+        }
+        if (referenced[index]) {
+            throw new IllegalArgumentException("紧凑堆栈第 " + index + " 个异常被重复引用");
+        }
+        referenced[index] = true;
+        return decoded[index];
+    }
+
+    private static String string(List<String> strings, int index) {
+        if (index < 0 || index >= strings.size()) {
+            throw new IllegalArgumentException("紧凑堆栈字符串下标越界：" + index);
+        }
+        return strings.get(index);
+    }
+}
@@ -0,0 +1,47 @@
+package com.simon.mcpclient.stack;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析后的异常，包含 cause 链和 suppressed 异常
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+public class ParsedThrowable implements Serializable {
+
+    /**
+     * 异常类型全限定名
+     */
+    private String type;
+
+    private String message;
+
+    private List<StackFrame> frames = new ArrayList<>();
+
+    /**
+     * "... N more" 省略掉的、与外层异常相同的帧数
+     */
+    private int elidedFrames;
+
+    private ParsedThrowable cause;
+
+    private List<ParsedThrowable> suppressed = new ArrayList<>();
+
+    /**
+     * 最内层的 cause，通常是问题的根因
+     */
+    public ParsedThrowable getRootCause() {
+        ParsedThrowable current = this;
+        while (current.cause != null) {
+            current = current.cause;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,68 @@
+package com.simon.mcpclient.stack;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 解析后的单个堆栈帧
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+public class StackFrame implements Serializable {
+
+    private String className;
+
+    private String methodName;
+
+    /**
+     * 源文件名，例如 UserController.java，Native Method / Unknown Source 时为空
+     */
+    private String fileName;
+
+    /**
+     * 行号，未知时为 -1
+     */
+    private int lineNumber = -1;
+
+    private boolean nativeMethod;
+
+    public String getPackageName() {
+        int idx = className.lastIndexOf('.');
+        return idx < 0 ? "" : className.substring(0, idx);
+    }
+
+    /**
+     * 编译器或运行时生成的帧：lambda 方法、access$ 桥接方法、动态代理/lambda 类
+     */
+    public boolean isSynthetic() {
+        return methodName.startsWith("lambda$")
+                || methodName.startsWith("access$")
+                || className.contains("$$");
+    }
+
+    /**
+     * 是否能对应到具体的源码行
+     */
+    public boolean hasSourceLocation() {
+        return fileName != null && lineNumber > 0;
+    }
+
+    /**
+     * 输出为 [A.java,16] 形式，与原先大模型提取结果的格式保持一致
+     */
+    public String toLocation() {
+        return "[" + fileName + "," + lineNumber + "]";
+    }
+
+    @Override
+    public String toString() {
+        String location = nativeMethod ? "Native Method"
+                : fileName == null ? "Unknown Source"
+                : lineNumber > 0 ? fileName + ":" + lineNumber : fileName;
+        return className + "." + methodName + "(" + location + ")";
+    }
+}
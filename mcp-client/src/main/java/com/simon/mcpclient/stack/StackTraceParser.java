@@ -0,0 +1,287 @@
+package com.simon.mcpclient.stack;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Java 异常堆栈解析器
+ * 在进程内把 printStackTrace 的文本解析为结构化的帧列表，替代原先让大模型提取类名和行号的那一轮对话。
+ * 支持 Caused by 链、Suppressed 块、"... N more" 省略、模块前缀（java.base/）以及 lambda/动态代理等合成帧
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class StackTraceParser {
+
+    private static final String FRAME_PREFIX = "at ";
+
+    private static final String CAUSED_BY = "Caused by:";
+
+    private static final String SUPPRESSED = "Suppressed:";
+
+    private static final Pattern ELIDED = Pattern.compile("^\\.\\.\\.\\s+(\\d+)\\s+more");
+
+    private final AiAnalyzeConfig aiAnalyzeConfig;
+
+    public StackTraceParser(AiAnalyzeConfig aiAnalyzeConfig) {
+        this.aiAnalyzeConfig = aiAnalyzeConfig;
+    }
+
+    /**
+     * 解析堆栈文本
+     *
+     * @return 最外层异常，文本为空时返回null
+     */
+    public ParsedThrowable parse(String text) {
+        if (StringUtils.isBlank(text)) {
+            return null;
+        }
+
+        // 按缩进记录当前所处的异常，Suppressed 块比所属异常多一级缩进，Caused by 与所属异常同级
+        Deque<Level> levels = new ArrayDeque<>();
+        ParsedThrowable root = null;
+        ParsedThrowable current = null;
+
+        for (String rawLine : text.split("\\r?\\n")) {
+            if (StringUtils.isBlank(rawLine)) {
+                continue;
+            }
+            int indent = leadingWhitespace(rawLine);
+            String line = rawLine.substring(indent).trim();
+
+            if (line.startsWith(FRAME_PREFIX)) {
+                StackFrame frame = parseFrame(line.substring(FRAME_PREFIX.length()));
+                if (current != null && frame != null) {
+                    current.getFrames().add(frame);
+                }
+                continue;
+            }
+
+            Matcher elided = ELIDED.matcher(line);
+            if (elided.find()) {
+                if (current != null) {
+                    current.setElidedFrames(Integer.parseInt(elided.group(1)));
+                }
+                continue;
+            }
+
+            if (line.startsWith(CAUSED_BY) && root != null) {
+                ParsedThrowable cause = parseHeader(line.substring(CAUSED_BY.length()));
+                while (levels.size() > 1 && levels.peek().indent > indent) {
+                    levels.pop();
+                }
+                Level owner = levels.peek();
+                owner.throwable.setCause(cause);
+                if (owner.indent == indent) {
+                    levels.pop();
+                }
+                levels.push(new Level(cause, indent));
+                current = cause;
+                continue;
+            }
+
+            if (line.startsWith(SUPPRESSED) && root != null) {
+                ParsedThrowable suppressed = parseHeader(line.substring(SUPPRESSED.length()));
+                while (levels.size() > 1 && levels.peek().indent >= indent) {
+                    levels.pop();
+                }
+                levels.peek().throwable.getSuppressed().add(suppressed);
+                levels.push(new Level(suppressed, indent));
+                current = suppressed;
+                continue;
+            }
+
+            if (root == null) {
+                String header = line.startsWith(CAUSED_BY) ? line.substring(CAUSED_BY.length()) : line;
+                root = parseHeader(header);
+                current = root;
+                levels.push(new Level(root, indent));
+            } else if (current.getFrames().isEmpty()) {
+                // 多行异常消息
+                current.setMessage(current.getMessage() == null ? line : current.getMessage() + "\n" + line);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * 提取需要分析的业务帧
+     * 从根因开始向外层依次收集，其次是 suppressed 异常；过滤掉JDK/框架帧、没有源码行的帧以及动态生成的类，
+     * 同一位置只保留一次
+     */
+    public List<StackFrame> applicationFrames(ParsedThrowable throwable) {
+        if (throwable == null) {
+            return new ArrayList<>();
+        }
+
+        List<ParsedThrowable> chain = new ArrayList<>();
+        for (ParsedThrowable t = throwable; t != null; t = t.getCause()) {
+            chain.add(0, t);
+        }
+        List<ParsedThrowable> ordered = new ArrayList<>(chain);
+        for (ParsedThrowable t : chain) {
+            ordered.addAll(t.getSuppressed());
+        }
+
+        int maxFrames = aiAnalyzeConfig.getStack().getMaxFrames();
+        Map<String, StackFrame> unique = new LinkedHashMap<>();
+        for (ParsedThrowable t : ordered) {
+            for (StackFrame frame : t.getFrames()) {
+                if (unique.size() >= maxFrames) {
+                    break;
+                }
+                if (isApplicationFrame(frame)) {
+                    unique.putIfAbsent(frame.getClassName() + ":" + frame.getLineNumber(), frame);
+                }
+            }
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    /**
+     * 计算异常指纹：cause 链上的异常类型 + 业务帧的类名和方法名
+     * 不包含异常消息和行号，同一位置抛出的同类异常即使消息里带有不同的参数也视为同一个异常
+     *
+     * @return sha-256 十六进制字符串，没有可识别的异常时返回null
+     */
+    public String fingerprint(ParsedThrowable throwable) {
+        if (throwable == null) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder();
+        for (ParsedThrowable t = throwable; t != null; t = t.getCause()) {
+            normalized.append(t.getType()).append('\n');
+        }
+        for (StackFrame frame : applicationFrames(throwable)) {
+            normalized.append(frame.getClassName()).append('#').append(frame.getMethodName()).append('\n');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public boolean isApplicationFrame(StackFrame frame) {
+        if (!frame.hasSourceLocation() || frame.getClassName().contains("$$")) {
+            return false;
+        }
+        AiAnalyzeConfig.Stack stack = aiAnalyzeConfig.getStack();
+        String className = frame.getClassName();
+        for (String excluded : stack.getExcludePackages()) {
+            if (className.startsWith(excluded)) {
+                return false;
+            }
+        }
+        if (stack.getIncludePackages().isEmpty()) {
+            return true;
+        }
+        for (String included : stack.getIncludePackages()) {
+            if (className.startsWith(included)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ParsedThrowable parseHeader(String header) {
+        ParsedThrowable throwable = new ParsedThrowable();
+        String trimmed = header.trim();
+        int idx = trimmed.indexOf(": ");
+        if (idx > 0) {
+            throwable.setType(trimmed.substring(0, idx));
+            throwable.setMessage(trimmed.substring(idx + 2));
+        } else {
+            throwable.setType(trimmed.endsWith(":") ? trimmed.substring(0, trimmed.length() - 1) : trimmed);
+        }
+        return throwable;
+    }
+
+    /**
+     * 解析 "at" 之后的部分，例如：
+     * com.simon.springboot.controller.UserController.get(UserController.java:24)
+     * java.base/java.lang.Thread.run(Thread.java:833)
+     * com.simon.Foo$$Lambda$14/0x0000000800c4b040.apply(Unknown Source)
+     */
+    static StackFrame parseFrame(String text) {
+        int open = text.indexOf('(');
+        int close = text.indexOf(')', open + 1);
+        if (open <= 0 || close < 0) {
+            return null;
+        }
+
+        // 去掉模块/类加载器前缀，隐藏类名中 "/0x..." 的部分需要保留
+        String qualified = text.substring(0, open).trim();
+        int slash;
+        while ((slash = qualified.indexOf('/')) >= 0 && !qualified.startsWith("0x", slash + 1)) {
+            qualified = qualified.substring(slash + 1);
+        }
+        int dot = qualified.lastIndexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+
+        StackFrame frame = new StackFrame();
+        frame.setClassName(qualified.substring(0, dot));
+        frame.setMethodName(qualified.substring(dot + 1));
+
+        String location = text.substring(open + 1, close);
+        if ("Native Method".equals(location)) {
+            frame.setNativeMethod(true);
+        } else if (!location.startsWith("Unknown Source") && !location.isEmpty()) {
+            int colon = location.lastIndexOf(':');
+            if (colon > 0) {
+                frame.setFileName(location.substring(0, colon));
+                frame.setLineNumber(parseLine(location.substring(colon + 1)));
+            } else {
+                frame.setFileName(location);
+            }
+        }
+        return frame;
+    }
+
+    private static int parseLine(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int leadingWhitespace(String line) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Level {
+
+        private final ParsedThrowable throwable;
+
+        private final int indent;
+
+        private Level(ParsedThrowable throwable, int indent) {
+            this.throwable = throwable;
+            this.indent = indent;
+        }
+    }
+}
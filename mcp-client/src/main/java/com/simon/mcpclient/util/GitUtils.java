@@ -0,0 +1,39 @@
+package com.simon.mcpclient.util;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 本地仓库的 Git 工具方法
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public final class GitUtils {
+
+    private GitUtils() {
+    }
+
+    /**
+     * 读取本地仓库当前 HEAD 的提交号，只读本地文件，不访问远端
+     *
+     * @return 提交号，仓库不存在或没有提交时返回null
+     */
+    public static String resolveHead(String localRepository) {
+        File repoDir = new File(localRepository);
+        if (!new File(repoDir, Constants.DOT_GIT).isDirectory()) {
+            return null;
+        }
+        try (Git git = Git.open(repoDir)) {
+            ObjectId head = git.getRepository().resolve(Constants.HEAD);
+            return head == null ? null : head.name();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.simon.mcpclient.worktree;
+
+/**
+ * 工作区租约，分析结束后 close 归还给工作区池
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public interface WorktreeLease extends AutoCloseable {
+
+    /**
+     * 本次分析使用的工作区目录
+     */
+    String getPath();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,271 @@
+package com.simon.mcpclient.worktree;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 工作区池
+ * 预先创建若干个与本地仓库共享对象库（objects/info/alternates）的轻量克隆，
+ * 每个分析任务租用一个独立的工作区并重置到本地仓库最新拉取的提交，互不干扰地修改、提交和推送，
+ * 分析结束后清理并归还。这样多个异常可以并行分析，不会再争抢同一个工作目录和 index.lock。
+ * 每个仓库各有一个工作区池，由 {@link com.simon.mcpclient.repository.RepositoryRegistry} 创建
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class WorktreePool {
+
+    /**
+     * 工作区归还后所在的分支，hotfix 分支推送完成后会被删除
+     */
+    private static final String WORK_BRANCH = "ai-worktree";
+
+    /**
+     * 松散对象按对象名前两位分目录存放
+     */
+    private static final Pattern LOOSE_OBJECT_DIR = Pattern.compile("[0-9a-f]{2}");
+
+    private final AiAnalyzeConfig.Worktree config;
+
+    private final String localRepository;
+
+    /**
+     * 工作区所在目录
+     */
+    private final File root;
+
+    private final BlockingQueue<File> idle = new LinkedBlockingQueue<>();
+
+    private volatile boolean initialized;
+
+    public WorktreePool(AiAnalyzeConfig.Worktree config, String localRepository, File root) {
+        this.config = config;
+        this.localRepository = localRepository;
+        this.root = root;
+    }
+
+    /**
+     * 租用一个工作区，并重置到本地仓库当前的 HEAD
+     * 未开启工作区池时直接返回本地仓库目录
+     */
+    public WorktreeLease lease() throws InterruptedException, IOException, GitAPIException {
+        if (config.getSize() <= 0) {
+            return new SimpleLease(localRepository, null);
+        }
+        init();
+
+        File dir = idle.poll(config.getLeaseTimeoutSeconds(), TimeUnit.SECONDS);
+        if (dir == null) {
+            throw new IllegalStateException("等待空闲工作区超时");
+        }
+        try {
+            reset(dir, mainHead());
+            log.info("租用工作区：{}，剩余空闲：{}", dir, idle.size());
+            return new SimpleLease(dir.getAbsolutePath(), dir);
+        } catch (IOException | GitAPIException | RuntimeException e) {
+            idle.offer(dir);
+            throw e;
+        }
+    }
+
+    /**
+     * 在后台预先创建并检出所有工作区，避免首个分析任务承担全量检出的耗时
+     */
+    public void warmUp() {
+        if (config.getSize() <= 0 || !new File(localRepository, Constants.DOT_GIT).isDirectory()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                init();
+                ObjectId head = mainHead();
+                List<File> dirs = new ArrayList<>();
+                idle.drainTo(dirs);
+                try {
+                    for (File dir : dirs) {
+                        reset(dir, head);
+                    }
+                } finally {
+                    idle.addAll(dirs);
+                }
+                log.info("工作区预热完成：{}，数量：{}", root, dirs.size());
+            } catch (Exception e) {
+                log.warn("工作区预热失败，将在首次租用时创建", e);
+            }
+        }, "worktree-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int idleCount() {
+        return idle.size();
+    }
+
+    private synchronized void init() throws IOException {
+        if (initialized) {
+            return;
+        }
+        for (int i = 0; i < config.getSize(); i++) {
+            File dir = new File(root, "wt-" + i);
+            FileUtils.mkdirs(dir, true);
+            idle.add(dir);
+        }
+        initialized = true;
+    }
+
+    private ObjectId mainHead() throws IOException {
+        try (Git git = Git.open(new File(localRepository))) {
+            ObjectId head = git.getRepository().resolve(Constants.HEAD);
+            if (head == null) {
+                throw new IllegalStateException("本地仓库没有任何提交：" + localRepository);
+            }
+            return head;
+        }
+    }
+
+    /**
+     * 把工作区重置到指定提交：切回工作分支、硬重置、清理未跟踪文件，并删除上一次分析留下的本地分支
+     */
+    private void reset(File dir, ObjectId target) throws IOException, GitAPIException {
+        if (!new File(dir, Constants.DOT_GIT).isDirectory()) {
+            create(dir);
+        }
+        syncShallowFile(dir);
+        try (Git git = Git.open(dir)) {
+            Repository repository = git.getRepository();
+
+            RefUpdate branchUpdate = repository.updateRef(Constants.R_HEADS + WORK_BRANCH);
+            branchUpdate.setNewObjectId(target);
+            branchUpdate.forceUpdate();
+            if (!WORK_BRANCH.equals(repository.getBranch())) {
+                RefUpdate headUpdate = repository.updateRef(Constants.HEAD);
+                headUpdate.disableRefLog();
+                headUpdate.link(Constants.R_HEADS + WORK_BRANCH);
+            }
+
+            git.reset().setMode(ResetCommand.ResetType.HARD).setRef(target.name()).call();
+            git.clean().setCleanDirectories(true).setForce(true).call();
+
+            List<String> staleBranches = new ArrayList<>();
+            for (Ref ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+                if (!ref.getName().equals(Constants.R_HEADS + WORK_BRANCH)) {
+                    staleBranches.add(ref.getName());
+                }
+            }
+            if (!staleBranches.isEmpty()) {
+                git.branchDelete().setBranchNames(staleBranches.toArray(new String[0])).setForce(true).call();
+            }
+        }
+    }
+
+    /**
+     * 初始化一个空仓库，并通过 alternates 直接复用本地仓库的对象库，不复制任何对象
+     */
+    private void create(File dir) throws IOException, GitAPIException {
+        Git.init().setDirectory(dir).call().close();
+        File mainObjects = new File(new File(localRepository, Constants.DOT_GIT), "objects");
+        File alternates = new File(dir, Constants.DOT_GIT + "/objects/info/alternates");
+        FileUtils.mkdirs(alternates.getParentFile(), true);
+        Files.writeString(alternates.toPath(), mainObjects.getAbsolutePath() + "\n", StandardCharsets.UTF_8);
+        log.info("创建工作区：{}", dir);
+    }
+
+    /**
+     * 本地仓库是浅克隆时，工作区也必须知道浅克隆的边界，否则推送时遍历历史会找不到父提交
+     */
+    private void syncShallowFile(File dir) throws IOException {
+        File mainShallow = new File(new File(localRepository, Constants.DOT_GIT), "shallow");
+        File shallow = new File(new File(dir, Constants.DOT_GIT), "shallow");
+        if (mainShallow.isFile()) {
+            Files.copy(mainShallow.toPath(), shallow.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(shallow.toPath());
+        }
+    }
+
+    /**
+     * 清理工作区自己的对象库
+     * 工作区只通过 alternates 读取本地仓库的对象，分析中提交产生的对象都以松散对象写在工作区内；
+     * 重置后分支已删除、工作分支指向本地仓库的提交，这些对象不再被引用，不清理会随着租用次数一直增长。
+     * 引用日志同样只增不减，一并删除
+     */
+    private void prune(File dir) throws IOException {
+        File gitDir = new File(dir, Constants.DOT_GIT);
+        File[] objectDirs = new File(gitDir, "objects").listFiles(file -> LOOSE_OBJECT_DIR.matcher(file.getName()).matches());
+        if (objectDirs != null) {
+            for (File objectDir : objectDirs) {
+                FileUtils.delete(objectDir, FileUtils.RECURSIVE | FileUtils.RETRY);
+            }
+        }
+        FileUtils.delete(new File(gitDir, "logs"), FileUtils.RECURSIVE | FileUtils.RETRY | FileUtils.SKIP_MISSING);
+    }
+
+    private void release(File dir) {
+        try {
+            reset(dir, mainHead());
+            prune(dir);
+            idle.offer(dir);
+        } catch (Exception e) {
+            // 清理失败的工作区直接删掉，下次租用时重新创建
+            log.error("工作区清理失败，重新创建：{}", dir, e);
+            try {
+                FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.RETRY);
+                FileUtils.mkdirs(dir, true);
+            } catch (IOException ex) {
+                log.error("工作区删除失败：{}", dir, ex);
+            }
+            idle.offer(dir);
+        }
+    }
+
+    private class SimpleLease implements WorktreeLease {
+
+        private final String path;
+
+        private final File dir;
+
+        private boolean closed;
+
+        private SimpleLease(String path, File dir) {
+            this.path = path;
+            this.dir = dir;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            if (closed || dir == null) {
+                return;
+            }
+            closed = true;
+            release(dir);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.simon.mcpclient.cache;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ToolResultCache cache;
+
+    private String file;
+
+    private String repo;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        File dir = tempDir.resolve("repo").toFile();
+        try (Git git = Git.init().setDirectory(dir).call()) {
+            Files.writeString(dir.toPath().resolve("a.txt"), "a");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("init").setAuthor("t", "t@t").setCommitter("t", "t@t").call();
+        }
+        repo = dir.getAbsolutePath();
+        file = new File(dir, "a.txt").getAbsolutePath();
+        cache = new ToolResultCache(new AiAnalyzeConfig(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void unwrapsMcpTextContent() {
+        assertThat(ToolResultCache.payload(wrap("SUCCESS:NOOP"))).isEqualTo("SUCCESS:NOOP");
+        assertThat(ToolResultCache.payload(wrap("FAIL:not a file"))).isEqualTo("FAIL:not a file");
+        assertThat(ToolResultCache.payload("[{\"type\":\"text\",\"text\":\"plain\"}]")).isEqualTo("plain");
+        assertThat(ToolResultCache.payload("[{\"type\":\"image\",\"data\":\"x\"}]")).isNull();
+        assertThat(ToolResultCache.payload("not json")).isNull();
+    }
+
+    @Test
+    void cachesSuccessfulReads() {
+        AtomicInteger calls = new AtomicInteger();
+        String input = "{\"path\":\"" + file + "\",\"startLine\":1}";
+        String reordered = "{ \"startLine\": 1, \"path\": \"" + file + "\" }";
+        cache.call("client_gitClone_readFile", input, () -> wrap("a" + calls.incrementAndGet()));
+        String second = cache.call("readFile", reordered, () -> wrap("a" + calls.incrementAndGet()));
+        assertThat(second).isEqualTo(wrap("a1"));
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void neverCachesFailures() {
+        AtomicInteger calls = new AtomicInteger();
+        String input = "{\"path\":\"" + file + "\"}";
+        cache.call("readFile", input, () -> wrap("FAIL:interrupted"));
+        String result = cache.call("readFile", input, () -> wrap("a" + calls.incrementAndGet()));
+        assertThat(result).isEqualTo(wrap("a1"));
+        cache.call("readFile", input, () -> "unexpected");
+        assertThat(cache.call("readFile", input, () -> "other")).isEqualTo(wrap("a1"));
+    }
+
+    @Test
+    void noopCloneKeepsEntriesOtherMutationsInvalidate() {
+        AtomicInteger calls = new AtomicInteger();
+        String input = "{\"path\":\"" + file + "\"}";
+        cache.call("readFile", input, () -> wrap("a" + calls.incrementAndGet()));
+
+        cache.call("clone", "{\"localPath\":\"" + repo + "\"}", () -> wrap("SUCCESS:NOOP"));
+        assertThat(cache.call("readFile", input, () -> wrap("a" + calls.incrementAndGet()))).isEqualTo(wrap("a1"));
+
+        cache.call("clone", "{\"localPath\":\"" + repo + "\"}", () -> wrap("SUCCESS:FAST_FORWARD"));
+        assertThat(cache.call("readFile", input, () -> wrap("a" + calls.incrementAndGet()))).isEqualTo(wrap("a2"));
+
+        cache.call("writeFile", "{\"path\":\"" + file + "\",\"content\":\"b\"}", () -> wrap("SUCCESS"));
+        assertThat(cache.call("readFile", input, () -> wrap("a" + calls.incrementAndGet()))).isEqualTo(wrap("a3"));
+
+        cache.invalidate(repo);
+        assertThat(cache.call("readFile", input, () -> wrap("a" + calls.incrementAndGet()))).isEqualTo(wrap("a4"));
+    }
+
+    /**
+     * 与 SyncMcpToolCallback 的返回格式相同：服务端把字符串返回值序列化成 JSON 后放进文本内容
+     */
+    private static String wrap(String value) {
+        String json = "\\\"" + value + "\\\"";
+        return "[{\"type\":\"text\",\"text\":\"" + json + "\"}]";
+    }
+}
@@ -0,0 +1,214 @@
+package com.simon.mcpclient.context;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import com.simon.mcpclient.index.SourceFileIndex;
+import com.simon.mcpclient.repository.AnalyzeRepository;
+import com.simon.mcpclient.stack.StackFrame;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CodeContextSlicerTest {
+
+    private static final Pattern HEADER = Pattern.compile("^// (\\S+) 第(\\d+)-(\\d+)行$", Pattern.MULTILINE);
+
+    @TempDir
+    Path tempDir;
+
+    private AiAnalyzeConfig config;
+
+    private CodeContextSlicer slicer;
+
+    private AnalyzeRepository repository;
+
+    private String commit;
+
+    @BeforeEach
+    void setUp() {
+        config = new AiAnalyzeConfig();
+        slicer = new CodeContextSlicer(config);
+    }
+
+    @Test
+    void ignoresBracesInLiteralsAndComments() throws Exception {
+        commit(Map.of("Literals.java", """
+                class Literals {
+
+                    void first() {
+                        String open = "{ \\" {";
+                        char close = '}';
+                        char quote = '\\'';
+                        // }
+                        /* } { */
+                        /*
+                         * }
+                         */
+                        String block = \"""
+                            } } {
+                            \""";
+                        throw new IllegalStateException(open);
+                    }
+
+                    void second() {
+                    }
+                }
+                """));
+
+        String slices = slice(frame("Literals.java", 15));
+
+        assertThat(ranges(slices)).containsExactly("Literals.java:3-16");
+        assertThat(slices).contains(">15:         throw new IllegalStateException(open);");
+    }
+
+    @Test
+    void picksMethodAroundLambdaAndMultiLineSignature() throws Exception {
+        commit(Map.of("Lambdas.java", """
+                class Lambdas {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public List<String> names(List<User> users,
+                                              boolean strict)
+                            throws IOException {
+                        List<String> names = new ArrayList<>();
+                        users.forEach(user -> {
+                            if (strict) {
+                                names.add(user.getName().trim());
+                            }
+                        });
+                        return names;
+                    }
+                }
+                """));
+
+        assertThat(ranges(slice(frame("Lambdas.java", 11)))).containsExactly("Lambdas.java:3-15");
+    }
+
+    @Test
+    void anonymousClassResolvesToItsOwnMethod() throws Exception {
+        commit(Map.of("Anonymous.java", """
+                class Anonymous {
+
+                    Runnable task() {
+                        Runnable runnable = new Runnable() {
+                            @Override
+                            public void run() {
+                                Object value = null;
+                                value.hashCode();
+                            }
+                        };
+                        return runnable;
+                    }
+                }
+                """));
+
+        assertThat(ranges(slice(frame("Anonymous.java", 8)))).containsExactly("Anonymous.java:5-9");
+    }
+
+    @Test
+    void mergesOverlappingWindows() throws Exception {
+        // 方法太长，两帧都退回到上下文窗口，窗口重叠后合并成一段，两个异常行都标记
+        config.getContext().setMaxMethodLines(3);
+        config.getContext().setContextLines(2);
+        commit(Map.of("Long.java", lines(20)));
+
+        String slices = slice(frame("Long.java", 10), frame("Long.java", 12));
+
+        assertThat(ranges(slices)).containsExactly("Long.java:8-14");
+        assertThat(slices).contains(">10: line10", ">12: line12", " 11: line11");
+    }
+
+    @Test
+    void fallsBackToWindowThenSkipsFramesOverBudget() throws Exception {
+        config.getContext().setContextLines(1);
+        StringBuilder method = new StringBuilder("class Big {\n    void big() {\n");
+        for (int i = 0; i < 60; i++) {
+            method.append("        int v").append(i).append(" = ").append(i).append(";\n");
+        }
+        method.append("    }\n}\n");
+        commit(Map.of("Big.java", method.toString(), "Other.java", lines(20)));
+        // 整个方法放不下，只够放异常行上下各一行
+        config.getContext().setTokenBudget(40);
+
+        String slices = slice(frame("Big.java", 30), frame("Other.java", 10));
+
+        assertThat(ranges(slices)).containsExactly("Big.java:29-31");
+        assertThat(slices.length() / 3).isLessThanOrEqualTo(40);
+    }
+
+    @Test
+    void clampsWindowToShortFileAndSkipsLinesOutOfRange() throws Exception {
+        commit(Map.of("Short.java", "class Short {\n    int x = 1 / 0;\n}\n"));
+
+        assertThat(ranges(slice(frame("Short.java", 2)))).containsExactly("Short.java:1-4");
+        assertThat(slice(frame("Short.java", 99))).isEmpty();
+        assertThat(slice(frame("Short.java", 0))).isEmpty();
+    }
+
+    private String slice(StackFrame... frames) {
+        return slicer.slice(repository, List.of(frames), commit);
+    }
+
+    private void commit(Map<String, String> files) throws Exception {
+        File dir = tempDir.resolve("repo").toFile();
+        try (Git git = Git.init().setDirectory(dir).call()) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                Files.writeString(dir.toPath().resolve(file.getKey()), file.getValue());
+            }
+            git.add().addFilepattern(".").call();
+            commit = git.commit().setMessage("init").setAuthor("t", "t@t").setCommitter("t", "t@t").call().name();
+        }
+        SourceFileIndex index = mock(SourceFileIndex.class);
+        when(index.resolve(any())).thenAnswer(invocation -> {
+            StackFrame frame = invocation.getArgument(0);
+            return files.containsKey(frame.getFileName()) ? List.of(frame.getFileName()) : List.of();
+        });
+        repository = mock(AnalyzeRepository.class);
+        when(repository.getLocalRepository()).thenReturn(dir.getAbsolutePath());
+        when(repository.getSourceFileIndex()).thenReturn(index);
+    }
+
+    private static StackFrame frame(String fileName, int line) {
+        StackFrame frame = new StackFrame();
+        frame.setClassName(fileName.replace(".java", ""));
+        frame.setMethodName("m");
+        frame.setFileName(fileName);
+        frame.setLineNumber(line);
+        return frame;
+    }
+
+    private static String lines(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            text.append("line").append(i).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * 片段标题中的文件和行号范围，格式为 文件:起始-结束
+     */
+    private static List<String> ranges(String slices) {
+        List<String> ranges = new ArrayList<>();
+        Matcher matcher = HEADER.matcher(slices);
+        while (matcher.find()) {
+            ranges.add(matcher.group(1) + ":" + matcher.group(2) + "-" + matcher.group(3));
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,66 @@
+package com.simon.mcpclient.job;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import com.simon.mcpclient.repository.AnalyzeRepository;
+import com.simon.mcpclient.repository.RepositoryRegistry;
+import com.simon.mcpclient.req.ChatReq;
+import com.simon.mcpclient.service.AnalyzeProgress;
+import com.simon.mcpclient.service.ErrorAnalyzeService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnalyzeJobServiceTest {
+
+    @Test
+    void cancelStopsBeforeBranchStage() throws Exception {
+        AnalyzeRepository repository = mock(AnalyzeRepository.class);
+        when(repository.getName()).thenReturn("demo");
+        when(repository.getConcurrency()).thenReturn(1);
+        RepositoryRegistry registry = mock(RepositoryRegistry.class);
+        when(registry.all()).thenReturn(List.of(repository));
+        when(registry.route(any(ChatReq.class))).thenReturn(repository);
+
+        CountDownLatch analyzing = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicBoolean pushed = new AtomicBoolean();
+        AtomicBoolean seenCancelled = new AtomicBoolean();
+        ErrorAnalyzeService analyzeService = mock(ErrorAnalyzeService.class);
+        when(analyzeService.analyze(any(), any(), any())).thenAnswer(invocation -> {
+            AnalyzeProgress progress = invocation.getArgument(2);
+            progress.stage(ErrorAnalyzeService.STAGE_ANALYZE, null);
+            analyzing.countDown();
+            cancelled.await(10, TimeUnit.SECONDS);
+            seenCancelled.set(progress.isCancelled());
+            // 取消后进入提交推送阶段时抛出 CancellationException
+            progress.stage(ErrorAnalyzeService.STAGE_BRANCH, null);
+            pushed.set(true);
+            return "SUCCESS:hotfix";
+        });
+
+        AnalyzeJobService service = new AnalyzeJobService(analyzeService, registry, new AiAnalyzeConfig(),
+                new SimpleMeterRegistry());
+        AnalyzeJob job = service.submit(new ChatReq());
+        assertThat(analyzing.await(10, TimeUnit.SECONDS)).isTrue();
+        service.cancel(job.getId());
+        cancelled.countDown();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!seenCancelled.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(100);
+        assertThat(seenCancelled).isTrue();
+        assertThat(pushed).isFalse();
+        assertThat(job.getStatus()).isEqualTo(AnalyzeJobStatus.CANCELLED);
+    }
+}
@@ -0,0 +1,97 @@
+package com.simon.mcpclient.job;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalyzeJobTest {
+
+    @Test
+    void stalledSubscriberDoesNotBlockQueriesOrOtherSubscribers() throws Exception {
+        AnalyzeJob job = new AnalyzeJob("job");
+        job.start();
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(() -> {
+            stalled.countDown();
+            release.await(10, TimeUnit.SECONDS);
+        });
+        job.subscribe(slow);
+
+        CompletableFuture<Void> analysis = CompletableFuture.runAsync(() -> job.progress("CLONE", null));
+        assertThat(stalled.await(5, TimeUnit.SECONDS)).isTrue();
+        try {
+            // 慢连接卡在推送中时，查询和新的订阅立即返回
+            assertThat(CompletableFuture.supplyAsync(job::getEvents).get(1, TimeUnit.SECONDS)).hasSize(1);
+            RecordingEmitter fast = new RecordingEmitter(null);
+            CompletableFuture.runAsync(() -> job.subscribe(fast)).get(1, TimeUnit.SECONDS);
+            assertThat(fast.stages).containsExactly("CLONE");
+        } finally {
+            release.countDown();
+        }
+        analysis.get(5, TimeUnit.SECONDS);
+        job.progress("LOCATE", "x");
+        job.finish(AnalyzeJobStatus.SUCCEEDED, "SUCCESS:b");
+        assertThat(slow.stages).containsExactly("CLONE", "LOCATE", "SUCCEEDED");
+    }
+
+    @Test
+    void dropsBrokenSubscribers() {
+        AnalyzeJob job = new AnalyzeJob("job");
+        RecordingEmitter broken = new RecordingEmitter(() -> {
+            throw new IOException("reset");
+        });
+        RecordingEmitter healthy = new RecordingEmitter(null);
+        job.subscribe(broken);
+        job.subscribe(healthy);
+
+        job.progress("PARSE", null);
+        job.partial("chunk");
+        job.progress("CLONE", null);
+
+        assertThat(broken.attempts).isEqualTo(1);
+        assertThat(healthy.stages).containsExactly("PARSE", "PARTIAL", "CLONE");
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final Action action;
+
+        private final List<String> stages = new CopyOnWriteArrayList<>();
+
+        private int attempts;
+
+        private RecordingEmitter(Action action) {
+            this.action = action;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            attempts++;
+            if (action != null) {
+                try {
+                    action.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            stages.add(((AnalyzeJobEvent) builder.build().stream()
+                    .filter(data -> data.getData() instanceof AnalyzeJobEvent)
+                    .findFirst().orElseThrow().getData()).getStage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Action {
+
+        void run() throws IOException, InterruptedException;
+    }
+}
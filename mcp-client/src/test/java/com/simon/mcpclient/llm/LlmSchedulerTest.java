@@ -0,0 +1,60 @@
+package com.simon.mcpclient.llm;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmSchedulerTest {
+
+    @Test
+    void recognisesThrottlingByStatus() {
+        assertThat(LlmScheduler.isThrottled(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS))).isTrue();
+        assertThat(LlmScheduler.isThrottled(WebClientResponseException.create(429, "Too Many Requests", null, null, null)))
+                .isTrue();
+        assertThat(LlmScheduler.isThrottled(new IllegalStateException(new NonTransientAiException("429 - {\"error\":{}}"))))
+                .isTrue();
+        // 消息中偶然出现 429 不算限流
+        assertThat(LlmScheduler.isThrottled(new NonTransientAiException("400 - max_tokens 4290 too large"))).isFalse();
+        assertThat(LlmScheduler.isThrottled(new IllegalStateException("line 429"))).isFalse();
+    }
+
+    @Test
+    void retriesThrottledCallsUntilSuccess() {
+        LlmScheduler scheduler = scheduler();
+        AtomicInteger attempts = new AtomicInteger();
+        String result = scheduler.execute("q", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+            }
+            return "ok";
+        }, r -> 0);
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void doesNotRetryWhenCallerForbidsIt() {
+        LlmScheduler scheduler = scheduler();
+        AtomicInteger attempts = new AtomicInteger();
+        assertThatThrownBy(() -> scheduler.execute("q", () -> {
+            attempts.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+        }, r -> 0, () -> false)).isInstanceOf(HttpClientErrorException.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    private static LlmScheduler scheduler() {
+        AiAnalyzeConfig config = new AiAnalyzeConfig();
+        config.getLlm().setRetryBackoffMillis(1);
+        return new LlmScheduler(config, new SimpleMeterRegistry());
+    }
+}
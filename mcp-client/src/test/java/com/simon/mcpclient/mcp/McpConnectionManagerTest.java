@@ -0,0 +1,27 @@
+package com.simon.mcpclient.mcp;
+
+import io.modelcontextprotocol.spec.McpError;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class McpConnectionManagerTest {
+
+    @Test
+    void classifiesTransportFailures() {
+        // 请求超时、连接断开：服务端没有响应
+        assertThat(McpConnectionManager.isTransportFailure(
+                new IllegalStateException("Timeout on blocking read", new TimeoutException()))).isTrue();
+        assertThat(McpConnectionManager.isTransportFailure(
+                new RuntimeException(new IOException("Connection reset")))).isTrue();
+        // 服务端返回的 JSON-RPC 错误和工具返回的错误结果说明连接正常
+        assertThat(McpConnectionManager.isTransportFailure(new McpError("Unknown tool"))).isFalse();
+        assertThat(McpConnectionManager.isTransportFailure(
+                new RuntimeException(new McpError("Invalid params")))).isFalse();
+        assertThat(McpConnectionManager.isTransportFailure(
+                new IllegalStateException("Error calling tool: [TextContent[text=boom]]"))).isFalse();
+    }
+}
@@ -0,0 +1,85 @@
+package com.simon.mcpclient.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ConsolidatedAnalyzerTest {
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void rejectsPathsIntoGitDirectory() throws Exception {
+        Files.createDirectories(workDir.resolve(".git/hooks"));
+        Files.writeString(workDir.resolve(".git/config"), "[core]\n");
+        Files.writeString(workDir.resolve(".git/hooks/pre-commit"), "exit 0\n");
+
+        for (String path : List.of(".git/config", "/.git/hooks/pre-commit", "src/../.git/config", ".GIT/config")) {
+            assertThatThrownBy(() -> ConsolidatedAnalyzer.applyPatches(outcome(path, "[core]", "[x]"), workDir.toString()))
+                    .as(path)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(Files.readString(workDir.resolve(".git/config"))).isEqualTo("[core]\n");
+    }
+
+    @Test
+    void keepsPermissionsOnReplace() throws Exception {
+        assumeTrue(Files.getFileStore(workDir).supportsFileAttributeView("posix"));
+        Path script = workDir.resolve("bin/run.sh");
+        Files.createDirectories(script.getParent());
+        Files.writeString(script, "echo old\n");
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-x---"));
+
+        List<String> changed = ConsolidatedAnalyzer.applyPatches(outcome("bin/run.sh", "old", "new"), workDir.toString());
+
+        assertThat(changed).containsExactly("bin/run.sh");
+        assertThat(Files.readString(script)).isEqualTo("echo new\n");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(script))).isEqualTo("rwxr-x---");
+        // 临时文件已经替换掉原文件，没有残留
+        try (Stream<Path> files = Files.list(script.getParent())) {
+            assertThat(files).containsExactly(script);
+        }
+    }
+
+    @Test
+    void leavesEveryFileUntouchedWhenLaterWriteFails() throws Exception {
+        Path first = workDir.resolve("src/A.java");
+        Path second = workDir.resolve("src/B.java");
+        Files.createDirectories(first.getParent());
+        Files.writeString(first, "int a = 1;\n");
+        Files.writeString(second, "int b = 1;\n");
+        // 第二个文件的临时文件位置被目录占住，写入必然失败
+        Files.createDirectory(workDir.resolve("src/B.java.ai-patch"));
+
+        AnalyzeOutcome outcome = outcome("src/A.java", "a = 1", "a = 2");
+        outcome.getPatches().addAll(outcome("src/B.java", "b = 1", "b = 2").getPatches());
+
+        assertThatThrownBy(() -> ConsolidatedAnalyzer.applyPatches(outcome, workDir.toString()))
+                .isInstanceOf(IOException.class);
+        assertThat(Files.readString(first)).isEqualTo("int a = 1;\n");
+        assertThat(Files.readString(second)).isEqualTo("int b = 1;\n");
+        // 已经写好的临时文件也被清理掉
+        assertThat(workDir.resolve("src/A.java.ai-patch")).doesNotExist();
+    }
+
+    private static AnalyzeOutcome outcome(String path, String search, String replace) {
+        AnalyzeOutcome.FilePatch patch = new AnalyzeOutcome.FilePatch();
+        patch.setPath(path);
+        patch.setSearch(search);
+        patch.setReplace(replace);
+        AnalyzeOutcome outcome = new AnalyzeOutcome();
+        outcome.getPatches().add(patch);
+        return outcome;
+    }
+}
@@ -0,0 +1,59 @@
+package com.simon.mcpclient.service;
+
+import com.simon.mcpclient.cache.ToolResultCache;
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import com.simon.mcpclient.mcp.LazyMcpToolCallbackProvider;
+import com.simon.mcpclient.metrics.AnalyzeMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GitToolInvokerTest {
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void failedPushInvalidatesCachedReads() throws Exception {
+        Path file = workDir.resolve("A.java");
+        try (Git git = Git.init().setDirectory(workDir.toFile()).call()) {
+            Files.writeString(file, "old");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("init").setAuthor("t", "t@t").setCommitter("t", "t@t").call();
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ToolResultCache cache = new ToolResultCache(new AiAnalyzeConfig(), meterRegistry);
+
+        ToolCallback push = mock(ToolCallback.class);
+        when(push.getToolDefinition()).thenReturn(ToolDefinition.builder()
+                .name("git_" + GitToolInvoker.BRANCH_TOOL).description("push").inputSchema("{}").build());
+        when(push.call(anyString())).thenReturn("[{\"type\":\"text\",\"text\":\"FAIL:rejected\"}]");
+        LazyMcpToolCallbackProvider provider = mock(LazyMcpToolCallbackProvider.class);
+        when(provider.awaitTool(anyString())).thenReturn(true);
+        when(provider.getToolCallbacks()).thenReturn(new ToolCallback[]{push});
+        GitToolInvoker invoker = new GitToolInvoker(provider, new AnalyzeMetrics(meterRegistry), cache);
+
+        AtomicInteger reads = new AtomicInteger();
+        String input = "{\"path\":\"" + file + "\"}";
+        cache.call("readFile", input, () -> "read" + reads.incrementAndGet());
+
+        // 补丁已经写进工作区但推送失败，HEAD 没有变化，之前缓存的读取结果也不能再用
+        Files.writeString(file, "new");
+        assertThat(invoker.createAndPushBranch(workDir.toString(), "origin", "hotfix_x", List.of("A.java")))
+                .isEqualTo(GitToolInvoker.FAIL);
+        assertThat(cache.call("readFile", input, () -> "read" + reads.incrementAndGet())).isEqualTo("read2");
+    }
+}
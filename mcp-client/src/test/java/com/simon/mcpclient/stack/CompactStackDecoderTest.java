@@ -0,0 +1,158 @@
+package com.simon.mcpclient.stack;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactStackDecoderTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 宿主应用的 CompactStackEncoder 对 STACK_TRACE 中异常的编码结果（spring-boot 模块的 CompactStackEncoderTest 校验同一份数据）：
+     * 外层异常带一个 suppressed 和两层 cause，与外层相同的尾部帧只记录数量，类名和方法名在字符串表中只出现一次
+     */
+    static final String COMPACT_JSON = "{\"strings\":[\"com.simon.demo.OrderService\",\"submit\",\"OrderService.java\","
+            + "\"com.simon.demo.OrderController\",\"create\",\"OrderController.java\",\"com.simon.demo.Main\",\"main\",\"Main.java\","
+            + "\"java.lang.RuntimeException\",\"com.simon.demo.Resource\",\"close\",\"Resource.java\",\"java.lang.IllegalStateException\","
+            + "\"com.simon.demo.OrderDao\",\"insert\",\"OrderDao.java\",\"java.sql.SQLException\",\"sun.nio.ch.Net\",\"poll\","
+            + "\"com.simon.demo.Pool\",\"get\",\"java.io.IOException\"],"
+            + "\"throwables\":[{\"type\":9,\"message\":\"order failed\",\"frames\":[0,1,2,42,3,4,5,18,6,7,8,7],\"elided\":0,\"cause\":2,\"suppressed\":[1]},"
+            + "{\"type\":13,\"message\":\"close failed\",\"frames\":[10,11,12,12,0,1,2,45],\"elided\":2,\"cause\":-1},"
+            + "{\"type\":17,\"message\":\"deadlock\",\"frames\":[14,15,16,30,0,1,2,40],\"elided\":2,\"cause\":3},"
+            + "{\"type\":22,\"message\":\"connection reset\",\"frames\":[18,19,-1,-2,20,21,-1,-1],\"elided\":4,\"cause\":-1}]}";
+
+    /**
+     * 同一异常 printStackTrace 的输出
+     */
+    static final String STACK_TRACE = """
+            java.lang.RuntimeException: order failed
+            \tat com.simon.demo.OrderService.submit(OrderService.java:42)
+            \tat com.simon.demo.OrderController.create(OrderController.java:18)
+            \tat com.simon.demo.Main.main(Main.java:7)
+            \tSuppressed: java.lang.IllegalStateException: close failed
+            \t\tat com.simon.demo.Resource.close(Resource.java:12)
+            \t\tat com.simon.demo.OrderService.submit(OrderService.java:45)
+            \t\t... 2 more
+            Caused by: java.sql.SQLException: deadlock
+            \tat com.simon.demo.OrderDao.insert(OrderDao.java:30)
+            \tat com.simon.demo.OrderService.submit(OrderService.java:40)
+            \t... 2 more
+            Caused by: java.io.IOException: connection reset
+            \tat sun.nio.ch.Net.poll(Native Method)
+            \tat com.simon.demo.Pool.get(Unknown Source)
+            \t... 4 more
+            """;
+
+    private final CompactStackDecoder decoder = new CompactStackDecoder();
+
+    @Test
+    void rendersSameTextAsPrintStackTrace() throws Exception {
+        ParsedThrowable parsed = decoder.decode(compact());
+        assertThat(decoder.render(parsed)).isEqualTo(STACK_TRACE);
+    }
+
+    @Test
+    void decodesSharedFramesAndCauseChain() throws Exception {
+        ParsedThrowable parsed = decoder.decode(compact());
+        assertThat(parsed.getType()).isEqualTo("java.lang.RuntimeException");
+        assertThat(parsed.getFrames()).hasSize(3);
+
+        ParsedThrowable suppressed = parsed.getSuppressed().get(0);
+        assertThat(suppressed.getFrames()).extracting(StackFrame::getClassName)
+                .containsExactly("com.simon.demo.Resource", "com.simon.demo.OrderService");
+        assertThat(suppressed.getElidedFrames()).isEqualTo(2);
+
+        ParsedThrowable sql = parsed.getCause();
+        assertThat(sql.getType()).isEqualTo("java.sql.SQLException");
+        // 与外层共用字符串表中的类名、方法名和文件名
+        assertThat(sql.getFrames().get(1).getClassName()).isEqualTo("com.simon.demo.OrderService");
+        assertThat(sql.getFrames().get(1).getFileName()).isEqualTo("OrderService.java");
+        assertThat(sql.getFrames().get(1).getLineNumber()).isEqualTo(40);
+
+        ParsedThrowable io = sql.getCause();
+        assertThat(io.getCause()).isNull();
+        assertThat(io.getElidedFrames()).isEqualTo(4);
+        assertThat(io.getFrames().get(0).isNativeMethod()).isTrue();
+        assertThat(io.getFrames().get(1).getFileName()).isNull();
+        assertThat(io.getFrames().get(1).getLineNumber()).isEqualTo(-1);
+    }
+
+    @Test
+    void inflatesGzipPayload() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(COMPACT_JSON.getBytes(StandardCharsets.UTF_8));
+        }
+        CompactStack stack = decoder.inflate(Base64.getEncoder().encodeToString(out.toByteArray()));
+        assertThat(decoder.render(decoder.decode(stack))).isEqualTo(STACK_TRACE);
+
+        assertThatThrownBy(() -> decoder.inflate("not base64!"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsOutOfRangeIndexes() throws Exception {
+        CompactStack badString = compact();
+        badString.getThrowables().get(3).getFrames()[0] = 99;
+        assertThatThrownBy(() -> decoder.decode(badString))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("99");
+
+        CompactStack badType = compact();
+        badType.getThrowables().get(0).setType(-1);
+        assertThatThrownBy(() -> decoder.decode(badType)).isInstanceOf(IllegalArgumentException.class);
+
+        CompactStack causeOutOfRange = compact();
+        causeOutOfRange.getThrowables().get(2).setCause(4);
+        assertThatThrownBy(() -> decoder.decode(causeOutOfRange))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("4");
+
+        // 引用自己或更靠前的异常会形成环
+        CompactStack causeBackwards = compact();
+        causeBackwards.getThrowables().get(3).setCause(0);
+        assertThatThrownBy(() -> decoder.decode(causeBackwards)).isInstanceOf(IllegalArgumentException.class);
+
+        CompactStack suppressedOutOfRange = compact();
+        suppressedOutOfRange.getThrowables().get(0).setSuppressed(new int[]{7});
+        assertThatThrownBy(() -> decoder.decode(suppressedOutOfRange)).isInstanceOf(IllegalArgumentException.class);
+
+        CompactStack truncatedFrames = compact();
+        truncatedFrames.getThrowables().get(1).setFrames(new int[]{10, 11, 12});
+        assertThatThrownBy(() -> decoder.decode(truncatedFrames)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> decoder.decode(new CompactStack())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsSharedChildren() {
+        // 每个异常的 cause 和 suppressed 都指向下一个，不拦截时还原出的文本按 2^n 增长
+        CompactStack stack = new CompactStack();
+        stack.getStrings().add("java.lang.IllegalStateException");
+        for (int i = 0; i < 40; i++) {
+            CompactStack.CompactThrowable entry = new CompactStack.CompactThrowable();
+            entry.setType(0);
+            if (i < 39) {
+                entry.setCause(i + 1);
+                entry.setSuppressed(new int[]{i + 1});
+            }
+            stack.getThrowables().add(entry);
+        }
+
+        assertThatThrownBy(() -> decoder.decode(stack))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("重复引用");
+    }
+
+    private static CompactStack compact() throws Exception {
+        return OBJECT_MAPPER.readValue(COMPACT_JSON, CompactStack.class);
+    }
+}
@@ -0,0 +1,244 @@
+package com.simon.mcpclient.stack;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StackTraceParserTest {
+
+    /**
+     * JDK 17 printStackTrace 的原始输出：try-with-resources 关闭资源时抛出的异常作为 suppressed，
+     * 它自己的 cause 与 Suppressed 行同级缩进；异常消息有两行；公共的尾部帧省略为 "... N more"
+     */
+    private static final String SUPPRESSED_WITH_CAUSE = """
+            java.lang.RuntimeException: order request failed
+            \tat com.simon.demo.OrderController.main(OrderController.java:14)
+            Caused by: java.lang.IllegalArgumentException: bad id: -1
+            expected a positive number
+            \tat com.simon.demo.OrderController.lambda$save$0(OrderController.java:9)
+            \tat java.base/java.lang.Iterable.forEach(Iterable.java:75)
+            \tat com.simon.demo.OrderController.save(OrderController.java:9)
+            \tat com.simon.demo.OrderController.main(OrderController.java:13)
+            \tSuppressed: java.lang.IllegalStateException: close failed
+            \t\tat com.simon.demo.OrderController$Connection.close(OrderController.java:5)
+            \t\tat com.simon.demo.OrderController.save(OrderController.java:8)
+            \t\t... 1 more
+            \tCaused by: java.io.IOException: broken pipe
+            \t\t... 3 more
+            """;
+
+    /**
+     * 反射调用的业务方法抛出异常：根因只有一帧，其余 5 帧与外层相同
+     */
+    private static final String REFLECTIVE_CALL = """
+            java.lang.reflect.InvocationTargetException
+            \tat java.base/jdk.internal.reflect.NativeMethodAccessorImpl.invoke0(Native Method)
+            \tat java.base/jdk.internal.reflect.NativeMethodAccessorImpl.invoke(NativeMethodAccessorImpl.java:77)
+            \tat java.base/jdk.internal.reflect.DelegatingMethodAccessorImpl.invoke(DelegatingMethodAccessorImpl.java:43)
+            \tat java.base/java.lang.reflect.Method.invoke(Method.java:568)
+            \tat com.simon.demo.OrderController.main(OrderController.java:16)
+            Caused by: java.lang.NullPointerException
+            \tat com.simon.demo.OrderController.load(OrderController.java:18)
+            \t... 5 more
+            """;
+
+    /**
+     * Spring MVC 请求中抛出的异常：经过 CGLIB 代理、AOP 切面和 Tomcat 线程池
+     */
+    private static final String SPRING_REQUEST = """
+            java.lang.NullPointerException: Cannot invoke "String.length()" because "userName" is null
+            \tat com.simon.springboot.controller.UserController.get(UserController.java:31)
+            \tat com.simon.springboot.controller.UserController$$SpringCGLIB$$0.get(<generated>)
+            \tat java.base/jdk.internal.reflect.DirectMethodHandleAccessor.invoke(DirectMethodHandleAccessor.java:103)
+            \tat java.base/java.lang.reflect.Method.invoke(Method.java:580)
+            \tat org.springframework.aop.support.AopUtils.invokeJoinpointUsingReflection(AopUtils.java:355)
+            \tat org.springframework.aop.framework.ReflectiveMethodInvocation.proceed(ReflectiveMethodInvocation.java:163)
+            \tat org.springframework.aop.aspectj.MethodInvocationProceedingJoinPoint.proceed(MethodInvocationProceedingJoinPoint.java:89)
+            \tat com.simon.springboot.exception.AiAnalyzeHandler.around(AiAnalyzeHandler.java:45)
+            \tat com.simon.springboot.controller.UserController$$SpringCGLIB$$0.get(<generated>)
+            \tat org.apache.tomcat.util.threads.TaskThread$WrappingRunnable.run(TaskThread.java:63)
+            \tat java.base/java.lang.Thread.run(Thread.java:1583)
+            """;
+
+    private final StackTraceParser parser = new StackTraceParser(new AiAnalyzeConfig());
+
+    @Test
+    void parsesSuppressedBlockWithItsOwnCause() {
+        ParsedThrowable root = parser.parse(SUPPRESSED_WITH_CAUSE);
+
+        assertThat(root.getType()).isEqualTo("java.lang.RuntimeException");
+        assertThat(root.getMessage()).isEqualTo("order request failed");
+        assertThat(root.getFrames()).hasSize(1);
+
+        ParsedThrowable cause = root.getCause();
+        assertThat(cause.getType()).isEqualTo("java.lang.IllegalArgumentException");
+        assertThat(cause.getMessage()).isEqualTo("bad id: -1\nexpected a positive number");
+        assertThat(cause.getFrames()).extracting(StackFrame::getClassName)
+                .containsExactly("com.simon.demo.OrderController", "java.lang.Iterable",
+                        "com.simon.demo.OrderController", "com.simon.demo.OrderController");
+        assertThat(cause.getElidedFrames()).isZero();
+
+        assertThat(cause.getSuppressed()).hasSize(1);
+        ParsedThrowable suppressed = cause.getSuppressed().get(0);
+        assertThat(suppressed.getType()).isEqualTo("java.lang.IllegalStateException");
+        assertThat(suppressed.getFrames()).extracting(StackFrame::getMethodName).containsExactly("close", "save");
+        assertThat(suppressed.getElidedFrames()).isEqualTo(1);
+
+        // 缩进与 Suppressed 相同的 Caused by 属于 suppressed 异常，不属于外层
+        ParsedThrowable suppressedCause = suppressed.getCause();
+        assertThat(suppressedCause.getType()).isEqualTo("java.io.IOException");
+        assertThat(suppressedCause.getMessage()).isEqualTo("broken pipe");
+        assertThat(suppressedCause.getFrames()).isEmpty();
+        assertThat(suppressedCause.getElidedFrames()).isEqualTo(3);
+        assertThat(cause.getCause()).isNull();
+    }
+
+    @Test
+    void parsesCauseWithElidedFrames() {
+        ParsedThrowable root = parser.parse(REFLECTIVE_CALL);
+
+        assertThat(root.getType()).isEqualTo("java.lang.reflect.InvocationTargetException");
+        assertThat(root.getMessage()).isNull();
+        assertThat(root.getFrames()).hasSize(5);
+        assertThat(root.getFrames().get(0).isNativeMethod()).isTrue();
+        // 模块前缀 java.base/ 不属于类名
+        assertThat(root.getFrames().get(3).getClassName()).isEqualTo("java.lang.reflect.Method");
+
+        ParsedThrowable cause = root.getCause();
+        assertThat(cause.getType()).isEqualTo("java.lang.NullPointerException");
+        assertThat(cause.getFrames()).hasSize(1);
+        assertThat(cause.getElidedFrames()).isEqualTo(5);
+
+        // 从根因开始收集业务帧
+        assertThat(parser.applicationFrames(root)).extracting(StackFrame::toLocation)
+                .containsExactly("[OrderController.java,18]", "[OrderController.java,16]");
+    }
+
+    @Test
+    void skipsProxyAndFrameworkFrames() {
+        ParsedThrowable root = parser.parse(SPRING_REQUEST);
+
+        assertThat(root.getFrames()).hasSize(11);
+        StackFrame proxy = root.getFrames().get(1);
+        assertThat(proxy.getClassName()).isEqualTo("com.simon.springboot.controller.UserController$$SpringCGLIB$$0");
+        assertThat(proxy.getFileName()).isEqualTo("<generated>");
+        assertThat(proxy.getLineNumber()).isEqualTo(-1);
+
+        assertThat(parser.applicationFrames(root)).extracting(StackFrame::toString).containsExactly(
+                "com.simon.springboot.controller.UserController.get(UserController.java:31)",
+                "com.simon.springboot.exception.AiAnalyzeHandler.around(AiAnalyzeHandler.java:45)");
+    }
+
+    @Test
+    void parsesFrameVariants() {
+        assertThat(StackTraceParser.parseFrame("app//com.simon.Foo.bar(Foo.java:12)").getClassName()).isEqualTo("com.simon.Foo");
+        assertThat(StackTraceParser.parseFrame("java.base@17.0.2/java.lang.Thread.run(Thread.java:833)").getClassName())
+                .isEqualTo("java.lang.Thread");
+
+        // 隐藏类名中的 /0x... 是类名的一部分
+        StackFrame lambda = StackTraceParser.parseFrame("com.simon.Foo$$Lambda$14/0x0000000800c4b040.apply(Unknown Source)");
+        assertThat(lambda.getClassName()).isEqualTo("com.simon.Foo$$Lambda$14/0x0000000800c4b040");
+        assertThat(lambda.getFileName()).isNull();
+        assertThat(lambda.isSynthetic()).isTrue();
+
+        // logback 在帧后追加的 jar 信息不影响解析
+        StackFrame logback = StackTraceParser.parseFrame("com.simon.Foo.bar(Foo.java:7) ~[classes/:na]");
+        assertThat(logback.toLocation()).isEqualTo("[Foo.java,7]");
+
+        assertThat(StackTraceParser.parseFrame("not a frame")).isNull();
+    }
+
+    @Test
+    void matchesStructureOfLiveThrowables() {
+        Throwable thrown;
+        try {
+            saveAll(List.of(-1));
+            throw new AssertionError("expected an exception");
+        } catch (RuntimeException e) {
+            thrown = new IllegalStateException("request failed", e);
+        }
+        assertSameStructure(parser.parse(print(thrown)), thrown);
+
+        try {
+            StackTraceParserTest.class.getDeclaredMethod("fail").invoke(null);
+            throw new AssertionError("expected an exception");
+        } catch (InvocationTargetException e) {
+            assertSameStructure(parser.parse(print(e)), e);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    void fingerprintIgnoresMessagesAndLineNumbers() {
+        String other = REFLECTIVE_CALL.replace("OrderController.java:18", "OrderController.java:21")
+                .replace("java.lang.NullPointerException", "java.lang.NullPointerException: other message");
+        assertThat(parser.fingerprint(parser.parse(other))).isEqualTo(parser.fingerprint(parser.parse(REFLECTIVE_CALL)));
+
+        String otherType = REFLECTIVE_CALL.replace("java.lang.NullPointerException", "java.lang.IllegalStateException");
+        assertThat(parser.fingerprint(parser.parse(otherType))).isNotEqualTo(parser.fingerprint(parser.parse(REFLECTIVE_CALL)));
+    }
+
+    /**
+     * 逐层比较解析结果与真实的 Throwable：类型、消息、未省略的帧以及省略的帧数
+     */
+    private static void assertSameStructure(ParsedThrowable parsed, Throwable throwable) {
+        assertThat(parsed.getType()).isEqualTo(throwable.getClass().getName());
+        assertThat(parsed.getMessage()).isEqualTo(throwable.getLocalizedMessage());
+
+        StackTraceElement[] trace = throwable.getStackTrace();
+        assertThat(parsed.getFrames().size() + parsed.getElidedFrames()).isEqualTo(trace.length);
+        for (int i = 0; i < parsed.getFrames().size(); i++) {
+            StackFrame frame = parsed.getFrames().get(i);
+            assertThat(frame.getClassName()).isEqualTo(trace[i].getClassName());
+            assertThat(frame.getMethodName()).isEqualTo(trace[i].getMethodName());
+            assertThat(frame.getLineNumber()).isEqualTo(Math.max(-1, trace[i].getLineNumber()));
+        }
+
+        assertThat(parsed.getSuppressed()).hasSameSizeAs(throwable.getSuppressed());
+        for (int i = 0; i < throwable.getSuppressed().length; i++) {
+            assertSameStructure(parsed.getSuppressed().get(i), throwable.getSuppressed()[i]);
+        }
+        if (throwable.getCause() == null) {
+            assertThat(parsed.getCause()).isNull();
+        } else {
+            assertSameStructure(parsed.getCause(), throwable.getCause());
+        }
+    }
+
+    private static String print(Throwable throwable) {
+        StringWriter text = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(text));
+        return text.toString();
+    }
+
+    private static void saveAll(List<Integer> ids) {
+        try (Connection connection = new Connection()) {
+            ids.forEach(id -> {
+                throw new IllegalArgumentException("bad id: " + id + "\nexpected a positive number");
+            });
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static void fail() {
+        Object value = null;
+        value.hashCode();
+    }
+
+    private static class Connection implements AutoCloseable {
+
+        @Override
+        public void close() {
+            throw new IllegalStateException("close failed", new UncheckedIOException(new IOException("broken pipe")));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.simon.mcpclient.worktree;
+
+import com.simon.mcpclient.config.AiAnalyzeConfig;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorktreePoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path main;
+
+    private WorktreePool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        main = tempDir.resolve("main");
+        try (Git git = Git.init().setDirectory(main.toFile()).call()) {
+            Files.writeString(main.resolve("A.java"), "class A {}\n");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("init").setAuthor("t", "t@t").setCommitter("t", "t@t").call();
+        }
+        AiAnalyzeConfig.Worktree config = new AiAnalyzeConfig.Worktree();
+        config.setSize(1);
+        config.setLeaseTimeoutSeconds(5);
+        pool = new WorktreePool(config, main.toString(), tempDir.resolve("worktrees").toFile());
+    }
+
+    @Test
+    void releaseResetsWorktreeAndPrunesObjects() throws Exception {
+        Path dir;
+        try (WorktreeLease lease = pool.lease()) {
+            dir = Path.of(lease.getPath());
+            Files.writeString(dir.resolve("A.java"), "class A { int x; }\n");
+            Files.writeString(dir.resolve("B.java"), "class B {}\n");
+            try (Git git = Git.open(dir.toFile())) {
+                git.checkout().setCreateBranch(true).setName("hotfix_1").call();
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("AI Fix").setAuthor("t", "t@t").setCommitter("t", "t@t").call();
+            }
+            assertThat(looseObjectDirs(dir)).isPositive();
+        }
+
+        try (WorktreeLease lease = pool.lease()) {
+            assertThat(Path.of(lease.getPath())).isEqualTo(dir);
+            assertThat(Files.readString(dir.resolve("A.java"))).isEqualTo("class A {}\n");
+            assertThat(dir.resolve("B.java")).doesNotExist();
+            assertThat(looseObjectDirs(dir)).isZero();
+            try (Git git = Git.open(dir.toFile()); Git mainGit = Git.open(main.toFile())) {
+                assertThat(git.getRepository().getBranch()).isEqualTo("ai-worktree");
+                assertThat(git.getRepository().findRef("hotfix_1")).isNull();
+                assertThat(git.getRepository().resolve(Constants.HEAD))
+                        .isEqualTo(mainGit.getRepository().resolve(Constants.HEAD));
+            }
+        }
+        assertThat(pool.idleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void recreatesWorktreeWhenReleaseFails() throws Exception {
+        Path dir;
+        try (WorktreeLease lease = pool.lease()) {
+            dir = Path.of(lease.getPath());
+            Files.writeString(dir.resolve("leftover.txt"), "x");
+            // 破坏工作区的仓库配置，归还时的重置必然失败
+            Files.writeString(dir.resolve(".git/config"), "[broken");
+        }
+        // 目录被整个删掉，空目录放回池中
+        assertThat(pool.idleCount()).isEqualTo(1);
+        try (Stream<Path> children = Files.list(dir)) {
+            assertThat(children).isEmpty();
+        }
+
+        // 再次租用时重新创建
+        try (WorktreeLease lease = pool.lease()) {
+            assertThat(Files.readString(Path.of(lease.getPath(), "A.java"))).isEqualTo("class A {}\n");
+            assertThat(Files.readString(dir.resolve(".git/config"))).doesNotContain("[broken");
+        }
+    }
+
+    private static long looseObjectDirs(Path dir) throws Exception {
+        try (Stream<Path> children = Files.list(dir.resolve(".git/objects"))) {
+            return children.filter(child -> child.getFileName().toString().matches("[0-9a-f]{2}")).count();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.simon.microbenchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * JMH 入口
+ * 参数与 JMH 自带的命令行相同；未指定 -rf / -rff 时结果以 JSON 写入 jmh-results 目录，
+ * 文件名带时间戳，便于按时间对比发现性能回退
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public class MicrobenchmarkMain {
+
+    private static final String RESULT_DIR = "jmh-results";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            File dir = new File(RESULT_DIR);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IllegalStateException("无法创建结果目录：" + dir.getAbsolutePath());
+            }
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            builder.result(new File(dir, "jmh-" + timestamp + ".json").getPath());
+        }
+        new Runner(builder.build()).run();
+    }
+}
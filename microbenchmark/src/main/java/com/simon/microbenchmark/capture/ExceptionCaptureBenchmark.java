@@ -0,0 +1,158 @@
+package com.simon.microbenchmark.capture;
+
+import cn.hutool.json.JSONUtil;
+import com.simon.springboot.config.AiReportConfig;
+import com.simon.springboot.report.CompactStack;
+import com.simon.springboot.report.CompactStackEncoder;
+import com.simon.springboot.report.ExceptionFingerprinter;
+import com.simon.springboot.report.ExceptionReport;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 宿主应用为每个异常付出的开销
+ * 对应 GlobalExceptionHandle -> ExceptionDeduplicator -> AiAnalyzeHandler.handle 的同步部分，
+ * 以及分发线程上按单条和按批次编码上报；文本格式与紧凑格式分别测量
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExceptionCaptureBenchmark {
+
+    private static final String SERVICE = "spring-boot";
+
+    /**
+     * 异常创建处额外的调用层数，实际栈深度还要加上 JMH 自身的帧
+     */
+    @Param({"16", "64", "256"})
+    public int depth;
+
+    @Param({"0", "2", "5"})
+    public int causes;
+
+    private Exception exception;
+
+    private ExceptionFingerprinter fingerprinter;
+
+    private ExceptionReport report;
+
+    private List<ExceptionReport> batch;
+
+    private CompactStackEncoder encoder;
+
+    private CompactStack compactStack;
+
+    private List<ExceptionReport> compactBatch;
+
+    @Setup
+    public void setUp() {
+        exception = ExceptionFixtures.create(depth, causes);
+        AiReportConfig config = new AiReportConfig();
+        fingerprinter = new ExceptionFingerprinter(config);
+        encoder = new CompactStackEncoder(config);
+        report = new ExceptionReport(ExceptionUtils.getStackTrace(exception), System.currentTimeMillis(), SERVICE);
+        compactStack = encoder.encode(exception);
+        int batchSize = config.getQueue().getBatchSize();
+        batch = new ArrayList<>(batchSize);
+        compactBatch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(report);
+            compactBatch.add(new ExceptionReport(compactStack, System.currentTimeMillis(), SERVICE));
+        }
+    }
+
+    /**
+     * 堆栈转文本
+     */
+    @Benchmark
+    public String stackTrace() {
+        return ExceptionUtils.getStackTrace(exception);
+    }
+
+    /**
+     * 去重使用的指纹
+     */
+    @Benchmark
+    public String fingerprint() {
+        return fingerprinter.fingerprint(exception);
+    }
+
+    /**
+     * AiAnalyzeHandler.handle 入队前构造上报
+     */
+    @Benchmark
+    public ExceptionReport capture() {
+        return new ExceptionReport(ExceptionUtils.getStackTrace(exception), System.currentTimeMillis(), SERVICE);
+    }
+
+    /**
+     * 紧凑格式构造上报，直接读取帧数组
+     */
+    @Benchmark
+    public ExceptionReport captureCompact() {
+        return new ExceptionReport(encoder.encode(exception), System.currentTimeMillis(), SERVICE);
+    }
+
+    /**
+     * 紧凑堆栈压缩，分发线程上按批次内的每条上报执行
+     */
+    @Benchmark
+    public ExceptionReport compressCompact() {
+        ExceptionReport compact = new ExceptionReport(compactStack, System.currentTimeMillis(), SERVICE);
+        encoder.compress(compact);
+        return compact;
+    }
+
+    /**
+     * 单条上报编码为 JSON
+     */
+    @Benchmark
+    public String encodeReport() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("message", report.getMessage());
+        return JSONUtil.toJsonStr(body);
+    }
+
+    /**
+     * 一个批次的上报编码为 JSON，与 AnalyzeTransport 发送的请求体相同
+     */
+    @Benchmark
+    public String encodeBatch() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("reports", batch);
+        return JSONUtil.toJsonStr(body);
+    }
+
+    /**
+     * 一个批次的紧凑格式上报（未压缩）编码为 JSON
+     */
+    @Benchmark
+    public String encodeBatchCompact() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("reports", compactBatch);
+        return JSONUtil.toJsonStr(body);
+    }
+}
@@ -0,0 +1,39 @@
+package com.simon.microbenchmark.capture;
+
+/**
+ * 生成指定栈深度和 cause 链长度的异常
+ * 异常在真实的递归调用中创建，堆栈与线上抛出的异常一样由 JVM 填充
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+final class ExceptionFixtures {
+
+    private ExceptionFixtures() {
+    }
+
+    /**
+     * @param depth  每个异常在创建处额外嵌套的调用层数
+     * @param causes cause 链长度，0 表示没有 cause
+     */
+    static Exception create(int depth, int causes) {
+        Exception cause = null;
+        for (int i = causes; i > 0; i--) {
+            cause = nest(depth, new IllegalStateException("cause " + i), cause);
+        }
+        return nest(depth, new ArithmeticException("/ by zero"), cause);
+    }
+
+    private static Exception nest(int remaining, Exception template, Exception cause) {
+        if (remaining > 0) {
+            return nest(remaining - 1, template, cause);
+        }
+        // 在最深处重新填充堆栈，并接上 cause
+        template.fillInStackTrace();
+        if (cause != null) {
+            template.initCause(cause);
+        }
+        return template;
+    }
+}
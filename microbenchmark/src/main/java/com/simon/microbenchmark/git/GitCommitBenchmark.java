@@ -0,0 +1,77 @@
+package com.simon.microbenchmark.git;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * createAndPushBranch 工具的开销
+ * 每次调用前像 writeFile 工具一样修改少量文件，对比只暂存变更日志路径和全量扫描工作区；
+ * commitAll 始终全量扫描，不受 scopedStaging 影响，所以测量读取变更日志的 createAndPushBranch。
+ * 每次调用创建一个新分支并推送到本地裸仓库，两组的推送开销相同
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GitCommitBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int fileCount;
+
+    @Param({"true", "false"})
+    public boolean scopedStaging;
+
+    /**
+     * 每次提交修改的文件数，对应一次修复改动的规模
+     */
+    @Param({"2"})
+    public int changedFiles;
+
+    private GitFixture fixture;
+
+    private String branch;
+
+    private int branches;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = GitFixture.create(fileCount, scopedStaging);
+    }
+
+    @Setup(Level.Invocation)
+    public void modify() throws Exception {
+        fixture.modifyLocal(changedFiles);
+        branch = "hotfix_bench_" + (++branches);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public String createAndPushBranch() {
+        String result = fixture.gitService().createAndPushBranch(fixture.localPath(), fixture.remoteUrl(), branch, null);
+        fixture.expectSuccess(result);
+        return result;
+    }
+}
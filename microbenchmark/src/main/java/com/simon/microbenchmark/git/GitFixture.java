@@ -0,0 +1,204 @@
+package com.simon.microbenchmark.git;
+
+import com.simon.gitmcpserver.config.GitAuthProperties;
+import com.simon.gitmcpserver.config.GitCacheProperties;
+import com.simon.gitmcpserver.config.GitCommitProperties;
+import com.simon.gitmcpserver.config.GitLockProperties;
+import com.simon.gitmcpserver.config.GitSyncProperties;
+import com.simon.gitmcpserver.repository.ChangeJournal;
+import com.simon.gitmcpserver.repository.RepositoryHandleCache;
+import com.simon.gitmcpserver.repository.RepositoryLocks;
+import com.simon.gitmcpserver.service.GitService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 生成指定文件数的仓库，并按生产环境的装配方式创建 GitService
+ * 目录结构：remote.git 为裸仓库远端，seed 为向远端推送新提交的仓库，local 为 GitService 检出的本地仓库
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+final class GitFixture implements AutoCloseable {
+
+    private static final String BRANCH = "master";
+
+    /**
+     * 每个目录下的文件数，避免单个目录过大
+     */
+    private static final int FILES_PER_DIR = 100;
+
+    private final Path root;
+
+    private final Git seed;
+
+    private final File local;
+
+    private final String remoteUrl;
+
+    private final GitService gitService;
+
+    private final ChangeJournal changeJournal;
+
+    private final RepositoryHandleCache repositoryHandleCache;
+
+    private int revision;
+
+    private GitFixture(Path root, Git seed, File local, String remoteUrl, GitService gitService,
+                       ChangeJournal changeJournal, RepositoryHandleCache repositoryHandleCache) {
+        this.root = root;
+        this.seed = seed;
+        this.local = local;
+        this.remoteUrl = remoteUrl;
+        this.gitService = gitService;
+        this.changeJournal = changeJournal;
+        this.repositoryHandleCache = repositoryHandleCache;
+    }
+
+    /**
+     * @param fileCount     仓库中的源文件数
+     * @param scopedStaging 提交时是否只暂存变更日志中的路径
+     */
+    static GitFixture create(int fileCount, boolean scopedStaging) throws IOException, GitAPIException, URISyntaxException {
+        Path root = Files.createTempDirectory("git-bench-");
+        File remote = root.resolve("remote.git").toFile();
+        Git.init().setBare(true).setInitialBranch(BRANCH).setDirectory(remote).call().close();
+
+        Git seed = Git.init().setInitialBranch(BRANCH).setDirectory(root.resolve("seed").toFile()).call();
+        configureUser(seed);
+        for (int i = 0; i < fileCount; i++) {
+            writeSource(seed.getRepository().getWorkTree().toPath(), i, 0);
+        }
+        seed.add().addFilepattern(".").call();
+        seed.commit().setMessage("seed " + fileCount + " files").call();
+        seed.remoteAdd().setName("origin").setUri(new URIish(remote.toURI().toURL())).call();
+        seed.push().setRemote("origin").add(BRANCH).call();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GitSyncProperties syncProperties = new GitSyncProperties();
+        // 每次同步都真正检查远端，测量的是同步本身而不是 TTL 短路
+        syncProperties.setTtlSeconds(0);
+        GitCommitProperties commitProperties = new GitCommitProperties();
+        commitProperties.setScopedStaging(scopedStaging);
+        RepositoryHandleCache repositoryHandleCache = new RepositoryHandleCache(new GitCacheProperties(), meterRegistry);
+        repositoryHandleCache.installWindowCache();
+        ChangeJournal changeJournal = new ChangeJournal(commitProperties);
+        GitService gitService = new GitService(new GitAuthProperties(), syncProperties, repositoryHandleCache,
+                event -> {
+                }, commitProperties, changeJournal, new RepositoryLocks(new GitLockProperties(), meterRegistry));
+
+        File local = root.resolve("local").toFile();
+        String remoteUrl = "file://" + remote.getAbsolutePath();
+        GitFixture fixture = new GitFixture(root, seed, local, remoteUrl, gitService, changeJournal, repositoryHandleCache);
+        fixture.expectSuccess(gitService.clone(remoteUrl, local.getAbsolutePath()));
+        return fixture;
+    }
+
+    GitService gitService() {
+        return gitService;
+    }
+
+    String localPath() {
+        return local.getAbsolutePath();
+    }
+
+    String remoteUrl() {
+        return remoteUrl;
+    }
+
+    /**
+     * 在远端追加一个修改了单个文件的提交，下一次同步需要快进
+     */
+    void pushRemoteCommit() throws IOException, GitAPIException {
+        revision++;
+        writeSource(seed.getRepository().getWorkTree().toPath(), 0, revision);
+        seed.add().addFilepattern(sourcePath(0)).call();
+        seed.commit().setMessage("remote revision " + revision).call();
+        seed.push().setRemote("origin").add(BRANCH).call();
+    }
+
+    /**
+     * 像 writeFile 工具一样修改本地仓库中的文件并记入变更日志
+     *
+     * @param count 修改的文件数
+     */
+    void modifyLocal(int count) throws IOException {
+        revision++;
+        for (int i = 0; i < count; i++) {
+            Path file = writeSource(local.toPath(), i, revision);
+            changeJournal.record(file);
+        }
+    }
+
+    /**
+     * 在本地仓库基于当前 HEAD 创建一个修改了若干文件的分支，然后切回主分支
+     */
+    void createLocalBranch(String branch, int changedFiles) throws IOException, GitAPIException {
+        try (Git git = Git.open(local)) {
+            configureUser(git);
+            git.checkout().setCreateBranch(true).setName(branch).call();
+            for (int i = 0; i < changedFiles; i++) {
+                writeSource(local.toPath(), i, -1);
+            }
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("branch " + branch).call();
+            git.checkout().setName(BRANCH).call();
+        }
+        // 绕过 GitService 修改了仓库，丢弃缓存的句柄
+        repositoryHandleCache.invalidate(local);
+    }
+
+    String mainBranch() {
+        return BRANCH;
+    }
+
+    void expectSuccess(String result) {
+        if (result == null || !result.startsWith("SUCCESS")) {
+            throw new IllegalStateException("Git tool failed: " + result);
+        }
+    }
+
+    private static Path writeSource(Path workTree, int index, int revision) throws IOException {
+        Path file = workTree.resolve(sourcePath(index));
+        Files.createDirectories(file.getParent());
+        String content = "package pkg" + (index / FILES_PER_DIR) + ";\n\n"
+                + "public class File" + index + " {\n\n"
+                + "    private static final int REVISION = " + revision + ";\n\n"
+                + "    public int value(int input) {\n"
+                + "        return input * " + index + " + REVISION;\n"
+                + "    }\n"
+                + "}\n";
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String sourcePath(int index) {
+        return "src/main/java/pkg" + (index / FILES_PER_DIR) + "/File" + index + ".java";
+    }
+
+    private static void configureUser(Git git) throws IOException {
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("user", null, "name", "benchmark");
+        config.setString("user", null, "email", "benchmark@localhost");
+        config.save();
+    }
+
+    @Override
+    public void close() throws IOException {
+        repositoryHandleCache.closeAll();
+        seed.close();
+        FileSystemUtils.deleteRecursively(root);
+    }
+}
@@ -0,0 +1,100 @@
+package com.simon.microbenchmark.git;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * clone 工具作为同步使用时的开销，以及分支切换的开销
+ * 同步分为远端无新提交（NOOP）和远端有一个新提交（快进）两种情况
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GitSyncBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Repo {
+
+        @Param({"1000", "10000", "100000"})
+        public int fileCount;
+
+        GitFixture fixture;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            fixture = GitFixture.create(fileCount, true);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            fixture.close();
+        }
+    }
+
+    /**
+     * 每次调用前在远端追加一个提交
+     */
+    @State(Scope.Benchmark)
+    public static class RemoteAhead {
+
+        @Setup(Level.Invocation)
+        public void pushCommit(Repo repo) throws Exception {
+            repo.fixture.pushRemoteCommit();
+        }
+    }
+
+    /**
+     * 在两个分支之间来回切换，两个分支有 1% 的文件不同
+     */
+    @State(Scope.Benchmark)
+    public static class Branches {
+
+        private static final String OTHER = "bench_other";
+
+        private boolean onOther;
+
+        @Setup(Level.Trial)
+        public void setUp(Repo repo) throws Exception {
+            repo.fixture.createLocalBranch(OTHER, Math.max(1, repo.fileCount / 100));
+        }
+
+        String next(Repo repo) {
+            onOther = !onOther;
+            return onOther ? OTHER : repo.fixture.mainBranch();
+        }
+    }
+
+    @Benchmark
+    public String pullNoop(Repo repo) {
+        return repo.fixture.gitService().clone(repo.fixture.remoteUrl(), repo.fixture.localPath());
+    }
+
+    @Benchmark
+    public String pullFastForward(Repo repo, RemoteAhead remoteAhead) {
+        return repo.fixture.gitService().clone(repo.fixture.remoteUrl(), repo.fixture.localPath());
+    }
+
+    @Benchmark
+    public String checkoutBranch(Repo repo, Branches branches) {
+        return repo.fixture.gitService().checkoutBranch(repo.fixture.localPath(), branches.next(repo));
+    }
+}
@@ -0,0 +1,216 @@
+package com.simon.springboot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 异常上报配置类
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "simon.ai.report")
+public class AiReportConfig {
+
+    /**
+     * 应用自身代码的包前缀，用于从堆栈中挑出业务帧
+     */
+    private List<String> applicationPackages = new ArrayList<>(List.of("com.simon"));
+
+    /**
+     * 上报时携带的服务名，分析服务据此路由到对应的代码仓库
+     */
+    private String serviceName;
+
+    private Dedup dedup = new Dedup();
+
+    private Queue queue = new Queue();
+
+    private Transport transport = new Transport();
+
+    private Payload payload = new Payload();
+
+    private Spool spool = new Spool();
+
+    @Data
+    public static class Dedup {
+
+        private boolean enabled = true;
+
+        /**
+         * 同一指纹在该时间窗口内只上报一次
+         */
+        private long windowSeconds = 600;
+
+        /**
+         * 指纹表最多保留的条目数，超出后淘汰最久未出现的指纹
+         */
+        private int maxEntries = 1024;
+
+        /**
+         * 每个异常参与指纹计算的业务帧数量
+         */
+        private int maxFrames = 5;
+
+        /**
+         * 参与指纹计算的 cause 链最大深度
+         */
+        private int maxCauseDepth = 8;
+
+        /**
+         * 重复次数汇总输出的间隔
+         */
+        private long flushIntervalMillis = 60_000;
+    }
+
+    @Data
+    public static class Queue {
+
+        /**
+         * 待上报队列容量（环形缓冲区大小）
+         */
+        private int capacity = 1024;
+
+        /**
+         * 队列满时的处理策略
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+        /**
+         * SAMPLE 策略下，溢出的上报每 N 条保留 1 条
+         */
+        private int sampleRate = 10;
+
+        /**
+         * 单次批量上报的最大条数
+         */
+        private int batchSize = 20;
+
+        /**
+         * 凑批的最长等待时间
+         */
+        private long lingerMillis = 200;
+    }
+
+    @Data
+    public static class Transport {
+
+        /**
+         * AI分析服务（mcp-client）地址
+         */
+        private String baseUrl = "http://localhost:8891";
+
+        private long connectTimeoutMillis = 2_000;
+
+        /**
+         * 单次上报请求的截止时间，超时即视为失败
+         */
+        private long requestTimeoutMillis = 30_000;
+
+        /**
+         * 同时在途的上报请求上限
+         */
+        private int maxInFlight = 4;
+
+        /**
+         * 连续失败多少次后熔断
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * 熔断持续时间，到期后放行一次试探请求
+         */
+        private long openMillis = 30_000;
+    }
+
+    @Data
+    public static class Payload {
+
+        /**
+         * 上报的堆栈格式
+         */
+        private PayloadFormat format = PayloadFormat.COMPACT;
+
+        /**
+         * 是否对紧凑格式的堆栈做 gzip 压缩
+         */
+        private boolean compress = true;
+
+        /**
+         * 紧凑堆栈序列化后不足该字节数时不压缩，小堆栈压缩的收益抵不过开销
+         */
+        private int compressMinBytes = 2048;
+    }
+
+    @Data
+    public static class Spool {
+
+        /**
+         * 分析服务不可用时是否把上报写入本地磁盘，恢复后补发
+         */
+        private boolean enabled = true;
+
+        /**
+         * 段文件所在目录，同一目录只能被一个进程使用
+         */
+        private String directory = System.getProperty("user.home") + "/.ai-code-analyze/report-spool";
+
+        /**
+         * 单个段文件的大小，段文件通过内存映射读写
+         */
+        private int segmentBytes = 8 * 1024 * 1024;
+
+        /**
+         * 段文件占用磁盘的上限，超出后删除最旧的段
+         */
+        private long maxBytes = 256L * 1024 * 1024;
+
+        /**
+         * 段文件的保留时间，超过后即使尚未补发也删除
+         */
+        private long retentionHours = 72;
+
+        /**
+         * 补发失败后的重试间隔
+         */
+        private long retryIntervalMillis = 5_000;
+
+        /**
+         * 段文件和读取位置刷盘的间隔
+         */
+        private long syncIntervalMillis = 1_000;
+    }
+
+    public enum PayloadFormat {
+        /**
+         * printStackTrace 文本，兼容旧版本的分析服务
+         */
+        TEXT,
+        /**
+         * 字符串表 + 帧下标的结构化堆栈，cause 链按下标引用
+         */
+        COMPACT
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * 丢弃队列中最旧的上报，保留最新的
+         */
+        DROP_OLDEST,
+        /**
+         * 丢弃新到达的上报
+         */
+        DROP_NEWEST,
+        /**
+         * 按比例采样溢出的上报，采中的替换最旧的一条
+         */
+        SAMPLE
+    }
+}
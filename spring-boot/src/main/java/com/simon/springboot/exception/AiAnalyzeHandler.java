@@ -1,16 +1,13 @@
 package com.simon.springboot.exception;
 
-import cn.hutool.http.HttpResponse;
-import cn.hutool.http.HttpUtil;
-import cn.hutool.json.JSONUtil;
+import com.simon.springboot.config.AiReportConfig;
+import com.simon.springboot.report.CompactStackEncoder;
+import com.simon.springboot.report.ExceptionReport;
+import com.simon.springboot.report.ReportDispatcher;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * 异步调用AI分析的处理器
  *
@@ -22,16 +19,33 @@ import java.util.Map;
 @Service
 public class AiAnalyzeHandler {
 
-    @Async
-    public void handle(Exception e) {
+    private ReportDispatcher reportDispatcher;
+
+    private AiReportConfig aiReportConfig;
+
+    private CompactStackEncoder compactStackEncoder;
 
-        Map<String, Object> body= new HashMap<>();
-        body.put("message", ExceptionUtils.getStackTrace(e));
+    public AiAnalyzeHandler(ReportDispatcher reportDispatcher, AiReportConfig aiReportConfig,
+                            CompactStackEncoder compactStackEncoder) {
+        this.reportDispatcher = reportDispatcher;
+        this.aiReportConfig = aiReportConfig;
+        this.compactStackEncoder = compactStackEncoder;
+    }
+
+    /**
+     * 只负责入队，真正的上报由分发线程批量完成
+     */
+    public void handle(Exception e) {
 
-        HttpResponse httpResponse = HttpUtil.createPost("http://localhost:8891/api/error_analyze").header("Content-Type", "application/json").body(JSONUtil.toJsonStr(body))
-                .execute();
+        long timestamp = System.currentTimeMillis();
+        // 紧凑格式直接读取帧数组，不拼接堆栈文本
+        ExceptionReport report = aiReportConfig.getPayload().getFormat() == AiReportConfig.PayloadFormat.COMPACT
+                ? new ExceptionReport(compactStackEncoder.encode(e), timestamp, aiReportConfig.getServiceName())
+                : new ExceptionReport(ExceptionUtils.getStackTrace(e), timestamp, aiReportConfig.getServiceName());
 
-        log.info("请求AI结束，响应内容：{}", httpResponse);
+        if (!reportDispatcher.submit(report)) {
+            log.warn("上报队列已满，丢弃异常上报：{}", e.toString());
+        }
     }
 
 }
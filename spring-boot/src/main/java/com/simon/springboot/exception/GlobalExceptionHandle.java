@@ -1,5 +1,6 @@
 package com.simon.springboot.exception;
 
+import com.simon.springboot.report.ExceptionDeduplicator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -17,13 +18,19 @@ public class GlobalExceptionHandle {
 
     private AiAnalyzeHandler aiAnalyzeHandler;
 
-    public GlobalExceptionHandle(AiAnalyzeHandler aiAnalyzeHandler) {
+    private ExceptionDeduplicator exceptionDeduplicator;
+
+    public GlobalExceptionHandle(AiAnalyzeHandler aiAnalyzeHandler, ExceptionDeduplicator exceptionDeduplicator) {
         this.aiAnalyzeHandler = aiAnalyzeHandler;
+        this.exceptionDeduplicator = exceptionDeduplicator;
     }
 
     @ExceptionHandler(Exception.class)
     public String handleAllExceptions(Exception ex) {
-        aiAnalyzeHandler.handle(ex);
+        // 重复异常只计数，不再触发新的AI分析
+        if (exceptionDeduplicator.shouldReport(ex)) {
+            aiAnalyzeHandler.handle(ex);
+        }
         return "error";
     }
 }
@@ -0,0 +1,226 @@
+package com.simon.springboot.report;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+import com.simon.springboot.config.AiReportConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 向AI分析服务发送上报的传输层
+ * 复用同一个 HttpClient 的长连接，异步发送且每个请求都有截止时间，
+ * 分析服务不健康时由熔断器直接快速失败，不占用宿主应用的线程和连接；
+ * 发送失败的上报由 ReportDispatcher 写入本地缓冲，恢复后补发
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class AnalyzeTransport {
+
+    private static final String BATCH_PATH = "/api/error_analyze_batch";
+
+    /**
+     * 分析服务未能受理某条上报（任务队列已满等）时，在响应中对应位置返回的任务id
+     */
+    private static final String FAIL_ID = "FAIL";
+
+    private final AiReportConfig.Transport config;
+
+    private final CompactStackEncoder compactStackEncoder;
+
+    private final ExecutorService executor;
+
+    private final HttpClient httpClient;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Semaphore inFlight;
+
+    private final Counter successCounter;
+
+    private final Counter failureCounter;
+
+    private final Counter rejectedCounter;
+
+    public AnalyzeTransport(AiReportConfig aiReportConfig, CompactStackEncoder compactStackEncoder,
+                            MeterRegistry meterRegistry) {
+        this.config = aiReportConfig.getTransport();
+        this.compactStackEncoder = compactStackEncoder;
+        this.executor = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "ai-report-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeoutMillis()))
+                .executor(executor)
+                .build();
+        this.circuitBreaker = new CircuitBreaker(config.getFailureThreshold(), config.getOpenMillis());
+        this.inFlight = new Semaphore(Math.max(1, config.getMaxInFlight()));
+
+        Gauge.builder("ai.report.transport.circuit.open", circuitBreaker, cb -> cb.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("熔断器是否处于打开状态")
+                .register(meterRegistry);
+        this.successCounter = Counter.builder("ai.report.transport.requests").tag("result", "success").register(meterRegistry);
+        this.failureCounter = Counter.builder("ai.report.transport.requests").tag("result", "failure").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("ai.report.transport.requests").tag("result", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * 把一批上报编码为 JSON，紧凑堆栈按配置压缩
+     * 编码结果既用于发送，发送失败时也原样写入本地缓冲
+     */
+    public List<String> encode(List<ExceptionReport> batch) {
+        List<String> encoded = new ArrayList<>(batch.size());
+        for (ExceptionReport report : batch) {
+            compactStackEncoder.compress(report);
+            encoded.add(JSONUtil.toJsonStr(report));
+        }
+        return encoded;
+    }
+
+    /**
+     * 异步发送一批已编码的上报
+     * 在途请求已满时会阻塞调用方，熔断打开时立即返回 RETRY
+     */
+    public CompletableFuture<BatchResult> sendBatch(List<String> batch) throws InterruptedException {
+        inFlight.acquire();
+        if (!circuitBreaker.tryAcquire()) {
+            inFlight.release();
+            rejectedCounter.increment();
+            return CompletableFuture.completedFuture(new BatchResult(SendResult.RETRY, batch));
+        }
+
+        // 各条上报已经是 JSON，直接拼接请求体，不再整体序列化一次
+        String body = "{\"reports\":[" + String.join(",", batch) + "]}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(config.getBaseUrl() + BATCH_PATH))
+                .timeout(Duration.ofMillis(config.getRequestTimeoutMillis()))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, ex) -> {
+                    inFlight.release();
+                    if (ex == null && response.statusCode() / 100 == 2) {
+                        circuitBreaker.onSuccess();
+                        successCounter.increment();
+                        log.info("批量请求AI结束，条数：{}，响应内容：{}", batch.size(), response.body());
+                        List<String> failed = failed(batch, response.body());
+                        if (!failed.isEmpty()) {
+                            log.warn("AI分析服务未能受理部分上报，稍后重发：{} 条", failed.size());
+                        }
+                        return new BatchResult(SendResult.ACCEPTED, failed);
+                    }
+                    if (ex == null && isPermanent(response.statusCode())) {
+                        // 分析服务正常响应但拒绝了请求，重发也不会成功
+                        circuitBreaker.onSuccess();
+                        failureCounter.increment();
+                        log.warn("批量请求AI被拒绝，条数：{}，状态：{}，响应内容：{}", batch.size(),
+                                response.statusCode(), response.body());
+                        return new BatchResult(SendResult.DISCARDED, List.of());
+                    }
+                    circuitBreaker.onFailure();
+                    failureCounter.increment();
+                    log.warn("批量请求AI失败，条数：{}，状态：{}，熔断器：{}", batch.size(),
+                            ex != null ? ex.toString() : response.statusCode(), circuitBreaker.getState());
+                    return new BatchResult(SendResult.RETRY, batch);
+                });
+    }
+
+    /**
+     * 响应是与请求一一对应的任务id列表，返回其中任务id为 FAIL 的上报
+     * 无法识别的响应视为全部受理
+     */
+    static List<String> failed(List<String> batch, String body) {
+        JSONArray ids;
+        try {
+            ids = JSONUtil.parseArray(body);
+        } catch (RuntimeException e) {
+            return List.of();
+        }
+        if (ids.size() != batch.size()) {
+            return List.of();
+        }
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (FAIL_ID.equals(ids.getStr(i))) {
+                failed.add(batch.get(i));
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 除超时和限流外的 4xx 都不再重发
+     */
+    private static boolean isPermanent(int status) {
+        return status / 100 == 4 && status != 408 && status != 429;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public enum SendResult {
+        /**
+         * 分析服务已受理
+         */
+        ACCEPTED,
+        /**
+         * 网络错误、超时、5xx 或熔断打开，稍后可以重发
+         */
+        RETRY,
+        /**
+         * 分析服务拒绝了请求，不再重发
+         */
+        DISCARDED
+    }
+
+    /**
+     * 一次批量发送的结果以及需要重发的上报
+     */
+    public static class BatchResult {
+
+        private final SendResult result;
+
+        /**
+         * RETRY 时为整批上报，ACCEPTED 时为分析服务返回 FAIL 的上报
+         */
+        private final List<String> retry;
+
+        private BatchResult(SendResult result, List<String> retry) {
+            this.result = result;
+            this.retry = retry;
+        }
+
+        public SendResult getResult() {
+            return result;
+        }
+
+        public List<String> getRetry() {
+            return retry;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.simon.springboot.report;
+
+import cn.hutool.json.JSONUtil;
+import com.simon.springboot.config.AiReportConfig;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 紧凑堆栈编码器
+ * 直接读取 Throwable.getStackTrace() 构建帧表，不再拼接整段堆栈文本；
+ * 框架帧在深层调用和 cause 链中大量重复，字符串表只保留一份
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class CompactStackEncoder {
+
+    private final AiReportConfig.Payload config;
+
+    public CompactStackEncoder(AiReportConfig aiReportConfig) {
+        this.config = aiReportConfig.getPayload();
+    }
+
+    public CompactStack encode(Throwable throwable) {
+        Builder builder = new Builder();
+        builder.add(throwable, new StackTraceElement[0]);
+        return builder.stack;
+    }
+
+    /**
+     * 按配置压缩上报中的紧凑堆栈，序列化后不足阈值的保持原样
+     * 在分发线程上执行，不占用业务线程
+     */
+    public void compress(ExceptionReport report) {
+        if (!config.isCompress() || report.getStack() == null) {
+            return;
+        }
+        byte[] json = JSONUtil.toJsonStr(report.getStack()).getBytes(StandardCharsets.UTF_8);
+        if (json.length < config.getCompressMinBytes()) {
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        report.setStackGzip(Base64.getEncoder().encodeToString(out.toByteArray()));
+        report.setStack(null);
+    }
+
+    private static class Builder {
+
+        private final CompactStack stack = new CompactStack();
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        /**
+         * 防止 cause 或 suppressed 循环引用
+         */
+        private final Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * 按先序遍历加入异常，与 printStackTrace 的输出顺序一致：先 suppressed 后 cause
+         *
+         * @param enclosingTrace 外层异常的帧，用于计算可省略的公共帧
+         * @return 异常的下标，已经加入过时返回 -1
+         */
+        private int add(Throwable throwable, StackTraceElement[] enclosingTrace) {
+            if (!visited.add(throwable)) {
+                return -1;
+            }
+            int index = stack.getThrowables().size();
+            CompactStack.CompactThrowable entry = new CompactStack.CompactThrowable();
+            stack.getThrowables().add(entry);
+
+            StackTraceElement[] trace = throwable.getStackTrace();
+            // 从尾部开始比较，与外层相同的帧只记录数量
+            int m = trace.length - 1;
+            int n = enclosingTrace.length - 1;
+            while (m >= 0 && n >= 0 && trace[m].equals(enclosingTrace[n])) {
+                m--;
+                n--;
+            }
+            int[] frames = new int[(m + 1) * CompactStack.FRAME_WIDTH];
+            for (int i = 0; i <= m; i++) {
+                StackTraceElement element = trace[i];
+                int offset = i * CompactStack.FRAME_WIDTH;
+                frames[offset] = intern(element.getClassName());
+                frames[offset + 1] = intern(element.getMethodName());
+                frames[offset + 2] = element.getFileName() == null ? -1 : intern(element.getFileName());
+                frames[offset + 3] = element.getLineNumber();
+            }
+            entry.setType(intern(throwable.getClass().getName()));
+            entry.setMessage(throwable.getLocalizedMessage());
+            entry.setFrames(frames);
+            entry.setElided(trace.length - 1 - m);
+
+            Throwable[] suppressed = throwable.getSuppressed();
+            int[] suppressedIndexes = new int[suppressed.length];
+            int count = 0;
+            for (Throwable s : suppressed) {
+                int child = add(s, trace);
+                if (child >= 0) {
+                    suppressedIndexes[count++] = child;
+                }
+            }
+            if (count > 0) {
+                entry.setSuppressed(count == suppressed.length
+                        ? suppressedIndexes : Arrays.copyOf(suppressedIndexes, count));
+            }
+            if (throwable.getCause() != null) {
+                entry.setCause(add(throwable.getCause(), trace));
+            }
+            return index;
+        }
+
+        private int intern(String value) {
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = stack.getStrings().size();
+                stack.getStrings().add(value);
+                indexes.put(value, index);
+            }
+            return index;
+        }
+    }
+}
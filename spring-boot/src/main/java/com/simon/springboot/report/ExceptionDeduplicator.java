@@ -0,0 +1,132 @@
+package com.simon.springboot.report;
+
+import com.simon.springboot.config.AiReportConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 异常去重器
+ * 同一指纹在时间窗口内只放行第一次，后续重复只累加计数，由定时任务汇总输出，
+ * 避免一次异常风暴把分析链路和大模型额度全部打满
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class ExceptionDeduplicator {
+
+    private final AiReportConfig aiReportConfig;
+
+    private final ExceptionFingerprinter exceptionFingerprinter;
+
+    /**
+     * 按最近出现时间排序的指纹表，超出容量时淘汰最久未出现的指纹
+     */
+    private final LinkedHashMap<String, Occurrence> occurrences;
+
+    /**
+     * 被容量淘汰时尚未汇总的重复次数
+     */
+    private long evictedSuppressed;
+
+    public ExceptionDeduplicator(AiReportConfig aiReportConfig, ExceptionFingerprinter exceptionFingerprinter) {
+        this.aiReportConfig = aiReportConfig;
+        this.exceptionFingerprinter = exceptionFingerprinter;
+        this.occurrences = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Occurrence> eldest) {
+                if (size() > aiReportConfig.getDedup().getMaxEntries()) {
+                    evictedSuppressed += eldest.getValue().suppressed;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 判断异常是否需要上报，重复出现的异常只计数
+     *
+     * @return 首次出现或窗口已过期返回true
+     */
+    public boolean shouldReport(Throwable throwable) {
+        AiReportConfig.Dedup dedup = aiReportConfig.getDedup();
+        if (!dedup.isEnabled()) {
+            return true;
+        }
+        String fingerprint = exceptionFingerprinter.fingerprint(throwable);
+        long now = System.currentTimeMillis();
+        long windowMillis = dedup.getWindowSeconds() * 1000;
+        synchronized (occurrences) {
+            Occurrence occurrence = occurrences.get(fingerprint);
+            if (occurrence == null || now - occurrence.windowStart >= windowMillis) {
+                Occurrence fresh = new Occurrence(throwable.getClass().getName(), now);
+                if (occurrence != null) {
+                    fresh.suppressed = occurrence.suppressed;
+                }
+                occurrences.put(fingerprint, fresh);
+                return true;
+            }
+            occurrence.suppressed++;
+            occurrence.lastSeen = now;
+            return false;
+        }
+    }
+
+    /**
+     * 定时汇总窗口内被抑制的重复异常，并清理过期指纹
+     */
+    @Scheduled(fixedDelayString = "${simon.ai.report.dedup.flush-interval-millis:60000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        long windowMillis = aiReportConfig.getDedup().getWindowSeconds() * 1000;
+        List<String> summary = new ArrayList<>();
+        long total;
+        synchronized (occurrences) {
+            total = evictedSuppressed;
+            evictedSuppressed = 0;
+            Iterator<Map.Entry<String, Occurrence>> iterator = occurrences.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Occurrence> entry = iterator.next();
+                Occurrence occurrence = entry.getValue();
+                if (occurrence.suppressed > 0) {
+                    summary.add(entry.getKey() + "(" + occurrence.type + ")x" + occurrence.suppressed);
+                    total += occurrence.suppressed;
+                    occurrence.suppressed = 0;
+                }
+                if (now - occurrence.lastSeen >= windowMillis) {
+                    iterator.remove();
+                }
+            }
+        }
+        if (total > 0) {
+            log.info("重复异常汇总，共抑制{}次上报，指纹数{}：{}", total, summary.size(), summary);
+        }
+    }
+
+    private static class Occurrence {
+
+        private final String type;
+
+        private final long windowStart;
+
+        private long lastSeen;
+
+        private long suppressed;
+
+        private Occurrence(String type, long windowStart) {
+            this.type = type;
+            this.windowStart = windowStart;
+            this.lastSeen = windowStart;
+        }
+    }
+}
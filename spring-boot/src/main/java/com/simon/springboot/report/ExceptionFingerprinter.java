@@ -0,0 +1,107 @@
+package com.simon.springboot.report;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.simon.springboot.config.AiReportConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 异常指纹计算
+ * 只取异常类型、业务帧（类名+方法名）和 cause 链，不包含异常消息和行号，
+ * 保证同一个问题在不同入参、不同代码行偏移下得到相同的指纹
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Component
+public class ExceptionFingerprinter {
+
+    /**
+     * lambda$get$0、access$100 这类编译器生成的序号
+     */
+    private static final Pattern SYNTHETIC_INDEX = Pattern.compile("\\$\\d+");
+
+    /**
+     * CGLIB / ByteBuddy 等动态代理生成的类名后缀
+     */
+    private static final Pattern PROXY_SUFFIX = Pattern.compile("\\$\\$.*$");
+
+    private final AiReportConfig aiReportConfig;
+
+    public ExceptionFingerprinter(AiReportConfig aiReportConfig) {
+        this.aiReportConfig = aiReportConfig;
+    }
+
+    public String fingerprint(Throwable throwable) {
+        return DigestUtil.sha256Hex(normalize(throwable)).substring(0, 32);
+    }
+
+    /**
+     * 生成规范化后的堆栈签名，例如：
+     * java.lang.ArithmeticException@com.simon.springboot.controller.UserController#get
+     */
+    public String normalize(Throwable throwable) {
+        AiReportConfig.Dedup dedup = aiReportConfig.getDedup();
+        StringBuilder sb = new StringBuilder(256);
+        Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Throwable current = throwable;
+        int depth = 0;
+        while (current != null && depth < dedup.getMaxCauseDepth() && visited.add(current)) {
+            if (depth > 0) {
+                sb.append("<-");
+            }
+            sb.append(current.getClass().getName());
+            appendFrames(sb, current.getStackTrace(), dedup.getMaxFrames());
+            current = current.getCause();
+            depth++;
+        }
+        return sb.toString();
+    }
+
+    private void appendFrames(StringBuilder sb, StackTraceElement[] frames, int maxFrames) {
+        List<String> packages = aiReportConfig.getApplicationPackages();
+        int appended = 0;
+        for (StackTraceElement frame : frames) {
+            if (appended >= maxFrames) {
+                return;
+            }
+            if (isApplicationFrame(frame, packages)) {
+                appendFrame(sb, frame);
+                appended++;
+            }
+        }
+        // 没有任何业务帧时（例如纯框架内部异常），退化为取栈顶的若干帧
+        if (appended == 0) {
+            for (int i = 0; i < Math.min(maxFrames, frames.length); i++) {
+                appendFrame(sb, frames[i]);
+            }
+        }
+    }
+
+    private static void appendFrame(StringBuilder sb, StackTraceElement frame) {
+        sb.append('@')
+                .append(PROXY_SUFFIX.matcher(frame.getClassName()).replaceFirst(""))
+                .append('#')
+                .append(SYNTHETIC_INDEX.matcher(frame.getMethodName()).replaceAll("\\$"));
+    }
+
+    /**
+     * 按包边界匹配，com.simon 不会误匹配 com.simonsays 下的类
+     */
+    private static boolean isApplicationFrame(StackTraceElement frame, List<String> packages) {
+        String className = frame.getClassName();
+        for (String pkg : packages) {
+            String prefix = pkg.endsWith(".") ? pkg : pkg + ".";
+            if (className.equals(pkg) || className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package com.simon.springboot.report;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 待上报的异常信息
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Data
+public class ExceptionReport implements Serializable {
+
+    /**
+     * 异常堆栈文本，TEXT 格式时使用
+     */
+    private String message;
+
+    /**
+     * 紧凑格式的异常堆栈，COMPACT 格式时使用
+     */
+    private CompactStack stack;
+
+    /**
+     * gzip 压缩并 base64 编码后的紧凑堆栈，与 stack 二选一
+     */
+    private String stackGzip;
+
+    /**
+     * 异常发生时间戳
+     */
+    private long timestamp;
+
+    /**
+     * 上报异常的服务名
+     */
+    private String service;
+
+    public ExceptionReport() {
+    }
+
+    public ExceptionReport(String message, long timestamp, String service) {
+        this.message = message;
+        this.timestamp = timestamp;
+        this.service = service;
+    }
+
+    public ExceptionReport(CompactStack stack, long timestamp, String service) {
+        this.stack = stack;
+        this.timestamp = timestamp;
+        this.service = service;
+    }
+}
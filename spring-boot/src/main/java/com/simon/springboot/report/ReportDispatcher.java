@@ -0,0 +1,283 @@
+package com.simon.springboot.report;
+
+import com.simon.springboot.config.AiReportConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 异常上报分发器
+ * 上报先进入有界队列，由单独的线程批量发送给AI分析服务，
+ * 异常风暴时只占用固定数量的线程和连接。
+ * 发送失败、熔断打开或分析服务未能受理（返回 FAIL）时，已编码的上报写入本地磁盘缓冲，
+ * 由补发线程在分析服务恢复后按批次补发
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+@Component
+public class ReportDispatcher {
+
+    private final AiReportConfig aiReportConfig;
+
+    private final AnalyzeTransport analyzeTransport;
+
+    private final ReportQueue reportQueue;
+
+    private final DistributionSummary batchSizeSummary;
+
+    /**
+     * 本地磁盘缓冲，未启用或目录不可用时为null
+     */
+    private final ReportSpool reportSpool;
+
+    /**
+     * 已发出、还没有结果的批次，停止时等待它们结束后再关闭缓冲
+     */
+    private final Set<InFlightBatch> inFlightBatches = ConcurrentHashMap.newKeySet();
+
+    private Thread drainer;
+
+    private Thread replayer;
+
+    private volatile boolean running;
+
+    public ReportDispatcher(AiReportConfig aiReportConfig, AnalyzeTransport analyzeTransport, MeterRegistry meterRegistry) {
+        AiReportConfig.Queue queue = aiReportConfig.getQueue();
+        this.aiReportConfig = aiReportConfig;
+        this.analyzeTransport = analyzeTransport;
+        this.reportQueue = new ReportQueue(queue.getCapacity(), queue.getOverflowPolicy(), queue.getSampleRate());
+
+        Gauge.builder("ai.report.queue.depth", reportQueue, ReportQueue::size)
+                .description("待上报队列中的异常数量")
+                .register(meterRegistry);
+        FunctionCounter.builder("ai.report.queue.dropped", reportQueue, ReportQueue::dropped)
+                .description("队列溢出被丢弃的异常数量")
+                .tag("policy", queue.getOverflowPolicy().name())
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("ai.report.batch.size")
+                .description("单次批量上报的异常数量")
+                .register(meterRegistry);
+
+        this.reportSpool = openSpool(aiReportConfig.getSpool());
+        if (reportSpool != null) {
+            Gauge.builder("ai.report.spool.pending.bytes", reportSpool, ReportSpool::pendingBytes)
+                    .description("本地缓冲中待补发的数据量")
+                    .register(meterRegistry);
+            FunctionCounter.builder("ai.report.spool.appended", reportSpool, ReportSpool::appended)
+                    .description("写入本地缓冲的上报数量")
+                    .register(meterRegistry);
+            FunctionCounter.builder("ai.report.spool.replayed", reportSpool, ReportSpool::replayed)
+                    .description("从本地缓冲补发成功的上报数量")
+                    .register(meterRegistry);
+            FunctionCounter.builder("ai.report.spool.dropped.segments", reportSpool, ReportSpool::droppedSegments)
+                    .description("超出磁盘上限或保留时间而删除的未补发段数")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 提交上报，队列满时按溢出策略处理，不会阻塞调用方
+     */
+    public boolean submit(ExceptionReport report) {
+        return reportQueue.offer(report);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        drainer = new Thread(this::drainLoop, "ai-report-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        if (reportSpool != null) {
+            replayer = new Thread(this::replayLoop, "ai-report-replayer");
+            replayer.setDaemon(true);
+            replayer.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        drainer.interrupt();
+        if (reportSpool == null) {
+            return;
+        }
+        replayer.interrupt();
+        drainer.join(1_000);
+        replayer.join(1_000);
+        awaitInFlight();
+        // 还没来得及发送的上报写入缓冲，下次启动后补发
+        List<ExceptionReport> remaining = reportQueue.pollAll();
+        if (!remaining.isEmpty()) {
+            spool(analyzeTransport.encode(remaining));
+            log.info("停止前写入本地缓冲的上报：{} 条", remaining.size());
+        }
+        reportSpool.close();
+    }
+
+    private void drainLoop() {
+        AiReportConfig.Queue queue = aiReportConfig.getQueue();
+        while (running) {
+            try {
+                send(reportQueue.drain(queue.getBatchSize(), queue.getLingerMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("批量上报AI分析失败", e);
+            }
+        }
+    }
+
+    private void send(List<ExceptionReport> batch) throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchSizeSummary.record(batch.size());
+        List<String> encoded = analyzeTransport.encode(batch);
+        // 异步发送，分发线程只在在途请求已满时等待；失败和未被受理的上报写入本地缓冲
+        InFlightBatch pending = new InFlightBatch(encoded);
+        inFlightBatches.add(pending);
+        try {
+            pending.future = analyzeTransport.sendBatch(encoded).whenComplete((result, ex) ->
+                    settle(pending, ex != null ? encoded : result.getRetry()));
+        } catch (InterruptedException e) {
+            // 停止时还在等待在途名额的这一批同样写入缓冲
+            settle(pending, encoded);
+            throw e;
+        }
+    }
+
+    /**
+     * 一批上报有了结果，需要重发的写入缓冲；每批只处理一次，停止时与回调线程互斥
+     */
+    private void settle(InFlightBatch pending, List<String> retry) {
+        synchronized (pending) {
+            if (!pending.settled) {
+                pending.settled = true;
+                spool(retry);
+            }
+        }
+        inFlightBatches.remove(pending);
+    }
+
+    /**
+     * 等待在途请求结束，最多等一个请求超时时间；仍未结束的批次整批写入缓冲，下次启动后补发
+     */
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(aiReportConfig.getTransport().getRequestTimeoutMillis());
+        for (InFlightBatch pending : List.copyOf(inFlightBatches)) {
+            CompletableFuture<?> future = pending.future;
+            if (future != null) {
+                try {
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    // 下面整批写入缓冲
+                }
+            }
+            settle(pending, pending.encoded);
+        }
+    }
+
+    /**
+     * 补发线程：缓冲中有数据时按批次同步补发，失败后等待重试间隔；空闲时定期刷盘
+     */
+    private void replayLoop() {
+        AiReportConfig.Spool config = aiReportConfig.getSpool();
+        int batchSize = aiReportConfig.getQueue().getBatchSize();
+        long lastSync = System.currentTimeMillis();
+        while (running) {
+            try {
+                if (System.currentTimeMillis() - lastSync >= config.getSyncIntervalMillis()) {
+                    reportSpool.sync();
+                    lastSync = System.currentTimeMillis();
+                }
+                if (!reportSpool.await(config.getSyncIntervalMillis())) {
+                    continue;
+                }
+                ReportSpool.Batch batch = reportSpool.peek(batchSize);
+                if (batch.getRecords().isEmpty()) {
+                    // 跳过了损坏的记录
+                    reportSpool.commit(batch);
+                    continue;
+                }
+                AnalyzeTransport.BatchResult result = analyzeTransport.sendBatch(batch.getRecords()).get();
+                if (result.getResult() == AnalyzeTransport.SendResult.RETRY) {
+                    Thread.sleep(config.getRetryIntervalMillis());
+                    continue;
+                }
+                // 分析服务未能受理的上报先重新写到缓冲末尾再推进读取位置，进程在两步之间崩溃时只会重复补发
+                spool(result.getRetry());
+                reportSpool.commit(batch);
+                if (!result.getRetry().isEmpty()) {
+                    Thread.sleep(config.getRetryIntervalMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | RuntimeException e) {
+                log.error("补发本地缓冲的上报失败", e);
+            }
+        }
+    }
+
+    private void spool(List<String> encoded) {
+        if (reportSpool == null) {
+            return;
+        }
+        int failed = 0;
+        for (String report : encoded) {
+            if (!reportSpool.append(report)) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            log.warn("写入本地缓冲失败，丢弃上报：{} 条", failed);
+        }
+    }
+
+    private static ReportSpool openSpool(AiReportConfig.Spool config) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        try {
+            return new ReportSpool(config);
+        } catch (IOException | RuntimeException e) {
+            log.error("打开本地缓冲失败，分析服务不可用期间的上报将会丢失，目录：{}", config.getDirectory(), e);
+            return null;
+        }
+    }
+
+    private static class InFlightBatch {
+
+        private final List<String> encoded;
+
+        private volatile CompletableFuture<?> future;
+
+        /**
+         * 由 settle 在持有该对象的锁时读写
+         */
+        private boolean settled;
+
+        private InFlightBatch(List<String> encoded) {
+            this.encoded = encoded;
+        }
+    }
+}
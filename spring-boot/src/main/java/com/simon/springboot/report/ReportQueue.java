@@ -0,0 +1,150 @@
+package com.simon.springboot.report;
+
+import com.simon.springboot.config.AiReportConfig.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界的待上报队列（环形缓冲区）
+ * 写入方只做一次加锁入队，不会阻塞业务线程；队列满时按配置的策略丢弃
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+public class ReportQueue {
+
+    private final ExceptionReport[] buffer;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int sampleRate;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private int head;
+
+    private int size;
+
+    private long overflowSeq;
+
+    private long dropped;
+
+    public ReportQueue(int capacity, OverflowPolicy overflowPolicy, int sampleRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.buffer = new ExceptionReport[capacity];
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * 入队，队列满时按溢出策略处理
+     *
+     * @return 当前上报是否进入了队列
+     */
+    public boolean offer(ExceptionReport report) {
+        lock.lock();
+        try {
+            if (size == buffer.length) {
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        dropped++;
+                        return false;
+                    case SAMPLE:
+                        if (overflowSeq++ % sampleRate != 0) {
+                            dropped++;
+                            return false;
+                        }
+                        removeOldest();
+                        break;
+                    case DROP_OLDEST:
+                    default:
+                        removeOldest();
+                        break;
+                }
+            }
+            buffer[(head + size) % buffer.length] = report;
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 阻塞等待至少一条上报，然后在 linger 时间内尽量凑满一批
+     */
+    public List<ExceptionReport> drain(int maxBatch, long lingerMillis) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+            while (size < maxBatch && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return poll(maxBatch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不等待，取出队列中剩余的全部上报
+     */
+    public List<ExceptionReport> pollAll() {
+        lock.lock();
+        try {
+            return poll(size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<ExceptionReport> poll(int maxBatch) {
+        int count = Math.min(size, maxBatch);
+        List<ExceptionReport> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(buffer[head]);
+            buffer[head] = null;
+            head = (head + 1) % buffer.length;
+        }
+        size -= count;
+        return batch;
+    }
+
+    private void removeOldest() {
+        buffer[head] = null;
+        head = (head + 1) % buffer.length;
+        size--;
+        dropped++;
+    }
+}
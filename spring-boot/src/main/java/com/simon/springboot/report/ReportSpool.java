@@ -0,0 +1,556 @@
+package com.simon.springboot.report;
+
+import com.simon.springboot.config.AiReportConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 上报的本地磁盘缓冲
+ * 只追加写入固定大小的段文件，段文件通过内存映射读写，写入一条只是一次内存拷贝；
+ * 补发线程按 checkpoint 记录的读取位置顺序读取，补发成功后推进读取位置，读完的段立即删除。
+ * 每条记录为 [长度][CRC32][内容]，进程崩溃后按校验和找回最后一条完整记录的位置
+ *
+ * @author Simon Cai
+ * @version 1.0
+ * @since 2026-10-17
+ */
+@Slf4j
+public class ReportSpool implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final String LOCK_FILE = "spool.lock";
+
+    /**
+     * 记录头：长度 + CRC32
+     */
+    private static final int RECORD_HEADER = 8;
+
+    /**
+     * checkpoint：段序号 + 段内位置 + CRC32
+     */
+    private static final int CHECKPOINT_BYTES = 20;
+
+    private final File directory;
+
+    private final int segmentBytes;
+
+    private final long maxBytes;
+
+    private final long retentionMillis;
+
+    private final FileChannel lockChannel;
+
+    private final FileLock fileLock;
+
+    private final MappedByteBuffer checkpoint;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * 磁盘上的段文件，按序号排序
+     */
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+
+    /**
+     * 已写满、尚未刷盘的段
+     */
+    private final List<MappedByteBuffer> unsynced = new ArrayList<>();
+
+    private Segment writer;
+
+    private Segment reader;
+
+    private int readPosition;
+
+    private boolean dirty;
+
+    private boolean closed;
+
+    private long appended;
+
+    private long replayed;
+
+    private long droppedSegments;
+
+    public ReportSpool(AiReportConfig.Spool config) throws IOException {
+        this.directory = new File(config.getDirectory());
+        this.segmentBytes = Math.max(64 * 1024, config.getSegmentBytes());
+        this.maxBytes = Math.max(2L * segmentBytes, config.getMaxBytes());
+        this.retentionMillis = TimeUnit.HOURS.toMillis(config.getRetentionHours());
+        Files.createDirectories(directory.toPath());
+
+        // 同一目录只允许一个进程使用，否则读写位置会互相覆盖
+        this.lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.fileLock = tryLock(lockChannel);
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IOException("缓冲目录已被其他进程使用：" + directory);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, CHECKPOINT_FILE), "rw")) {
+            this.checkpoint = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_BYTES);
+        }
+        recover();
+    }
+
+    /**
+     * 追加一条记录，由发送失败的回调线程和分发线程调用
+     *
+     * @return 是否写入成功，缓冲已关闭或单条记录超过段大小时返回 false
+     */
+    public boolean append(String record) {
+        byte[] payload = record.getBytes(StandardCharsets.UTF_8);
+        int size = RECORD_HEADER + payload.length;
+        if (size > segmentBytes) {
+            log.warn("上报超过缓冲段大小，丢弃：{} 字节", payload.length);
+            return false;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (writer.limit + size > writer.buffer.capacity()) {
+                roll();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            MappedByteBuffer buffer = writer.buffer;
+            int position = writer.limit;
+            buffer.putInt(position + 4, (int) crc.getValue());
+            buffer.put(position + RECORD_HEADER, payload);
+            // 最后写长度，长度非 0 即表示记录完整
+            buffer.putInt(position, payload.length);
+            writer.limit += size;
+            appended++;
+            dirty = true;
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取待补发的记录，不推进读取位置，补发成功后调用 commit
+     */
+    public Batch peek(int maxRecords) {
+        lock.lock();
+        try {
+            List<String> records = new ArrayList<>();
+            // 已经读完的段直接跳到下一段
+            while (reader != writer && recordLength(reader, readPosition) <= 0) {
+                advance();
+            }
+            int position = readPosition;
+            while (records.size() < maxRecords) {
+                int length = recordLength(reader, position);
+                if (length <= 0 || !checksum(reader.buffer, position, length)) {
+                    if (length > 0) {
+                        log.warn("缓冲段 {} 在位置 {} 校验失败，跳过该段剩余内容", reader.file.getName(), position);
+                        position = reader.buffer.capacity();
+                    }
+                    break;
+                }
+                byte[] payload = new byte[length];
+                reader.buffer.get(position + RECORD_HEADER, payload);
+                records.add(new String(payload, StandardCharsets.UTF_8));
+                position += RECORD_HEADER + length;
+            }
+            return new Batch(reader.sequence, position, records);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 补发成功后推进读取位置
+     */
+    public void commit(Batch batch) {
+        lock.lock();
+        try {
+            // 读取所在的段可能已因超出磁盘上限被删除
+            if (closed || reader.sequence != batch.sequence || batch.position <= readPosition) {
+                return;
+            }
+            readPosition = batch.position;
+            replayed += batch.records.size();
+            writeCheckpoint();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待新记录写入
+     *
+     * @return 是否有待补发的记录
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (isEmptyLocked() && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return !isEmptyLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return isEmptyLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 刷盘并清理超过保留时间的段，由补发线程定期调用
+     */
+    public void sync() {
+        List<MappedByteBuffer> toForce;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            expire();
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toForce = new ArrayList<>(unsynced);
+            toForce.add(writer.buffer);
+            unsynced.clear();
+        } finally {
+            lock.unlock();
+        }
+        // 刷盘较慢，不持有锁，避免阻塞写入
+        for (MappedByteBuffer buffer : toForce) {
+            buffer.force();
+        }
+        checkpoint.force();
+    }
+
+    /**
+     * 待补发的数据量（字节）
+     */
+    public long pendingBytes() {
+        lock.lock();
+        try {
+            long sealed = (long) (segments.headMap(writer.sequence).size()) * segmentBytes;
+            return Math.max(0, sealed + writer.limit - readPosition);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appended() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long replayed() {
+        lock.lock();
+        try {
+            return replayed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long droppedSegments() {
+        lock.lock();
+        try {
+            return droppedSegments;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (MappedByteBuffer buffer : unsynced) {
+                buffer.force();
+            }
+            writer.buffer.force();
+            checkpoint.force();
+        } finally {
+            lock.unlock();
+        }
+        fileLock.release();
+        lockChannel.close();
+    }
+
+    /**
+     * 启动时按 checkpoint 恢复读取位置，按校验和找到写入位置
+     */
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    segments.put(Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的缓冲文件：{}", file);
+                }
+            }
+        }
+
+        long checkpointSequence = checkpoint.getLong(0);
+        int checkpointPosition = checkpoint.getInt(8);
+        CRC32 crc = new CRC32();
+        crc.update(checkpoint.slice(0, 12));
+        boolean valid = checkpoint.getLong(12) == crc.getValue() && checkpointPosition >= 0;
+
+        // checkpoint 之前的段已经补发完
+        if (valid) {
+            while (!segments.isEmpty() && segments.firstKey() < checkpointSequence) {
+                delete(segments.pollFirstEntry().getValue());
+            }
+        }
+        boolean fresh = segments.isEmpty();
+        if (fresh) {
+            long sequence = valid ? checkpointSequence : 0;
+            segments.put(sequence, segmentFile(sequence));
+        }
+
+        Map.Entry<Long, File> last = segments.lastEntry();
+        writer = map(last.getKey(), last.getValue());
+        writer.limit = scan(writer);
+        // 截断崩溃时写了一半的记录，避免之后的写入与残留内容拼在一起
+        for (int i = writer.limit; i < writer.buffer.capacity() && i < writer.limit + RECORD_HEADER; i++) {
+            writer.buffer.put(i, (byte) 0);
+        }
+
+        long firstSequence = segments.firstKey();
+        reader = firstSequence == writer.sequence ? writer : map(firstSequence, segments.get(firstSequence));
+        readPosition = !fresh && valid && checkpointSequence == firstSequence ? checkpointPosition : 0;
+        if (reader == writer) {
+            readPosition = Math.min(readPosition, writer.limit);
+        }
+        writeCheckpoint();
+        if (!isEmptyLocked()) {
+            log.info("缓冲中有待补发的上报：{} 字节，目录：{}", pendingBytes(), directory);
+        }
+    }
+
+    /**
+     * 当前写入段已满，切换到新段；超出磁盘上限时删除最旧的段
+     */
+    private void roll() {
+        unsynced.add(writer.buffer);
+        writer.file.setLastModified(System.currentTimeMillis());
+        while ((long) (segments.size() + 1) * segmentBytes > maxBytes && segments.size() > 1) {
+            dropOldest("超出磁盘上限");
+        }
+        long sequence = writer.sequence + 1;
+        File file = segmentFile(sequence);
+        try {
+            Segment next = map(sequence, file);
+            segments.put(sequence, file);
+            writer = next;
+        } catch (IOException e) {
+            throw new IllegalStateException("创建缓冲段失败：" + file, e);
+        }
+    }
+
+    /**
+     * 删除超过保留时间的段，正在写入的段除外
+     * 读取段之前的段都已删除，最旧的段总是当前读取的段
+     */
+    private void expire() {
+        long deadline = System.currentTimeMillis() - retentionMillis;
+        while (segments.size() > 1 && segments.firstEntry().getValue().lastModified() < deadline) {
+            dropOldest("超过保留时间");
+        }
+    }
+
+    /**
+     * 删除最旧的段，即当前读取的段
+     */
+    private void dropOldest(String reason) {
+        boolean unread = recordLength(reader, readPosition) > 0;
+        String name = reader.file.getName();
+        advance();
+        if (unread) {
+            droppedSegments++;
+            log.warn("{}，删除未补发的缓冲段：{}", reason, name);
+        }
+    }
+
+    /**
+     * 读取段已读完或被删除，切换到下一段
+     */
+    private void advance() {
+        segments.remove(reader.sequence);
+        delete(reader.file);
+        long next = segments.ceilingKey(reader.sequence);
+        try {
+            reader = next == writer.sequence ? writer : map(next, segments.get(next));
+        } catch (IOException e) {
+            throw new IllegalStateException("映射缓冲段失败：" + segments.get(next), e);
+        }
+        readPosition = 0;
+        writeCheckpoint();
+    }
+
+    private boolean isEmptyLocked() {
+        return reader == writer && readPosition >= writer.limit;
+    }
+
+    private void writeCheckpoint() {
+        checkpoint.putLong(0, reader.sequence);
+        checkpoint.putInt(8, readPosition);
+        CRC32 crc = new CRC32();
+        crc.update(checkpoint.slice(0, 12));
+        checkpoint.putLong(12, crc.getValue());
+        dirty = true;
+    }
+
+    /**
+     * 从头扫描段内的完整记录
+     *
+     * @return 最后一条完整记录之后的位置
+     */
+    private static int scan(Segment segment) {
+        int position = 0;
+        while (true) {
+            int length = recordLength(segment, position);
+            if (length <= 0 || !checksum(segment.buffer, position, length)) {
+                return position;
+            }
+            position += RECORD_HEADER + length;
+        }
+    }
+
+    /**
+     * @return 记录内容的长度，没有完整的记录时返回 0
+     */
+    private static int recordLength(Segment segment, int position) {
+        MappedByteBuffer buffer = segment.buffer;
+        if (position + RECORD_HEADER > buffer.capacity()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        return length > 0 && position + RECORD_HEADER + length <= buffer.capacity() ? length : 0;
+    }
+
+    private static boolean checksum(MappedByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + RECORD_HEADER, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+
+    private Segment map(long sequence, File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // 新段预先扩展到固定大小，未写入的部分全为 0
+            long size = raf.length() > 0 ? raf.length() : segmentBytes;
+            if (raf.length() == 0) {
+                raf.setLength(size);
+            }
+            // 映射在通道关闭后仍然有效
+            return new Segment(sequence, file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // 同一进程内重复打开
+            return null;
+        }
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            log.warn("删除缓冲段失败：{}", file);
+        }
+    }
+
+    private static class Segment {
+
+        private final long sequence;
+
+        private final File file;
+
+        private final MappedByteBuffer buffer;
+
+        /**
+         * 写入位置，只对写入段有意义
+         */
+        private int limit;
+
+        private Segment(long sequence, File file, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 一次读取的记录以及读完后的位置
+     */
+    public static class Batch {
+
+        private final long sequence;
+
+        private final int position;
+
+        private final List<String> records;
+
+        private Batch(long sequence, int position, List<String> records) {
+            this.sequence = sequence;
+            this.position = position;
+            this.records = records;
+        }
+
+        public List<String> getRecords() {
+            return records;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.simon.springboot.report;
+
+import cn.hutool.json.JSONUtil;
+import com.simon.springboot.config.AiReportConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactStackEncoderTest {
+
+    /**
+     * 与 mcp-client 模块 CompactStackDecoderTest 中的数据相同，那里校验解码后还原的文本与 printStackTrace 一致
+     */
+    private static final String COMPACT_JSON = "{\"strings\":[\"com.simon.demo.OrderService\",\"submit\",\"OrderService.java\","
+            + "\"com.simon.demo.OrderController\",\"create\",\"OrderController.java\",\"com.simon.demo.Main\",\"main\",\"Main.java\","
+            + "\"java.lang.RuntimeException\",\"com.simon.demo.Resource\",\"close\",\"Resource.java\",\"java.lang.IllegalStateException\","
+            + "\"com.simon.demo.OrderDao\",\"insert\",\"OrderDao.java\",\"java.sql.SQLException\",\"sun.nio.ch.Net\",\"poll\","
+            + "\"com.simon.demo.Pool\",\"get\",\"java.io.IOException\"],"
+            + "\"throwables\":[{\"type\":9,\"message\":\"order failed\",\"frames\":[0,1,2,42,3,4,5,18,6,7,8,7],\"elided\":0,\"cause\":2,\"suppressed\":[1]},"
+            + "{\"type\":13,\"message\":\"close failed\",\"frames\":[10,11,12,12,0,1,2,45],\"elided\":2,\"cause\":-1},"
+            + "{\"type\":17,\"message\":\"deadlock\",\"frames\":[14,15,16,30,0,1,2,40],\"elided\":2,\"cause\":3},"
+            + "{\"type\":22,\"message\":\"connection reset\",\"frames\":[18,19,-1,-2,20,21,-1,-1],\"elided\":4,\"cause\":-1}]}";
+
+    @Test
+    void encodesSharedFramesAndCauseChain() {
+        CompactStack stack = new CompactStackEncoder(new AiReportConfig()).encode(sample());
+
+        assertThat(JSONUtil.toJsonStr(stack)).isEqualTo(COMPACT_JSON);
+        // 字符串表没有重复，cause 和 suppressed 只引用更靠后的异常
+        assertThat(new HashSet<>(stack.getStrings())).hasSameSizeAs(stack.getStrings());
+        for (int i = 0; i < stack.getThrowables().size(); i++) {
+            CompactStack.CompactThrowable throwable = stack.getThrowables().get(i);
+            if (throwable.getCause() >= 0) {
+                assertThat(throwable.getCause()).isGreaterThan(i);
+            }
+            for (int suppressed : throwable.getSuppressed() == null ? new int[0] : throwable.getSuppressed()) {
+                assertThat(suppressed).isGreaterThan(i);
+            }
+        }
+    }
+
+    @Test
+    void skipsCircularCause() {
+        RuntimeException outer = new RuntimeException("outer");
+        IllegalStateException inner = new IllegalStateException("inner", outer);
+        outer.initCause(inner);
+
+        CompactStack stack = new CompactStackEncoder(new AiReportConfig()).encode(outer);
+        assertThat(stack.getThrowables()).hasSize(2);
+        assertThat(stack.getThrowables().get(0).getCause()).isEqualTo(1);
+        assertThat(stack.getThrowables().get(1).getCause()).isEqualTo(-1);
+    }
+
+    @Test
+    void compressesLargeStacks() throws IOException {
+        AiReportConfig config = new AiReportConfig();
+        config.getPayload().setCompressMinBytes(100);
+        CompactStackEncoder encoder = new CompactStackEncoder(config);
+        ExceptionReport report = new ExceptionReport(encoder.encode(sample()), 1L, "test");
+
+        encoder.compress(report);
+        assertThat(report.getStack()).isNull();
+        byte[] compressed = Base64.getDecoder().decode(report.getStackGzip());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(COMPACT_JSON);
+        }
+
+        // 不足阈值时保持原样
+        config.getPayload().setCompressMinBytes(1_000_000);
+        ExceptionReport small = new ExceptionReport(encoder.encode(sample()), 1L, "test");
+        encoder.compress(small);
+        assertThat(small.getStack()).isNotNull();
+        assertThat(small.getStackGzip()).isNull();
+    }
+
+    /**
+     * 外层异常带一个 suppressed 和两层 cause，尾部帧与外层相同
+     */
+    private static RuntimeException sample() {
+        RuntimeException top = new RuntimeException("order failed");
+        top.setStackTrace(new StackTraceElement[]{
+                frame("com.simon.demo.OrderService", "submit", "OrderService.java", 42),
+                frame("com.simon.demo.OrderController", "create", "OrderController.java", 18),
+                frame("com.simon.demo.Main", "main", "Main.java", 7)});
+        IllegalStateException suppressed = new IllegalStateException("close failed");
+        suppressed.setStackTrace(new StackTraceElement[]{
+                frame("com.simon.demo.Resource", "close", "Resource.java", 12),
+                frame("com.simon.demo.OrderService", "submit", "OrderService.java", 45),
+                frame("com.simon.demo.OrderController", "create", "OrderController.java", 18),
+                frame("com.simon.demo.Main", "main", "Main.java", 7)});
+        top.addSuppressed(suppressed);
+        SQLException sql = new SQLException("deadlock");
+        sql.setStackTrace(new StackTraceElement[]{
+                frame("com.simon.demo.OrderDao", "insert", "OrderDao.java", 30),
+                frame("com.simon.demo.OrderService", "submit", "OrderService.java", 40),
+                frame("com.simon.demo.OrderController", "create", "OrderController.java", 18),
+                frame("com.simon.demo.Main", "main", "Main.java", 7)});
+        IOException io = new IOException("connection reset");
+        io.setStackTrace(new StackTraceElement[]{
+                frame("sun.nio.ch.Net", "poll", null, -2),
+                frame("com.simon.demo.Pool", "get", null, -1),
+                frame("com.simon.demo.OrderDao", "insert", "OrderDao.java", 30),
+                frame("com.simon.demo.OrderService", "submit", "OrderService.java", 40),
+                frame("com.simon.demo.OrderController", "create", "OrderController.java", 18),
+                frame("com.simon.demo.Main", "main", "Main.java", 7)});
+        sql.initCause(io);
+        top.initCause(sql);
+        return top;
+    }
+
+    private static StackTraceElement frame(String className, String method, String file, int line) {
+        return new StackTraceElement(className, method, file, line);
+    }
+}
@@ -0,0 +1,56 @@
+package com.simon.springboot.report;
+
+import com.simon.springboot.config.AiReportConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExceptionDeduplicatorTest {
+
+    private AiReportConfig config;
+
+    private ExceptionDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        config = new AiReportConfig();
+        deduplicator = new ExceptionDeduplicator(config, new ExceptionFingerprinter(config));
+    }
+
+    @Test
+    void suppressesRepeatsWithinWindow() {
+        assertThat(deduplicator.shouldReport(failure(new IllegalStateException("a"), 10))).isTrue();
+        assertThat(deduplicator.shouldReport(failure(new IllegalStateException("b"), 11))).isFalse();
+        assertThat(deduplicator.shouldReport(failure(new IllegalArgumentException("c"), 10))).isTrue();
+    }
+
+    @Test
+    void reportsAgainAfterWindowExpires() {
+        // 窗口为 0 时每次出现都已过期
+        config.getDedup().setWindowSeconds(0);
+
+        assertThat(deduplicator.shouldReport(failure(new IllegalStateException(), 10))).isTrue();
+        assertThat(deduplicator.shouldReport(failure(new IllegalStateException(), 10))).isTrue();
+    }
+
+    @Test
+    void evictsLeastRecentFingerprintBeyondCapacity() {
+        config.getDedup().setMaxEntries(2);
+
+        assertThat(deduplicator.shouldReport(failure(new IllegalStateException(), 10))).isTrue();
+        assertThat(deduplicator.shouldReport(failure(new IllegalArgumentException(), 10))).isTrue();
+        // 第三个指纹挤掉最久未出现的 IllegalStateException
+        assertThat(deduplicator.shouldReport(failure(new ArithmeticException(), 10))).isTrue();
+
+        assertThat(deduplicator.shouldReport(failure(new IllegalArgumentException(), 10))).isFalse();
+        assertThat(deduplicator.shouldReport(failure(new IllegalStateException(), 10))).isTrue();
+    }
+
+    private static Throwable failure(Throwable throwable, int line) {
+        throwable.setStackTrace(new StackTraceElement[]{
+                new StackTraceElement("com.simon.springboot.controller.UserController", "get", "UserController.java", line)
+        });
+        return throwable;
+    }
+}
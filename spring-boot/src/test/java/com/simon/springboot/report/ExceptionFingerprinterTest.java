@@ -0,0 +1,52 @@
+package com.simon.springboot.report;
+
+import com.simon.springboot.config.AiReportConfig;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExceptionFingerprinterTest {
+
+    private final ExceptionFingerprinter fingerprinter = new ExceptionFingerprinter(new AiReportConfig());
+
+    @Test
+    void ignoresLineNumbersAndMessages() {
+        Throwable first = failure(new IllegalStateException("id=1"), 42);
+        Throwable second = failure(new IllegalStateException("id=2"), 57);
+
+        assertThat(fingerprinter.fingerprint(first)).isEqualTo(fingerprinter.fingerprint(second));
+    }
+
+    @Test
+    void differentRootCauseChangesFingerprint() {
+        Throwable timeout = failure(new IllegalStateException("wrapped"), 42);
+        timeout.initCause(failure(new SocketTimeoutException("read"), 10));
+        Throwable refused = failure(new IllegalStateException("wrapped"), 42);
+        refused.initCause(failure(new ConnectException("refused"), 10));
+
+        assertThat(fingerprinter.fingerprint(timeout)).isNotEqualTo(fingerprinter.fingerprint(refused));
+    }
+
+    @Test
+    void matchesApplicationPackagesOnPackageBoundary() {
+        Throwable throwable = new IllegalStateException();
+        throwable.setStackTrace(new StackTraceElement[]{
+                new StackTraceElement("com.simonsays.Client", "call", "Client.java", 10),
+                new StackTraceElement("com.simon.springboot.controller.UserController", "get", "UserController.java", 20)
+        });
+
+        assertThat(fingerprinter.normalize(throwable))
+                .isEqualTo("java.lang.IllegalStateException@com.simon.springboot.controller.UserController#get");
+    }
+
+    private static Throwable failure(Throwable throwable, int line) {
+        throwable.setStackTrace(new StackTraceElement[]{
+                new StackTraceElement("com.simon.springboot.service.UserService", "load", "UserService.java", line),
+                new StackTraceElement("com.simon.springboot.controller.UserController", "get", "UserController.java", line + 5)
+        });
+        return throwable;
+    }
+}
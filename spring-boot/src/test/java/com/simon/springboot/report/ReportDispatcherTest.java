@@ -0,0 +1,187 @@
+package com.simon.springboot.report;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+import com.simon.springboot.config.AiReportConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportDispatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    private volatile Function<String, Response> handler;
+
+    private AiReportConfig config;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/error_analyze_batch", this::handle);
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        config = new AiReportConfig();
+        config.getTransport().setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        config.getTransport().setRequestTimeoutMillis(5_000);
+        config.getQueue().setLingerMillis(10);
+        config.getSpool().setDirectory(tempDir.toString());
+        config.getSpool().setSegmentBytes(64 * 1024);
+        config.getSpool().setRetryIntervalMillis(50);
+        config.getSpool().setSyncIntervalMillis(50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void keepsReportsWithFailIdsForRetry() throws Exception {
+        // 第一次收到 busy 时任务队列已满，返回 FAIL；之后正常受理
+        AtomicBoolean full = new AtomicBoolean(true);
+        handler = body -> {
+            List<String> ids = new ArrayList<>();
+            for (String report : reports(body)) {
+                boolean rejected = report.equals("busy") && full.getAndSet(false);
+                ids.add(rejected ? "\"FAIL\"" : "\"job\"");
+            }
+            return new Response(200, "[" + String.join(",", ids) + "]", 0);
+        };
+        ReportDispatcher dispatcher = dispatcher();
+        dispatcher.start();
+        try {
+            dispatcher.submit(new ExceptionReport("ok", 1L, "test"));
+            dispatcher.submit(new ExceptionReport("busy", 2L, "test"));
+
+            awaitReceived("busy", 2);
+            assertThat(received).filteredOn("ok"::equals).hasSize(1);
+            // 重发成功后推进读取位置
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (replayed() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(replayed()).isEqualTo(1);
+        } finally {
+            dispatcher.stop();
+        }
+        try (ReportSpool spool = new ReportSpool(config.getSpool())) {
+            assertThat(spool.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    void stopWaitsForInFlightSends() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        handler = body -> {
+            arrived.countDown();
+            return new Response(503, "", 300);
+        };
+        ReportDispatcher dispatcher = dispatcher();
+        dispatcher.start();
+        dispatcher.submit(new ExceptionReport("late", 1L, "test"));
+        assertThat(arrived.await(5, TimeUnit.SECONDS)).isTrue();
+        dispatcher.stop();
+
+        try (ReportSpool spool = new ReportSpool(config.getSpool())) {
+            assertThat(spool.peek(10).getRecords()).singleElement().asString().contains("\"message\":\"late\"");
+        }
+    }
+
+    @Test
+    void parsesFailIdsByPosition() {
+        List<String> batch = List.of("a", "b", "c");
+        assertThat(AnalyzeTransport.failed(batch, "[\"1\",\"FAIL\",\"3\"]")).containsExactly("b");
+        assertThat(AnalyzeTransport.failed(batch, "[\"1\",\"2\",\"3\"]")).isEmpty();
+        // 无法识别的响应视为全部受理
+        assertThat(AnalyzeTransport.failed(batch, "[\"FAIL\"]")).isEmpty();
+        assertThat(AnalyzeTransport.failed(batch, "ok")).isEmpty();
+    }
+
+    private ReportDispatcher dispatcher() {
+        AnalyzeTransport transport = new AnalyzeTransport(config, new CompactStackEncoder(config), meterRegistry);
+        return new ReportDispatcher(config, transport, meterRegistry);
+    }
+
+    private double replayed() {
+        return meterRegistry.get("ai.report.spool.replayed").functionCounter().count();
+    }
+
+    private void awaitReceived(String message, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (received.stream().filter(message::equals).count() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(received).filteredOn(message::equals).hasSize(count);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Response response = handler.apply(body);
+        received.addAll(reports(body));
+        try {
+            Thread.sleep(response.delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(response.status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 请求体是 {"reports":[...]}，测试只关心每条上报的 message
+     */
+    private static List<String> reports(String body) {
+        List<String> messages = new ArrayList<>();
+        JSONArray reports = JSONUtil.parseObj(body).getJSONArray("reports");
+        for (int i = 0; i < reports.size(); i++) {
+            messages.add(reports.getJSONObject(i).getStr("message"));
+        }
+        return messages;
+    }
+
+    private static class Response {
+
+        private final int status;
+
+        private final String body;
+
+        private final long delayMillis;
+
+        private Response(int status, String body, long delayMillis) {
+            this.status = status;
+            this.body = body;
+            this.delayMillis = delayMillis;
+        }
+    }
+}
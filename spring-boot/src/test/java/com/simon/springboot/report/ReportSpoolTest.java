@@ -0,0 +1,157 @@
+package com.simon.springboot.report;
+
+import com.simon.springboot.config.AiReportConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportSpoolTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recoversAfterTornWrite() throws Exception {
+        try (ReportSpool spool = open()) {
+            spool.append("a");
+            spool.append("bb");
+            spool.append("ccc");
+        }
+        // 崩溃时最后一条只写了一半：长度已写入，内容和校验和不完整
+        int tail = (8 + 1) + (8 + 2) + (8 + 3);
+        try (RandomAccessFile file = new RandomAccessFile(segment(0), "rw")) {
+            file.seek(tail);
+            file.writeInt(100);
+            file.writeInt(12345);
+            file.write("dd".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (ReportSpool spool = open()) {
+            assertThat(spool.peek(10).getRecords()).containsExactly("a", "bb", "ccc");
+            // 新记录覆盖残留的半条记录
+            spool.append("eeee");
+        }
+        try (ReportSpool spool = open()) {
+            assertThat(drain(spool, 10)).containsExactly("a", "bb", "ccc", "eeee");
+            assertThat(spool.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    void recoversAfterTruncatedRecord() throws Exception {
+        try (ReportSpool spool = open()) {
+            spool.append("a");
+            spool.append("bb");
+            spool.append("ccc");
+        }
+        // 第三条记录的内容被截断（校验和不符），之后的内容不可信
+        try (RandomAccessFile file = new RandomAccessFile(segment(0), "rw")) {
+            file.seek((8 + 1) + (8 + 2) + 8);
+            file.write('x');
+        }
+
+        try (ReportSpool spool = open()) {
+            spool.append("dddd");
+            assertThat(drain(spool, 10)).containsExactly("a", "bb", "dddd");
+        }
+    }
+
+    @Test
+    void resumesFromCheckpointAfterRestart() throws Exception {
+        try (ReportSpool spool = open()) {
+            for (int i = 0; i < 5; i++) {
+                spool.append("r" + i);
+            }
+            ReportSpool.Batch batch = spool.peek(2);
+            assertThat(batch.getRecords()).containsExactly("r0", "r1");
+            spool.commit(batch);
+            // 未提交的批次重启后重新补发
+            spool.peek(2);
+        }
+        try (ReportSpool spool = open()) {
+            assertThat(drain(spool, 2)).containsExactly("r2", "r3", "r4");
+        }
+    }
+
+    @Test
+    void rollsSegmentsAndReplaysInOrder() throws Exception {
+        String padding = "x".repeat(10 * 1024);
+        List<String> expected = new ArrayList<>();
+        try (ReportSpool spool = open()) {
+            for (int i = 0; i < 20; i++) {
+                String record = i + ":" + padding;
+                expected.add(record);
+                assertThat(spool.append(record)).isTrue();
+            }
+            assertThat(segments()).hasSizeGreaterThan(2);
+            // 补发一部分后重启，剩余的记录按原顺序继续补发
+            List<String> replayed = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                ReportSpool.Batch batch = spool.peek(3);
+                replayed.addAll(batch.getRecords());
+                spool.commit(batch);
+            }
+            assertThat(replayed).isEqualTo(expected.subList(0, replayed.size()));
+            expected = expected.subList(replayed.size(), expected.size());
+        }
+        try (ReportSpool spool = open()) {
+            assertThat(drain(spool, 3)).isEqualTo(expected);
+            // 读完的段已删除，只剩正在写入的段
+            assertThat(segments()).hasSize(1);
+        }
+    }
+
+    @Test
+    void dropsOldestSegmentOverMaxBytes() throws Exception {
+        String padding = "x".repeat(10 * 1024);
+        try (ReportSpool spool = open(2L * SEGMENT_BYTES)) {
+            for (int i = 0; i < 40; i++) {
+                spool.append(i + ":" + padding);
+            }
+            assertThat(spool.droppedSegments()).isPositive();
+            assertThat(segments().length).isLessThanOrEqualTo(2);
+            List<String> replayed = drain(spool, 5);
+            assertThat(replayed).isNotEmpty().last().asString().startsWith("39:");
+        }
+    }
+
+    private ReportSpool open() throws Exception {
+        return open(64L * SEGMENT_BYTES);
+    }
+
+    private ReportSpool open(long maxBytes) throws Exception {
+        AiReportConfig.Spool config = new AiReportConfig.Spool();
+        config.setDirectory(tempDir.toString());
+        config.setSegmentBytes(SEGMENT_BYTES);
+        config.setMaxBytes(maxBytes);
+        return new ReportSpool(config);
+    }
+
+    private File segment(long sequence) {
+        return tempDir.resolve(String.format("%020d.seg", sequence)).toFile();
+    }
+
+    private File[] segments() {
+        return tempDir.toFile().listFiles((dir, name) -> name.endsWith(".seg"));
+    }
+
+    private static List<String> drain(ReportSpool spool, int batchSize) {
+        List<String> records = new ArrayList<>();
+        while (!spool.isEmpty()) {
+            ReportSpool.Batch batch = spool.peek(batchSize);
+            records.addAll(batch.getRecords());
+            spool.commit(batch);
+        }
+        return records;
+    }
+}